@@ -19,125 +19,236 @@
 package org.apache.sling.auth.core.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.servlet.http.HttpServletRequest;
 
+/**
+ * The <code>PathBasedHolderCache</code> manages {@link PathBasedHolder}
+ * instances by protocol, host and path.
+ * <p>
+ * Modifications are serialized and rebuild an immutable lookup structure,
+ * which is published through a volatile field. Lookups therefore never lock:
+ * for each protocol and host the holders are organized in a character trie
+ * keyed by their path, where each node already knows the list of holders
+ * applying to paths reaching it, ordered by descending path length. Finding
+ * the holders applicable to a request path is thus a single walk down the
+ * trie.
+ */
 public class PathBasedHolderCache<Type extends PathBasedHolder> {
 
+    /**
+     * The registered holders by protocol and host. This map is only accessed
+     * while holding the monitor of this instance.
+     */
     private final Map<String, Map<String, SortedSet<Type>>> cache = new HashMap<String, Map<String, SortedSet<Type>>>();
 
-    /** Read/write lock to synchronize the cache access. */
-    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+    /** The current immutable lookup snapshot built from the {@link #cache}. */
+    private volatile Snapshot<Type> snapshot = new Snapshot<Type>(cache);
+
+    public synchronized void clear() {
+        cache.clear();
+        publish();
+    }
 
-    public void clear() {
-        this.rwLock.writeLock().lock();
-        try {
-            cache.clear();
-        } finally {
-            this.rwLock.writeLock().unlock();
+    public synchronized void addHolder(final Type holder) {
+        Map<String, SortedSet<Type>> byHostMap = cache.get(holder.protocol);
+        if (byHostMap == null) {
+            byHostMap = new HashMap<String, SortedSet<Type>>();
+            cache.put(holder.protocol, byHostMap);
         }
+
+        SortedSet<Type> byPathSet = byHostMap.get(holder.host);
+        if (byPathSet == null) {
+            byPathSet = new TreeSet<Type>();
+            byHostMap.put(holder.host, byPathSet);
+        }
+
+        byPathSet.add(holder);
+        publish();
     }
 
-    public void addHolder(final Type holder) {
-        this.rwLock.writeLock().lock();
-        try {
+    public synchronized void removeHolder(final Type holder) {
+        final Map<String, SortedSet<Type>> byHostMap = cache.get(holder.protocol);
+        if (byHostMap != null) {
+            final SortedSet<Type> byPathSet = byHostMap.get(holder.host);
+            if (byPathSet != null) {
+                byPathSet.remove(holder);
 
-            Map<String, SortedSet<Type>> byHostMap = cache.get(holder.protocol);
-            if (byHostMap == null) {
-                byHostMap = new HashMap<String, SortedSet<Type>>();
-                cache.put(holder.protocol, byHostMap);
+                // remove the set if empty
+                if (byPathSet.isEmpty()) {
+                    byHostMap.remove(holder.host);
+                }
+                publish();
             }
+        }
+    }
 
-            final SortedSet<Type> byPathSet = new TreeSet<Type>();
+    /**
+     * Returns the holders applicable to the given request and path. The
+     * returned array contains the holders registered for the request scheme
+     * and host, for the request scheme and any host, for any scheme and the
+     * request host and for any scheme and host, in this order. Each entry
+     * only contains holders whose path is a prefix of the <code>path</code>,
+     * ordered by descending path length, or is <code>null</code> if there
+     * are none.
+     *
+     * @param request The request providing the scheme and host
+     * @param path The path used to select the holders
+     */
+    public Collection<Type>[] findApplicableHolder(final HttpServletRequest request, final String path) {
+        final Snapshot<Type> snapshot = this.snapshot;
+
+        final int port = request.getServerPort();
+        final String hostname = (port != 80 && port != 443)
+                ? request.getServerName() + ":" + port
+                : request.getServerName();
+
+        @SuppressWarnings("unchecked")
+        final Collection<Type>[] result = new Collection[4];
+
+        final Map<String, PathTrie<Type>> byHostMap = snapshot.tries.get(request.getScheme());
+        if ( byHostMap != null ) {
+            result[0] = find(byHostMap.get(hostname), path);
+            result[1] = find(byHostMap.get(""), path);
+        }
+        final Map<String, PathTrie<Type>> defaultByHostMap = snapshot.tries.get("");
+        if ( defaultByHostMap != null ) {
+            result[2] = find(defaultByHostMap.get(hostname), path);
+            result[3] = find(defaultByHostMap.get(""), path);
+        }
+        return result;
+    }
 
-            // preset with current list
-            final SortedSet<Type> currentPathSet = byHostMap.get(holder.host);
-            if (currentPathSet != null) {
-                byPathSet.addAll(currentPathSet);
-            }
+    public List<Type> getHolders() {
+        return new ArrayList<Type>(snapshot.holders);
+    }
 
-            // add the new holder
-            byPathSet.add(holder);
+    private void publish() {
+        this.snapshot = new Snapshot<Type>(cache);
+    }
 
-            // replace old set with new set
-            byHostMap.put(holder.host, byPathSet);
-        } finally {
-            this.rwLock.writeLock().unlock();
+    private static <Type extends PathBasedHolder> List<Type> find(final PathTrie<Type> trie, final String path) {
+        if (trie == null) {
+            return null;
         }
+        final List<Type> result = trie.find(path);
+        return result.isEmpty() ? null : result;
     }
 
-    public void removeHolder(final Type holder) {
-        this.rwLock.writeLock().lock();
-        try {
-            final Map<String, SortedSet<Type>> byHostMap = cache.get(holder.protocol);
-            if (byHostMap != null) {
-                final SortedSet<Type> byPathSet = byHostMap.get(holder.host);
-                if (byPathSet != null) {
-
-                    // create a new set without the removed holder
-                    final SortedSet<Type> set = new TreeSet<Type>();
-                    set.addAll(byPathSet);
-                    set.remove(holder);
-
-                    // replace the old set with the new one (or remove if empty)
-                    if (set.isEmpty()) {
-                        byHostMap.remove(holder.host);
-                    } else {
-                        byHostMap.put(holder.host, set);
-                    }
+    /**
+     * Immutable view of the registered holders.
+     */
+    private static final class Snapshot<Type extends PathBasedHolder> {
+
+        final Map<String, Map<String, PathTrie<Type>>> tries;
+
+        final List<Type> holders;
+
+        Snapshot(final Map<String, Map<String, SortedSet<Type>>> cache) {
+            final Map<String, Map<String, PathTrie<Type>>> tries = new HashMap<String, Map<String, PathTrie<Type>>>();
+            final List<Type> holders = new ArrayList<Type>();
+            for (Map.Entry<String, Map<String, SortedSet<Type>>> byProtocol : cache.entrySet()) {
+                final Map<String, PathTrie<Type>> byHost = new HashMap<String, PathTrie<Type>>();
+                for (Map.Entry<String, SortedSet<Type>> byHostEntry : byProtocol.getValue().entrySet()) {
+                    byHost.put(byHostEntry.getKey(), PathTrie.build(byHostEntry.getValue()));
+                    holders.addAll(byHostEntry.getValue());
                 }
+                tries.put(byProtocol.getKey(), byHost);
             }
-        } finally {
-            this.rwLock.writeLock().unlock();
+            this.tries = tries;
+            this.holders = Collections.unmodifiableList(holders);
         }
     }
 
-    public Collection<Type>[] findApplicableHolder(final HttpServletRequest request) {
-        this.rwLock.readLock().lock();
-        try {
-            final String hostname = request.getServerName()
-                  + (request.getServerPort() != 80 && request.getServerPort() != 443
-                    ? ":" + request.getServerPort()
-                    : "");
-
-            @SuppressWarnings("unchecked")
-            final SortedSet<Type>[] result = new SortedSet[4];
-
-            final Map<String, SortedSet<Type>> byHostMap = cache.get(request.getScheme());
-            if ( byHostMap != null ) {
-                result[0] = byHostMap.get(hostname);
-                result[1] = byHostMap.get("");
+    /**
+     * Immutable character trie over the paths of holders. Each node holds the
+     * list of holders applicable to any path starting with the prefix leading
+     * to the node: the holders registered for exactly that prefix followed by
+     * the holders applicable to the parent node.
+     */
+    static final class PathTrie<Type extends PathBasedHolder> {
+
+        private final char[] keys;
+
+        private final PathTrie<Type>[] children;
+
+        private final List<Type> holders;
+
+        @SuppressWarnings("unchecked")
+        private PathTrie(final Builder<Type> builder, final List<Type> parentHolders) {
+            if (builder.holders.isEmpty()) {
+                this.holders = parentHolders;
+            } else {
+                final List<Type> list = new ArrayList<Type>(builder.holders.size() + parentHolders.size());
+                list.addAll(builder.holders);
+                list.addAll(parentHolders);
+                this.holders = Collections.unmodifiableList(list);
             }
-            final Map<String, SortedSet<Type>> defaultByHostMap = cache.get("");
-            if ( defaultByHostMap != null ) {
-                result[2] = defaultByHostMap.get(hostname);
-                result[3] = defaultByHostMap.get("");
+
+            this.keys = new char[builder.children.size()];
+            this.children = new PathTrie[keys.length];
+            int i = 0;
+            for (Map.Entry<Character, Builder<Type>> child : builder.children.entrySet()) {
+                keys[i] = child.getKey();
+                children[i] = new PathTrie<Type>(child.getValue(), this.holders);
+                i++;
             }
-            return result;
-        } finally {
-            this.rwLock.readLock().unlock();
         }
-    }
 
-    public List<Type> getHolders() {
-        this.rwLock.readLock().lock();
-        try {
-            final List<Type> result = new ArrayList<Type>();
-            for (Map<String, SortedSet<Type>> byHostEntry : cache.values()) {
-                for (SortedSet<Type> holderSet : byHostEntry.values()) {
-                    result.addAll(holderSet);
+        /**
+         * Builds the trie for the given holders, which must be sorted
+         * according to their natural order.
+         */
+        static <Type extends PathBasedHolder> PathTrie<Type> build(final Collection<Type> holders) {
+            final Builder<Type> root = new Builder<Type>();
+            for (Type holder : holders) {
+                Builder<Type> node = root;
+                final String path = holder.path;
+                for (int i = 0; i < path.length(); i++) {
+                    final Character c = path.charAt(i);
+                    Builder<Type> child = node.children.get(c);
+                    if (child == null) {
+                        child = new Builder<Type>();
+                        node.children.put(c, child);
+                    }
+                    node = child;
                 }
+                node.holders.add(holder);
             }
-            return result;
-        } finally {
-            this.rwLock.readLock().unlock();
+            return new PathTrie<Type>(root, Collections.<Type> emptyList());
+        }
+
+        /**
+         * Returns the holders whose path is a prefix of the given path,
+         * ordered by descending path length. Holders with the same path are
+         * ordered according to their natural order.
+         */
+        List<Type> find(final String path) {
+            PathTrie<Type> node = this;
+            for (int i = 0; i < path.length(); i++) {
+                final int idx = Arrays.binarySearch(node.keys, path.charAt(i));
+                if (idx < 0) {
+                    break;
+                }
+                node = node.children[idx];
+            }
+            return node.holders;
+        }
+
+        private static final class Builder<Type> {
+
+            final TreeMap<Character, Builder<Type>> children = new TreeMap<Character, Builder<Type>>();
+
+            final List<Type> holders = new ArrayList<Type>();
         }
     }
 }
@@ -524,29 +524,27 @@ public class SlingAuthenticator implements Authenticator,
         }
 
         // select path used for authentication handler selection
-        final Collection<AbstractAuthenticationHandlerHolder>[] holdersArray = this.authHandlerCache
-                .findApplicableHolder(request);
         final String path = getHandlerSelectionPath(request);
+        final Collection<AbstractAuthenticationHandlerHolder>[] holdersArray = this.authHandlerCache
+                .findApplicableHolder(request, path);
         boolean done = false;
         for (int m = 0; !done && m < holdersArray.length; m++) {
             final Collection<AbstractAuthenticationHandlerHolder> holderList = holdersArray[m];
             if ( holderList != null ) {
                 for (AbstractAuthenticationHandlerHolder holder : holderList) {
-                    if (path.startsWith(holder.path)) {
-                        log.debug("login: requesting authentication using handler: {}",
-                            holder);
-
-                        try {
-                            done = holder.requestCredentials(request, response);
-                        } catch (IOException ioe) {
-                            log.error(
-                                "login: Failed sending authentication request through handler "
-                                    + holder + ", access forbidden", ioe);
-                            done = true;
-                        }
-                        if (done) {
-                            break;
-                        }
+                    log.debug("login: requesting authentication using handler: {}",
+                        holder);
+
+                    try {
+                        done = holder.requestCredentials(request, response);
+                    } catch (IOException ioe) {
+                        log.error(
+                            "login: Failed sending authentication request through handler "
+                                + holder + ", access forbidden", ioe);
+                        done = true;
+                    }
+                    if (done) {
+                        break;
                     }
                 }
             }
@@ -587,22 +585,20 @@ public class SlingAuthenticator implements Authenticator,
 
         final String path = getHandlerSelectionPath(request);
         final Collection<AbstractAuthenticationHandlerHolder>[] holdersArray = this.authHandlerCache
-                .findApplicableHolder(request);
+                .findApplicableHolder(request, path);
         for (int m = 0; m < holdersArray.length; m++) {
             final Collection<AbstractAuthenticationHandlerHolder> holderSet = holdersArray[m];
             if (holderSet != null) {
                 for (AbstractAuthenticationHandlerHolder holder : holderSet) {
-                    if (path.startsWith(holder.path)) {
-                        log.debug("logout: dropping authentication using handler: {}",
-                            holder);
-
-                        try {
-                            holder.dropCredentials(request, response);
-                        } catch (IOException ioe) {
-                            log.error(
-                                "logout: Failed dropping authentication through handler "
-                                    + holder, ioe);
-                        }
+                    log.debug("logout: dropping authentication using handler: {}",
+                        holder);
+
+                    try {
+                        holder.dropCredentials(request, response);
+                    } catch (IOException ioe) {
+                        log.error(
+                            "logout: Failed dropping authentication through handler "
+                                + holder, ioe);
                     }
                 }
             }
@@ -704,22 +700,20 @@ public class SlingAuthenticator implements Authenticator,
         }
 
         final Collection<AbstractAuthenticationHandlerHolder>[] localArray = this.authHandlerCache
-                .findApplicableHolder(request);
+                .findApplicableHolder(request, path);
         for (int m = 0; m < localArray.length; m++) {
             final Collection<AbstractAuthenticationHandlerHolder> local = localArray[m];
             if (local != null) {
                 for (AbstractAuthenticationHandlerHolder holder : local) {
-                    if (path.startsWith(holder.path)) {
-                        final AuthenticationInfo authInfo = holder.extractCredentials(
-                            request, response);
+                    final AuthenticationInfo authInfo = holder.extractCredentials(
+                        request, response);
 
-                        if (authInfo != null) {
-                            // add the feedback handler to the info (may be null)
-                            authInfo.put(AUTH_INFO_PROP_FEEDBACK_HANDLER,
-                                holder.getFeedbackHandler());
+                    if (authInfo != null) {
+                        // add the feedback handler to the info (may be null)
+                        authInfo.put(AUTH_INFO_PROP_FEEDBACK_HANDLER,
+                            holder.getFeedbackHandler());
 
-                            return authInfo;
-                        }
+                        return authInfo;
                     }
                 }
             }
@@ -897,16 +891,13 @@ public class SlingAuthenticator implements Authenticator,
             path = "/";
         }
 
+        // the first applicable holder is the one with the longest matching path
         final Collection<AuthenticationRequirementHolder>[] holderSetArray = authRequiredCache
-                .findApplicableHolder(request);
+                .findApplicableHolder(request, path);
         for (int m = 0; m < holderSetArray.length; m++) {
             final Collection<AuthenticationRequirementHolder> holders = holderSetArray[m];
             if (holders != null) {
-                for (AuthenticationRequirementHolder holder : holders) {
-                    if (path.startsWith(holder.path)) {
-                        return !holder.requiresAuthentication();
-                    }
-                }
+                return !holders.iterator().next().requiresAuthentication();
             }
         }
 
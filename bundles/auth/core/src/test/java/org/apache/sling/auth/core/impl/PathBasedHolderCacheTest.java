@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+
+import junit.framework.TestCase;
+
+public class PathBasedHolderCacheTest extends TestCase {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    private PathBasedHolderCache<AuthenticationRequirementHolder> cache;
+
+    private int requestCounter;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cache = new PathBasedHolderCache<AuthenticationRequirementHolder>();
+        cache.addHolder(new AuthenticationRequirementHolder("/", true, null));
+        cache.addHolder(new AuthenticationRequirementHolder("/content", false, null));
+        cache.addHolder(new AuthenticationRequirementHolder("/content/secure", true, null));
+        cache.addHolder(new AuthenticationRequirementHolder("/apps", true, null));
+        cache.addHolder(new AuthenticationRequirementHolder("http://example.com/content", true, null));
+        cache.addHolder(new AuthenticationRequirementHolder("//other.com:8080/", false, null));
+    }
+
+    public void test_longest_prefix_first() {
+        final Collection<AuthenticationRequirementHolder>[] holders = cache.findApplicableHolder(
+            request("http", "localhost", 80), "/content/secure/page.html");
+        assertNull(holders[0]);
+        assertNull(holders[1]);
+        assertNull(holders[2]);
+        assertPaths(holders[3], "/content/secure", "/content", "/");
+    }
+
+    public void test_string_prefix_matching() {
+        // holders match by string prefix, not by path segments
+        final Collection<AuthenticationRequirementHolder>[] holders = cache.findApplicableHolder(
+            request("http", "localhost", 80), "/contentfoo");
+        assertPaths(holders[3], "/content", "/");
+    }
+
+    public void test_unmatched_path() {
+        final Collection<AuthenticationRequirementHolder>[] holders = cache.findApplicableHolder(
+            request("http", "localhost", 80), "foo");
+        assertNull(holders[3]);
+    }
+
+    public void test_protocol_and_host() {
+        Collection<AuthenticationRequirementHolder>[] holders = cache.findApplicableHolder(
+            request("http", "example.com", 80), "/content/page.html");
+        assertPaths(holders[0], "/content");
+        assertNull(holders[1]);
+        assertNull(holders[2]);
+        assertPaths(holders[3], "/content", "/");
+
+        holders = cache.findApplicableHolder(request("https", "example.com", 443), "/content/page.html");
+        assertNull(holders[0]);
+
+        holders = cache.findApplicableHolder(request("http", "other.com", 8080), "/content/page.html");
+        assertPaths(holders[2], "/");
+    }
+
+    public void test_add_and_clear() {
+        assertEquals(6, cache.getHolders().size());
+        cache.addHolder(new AuthenticationRequirementHolder("/content/secure/public", false, null));
+        assertEquals(7, cache.getHolders().size());
+        assertPaths(cache.findApplicableHolder(request("http", "localhost", 80), "/content/secure/public/page")[3],
+            "/content/secure/public", "/content/secure", "/content", "/");
+
+        cache.clear();
+        assertTrue(cache.getHolders().isEmpty());
+        assertNull(cache.findApplicableHolder(request("http", "localhost", 80), "/content")[3]);
+    }
+
+    private void assertPaths(final Collection<AuthenticationRequirementHolder> holders, final String... paths) {
+        assertNotNull(holders);
+        assertEquals(paths.length, holders.size());
+        final Iterator<AuthenticationRequirementHolder> it = holders.iterator();
+        for (String path : paths) {
+            assertEquals(path, it.next().path);
+        }
+    }
+
+    private HttpServletRequest request(final String scheme, final String host, final int port) {
+        final HttpServletRequest request = context.mock(HttpServletRequest.class, "request" + (requestCounter++));
+        context.checking(new Expectations() {
+            {
+                allowing(request).getServerName();
+                will(returnValue(host));
+                allowing(request).getServerPort();
+                will(returnValue(port));
+                allowing(request).getScheme();
+                will(returnValue(scheme));
+            }
+        });
+        return request;
+    }
+}
@@ -28,6 +28,12 @@ import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
@@ -40,6 +46,13 @@ import org.slf4j.LoggerFactory;
  * The <code>TokenStore</code> class provides the secure token hash
  * implementation used by the {@link FormAuthenticationHandler} to generate,
  * validate and persist secure tokens.
+ * <p>
+ * The secret keys are kept in an immutable {@link TokenRing}, which is
+ * replaced atomically when a new key is generated, so requests never block on
+ * key rotation. Each key keeps a pool of initialized <code>Mac</code> instances
+ * and recently validated cookie values are remembered until they expire or
+ * their key is replaced, so repeated requests with the same cookie do not
+ * need to compute the HMAC again.
  */
 class TokenStore {
 
@@ -65,9 +78,12 @@ class TokenStore {
      */
     private static final String UTF_8 = "UTF-8";
 
-    /** The number of secret keys in the token buffer currentTokens */
+    /** The number of secret keys in the token ring */
     private static final int TOKEN_BUFFER_SIZE = 5;
 
+    /** The maximum number of validated cookie values to remember */
+    private static final int VALIDATED_CACHE_SIZE = 1000;
+
     public final Logger log = LoggerFactory.getLogger(TokenStore.class);
 
     /**
@@ -76,19 +92,16 @@ class TokenStore {
     private final long ttl;
 
     /**
-     * The time when a new token should be created.
-     */
-    private long nextUpdate = System.currentTimeMillis();
-
-    /**
-     * The location of the current token.
+     * The current ring of tokens used to encrypt, the location of the current
+     * token and the time when a new token should be created.
      */
-    private volatile int currentToken = 0;
+    private final AtomicReference<TokenRing> tokens = new AtomicReference<TokenRing>();
 
     /**
-     * A ring of tokens used to encrypt.
+     * Cookie values which have recently been successfully validated mapped to
+     * the key they have been validated with.
      */
-    private volatile SecretKey[] currentTokens;
+    private final Map<String, TokenKey> validatedCookies = new ConcurrentHashMap<String, TokenKey>();
 
     /**
      * A secure random used for generating new tokens.
@@ -158,22 +171,18 @@ class TokenStore {
     String encode(final long expires, final String userId)
             throws IllegalStateException, UnsupportedEncodingException,
             NoSuchAlgorithmException, InvalidKeyException {
-        int token = getActiveToken();
-        SecretKey key = currentTokens[token];
-        return encode(expires, userId, token, key);
+        final TokenRing ring = getActiveTokens();
+        return encode(expires, userId, ring.current, ring.keys[ring.current]);
     }
 
     private String encode(final long expires, final String userId,
-            final int token, final SecretKey key) throws IllegalStateException,
+            final int token, final TokenKey key) throws IllegalStateException,
             UnsupportedEncodingException, NoSuchAlgorithmException,
             InvalidKeyException {
 
         String cookiePayload = String.valueOf(token) + String.valueOf(expires)
             + "@" + userId;
-        Mac m = Mac.getInstance(HMAC_SHA1);
-        m.init(key);
-        m.update(cookiePayload.getBytes(UTF_8));
-        String cookieValue = byteToHex(m.doFinal());
+        String cookieValue = byteToHex(key.hmac(cookiePayload.getBytes(UTF_8)));
         return cookieValue + "@" + cookiePayload;
     }
 
@@ -214,17 +223,30 @@ class TokenStore {
         if (parts != null) {
 
             // single digit token number
+            final TokenKey[] keys = tokens.get().keys;
             int tokenNumber = parts[1].charAt(0) - '0';
-            if (tokenNumber >= 0 && tokenNumber < currentTokens.length) {
+            if (tokenNumber >= 0 && tokenNumber < keys.length) {
 
                 long cookieTime = Long.parseLong(parts[1].substring(1));
                 if (System.currentTimeMillis() < cookieTime) {
 
+                    // recently validated with the same (still current) key
+                    final TokenKey secretKey = keys[tokenNumber];
+                    if (secretKey != null && validatedCookies.get(value) == secretKey) {
+                        return true;
+                    }
+
                     try {
-                        SecretKey secretKey = currentTokens[tokenNumber];
+                        if (secretKey == null) {
+                            throw new InvalidKeyException("No secret key for token " + tokenNumber);
+                        }
                         String hmac = encode(cookieTime, parts[2], tokenNumber,
                             secretKey);
-                        return value.equals(hmac);
+                        if (value.equals(hmac)) {
+                            rememberValidated(value, secretKey, cookieTime);
+                            return true;
+                        }
+                        return false;
                     } catch (ArrayIndexOutOfBoundsException e) {
                         log.error(e.getMessage(), e);
                     } catch (InvalidKeyException e) {
@@ -240,6 +262,7 @@ class TokenStore {
                     log.error("AuthNCookie value '{}' is invalid", value);
 
                 } else {
+                    validatedCookies.remove(value);
                     log.error("AuthNCookie value '{}' has expired {}ms ago",
                         value, (System.currentTimeMillis() - cookieTime));
                 }
@@ -259,36 +282,65 @@ class TokenStore {
     }
 
     /**
-     * Maintain a circular buffer to tokens, and return the current one.
+     * Remembers a successfully validated cookie value. If the cache is full,
+     * expired entries and entries of replaced keys are dropped first and the
+     * cache is cleared if that does not free any space.
+     */
+    private void rememberValidated(final String value, final TokenKey key, final long expires) {
+        if (validatedCookies.size() >= VALIDATED_CACHE_SIZE) {
+            final long now = System.currentTimeMillis();
+            final TokenKey[] keys = tokens.get().keys;
+            for (Iterator<Map.Entry<String, TokenKey>> it = validatedCookies.entrySet().iterator(); it.hasNext();) {
+                final Map.Entry<String, TokenKey> entry = it.next();
+                final String[] parts = split(entry.getKey());
+                final int tokenNumber = parts[1].charAt(0) - '0';
+                if (Long.parseLong(parts[1].substring(1)) <= now || keys[tokenNumber] != entry.getValue()) {
+                    it.remove();
+                }
+            }
+            if (validatedCookies.size() >= VALIDATED_CACHE_SIZE) {
+                validatedCookies.clear();
+            }
+        }
+        if (expires > System.currentTimeMillis()) {
+            validatedCookies.put(value, key);
+        }
+    }
+
+    /**
+     * Maintain a circular buffer to tokens, and return it with the current
+     * token being valid. If a new token has to be created, the ring is
+     * replaced atomically: if another thread replaced it concurrently, its
+     * ring is used instead.
      *
-     * @return the current token.
+     * @return the ring of tokens with the current one.
      */
-    private synchronized int getActiveToken() {
-        if (System.currentTimeMillis() > nextUpdate
-            || currentTokens[currentToken] == null) {
+    private TokenRing getActiveTokens() {
+        TokenRing ring = tokens.get();
+        while (System.currentTimeMillis() > ring.nextUpdate
+            || ring.keys[ring.current] == null) {
             // cycle so that during a typical ttl the tokens get completely
             // refreshed.
-            nextUpdate = System.currentTimeMillis() + ttl
-                / (currentTokens.length - 1);
+            final long nextUpdate = System.currentTimeMillis() + ttl
+                / (ring.keys.length - 1);
             byte[] b = new byte[20];
             random.nextBytes(b);
 
-            SecretKey newToken = new SecretKeySpec(b, HMAC_SHA1);
-            int nextToken = currentToken + 1;
-            if (nextToken == currentTokens.length) {
-                nextToken = 0;
+            final TokenRing newRing = ring.next(new TokenKey(new SecretKeySpec(b, HMAC_SHA1)), nextUpdate);
+            if (tokens.compareAndSet(ring, newRing)) {
+                saveTokens();
+                return newRing;
             }
-            currentTokens[nextToken] = newToken;
-            currentToken = nextToken;
-            saveTokens();
+            ring = tokens.get();
         }
-        return currentToken;
+        return ring;
     }
 
     /**
      * Stores the current set of tokens to the token file
      */
-    private void saveTokens() {
+    private synchronized void saveTokens() {
+        final TokenRing ring = tokens.get();
         FileOutputStream fout = null;
         DataOutputStream keyOutputStream = null;
         try {
@@ -299,14 +351,14 @@ class TokenStore {
             }
             fout = new FileOutputStream(tmpTokenFile);
             keyOutputStream = new DataOutputStream(fout);
-            keyOutputStream.writeInt(currentToken);
-            keyOutputStream.writeLong(nextUpdate);
-            for (int i = 0; i < currentTokens.length; i++) {
-                if (currentTokens[i] == null) {
+            keyOutputStream.writeInt(ring.current);
+            keyOutputStream.writeLong(ring.nextUpdate);
+            for (int i = 0; i < ring.keys.length; i++) {
+                if (ring.keys[i] == null) {
                     keyOutputStream.writeInt(0);
                 } else {
                     keyOutputStream.writeInt(1);
-                    byte[] b = currentTokens[i].getEncoded();
+                    byte[] b = ring.keys[i].key.getEncoded();
                     keyOutputStream.writeInt(b.length);
                     keyOutputStream.write(b);
                 }
@@ -342,23 +394,21 @@ class TokenStore {
                 keyInputStream = new DataInputStream(fin);
                 int newCurrentToken = keyInputStream.readInt();
                 long newNextUpdate = keyInputStream.readLong();
-                SecretKey[] newKeys = new SecretKey[TOKEN_BUFFER_SIZE];
+                TokenKey[] newKeys = new TokenKey[TOKEN_BUFFER_SIZE];
                 for (int i = 0; i < newKeys.length; i++) {
                     int isNull = keyInputStream.readInt();
                     if (isNull == 1) {
                         int l = keyInputStream.readInt();
                         byte[] b = new byte[l];
                         keyInputStream.read(b);
-                        newKeys[i] = new SecretKeySpec(b, HMAC_SHA1);
+                        newKeys[i] = new TokenKey(new SecretKeySpec(b, HMAC_SHA1));
                     } else {
                         newKeys[i] = null;
                     }
                 }
 
                 // assign the tokes and schedule a next update
-                nextUpdate = newNextUpdate;
-                currentToken = newCurrentToken;
-                currentTokens = newKeys;
+                tokens.set(new TokenRing(newKeys, newCurrentToken, newNextUpdate));
 
             } catch (IOException e) {
 
@@ -381,10 +431,9 @@ class TokenStore {
         }
 
         // if there was a failure to read the current tokens, create new ones
-        if (currentTokens == null) {
-            currentTokens = new SecretKey[TOKEN_BUFFER_SIZE];
-            nextUpdate = System.currentTimeMillis();
-            currentToken = 0;
+        if (tokens.get() == null) {
+            tokens.set(new TokenRing(new TokenKey[TOKEN_BUFFER_SIZE], 0,
+                System.currentTimeMillis()));
         }
     }
 
@@ -465,4 +514,66 @@ class TokenStore {
             value >>= 8;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * An immutable ring of secret keys together with the location of the
+     * current key and the time when a new key should be created.
+     */
+    private static final class TokenRing {
+
+        final TokenKey[] keys;
+
+        final int current;
+
+        final long nextUpdate;
+
+        TokenRing(final TokenKey[] keys, final int current, final long nextUpdate) {
+            this.keys = keys;
+            this.current = current;
+            this.nextUpdate = nextUpdate;
+        }
+
+        /**
+         * Returns a new ring with the given key replacing the key following
+         * the current one, which becomes the new current key.
+         */
+        TokenRing next(final TokenKey key, final long nextUpdate) {
+            int nextToken = current + 1;
+            if (nextToken == keys.length) {
+                nextToken = 0;
+            }
+            final TokenKey[] newKeys = keys.clone();
+            newKeys[nextToken] = key;
+            return new TokenRing(newKeys, nextToken, nextUpdate);
+        }
+    }
+
+    /**
+     * A secret key with a pool of <code>Mac</code> instances initialized with
+     * it, which saves looking up the provider and initializing a
+     * <code>Mac</code> for each calculation.
+     */
+    private static final class TokenKey {
+
+        final SecretKey key;
+
+        private final ConcurrentLinkedQueue<Mac> macs = new ConcurrentLinkedQueue<Mac>();
+
+        TokenKey(final SecretKey key) {
+            this.key = key;
+        }
+
+        byte[] hmac(final byte[] payload) throws NoSuchAlgorithmException,
+                InvalidKeyException {
+            Mac m = macs.poll();
+            if (m == null) {
+                m = Mac.getInstance(HMAC_SHA1);
+                m.init(key);
+            }
+            // doFinal resets the Mac so it can be reused afterwards
+            final byte[] result = m.doFinal(payload);
+            macs.offer(m);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.form.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TokenStoreTest {
+
+    private File tokenFile;
+
+    private TokenStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        tokenFile = File.createTempFile("cookie-tokens", ".bin");
+        tokenFile.delete();
+        store = new TokenStore(tokenFile, 60 * 1000L, true);
+    }
+
+    @After
+    public void tearDown() {
+        tokenFile.delete();
+    }
+
+    @Test
+    public void test_encode_and_validate() throws Exception {
+        final String value = store.encode(System.currentTimeMillis() + 10000, "admin");
+        assertTrue(store.isValid(value));
+        // validated again from the cache of validated values
+        assertTrue(store.isValid(value));
+    }
+
+    @Test
+    public void test_tampered_value() throws Exception {
+        final String value = store.encode(System.currentTimeMillis() + 10000, "admin");
+        assertTrue(store.isValid(value));
+        final String[] parts = TokenStore.split(value);
+        assertFalse(store.isValid(parts[0] + "@" + parts[1] + "@anonymous"));
+        assertFalse(store.isValid("00" + value.substring(2)));
+    }
+
+    @Test
+    public void test_expired_value() throws Exception {
+        final String value = store.encode(System.currentTimeMillis() + 50, "admin");
+        assertTrue(store.isValid(value));
+        Thread.sleep(100);
+        assertFalse(store.isValid(value));
+    }
+
+    @Test
+    public void test_tokens_persisted() throws Exception {
+        final String value = store.encode(System.currentTimeMillis() + 10000, "admin");
+        assertTrue(tokenFile.isFile());
+        final TokenStore other = new TokenStore(tokenFile, 60 * 1000L, true);
+        assertTrue(other.isValid(value));
+    }
+
+    @Test
+    public void test_key_rotation() throws Exception {
+        // with a very short ttl a new key is generated for every encoding
+        final TokenStore rotating = new TokenStore(tokenFile, 0, true);
+        final String first = rotating.encode(System.currentTimeMillis() + 10000, "admin");
+        Thread.sleep(5);
+        final String second = rotating.encode(System.currentTimeMillis() + 10000, "admin");
+        assertEquals(first.charAt(first.indexOf('@') + 1) + 1, second.charAt(second.indexOf('@') + 1));
+        assertTrue(rotating.isValid(first));
+        assertTrue(rotating.isValid(second));
+    }
+}
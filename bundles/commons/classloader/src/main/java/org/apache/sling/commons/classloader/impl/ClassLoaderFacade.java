@@ -19,6 +19,7 @@
 package org.apache.sling.commons.classloader.impl;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -39,6 +40,19 @@ import org.slf4j.LoggerFactory;
  */
 public class ClassLoaderFacade extends ClassLoader implements DynamicClassLoader {
 
+    static {
+        // loading classes through this class loader doesn't need a lock on
+        // the class loader instance, register as parallel capable if the
+        // runtime supports it (Java 7 or higher)
+        try {
+            final Method registerMethod = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            registerMethod.setAccessible(true);
+            registerMethod.invoke(null);
+        } catch (final Exception e) {
+            // Java 6: class loading is synchronized on the class loader
+        }
+    }
+
     /** The logger. */
     private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
 
@@ -128,7 +142,7 @@ public class ClassLoaderFacade extends ClassLoader implements DynamicClassLoader
      * @see java.lang.ClassLoader#loadClass(java.lang.String, boolean)
      */
     @Override
-    protected synchronized Class<?> loadClass(String name, boolean resolve)
+    protected Class<?> loadClass(String name, boolean resolve)
     throws ClassNotFoundException {
         if(!checkManagerActive()) {
             throw new ClassNotFoundException(name);
@@ -16,9 +16,8 @@
  */
 package org.apache.sling.commons.classloader.impl;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -44,9 +43,9 @@ public class DynamicClassLoaderManagerFactory
     /** The bundle context. */
     private final BundleContext context;
 
-    private final Set<Long> usedBundles = Collections.synchronizedSet(new HashSet<Long>());
+    private final Map<Long, Boolean> usedBundles = new ConcurrentHashMap<Long, Boolean>();
 
-    private final Set<String> unresolvedPackages = Collections.synchronizedSet(new HashSet<String>());
+    private final Map<String, Boolean> unresolvedPackages = new ConcurrentHashMap<String, Boolean>();
 
     /**
      * Create a new service instance
@@ -86,7 +85,7 @@ public class DynamicClassLoaderManagerFactory
      * @return <code>true</code> if the bundle has been used.
      */
     public boolean isBundleUsed(final long bundleId) {
-        return usedBundles.contains(bundleId);
+        return usedBundles.containsKey(bundleId);
     }
 
     /**
@@ -95,7 +94,7 @@ public class DynamicClassLoaderManagerFactory
      */
     public void addUsedBundle(final Bundle bundle) {
         final long id = bundle.getBundleId();
-        this.usedBundles.add(id);
+        this.usedBundles.put(id, Boolean.TRUE);
     }
 
     /**
@@ -103,7 +102,7 @@ public class DynamicClassLoaderManagerFactory
      * @param pckName The package name.
      */
     public void addUnresolvedPackage(final String pckName) {
-        this.unresolvedPackages.add(pckName);
+        this.unresolvedPackages.put(pckName, Boolean.TRUE);
     }
 
     /**
@@ -117,7 +116,7 @@ public class DynamicClassLoaderManagerFactory
             final ExportedPackage[] pcks = this.pckAdmin.getExportedPackages(bundle);
             if ( pcks != null ) {
                 for(final ExportedPackage pck : pcks ) {
-                    if ( this.unresolvedPackages.contains(pck.getName()) ) {
+                    if ( this.unresolvedPackages.containsKey(pck.getName()) ) {
                         logger.debug("Bundle '{}' provides package '{}' which has been previously unsuccessfully requested!", bundle, pck.getName());
                         return true;
                     }
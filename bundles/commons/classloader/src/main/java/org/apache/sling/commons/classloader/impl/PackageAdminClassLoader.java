@@ -19,12 +19,10 @@
 package org.apache.sling.commons.classloader.impl;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.URL;
-import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.osgi.framework.Bundle;
@@ -38,6 +36,22 @@ import org.osgi.service.packageadmin.PackageAdmin;
  */
 class PackageAdminClassLoader extends ClassLoader {
 
+    static {
+        // loading classes through this class loader doesn't need a lock on
+        // the class loader instance, register as parallel capable if the
+        // runtime supports it (Java 7 or higher)
+        try {
+            final Method registerMethod = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            registerMethod.setAccessible(true);
+            registerMethod.invoke(null);
+        } catch (final Exception e) {
+            // Java 6: class loading is synchronized on the class loader
+        }
+    }
+
+    /** Maximum number of entries in the negative class cache. */
+    private static final int MAX_NEGATIVE_CACHE_SIZE = 10000;
+
     /** The package admin service. */
     private final PackageAdmin packageAdmin;
 
@@ -47,8 +61,11 @@ class PackageAdminClassLoader extends ClassLoader {
     /** A cache for resolved classes. */
     private Map<String, Class<?>> classCache = new ConcurrentHashMap<String, Class<?>>();
 
-    /** Negative class cache. */
-    private Set<String> negativeClassCache = Collections.synchronizedSet(new HashSet<String>());
+    /**
+     * Negative class cache. The cache is dropped together with this class
+     * loader if a bundle event makes a previously missing package available.
+     */
+    private Map<String, Boolean> negativeClassCache = new ConcurrentHashMap<String, Boolean>();
 
     /** A cache for resolved urls. */
     private Map<String, URL> urlCache = new ConcurrentHashMap<String, URL>();
@@ -201,7 +218,7 @@ class PackageAdminClassLoader extends ClassLoader {
         if ( cachedClass != null ) {
             return cachedClass;
         }
-        if ( negativeClassCache.contains(name) ) {
+        if ( negativeClassCache.containsKey(name) ) {
             throw new ClassNotFoundException("Class not found " + name);
         }
         Class<?> clazz = null;
@@ -215,14 +232,14 @@ class PackageAdminClassLoader extends ClassLoader {
                     clazz = bundle.loadClass(name);
                     this.factory.addUsedBundle(bundle);
                 } catch (final ClassNotFoundException inner) {
-                    negativeClassCache.add(name);
+                    this.addNegativeClassCacheEntry(name);
                     this.factory.addUnresolvedPackage(pckName);
                     throw inner;
                 }
             }
         }
         if ( clazz == null ) {
-            negativeClassCache.add(name);
+            this.addNegativeClassCacheEntry(name);
             final String pckName = getPackageFromClassName(name);
             this.factory.addUnresolvedPackage(pckName);
             throw new ClassNotFoundException("Class not found " + name);
@@ -230,4 +247,16 @@ class PackageAdminClassLoader extends ClassLoader {
         this.classCache.put(name, clazz);
         return clazz;
     }
+
+    /**
+     * Add a class to the negative cache. If the cache is full, it is
+     * cleared first to keep its size bounded.
+     * @param name The class name.
+     */
+    private void addNegativeClassCacheEntry(final String name) {
+        if ( this.negativeClassCache.size() >= MAX_NEGATIVE_CACHE_SIZE ) {
+            this.negativeClassCache.clear();
+        }
+        this.negativeClassCache.put(name, Boolean.TRUE);
+    }
 }
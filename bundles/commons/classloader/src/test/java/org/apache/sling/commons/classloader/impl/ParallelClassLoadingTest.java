@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.classloader.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceListener;
+import org.osgi.service.packageadmin.PackageAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Test loading classes through the dynamic class loader from several threads.
+ */
+public class ParallelClassLoadingTest {
+
+    private static final int THREADS = 4;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    protected Mockery context;
+
+    private ExecutorService executor;
+
+    public ParallelClassLoadingTest() {
+        this.context = new JUnit4Mockery();
+    }
+
+    @Before public void setup() {
+        this.executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    private ClassLoader getDynamicClassLoader(final ClassLoader parent) throws Exception {
+        final BundleContext bundleContext = this.context.mock(BundleContext.class);
+        final PackageAdmin packageAdmin = this.context.mock(PackageAdmin.class);
+        this.context.checking(new Expectations() {{
+            allowing(bundleContext).createFilter(with(any(String.class)));
+            will(returnValue(null));
+            allowing(bundleContext).addServiceListener(with(any(ServiceListener.class)), with(any(String.class)));
+            allowing(bundleContext).removeServiceListener(with(any(ServiceListener.class)));
+            allowing(bundleContext).getServiceReferences(with(any(String.class)), with(any(String.class)));
+            will(returnValue(null));
+        }});
+        final DynamicClassLoaderManagerImpl manager = new DynamicClassLoaderManagerImpl(bundleContext, packageAdmin, parent,
+            new DynamicClassLoaderManagerFactory(bundleContext, packageAdmin));
+        return manager.getDynamicClassLoader();
+    }
+
+    /**
+     * Two threads load different classes at the same time. Each load only
+     * returns once both threads are loading, which times out if loading
+     * is serialized on the class loader.
+     */
+    @Test public void testConcurrentLoading() throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final ClassLoader cl = getDynamicClassLoader(new ClassLoader(null) {
+
+            @Override
+            protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } catch (final Exception e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+                return name.endsWith("A") ? java.util.Map.class : java.util.List.class;
+            }
+        });
+        final Future<Class<?>> a = executor.submit(new Callable<Class<?>>() {
+            public Class<?> call() throws Exception {
+                return cl.loadClass("org.apache.sling.test.A");
+            }
+        });
+        final Future<Class<?>> b = executor.submit(new Callable<Class<?>>() {
+            public Class<?> call() throws Exception {
+                return cl.loadClass("org.apache.sling.test.B");
+            }
+        });
+        Assert.assertEquals(java.util.Map.class, a.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(java.util.List.class, b.get(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Measure the throughput of cached lookups from several threads.
+     */
+    @Test public void testLookupThroughput() throws Exception {
+        final ClassLoader cl = getDynamicClassLoader(this.getClass().getClassLoader());
+        final String[] names = new String[] {"java.util.Map", "java.util.List", "java.lang.String",
+                ParallelClassLoadingTest.class.getName()};
+        final int lookups = 200000;
+        final List<Future<Long>> results = new ArrayList<Future<Long>>();
+        final long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(new Callable<Long>() {
+                public Long call() throws Exception {
+                    long found = 0;
+                    for (int i = 0; i < lookups; i++) {
+                        if (cl.loadClass(names[i % names.length]) != null) {
+                            found++;
+                        }
+                    }
+                    return found;
+                }
+            }));
+        }
+        for (final Future<Long> result : results) {
+            Assert.assertEquals(lookups, result.get(60, TimeUnit.SECONDS).longValue());
+        }
+        final long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info("{} threads did {} class lookups in {} ms ({} lookups/ms)",
+                new Object[] {THREADS, THREADS * lookups, millis, THREADS * lookups / millis});
+    }
+}
@@ -28,7 +28,14 @@ import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -56,14 +63,24 @@ import org.slf4j.LoggerFactory;
 public class FSClassLoaderProvider
     implements ClassLoaderWriter {
 
+    /**
+     * The class indexes, keyed by root directory. All service instances
+     * share the same directory, so they have to share the index as well.
+     * The index is built by the first instance, the others wait for it.
+     */
+    private static final ConcurrentMap<String, FutureTask<Set<String>>> CLASS_INDEXES = new ConcurrentHashMap<String, FutureTask<Set<String>>>();
+
     /** File root */
     private File root;
 
+    /** The names of the classes stored below the file root. */
+    private Set<String> classIndex;
+
     /** File root URL */
     private URL rootURL;
 
     /** Current class loader */
-    private FSDynamicClassLoader loader;
+    private volatile FSDynamicClassLoader loader;
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -88,9 +105,67 @@ public class FSClassLoaderProvider
         this.root = new File(componentContext.getBundleContext().getDataFile(""), "classes");
         this.root.mkdirs();
         this.rootURL = this.root.toURI().toURL();
+        this.classIndex = getClassIndex(this.root);
         this.callerBundle = componentContext.getUsingBundle();
     }
 
+    /**
+     * Get the class index for the root directory. The index is built
+     * by scanning the directory once, later changes are recorded by
+     * the methods writing to the file system.
+     */
+    static Set<String> getClassIndex(final File root) {
+        final String key = root.getAbsolutePath();
+        FutureTask<Set<String>> task = CLASS_INDEXES.get(key);
+        if ( task == null ) {
+            final FutureTask<Set<String>> newTask = new FutureTask<Set<String>>(new Callable<Set<String>>() {
+
+                public Set<String> call() {
+                    final Set<String> index = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                    scanClasses(root, "", index);
+                    return index;
+                }
+            });
+            task = CLASS_INDEXES.putIfAbsent(key, newTask);
+            if ( task == null ) {
+                task = newTask;
+                task.run();
+            }
+        }
+        boolean interrupted = false;
+        try {
+            while ( true ) {
+                try {
+                    return task.get();
+                } catch ( final InterruptedException ie ) {
+                    // the index is built by another thread, keep waiting
+                    interrupted = true;
+                } catch ( final ExecutionException ee ) {
+                    // allow the next instance to build the index again
+                    CLASS_INDEXES.remove(key, task);
+                    throw new IllegalStateException("Unable to build class index for " + root, ee.getCause());
+                }
+            }
+        } finally {
+            if ( interrupted ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void scanClasses(final File dir, final String prefix, final Set<String> index) {
+        final File[] children = dir.listFiles();
+        if ( children != null ) {
+            for(final File c : children) {
+                if ( c.isDirectory() ) {
+                    scanClasses(c, prefix + c.getName() + '.', index);
+                } else if ( c.getName().endsWith(".class") ) {
+                    index.add(prefix + c.getName().substring(0, c.getName().length() - 6));
+                }
+            }
+        }
+    }
+
     /**
      * Deactivate this component.
      * Create the root directory.
@@ -99,6 +174,7 @@ public class FSClassLoaderProvider
     protected void deactivate() {
         this.root = null;
         this.rootURL = null;
+        this.classIndex = null;
         this.destroyClassLoader();
     }
 
@@ -139,6 +215,10 @@ public class FSClassLoaderProvider
      * @see org.apache.sling.commons.classloader.ClassLoaderWriter#getClassLoader()
      */
     public ClassLoader getClassLoader() {
+        final FSDynamicClassLoader current = this.loader;
+        if ( current != null && current.isLive() ) {
+            return current;
+        }
         synchronized ( this ) {
             if ( loader == null || !loader.isLive() ) {
                 this.destroyClassLoader();
@@ -147,28 +227,51 @@ public class FSClassLoaderProvider
                 final DynamicClassLoaderManager dclm = (DynamicClassLoaderManager) this.callerBundle.getBundleContext().getService(
                     this.dynamicClassLoaderManager);
 
-                loader = new FSDynamicClassLoader(new URL[] {this.rootURL}, dclm.getDynamicClassLoader());
+                loader = new FSDynamicClassLoader(new URL[] {this.rootURL}, dclm.getDynamicClassLoader(),
+                        this.classIndex);
             }
             return this.loader;
         }
     }
 
-    private void checkClassLoader(final String filePath) {
+    /**
+     * Convert the file path to a class name.
+     * @return The class name or <code>null</code> if the path is not a class file
+     */
+    private String getClassName(final String filePath) {
         if ( filePath.endsWith(".class") ) {
             // remove store directory and .class
             final String path = filePath.substring(this.root.getAbsolutePath().length() + 1, filePath.length() - 6);
             // convert to a class name
-            final String className = path.replace(File.separatorChar, '.');
+            return path.replace(File.separatorChar, '.');
+        }
+        return null;
+    }
 
-            synchronized ( this ) {
-                final FSDynamicClassLoader currentLoader = this.loader;
-                if ( currentLoader != null ) {
-                    currentLoader.check(className);
-                }
+    private void checkClassLoader(final String filePath) {
+        final String className = getClassName(filePath);
+        if ( className != null ) {
+            final FSDynamicClassLoader currentLoader = this.loader;
+            if ( currentLoader != null ) {
+                currentLoader.check(className);
             }
         }
     }
 
+    private void addToIndex(final String filePath) {
+        final String className = getClassName(filePath);
+        if ( className != null ) {
+            this.classIndex.add(className);
+        }
+    }
+
+    private void removeFromIndex(final String filePath) {
+        final String className = getClassName(filePath);
+        if ( className != null ) {
+            this.classIndex.remove(className);
+        }
+    }
+
     //---------- SCR Integration ----------------------------------------------
 
     private boolean deleteRecursive(final File f, final List<String> names) {
@@ -195,6 +298,7 @@ public class FSClassLoaderProvider
             logger.debug("Deleted {} : {}", name, result);
             if ( result ) {
                 for(final String n : names ) {
+                    this.removeFromIndex(n);
                     this.checkClassLoader(n);
                 }
             }
@@ -220,7 +324,9 @@ public class FSClassLoaderProvider
             if ( file.exists() ) {
                 this.checkClassLoader(path);
             }
-            return new FileOutputStream(path);
+            final OutputStream os = new FileOutputStream(path);
+            this.addToIndex(path);
+            return os;
         } catch (FileNotFoundException e) {
             throw new RuntimeException(e);
         }
@@ -234,14 +340,36 @@ public class FSClassLoaderProvider
         final String oldPath = cleanPath(oldName);
         final String newPath = cleanPath(newName);
         final File old = new File(oldPath);
-        final boolean result = old.renameTo(new File(newPath));
+        final File renamed = new File(newPath);
+        final boolean result = old.renameTo(renamed);
         if ( result ) {
+            if ( renamed.isDirectory() ) {
+                this.reindexDirectory(oldPath, renamed);
+            }
+            this.removeFromIndex(oldPath);
+            this.addToIndex(newPath);
             this.checkClassLoader(oldPath);
             this.checkClassLoader(newPath);
         }
         return result;
     }
 
+    /**
+     * Update the index after a directory has been renamed.
+     */
+    private void reindexDirectory(final String oldPath, final File renamed) {
+        final String oldPrefix = oldPath.substring(this.root.getAbsolutePath().length() + 1)
+                .replace(File.separatorChar, '.') + '.';
+        for(final String className : this.classIndex) {
+            if ( className.startsWith(oldPrefix) ) {
+                this.classIndex.remove(className);
+            }
+        }
+        final String newPrefix = renamed.getAbsolutePath().substring(this.root.getAbsolutePath().length() + 1)
+                .replace(File.separatorChar, '.') + '.';
+        scanClasses(renamed, newPrefix, this.classIndex);
+    }
+
     /**
      * Clean the path by converting slashes to the correct format
      * and prefixing the root directory.
@@ -280,8 +408,10 @@ public class FSClassLoaderProvider
         logger.debug("Get last modified of {}", name);
         final String path = cleanPath(name);
         final File file = new File(path);
-        if ( file.exists() ) {
-            return file.lastModified();
+        // lastModified() returns 0 for missing files, which saves an exists() check
+        final long lastModified = file.lastModified();
+        if ( lastModified > 0 ) {
+            return lastModified;
         }
 
         // fallback to "non-existant" in case of problems
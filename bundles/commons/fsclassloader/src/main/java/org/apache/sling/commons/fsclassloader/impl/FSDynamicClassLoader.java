@@ -18,11 +18,12 @@
  */
 package org.apache.sling.commons.fsclassloader.impl;
 
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.sling.commons.classloader.DynamicClassLoader;
 
@@ -30,16 +31,35 @@ public class FSDynamicClassLoader
     extends URLClassLoader
     implements DynamicClassLoader {
 
-    private boolean isDirty = false;
+    static {
+        try {
+            // register as parallel capable to get per class name locking (Java 7+)
+            final Method m = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            m.setAccessible(true);
+            m.invoke(null);
+        } catch (final Exception ignore) {
+            // not available (Java 6), loading is synchronized on the class loader
+        }
+    }
+
+    private volatile boolean isDirty = false;
 
-    private final Set<String> hit = Collections.synchronizedSet(new HashSet<String>());
-    private final Set<String> miss = Collections.synchronizedSet(new HashSet<String>());
+    private final Set<String> hit = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> miss = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     private final DynamicClassLoader parentLoader;
 
+    /** The names of the classes available in the file system, or <code>null</code>. */
+    private final Set<String> classIndex;
+
     public FSDynamicClassLoader(final URL[] urls, final ClassLoader parent) {
+        this(urls, parent, null);
+    }
+
+    public FSDynamicClassLoader(final URL[] urls, final ClassLoader parent, final Set<String> classIndex) {
         super(urls, parent);
         parentLoader = (parent instanceof DynamicClassLoader ? (DynamicClassLoader)parent : null);
+        this.classIndex = classIndex;
     }
 
     /**
@@ -64,6 +84,18 @@ public class FSDynamicClassLoader
         }
     }
 
+    /**
+     * Classes which are not in the index are not searched in the file system.
+     * @see java.net.URLClassLoader#findClass(java.lang.String)
+     */
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+        if ( this.classIndex != null && !this.classIndex.contains(name) ) {
+            throw new ClassNotFoundException(name);
+        }
+        return super.findClass(name);
+    }
+
     public void check(final String className) {
         if ( !this.isDirty ) {
             this.isDirty = hit.contains(className) || miss.contains(className);
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.fsclassloader.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FSClassLoaderProviderTest {
+
+    private static final int PACKAGES = 20;
+
+    private static final int CLASSES = 50;
+
+    private File root;
+
+    @Before public void setup() throws IOException {
+        this.root = File.createTempFile("fsclassloader", ".dir");
+        this.root.delete();
+        for(int p=0; p<PACKAGES; p++) {
+            final File dir = new File(this.root, "org/apache/p" + p);
+            dir.mkdirs();
+            for(int c=0; c<CLASSES; c++) {
+                new File(dir, "C" + c + ".class").createNewFile();
+            }
+        }
+    }
+
+    @After public void cleanup() throws IOException {
+        FileUtils.deleteDirectory(this.root);
+    }
+
+    @Test(timeout=20000) public void testConcurrentIndexLoading() throws Exception {
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Set<String>>> futures = new ArrayList<Future<Set<String>>>();
+            for(int i=0; i<threads; i++) {
+                futures.add(executor.submit(new Callable<Set<String>>() {
+
+                    public Set<String> call() throws Exception {
+                        start.await();
+                        final Set<String> index = FSClassLoaderProvider.getClassIndex(root);
+                        // the index must be complete as soon as it is returned
+                        assertEquals(PACKAGES * CLASSES, index.size());
+                        return index;
+                    }
+                }));
+            }
+            start.countDown();
+
+            final Set<String> index = futures.get(0).get();
+            for(final Future<Set<String>> f : futures) {
+                assertSame(index, f.get());
+            }
+            assertTrue(index.contains("org.apache.p0.C0"));
+            assertTrue(index.contains("org.apache.p" + (PACKAGES - 1) + ".C" + (CLASSES - 1)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.json;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * A pull parser reading JSON text event by event from a {@link JSONTokener}.
+ * <p>
+ * Unlike the {@link JSONObject} and {@link JSONArray} constructors, the
+ * parser does not build the complete tree in memory. Together with a
+ * tokener reading from a stream, large JSON documents can therefore be
+ * processed in constant memory. The parser accepts the same syntax as the
+ * JSONObject and JSONArray constructors, including their non-standard
+ * extensions, and uses the same rules for unescaping strings and for
+ * converting unquoted values.
+ * <p>
+ * A typical loop looks like:
+ * <pre>
+ * JSONParser parser = new JSONParser(reader);
+ * JSONParser.Event event;
+ * while ((event = parser.next()) != null) {
+ *     switch (event) {
+ *         case KEY: ... parser.getKey() ...
+ *         case VALUE: ... parser.getValue() ...
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * Parts of the document can be read as a tree with {@link #readObject()}
+ * and {@link #readArray()} or be ignored with {@link #skipChildren()}.
+ *
+ * @since 2.1
+ */
+public class JSONParser {
+
+    /**
+     * The events reported by the parser.
+     */
+    public enum Event {
+        /** The start of an object. */
+        START_OBJECT,
+        /** The end of an object. */
+        END_OBJECT,
+        /** The start of an array. */
+        START_ARRAY,
+        /** The end of an array. */
+        END_ARRAY,
+        /** The name of an object member, see {@link JSONParser#getKey()}. */
+        KEY,
+        /** A value which is neither an object nor an array, see {@link JSONParser#getValue()}. */
+        VALUE
+    }
+
+    /** Nothing has been read yet. */
+    private static final int DOCUMENT_START = 0;
+
+    /** The top level value has been read completely. */
+    private static final int DOCUMENT_END = 1;
+
+    /** An object has just been started. */
+    private static final int OBJECT_START = 2;
+
+    /** A key has been read, the value is next. */
+    private static final int OBJECT_KEY = 3;
+
+    /** A member of an object has been read completely. */
+    private static final int OBJECT_MEMBER = 4;
+
+    /** An array has just been started. */
+    private static final int ARRAY_START = 5;
+
+    /** An element of an array has been read completely. */
+    private static final int ARRAY_ELEMENT = 6;
+
+    private final JSONTokener tokener;
+
+    /** The states of the currently open objects and arrays. */
+    private int[] stack = new int[16];
+
+    /** The number of currently open objects and arrays. */
+    private int depth;
+
+    private int state = DOCUMENT_START;
+
+    private Event event;
+
+    private String key;
+
+    private Object value;
+
+    /**
+     * Create a parser reading from the given tokener.
+     * @param tokener The tokener.
+     */
+    public JSONParser(final JSONTokener tokener) {
+        this.tokener = tokener;
+    }
+
+    /**
+     * Create a parser reading from the given reader. The reader
+     * is not closed by the parser.
+     * @param reader The reader.
+     */
+    public JSONParser(final Reader reader) {
+        this(new JSONTokener(reader));
+    }
+
+    /**
+     * Create a parser reading from the given UTF-8 encoded input stream.
+     * The stream is not closed by the parser.
+     * @param inputStream The input stream.
+     */
+    public JSONParser(final InputStream inputStream) {
+        this(new JSONTokener(inputStream));
+    }
+
+    /**
+     * Advance to the next event.
+     * @return The next event or <code>null</code> if the end of the
+     *         top level value has been reached.
+     * @throws JSONException If there is a syntax error in the source or
+     *         the source could not be read.
+     */
+    public Event next() throws JSONException {
+        this.value = null;
+        switch (this.state) {
+            case DOCUMENT_START:
+                this.event = this.nextValue(this.tokener.nextClean());
+                break;
+            case DOCUMENT_END:
+                this.event = null;
+                break;
+            case OBJECT_START:
+            case OBJECT_MEMBER:
+                this.event = this.nextMember();
+                break;
+            case OBJECT_KEY:
+                this.state = OBJECT_MEMBER;
+                this.event = this.nextValue(this.tokener.nextClean());
+                break;
+            default:
+                this.event = this.nextElement();
+        }
+        if (this.tokener.getReadError() != null) {
+            throw this.tokener.syntaxError("Unable to read JSON source");
+        }
+        return this.event;
+    }
+
+    /**
+     * Return the last event returned by {@link #next()}.
+     * @return The event or <code>null</code>.
+     */
+    public Event getEvent() {
+        return this.event;
+    }
+
+    /**
+     * Return the name of the current object member. The name is available
+     * for the {@link Event#KEY} event and for the {@link Event#VALUE},
+     * {@link Event#START_OBJECT} or {@link Event#START_ARRAY} event directly
+     * following it.
+     * @return The name or <code>null</code>.
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * Return the value for the {@link Event#VALUE} event. This is a Boolean,
+     * Double, Integer, Long, String or the {@link JSONObject#NULL} object.
+     * Empty array elements are reported as <code>null</code>.
+     * @return The value.
+     */
+    public Object getValue() {
+        return this.value;
+    }
+
+    /**
+     * Return the number of objects and arrays currently open.
+     * @return The depth.
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Skip the content of the object or array just started. The next event
+     * is the one following the matching {@link Event#END_OBJECT} or
+     * {@link Event#END_ARRAY}. Does nothing for all other events.
+     * @throws JSONException If there is a syntax error in the source.
+     */
+    public void skipChildren() throws JSONException {
+        if (this.event == Event.START_OBJECT || this.event == Event.START_ARRAY) {
+            final int target = this.depth - 1;
+            while (this.depth > target) {
+                if (this.next() == null) {
+                    throw this.tokener.syntaxError("Unexpected end of JSON source");
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the object just started into a {@link JSONObject}. The next
+     * event is the one following the end of the object; no
+     * {@link Event#END_OBJECT} event is reported for it.
+     * @return The object.
+     * @throws JSONException If the last event is not {@link Event#START_OBJECT}
+     *         or there is a syntax error in the source.
+     */
+    public JSONObject readObject() throws JSONException {
+        if (this.event != Event.START_OBJECT) {
+            throw new JSONException("Current event is not " + Event.START_OBJECT + " but " + this.event);
+        }
+        // the tokener is still positioned directly after the opening brace
+        this.tokener.back();
+        final JSONObject result = new JSONObject(this.tokener);
+        this.pop();
+        this.event = Event.END_OBJECT;
+        return result;
+    }
+
+    /**
+     * Read the array just started into a {@link JSONArray}. The next
+     * event is the one following the end of the array; no
+     * {@link Event#END_ARRAY} event is reported for it.
+     * @return The array.
+     * @throws JSONException If the last event is not {@link Event#START_ARRAY}
+     *         or there is a syntax error in the source.
+     */
+    public JSONArray readArray() throws JSONException {
+        if (this.event != Event.START_ARRAY) {
+            throw new JSONException("Current event is not " + Event.START_ARRAY + " but " + this.event);
+        }
+        // the tokener is still positioned directly after the opening bracket
+        this.tokener.back();
+        final JSONArray result = new JSONArray(this.tokener);
+        this.pop();
+        this.event = Event.END_ARRAY;
+        return result;
+    }
+
+    /**
+     * Read the next key or the end of the current object.
+     */
+    private Event nextMember() throws JSONException {
+        char c = this.tokener.nextClean();
+        if (this.state == OBJECT_MEMBER) {
+            // pairs are separated by ','. We will also tolerate ';'.
+            switch (c) {
+                case ';':
+                case ',':
+                    c = this.tokener.nextClean();
+                    break;
+                case '}':
+                    break;
+                default:
+                    throw this.tokener.syntaxError("Expected a ',' or '}'");
+            }
+        }
+        switch (c) {
+            case 0:
+                throw this.tokener.syntaxError("A JSONObject text must end with '}'");
+            case '}':
+                this.pop();
+                return Event.END_OBJECT;
+            default:
+                this.tokener.back();
+                this.key = this.tokener.nextValue().toString();
+        }
+
+        // the key is followed by ':'. We will also tolerate '=' or '=>'.
+        c = this.tokener.nextClean();
+        if (c == '=') {
+            if (this.tokener.next() != '>') {
+                this.tokener.back();
+            }
+        } else if (c != ':') {
+            throw this.tokener.syntaxError("Expected a ':' after a key");
+        }
+        this.state = OBJECT_KEY;
+        return Event.KEY;
+    }
+
+    /**
+     * Read the next element or the end of the current array.
+     */
+    private Event nextElement() throws JSONException {
+        this.key = null;
+        char c = this.tokener.nextClean();
+        if (this.state == ARRAY_ELEMENT) {
+            switch (c) {
+                case ';':
+                case ',':
+                    c = this.tokener.nextClean();
+                    break;
+                case ']':
+                    this.pop();
+                    return Event.END_ARRAY;
+                default:
+                    throw this.tokener.syntaxError("Expected a ',' or ']'");
+            }
+        }
+        if (c == ']') {
+            this.pop();
+            return Event.END_ARRAY;
+        }
+        this.state = ARRAY_ELEMENT;
+        if (c == ',') {
+            // an empty element
+            this.tokener.back();
+            return Event.VALUE;
+        }
+        return this.nextValue(c);
+    }
+
+    /**
+     * Start an object or an array or read a simple value.
+     * @param c The first character of the value.
+     */
+    private Event nextValue(final char c) throws JSONException {
+        if (c == '{') {
+            this.push(OBJECT_START);
+            return Event.START_OBJECT;
+        }
+        if (c == '[') {
+            this.push(ARRAY_START);
+            return Event.START_ARRAY;
+        }
+        this.tokener.back();
+        this.value = this.tokener.nextValue();
+        if (this.depth == 0) {
+            this.state = DOCUMENT_END;
+        }
+        return Event.VALUE;
+    }
+
+    private void push(final int newState) {
+        if (this.depth > 0) {
+            // remember the state of the enclosing object or array
+            if (this.depth == this.stack.length) {
+                final int[] newStack = new int[this.stack.length * 2];
+                System.arraycopy(this.stack, 0, newStack, 0, this.depth);
+                this.stack = newStack;
+            }
+            this.stack[this.depth] = this.state;
+        }
+        this.depth++;
+        this.state = newState;
+    }
+
+    private void pop() {
+        this.depth--;
+        this.key = null;
+        this.state = this.depth == 0 ? DOCUMENT_END : this.stack[this.depth];
+    }
+}
@@ -1,5 +1,11 @@
 package org.apache.sling.commons.json;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+
 /*
 Copyright (c) 2002 JSON.org
 
@@ -25,26 +31,67 @@ SOFTWARE.
 */
 
 /**
- * A JSONTokener takes a source string and extracts characters and tokens from
- * it. It is used by the JSONObject and JSONArray constructors to parse
- * JSON source strings.
+ * A JSONTokener takes a source string or reader and extracts characters and
+ * tokens from it. It is used by the JSONObject and JSONArray constructors to
+ * parse JSON source strings and by the {@link JSONParser} to parse JSON
+ * streams.
+ * <p>
+ * A tokener created from a reader only keeps a fixed size window of the
+ * source in memory. In this case {@link #back()} is only guaranteed to go
+ * back a single character.
  * @author JSON.org
  * @version 2
  */
 public class JSONTokener {
 
+    /**
+     * The size of the buffer used when reading from a reader.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+
     /**
      * The index of the next character.
      */
-    private int myIndex;
+    private long myIndex;
 
 
     /**
-     * The source string being tokenized.
+     * The source string being tokenized or null if reading from a reader.
      */
     private String mySource;
 
 
+    /**
+     * The reader providing the source or null if the source is a string.
+     */
+    private Reader myReader;
+
+
+    /**
+     * The characters of the source which are currently available.
+     */
+    private char[] myBuffer;
+
+
+    /**
+     * The position of the next character in the buffer.
+     */
+    private int myPosition;
+
+
+    /**
+     * The number of valid characters in the buffer.
+     */
+    private int myLimit;
+
+
+    /**
+     * The exception thrown by the reader, if any.
+     */
+    private IOException myReadError;
+
+
     /**
      * Construct a JSONTokener from a string.
      *
@@ -53,6 +100,94 @@ public class JSONTokener {
     public JSONTokener(String s) {
         this.myIndex = 0;
         this.mySource = s;
+        this.myBuffer = s.toCharArray();
+        this.myLimit = this.myBuffer.length;
+    }
+
+
+    /**
+     * Construct a JSONTokener from a reader. The reader is consumed as the
+     * tokens are requested and is not closed by the tokener.
+     *
+     * @param reader     A reader.
+     * @since 2.1
+     */
+    public JSONTokener(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+
+    /**
+     * Construct a JSONTokener from an UTF-8 encoded input stream. The stream
+     * is consumed as the tokens are requested and is not closed by the
+     * tokener.
+     *
+     * @param inputStream     An input stream.
+     * @since 2.1
+     */
+    public JSONTokener(InputStream inputStream) {
+        this(utf8Reader(inputStream), DEFAULT_BUFFER_SIZE);
+    }
+
+
+    JSONTokener(Reader reader, int bufferSize) {
+        this.myIndex = 0;
+        this.myReader = reader;
+        // one additional character is kept to allow going back
+        this.myBuffer = new char[bufferSize + 1];
+    }
+
+
+    private static Reader utf8Reader(InputStream inputStream) {
+        try {
+            return new InputStreamReader(inputStream, "UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(uee);
+        }
+    }
+
+
+    /**
+     * Read the next chunk of the source from the reader into the buffer.
+     * The last character of the previous chunk is retained at the start of
+     * the buffer so that back() is possible after a refill.
+     * @return true if more characters are available.
+     */
+    private boolean fill() {
+        if (this.myReader == null || this.myReadError != null) {
+            return false;
+        }
+        if (this.myLimit > 0) {
+            this.myBuffer[0] = this.myBuffer[this.myLimit - 1];
+            this.myPosition = 1;
+            this.myLimit = 1;
+        }
+        try {
+            int n;
+            do {
+                n = this.myReader.read(this.myBuffer, this.myLimit,
+                        this.myBuffer.length - this.myLimit);
+            } while (n == 0);
+            if (n < 0) {
+                return false;
+            }
+            this.myLimit += n;
+            return true;
+        } catch (IOException ioe) {
+            this.myReadError = ioe;
+            return false;
+        }
+    }
+
+
+    /**
+     * Return the exception thrown by the reader, if any. If reading fails,
+     * the tokener behaves as if the end of the source has been reached.
+     * @return The exception or null.
+     */
+    IOException getReadError() {
+        return this.myReadError;
     }
 
 
@@ -62,7 +197,8 @@ public class JSONTokener {
      * the next number or identifier.
      */
     public void back() {
-        if (this.myIndex > 0) {
+        if (this.myPosition > 0) {
+            this.myPosition -= 1;
             this.myIndex -= 1;
         }
     }
@@ -95,7 +231,7 @@ public class JSONTokener {
      * @return true if not yet at the end of the source.
      */
     public boolean more() {
-        return this.myIndex < this.mySource.length();
+        return this.myPosition < this.myLimit || fill();
     }
 
 
@@ -106,7 +242,8 @@ public class JSONTokener {
      */
     public char next() {
         if (more()) {
-            char c = this.mySource.charAt(this.myIndex);
+            char c = this.myBuffer[this.myPosition];
+            this.myPosition += 1;
             this.myIndex += 1;
             return c;
         }
@@ -141,13 +278,23 @@ public class JSONTokener {
      *   n characters remaining in the source string.
      */
      public String next(int n) throws JSONException {
-         int i = this.myIndex;
-         int j = i + n;
-         if (j >= this.mySource.length()) {
+         if (this.myPosition + n < this.myLimit) {
+             String s = new String(this.myBuffer, this.myPosition, n);
+             this.myPosition += n;
+             this.myIndex += n;
+             return s;
+         }
+         if (this.myReader == null) {
             throw syntaxError("Substring bounds error");
          }
-         this.myIndex += n;
-         return this.mySource.substring(i, j);
+         char[] chars = new char[n];
+         for (int i = 0; i < n; i++) {
+             if (!more()) {
+                 throw syntaxError("Substring bounds error");
+             }
+             chars[i] = next();
+         }
+         return new String(chars);
      }
 
 
@@ -410,13 +557,30 @@ public class JSONTokener {
      */
     public char skipTo(char to) {
         char c;
-        int index = this.myIndex;
+        long index = this.myIndex;
+        int position = this.myPosition;
+        // characters skipped from a reader have to be restored if the
+        // requested character is not found
+        StringBuilder skipped = this.myReader == null ? null : new StringBuilder();
         do {
             c = next();
             if (c == 0) {
                 this.myIndex = index;
+                if (skipped == null) {
+                    this.myPosition = position;
+                } else {
+                    if (skipped.length() >= this.myBuffer.length) {
+                        this.myBuffer = new char[skipped.length() + 1];
+                    }
+                    skipped.getChars(0, skipped.length(), this.myBuffer, 0);
+                    this.myPosition = 0;
+                    this.myLimit = skipped.length();
+                }
                 return c;
             }
+            if (skipped != null) {
+                skipped.append(c);
+            }
         } while (c != to);
         back();
         return c;
@@ -429,11 +593,25 @@ public class JSONTokener {
      * @param to A string to skip past.
      */
     public void skipPast(String to) {
-        this.myIndex = this.mySource.indexOf(to, this.myIndex);
-        if (this.myIndex < 0) {
-            this.myIndex = this.mySource.length();
-        } else {
-            this.myIndex += to.length();
+        if (this.myReader == null) {
+            int i = this.mySource.indexOf(to, this.myPosition);
+            if (i < 0) {
+                this.myPosition = this.mySource.length();
+            } else {
+                this.myPosition = i + to.length();
+            }
+            this.myIndex = this.myPosition;
+            return;
+        }
+        StringBuilder window = new StringBuilder(to.length());
+        while (more()) {
+            window.append(next());
+            if (window.length() > to.length()) {
+                window.deleteCharAt(0);
+            }
+            if (window.length() == to.length() && to.contentEquals(window)) {
+                return;
+            }
         }
     }
 
@@ -445,6 +623,9 @@ public class JSONTokener {
      * @return  A JSONException object, suitable for throwing
      */
     public JSONException syntaxError(String message) {
+        if (this.myReadError != null) {
+            return new JSONException(message + toString(), this.myReadError);
+        }
         return new JSONException(message + toString());
     }
 
@@ -452,9 +633,13 @@ public class JSONTokener {
     /**
      * Make a printable string of this JSONTokener.
      *
-     * @return " at character [this.myIndex] of [this.mySource]"
+     * @return " at character [this.myIndex] of [this.mySource]" or
+     *  " at character [this.myIndex]" if reading from a reader
      */
     public String toString() {
+        if (this.myReader != null) {
+            return " at character " + this.myIndex;
+        }
         return " at character " + this.myIndex + " of " + this.mySource;
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JSONParserTest {
+
+    /**
+     * Render the events of the parser as a string.
+     */
+    private String events(final JSONParser parser) throws JSONException {
+        final List<String> result = new ArrayList<String>();
+        JSONParser.Event event;
+        while ((event = parser.next()) != null) {
+            switch (event) {
+                case KEY:
+                    result.add("key:" + parser.getKey());
+                    break;
+                case VALUE:
+                    result.add("value:" + parser.getValue());
+                    break;
+                default:
+                    result.add(event.name());
+            }
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testEvents() throws JSONException {
+        final String json = "{\"a\":1, \"b\":[true, \"x\\ty\", , null, {}], c = {\"d\": 2.5,}; 'e' : []}";
+        final String expected = "[START_OBJECT, key:a, value:1, key:b, START_ARRAY, value:true, value:x\ty, "
+                + "value:null, value:null, START_OBJECT, END_OBJECT, END_ARRAY, key:c, START_OBJECT, "
+                + "key:d, value:2.5, END_OBJECT, key:e, START_ARRAY, END_ARRAY, END_OBJECT]";
+        assertEquals(expected, events(new JSONParser(new JSONTokener(json))));
+        assertEquals(expected, events(new JSONParser(new StringReader(json))));
+        assertEquals(expected, events(new JSONParser(new JSONTokener(new StringReader(json), 3))));
+    }
+
+    @Test
+    public void testTopLevelValues() throws JSONException {
+        assertEquals("[START_ARRAY, value:1, END_ARRAY]", events(new JSONParser(new JSONTokener("[1]"))));
+        assertEquals("[value:text]", events(new JSONParser(new JSONTokener("\"text\""))));
+    }
+
+    @Test
+    public void testKeyOfNestedValues() throws JSONException {
+        final JSONParser parser = new JSONParser(new JSONTokener("{\"a\":{\"b\":1},\"c\":[2]}"));
+        assertEquals(JSONParser.Event.START_OBJECT, parser.next());
+        assertNull(parser.getKey());
+        assertEquals(JSONParser.Event.KEY, parser.next());
+        assertEquals(JSONParser.Event.START_OBJECT, parser.next());
+        assertEquals("a", parser.getKey());
+        assertEquals(2, parser.getDepth());
+        assertEquals(JSONParser.Event.KEY, parser.next());
+        assertEquals(JSONParser.Event.VALUE, parser.next());
+        assertEquals("b", parser.getKey());
+        assertEquals(JSONParser.Event.END_OBJECT, parser.next());
+        assertNull(parser.getKey());
+        assertEquals(JSONParser.Event.KEY, parser.next());
+        assertEquals(JSONParser.Event.START_ARRAY, parser.next());
+        assertEquals("c", parser.getKey());
+        assertEquals(JSONParser.Event.VALUE, parser.next());
+        assertNull(parser.getKey());
+        assertEquals(Integer.valueOf(2), parser.getValue());
+    }
+
+    @Test
+    public void testSkipAndRead() throws JSONException {
+        final String json = "{\"skip\":{\"x\":[1,{\"y\":2}]},\"obj\":{\"a\":[1,2]},\"arr\":[3,{}],\"last\":true}";
+        final JSONParser parser = new JSONParser(new JSONTokener(new StringReader(json), 2));
+        assertEquals(JSONParser.Event.START_OBJECT, parser.next());
+        assertEquals(JSONParser.Event.KEY, parser.next());
+        assertEquals(JSONParser.Event.START_OBJECT, parser.next());
+        parser.skipChildren();
+        assertEquals(JSONParser.Event.KEY, parser.next());
+        assertEquals("obj", parser.getKey());
+        assertEquals(JSONParser.Event.START_OBJECT, parser.next());
+        assertEquals("{\"a\":[1,2]}", parser.readObject().toString());
+        assertEquals(JSONParser.Event.KEY, parser.next());
+        assertEquals(JSONParser.Event.START_ARRAY, parser.next());
+        assertEquals("[3,{}]", parser.readArray().toString());
+        assertEquals(JSONParser.Event.KEY, parser.next());
+        assertEquals("last", parser.getKey());
+        assertEquals(JSONParser.Event.VALUE, parser.next());
+        assertEquals(Boolean.TRUE, parser.getValue());
+        assertEquals(JSONParser.Event.END_OBJECT, parser.next());
+        assertNull(parser.next());
+    }
+
+    @Test
+    public void testSyntaxErrors() {
+        final String[] invalid = new String[] {"", "{\"a\" 1}", "{\"a\":1 \"b\":2}", "[1 \"2\"]", "{\"a\":1", "[1,"};
+        for (final String json : invalid) {
+            try {
+                events(new JSONParser(new JSONTokener(json)));
+                fail("Expected JSONException for " + json);
+            } catch (JSONException expected) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class JSONTokenerTest {
+
+    private static final String JSON = "{ \"a\" : \"x\\u0041y\\tz\", b: 'single', "
+            + "/* comment */ \"c\": [1, 2.5, 12345678901, true, null, 0x1F, , \"\\\"\"], "
+            + "# hash comment\n \"d\" : { \"e\" => { } , 'f' = [] ; }, // line comment\n"
+            + "\"g\" : \"\\u00e4\\u00f6\\u00fc\" }";
+
+    @Test
+    public void testReaderMatchesString() throws JSONException {
+        final String expected = new JSONObject(new JSONTokener(JSON)).toString();
+        assertEquals(expected, new JSONObject(new JSONTokener(new StringReader(JSON))).toString());
+        // small buffers force refills within strings, escapes and comments
+        for (int bufferSize = 1; bufferSize < 10; bufferSize++) {
+            final JSONTokener x = new JSONTokener(new StringReader(JSON), bufferSize);
+            assertEquals("Buffer size " + bufferSize, expected, new JSONObject(x).toString());
+        }
+    }
+
+    @Test
+    public void testInputStream() throws Exception {
+        final String json = "{\"name\":\"äöü€\"}";
+        final JSONObject obj = new JSONObject(new JSONTokener(new ByteArrayInputStream(json.getBytes("UTF-8"))));
+        assertEquals("äöü€", obj.getString("name"));
+    }
+
+    @Test
+    public void testBackAfterRefill() throws JSONException {
+        final JSONTokener x = new JSONTokener(new StringReader("abc"), 1);
+        assertEquals('a', x.next());
+        assertEquals('b', x.next());
+        x.back();
+        assertEquals('b', x.next());
+        assertEquals('c', x.next());
+        assertEquals(0, x.next());
+        x.back();
+        assertEquals('c', x.next());
+    }
+
+    @Test
+    public void testSkip() throws JSONException {
+        for (final JSONTokener x : new JSONTokener[] { new JSONTokener("abc-->def"),
+                new JSONTokener(new StringReader("abc-->def"), 2) }) {
+            assertEquals(0, x.skipTo('x'));
+            assertEquals('a', x.next());
+            assertEquals('-', x.skipTo('-'));
+            x.skipPast("->");
+            assertEquals('d', x.next());
+            x.skipPast("zz");
+            assertTrue(!x.more());
+        }
+    }
+
+    @Test
+    public void testReadError() {
+        final Reader failing = new Reader() {
+
+            private boolean first = true;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                if (first) {
+                    first = false;
+                    cbuf[off] = '{';
+                    return 1;
+                }
+                throw new IOException("failed");
+            }
+
+            @Override
+            public void close() {
+                // nothing to do
+            }
+        };
+        try {
+            new JSONObject(new JSONTokener(failing));
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
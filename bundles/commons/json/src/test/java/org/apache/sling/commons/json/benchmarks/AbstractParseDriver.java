@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.json.benchmarks;
+
+import com.sun.japex.JapexDriverBase;
+import com.sun.japex.TestCase;
+
+/**
+ * Base class for the JSON parsing benchmarks. Creates a document with the
+ * number of objects given by the <code>objects</code> test case parameter.
+ */
+public abstract class AbstractParseDriver extends JapexDriverBase {
+
+    protected String json;
+
+    @Override
+    public void prepare(TestCase tc) {
+        final int objects = tc.hasParam("objects") ? tc.getIntParam("objects") : 1000;
+        final StringBuilder sb = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < objects; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i)
+              .append(",\"name\":\"item-").append(i).append("\\tescaped\\u00e4\"")
+              .append(",\"price\":").append(i * 1.5)
+              .append(",\"active\":").append(i % 2 == 0)
+              .append(",\"tags\":[\"a\",\"b\",\"c\"]")
+              .append(",\"child\":{\"created\":12345678901,\"comment\":null}}");
+        }
+        sb.append("]}");
+        this.json = sb.toString();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.json.benchmarks;
+
+import java.io.StringReader;
+
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.commons.json.JSONTokener;
+
+import com.sun.japex.TestCase;
+
+/**
+ * Parse the document into a JSONObject using a tokener on a reader.
+ */
+public class ParseReaderTokenerDriver extends AbstractParseDriver {
+
+    @Override
+    public void run(TestCase tc) {
+        try {
+            new JSONObject(new JSONTokener(new StringReader(json)));
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
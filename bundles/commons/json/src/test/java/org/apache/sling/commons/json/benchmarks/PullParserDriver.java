@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.json.benchmarks;
+
+import java.io.StringReader;
+
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONParser;
+
+import com.sun.japex.TestCase;
+
+/**
+ * Parse the document with the pull parser without building a tree.
+ */
+public class PullParserDriver extends AbstractParseDriver {
+
+    @Override
+    public void run(TestCase tc) {
+        try {
+            final JSONParser parser = new JSONParser(new StringReader(json));
+            int events = 0;
+            while (parser.next() != null) {
+                events++;
+            }
+            if (events == 0) {
+                throw new IllegalStateException("No events");
+            }
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -33,6 +33,7 @@ import java.util.concurrent.ThreadFactory;
  * - priority: NORM
  * - daemon: false
  * - factory: null (= default jvm thread factory)
+ * - mode: DEFAULT
  */
 public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
 
@@ -56,6 +57,11 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
     public static final String PROPERTY_DAEMON = "daemon";
     /** Configuration property for the thread pool name. */
     public static final String PROPERTY_NAME = "name";
+    /**
+     * Configuration property for the thread pool mode.
+     * @since 3.3
+     */
+    public static final String PROPERTY_MODE = "mode";
 
     /** The min pool size. */
     private int minPoolSize = 5;
@@ -87,6 +93,9 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
     /** Create daemon threads? */
     private  boolean isDaemon = false;
 
+    /** The thread pool mode. */
+    private ThreadPoolMode mode = ThreadPoolMode.DEFAULT;
+
     /**
      * Create a new default configuration.
      */
@@ -110,6 +119,9 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
             this.factory = copy.getFactory();
             this.priority = copy.getPriority();
             this.isDaemon = copy.isDaemon();
+            if ( copy instanceof ModifiableThreadPoolConfig ) {
+                this.mode = ((ModifiableThreadPoolConfig)copy).getMode();
+            }
         }
     }
 
@@ -272,6 +284,28 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
         this.isDaemon = isDaemon;
     }
 
+    /**
+     * Return the thread pool mode.
+     * @return The thread pool mode.
+     * @since 3.3
+     */
+    public ThreadPoolMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Set the thread pool mode.
+     * @param mode The thread pool mode.
+     * @throws IllegalArgumentException If mode is null.
+     * @since 3.3
+     */
+    public void setMode(final ThreadPoolMode mode) {
+        if ( mode == null ) {
+            throw new IllegalArgumentException("Mode must not be null.");
+        }
+        this.mode = mode;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if ( obj instanceof ModifiableThreadPoolConfig ) {
@@ -284,7 +318,8 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
                 && this.shutdownGraceful == o.shutdownGraceful
                 && this.shutdownWaitTimeMs == o.shutdownWaitTimeMs
                 && this.priority.equals(o.priority)
-                && this.isDaemon == o.isDaemon;
+                && this.isDaemon == o.isDaemon
+                && this.mode.equals(o.mode);
         }
         return false;
     }
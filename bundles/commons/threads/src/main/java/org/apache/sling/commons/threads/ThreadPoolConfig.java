@@ -37,6 +37,19 @@ public interface ThreadPoolConfig {
         MAX
     };
 
+    /**
+     * The thread pool modes.
+     * @since 3.3
+     */
+    public enum ThreadPoolMode {
+        /** A thread pool executor with the configured pool and queue sizes. */
+        DEFAULT,
+        /** A work stealing fork join pool, the parallelism is the max pool size. */
+        WORK_STEALING,
+        /** A new virtual thread per task, if supported by the runtime. */
+        VIRTUAL
+    };
+
     /**
      * Return the minimum pool size.
      * @return The minimum pool size.
@@ -16,20 +16,28 @@
  */
 package org.apache.sling.commons.threads.impl;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolMode;
 import org.apache.sling.commons.threads.ThreadPoolManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +46,12 @@ import org.slf4j.LoggerFactory;
 /**
  * The DefaultThreadPool class implements the {@link ThreadPool} interface.
  * Instances of this class are managed by the {@link ThreadPoolManager}.
+ *
+ * Depending on the configured {@link ThreadPoolMode}, tasks are run by a
+ * thread pool executor, a work stealing fork join pool or by a virtual
+ * thread per task. The fork join pool and virtual threads are created
+ * reflectively as they are not available on all supported runtimes; if
+ * the runtime does not support the mode, the default mode is used.
  */
 public class DefaultThreadPool
     implements ThreadPool {
@@ -48,9 +62,27 @@ public class DefaultThreadPool
     /** The name of this thread pool */
     protected final String name;
 
-    /** The executor. */
+    /** The thread pool executor - only available in the default mode. */
     protected ThreadPoolExecutor executor;
 
+    /** The executor service running the tasks. */
+    protected ExecutorService executorService;
+
+    /** Number of tasks currently running. */
+    private final AtomicInteger activeTasks = new AtomicInteger();
+
+    /** Number of tasks which have been run. */
+    private final AtomicLong executedTasks = new AtomicLong();
+
+    /** Accumulated time tasks waited before they were run in nanoseconds. */
+    private final AtomicLong queueWaitTime = new AtomicLong();
+
+    /** Accumulated time tasks were running in nanoseconds. */
+    private final AtomicLong activeTime = new AtomicLong();
+
+    /** Number of rejected tasks. */
+    private final AtomicLong rejectedTasks = new AtomicLong();
+
     protected final ModifiableThreadPoolConfig configuration;
 
     /**
@@ -93,6 +125,17 @@ public class DefaultThreadPool
         // Set priority and daemon flag
         final ExtendedThreadFactory threadFactory = new ExtendedThreadFactory(delegateThreadFactory, this.configuration.getPriority(), this.configuration.isDaemon());
 
+        if ( this.configuration.getMode() == ThreadPoolMode.WORK_STEALING ) {
+            this.executorService = this.createWorkStealingPool();
+        } else if ( this.configuration.getMode() == ThreadPoolMode.VIRTUAL ) {
+            this.executorService = this.createVirtualThreadExecutor();
+        }
+        if ( this.executorService != null ) {
+            this.logger.info("Thread pool [{}] initialized in mode {}.", name, this.configuration.getMode());
+            return;
+        }
+        this.configuration.setMode(ThreadPoolMode.DEFAULT);
+
         // Keep alive time
         if (this.configuration.getKeepAliveTime() < 0) {
             this.configuration.setKeepAliveTime(1000);
@@ -132,10 +175,73 @@ public class DefaultThreadPool
                 TimeUnit.MILLISECONDS,
                 queue,
                 threadFactory,
-                handler);
+                new CountingRejectedExecutionHandler(handler));
+        this.executorService = this.executor;
         this.logger.info("Thread pool [{}] initialized.", name);
     }
 
+    /**
+     * Create a work stealing fork join pool.
+     * @return The pool or {@code null} if not supported by the runtime.
+     */
+    private ExecutorService createWorkStealingPool() {
+        int parallelism = this.configuration.getMaxPoolSize();
+        if ( parallelism < 1 || parallelism == Integer.MAX_VALUE ) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        try {
+            final Class<?> poolClass = Class.forName("java.util.concurrent.ForkJoinPool");
+            final Class<?> factoryClass = Class.forName("java.util.concurrent.ForkJoinPool$ForkJoinWorkerThreadFactory");
+            final Object defaultFactory = poolClass.getField("defaultForkJoinWorkerThreadFactory").get(null);
+            final Method newThread = factoryClass.getMethod("newThread", poolClass);
+            final int priority = ExtendedThreadFactory.toThreadPriority(this.configuration.getPriority());
+            final boolean isDaemon = this.configuration.isDaemon();
+            final String prefix = this.name + "-";
+            final AtomicInteger counter = new AtomicInteger();
+
+            // set name, priority and daemon flag on the threads of the default factory
+            final Object factory = Proxy.newProxyInstance(this.getClass().getClassLoader(),
+                    new Class<?>[] {factoryClass},
+                    new InvocationHandler() {
+
+                        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                        throws Throwable {
+                            if ( method.getName().equals("newThread") ) {
+                                final Thread thread = (Thread)newThread.invoke(defaultFactory, args);
+                                thread.setName(prefix + counter.incrementAndGet());
+                                thread.setPriority(priority);
+                                thread.setDaemon(isDaemon);
+                                return thread;
+                            }
+                            return method.invoke(this, args);
+                        }
+                    });
+            return (ExecutorService)poolClass.getConstructor(int.class, factoryClass, Thread.UncaughtExceptionHandler.class, boolean.class)
+                    .newInstance(parallelism, factory, null, true);
+        } catch ( final Exception e ) {
+            this.logger.warn("Work stealing mode is not supported for thread pool [{}]. Using default mode: {}", this.name, e);
+        }
+        return null;
+    }
+
+    /**
+     * Create an executor running each task in a new virtual thread.
+     * @return The executor or {@code null} if not supported by the runtime.
+     */
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builderClass.getMethod("name", String.class, long.class).invoke(builder, this.name + "-", 1L);
+            final ThreadFactory factory = (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService)Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch ( final Exception e ) {
+            this.logger.warn("Virtual threads are not supported for thread pool [{}]. Using default mode: {}", this.name, e);
+        }
+        return null;
+    }
+
     /**
      * @see org.apache.sling.commons.threads.ThreadPool#getName()
      */
@@ -160,7 +266,12 @@ public class DefaultThreadPool
             if ( logger.isDebugEnabled() ) {
                 logOperation("Executing runnable: ", runnable);
             }
-            executor.execute(runnable);
+            try {
+                executorService.execute(new TimedRunnable(runnable));
+            } catch ( final RejectedExecutionException ree ) {
+                this.rejectedByService();
+                throw ree;
+            }
         }
     }
 
@@ -172,7 +283,12 @@ public class DefaultThreadPool
         if ( logger.isDebugEnabled() ) {
             logOperation("Submitting callable: ", callable);
         }
-        return executor.submit(callable);
+        try {
+            return executorService.submit(new TimedCallable<T>(callable));
+        } catch ( final RejectedExecutionException ree ) {
+            this.rejectedByService();
+            throw ree;
+        }
     }
 
     /**
@@ -183,7 +299,12 @@ public class DefaultThreadPool
         if ( logger.isDebugEnabled() ) {
             logOperation("Submitting runnable: ", runnable);
         }
-        return executor.submit(runnable);
+        try {
+            return executorService.submit(new TimedRunnable(runnable));
+        } catch ( final RejectedExecutionException ree ) {
+            this.rejectedByService();
+            throw ree;
+        }
     }
 
     /**
@@ -191,26 +312,28 @@ public class DefaultThreadPool
      */
     public void shutdown() {
         this.logger.info("Shutting down thread pool [{}] ...", name);
-        if ( this.executor != null ) {
+        final ExecutorService service = this.executorService;
+        if ( service != null ) {
             if (this.configuration.isShutdownGraceful()) {
-                this.executor.shutdown();
+                service.shutdown();
             } else {
-                this.executor.shutdownNow();
+                service.shutdownNow();
             }
 
             try {
                 if (this.configuration.getShutdownWaitTimeMs() > 0) {
-                    if (!this.executor.awaitTermination(this.configuration.getShutdownWaitTimeMs(), TimeUnit.MILLISECONDS)) {
+                    if (!service.awaitTermination(this.configuration.getShutdownWaitTimeMs(), TimeUnit.MILLISECONDS)) {
                         logger.warn("Running commands have not terminated within "
                             + this.configuration.getShutdownWaitTimeMs()
                             + "ms. Will shut them down by interruption");
-                        this.executor.shutdownNow();
+                        service.shutdownNow();
                     }
                 }
             } catch (final InterruptedException ie) {
                 this.logger.error("Cannot shutdown thread pool [" + this.name + "]", ie);
             }
             this.executor = null;
+            this.executorService = null;
         }
         this.logger.info("Thread pool [{}] is shut down.", this.name);
     }
@@ -219,13 +342,71 @@ public class DefaultThreadPool
         return this.executor;
     }
 
-    private void checkExecutor() {
+    /**
+     * The number of tasks currently running.
+     */
+    public int getActiveTaskCount() {
+        return this.activeTasks.get();
+    }
+
+    /**
+     * The number of tasks which have been run.
+     */
+    public long getExecutedTaskCount() {
+        return this.executedTasks.get();
+    }
+
+    /**
+     * The accumulated time tasks waited before they were run.
+     * @return The time in milliseconds.
+     */
+    public long getTotalQueueWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.queueWaitTime.get());
+    }
+
+    /**
+     * The accumulated time tasks were running.
+     * @return The time in milliseconds.
+     */
+    public long getTotalActiveTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.activeTime.get());
+    }
+
+    /**
+     * The number of tasks which have been rejected.
+     */
+    public long getRejectedTaskCount() {
+        return this.rejectedTasks.get();
+    }
+
+    private void rejected() {
+        this.rejectedTasks.incrementAndGet();
+    }
+
+    /**
+     * Count a task rejected by the executor service. The thread pool
+     * executor of the default mode counts rejections in its handler
+     * already, as not every policy throws an exception.
+     */
+    private void rejectedByService() {
         if ( this.executor == null ) {
+            this.rejected();
+        }
+    }
+
+    private void checkExecutor() {
+        if ( this.executorService == null ) {
             throw new IllegalStateException("Thread pool " + this.name + " is already shutdown.");
         }
     }
 
     private void logOperation(final String msg, final Object obj) {
+        final ThreadPoolExecutor executor = this.executor;
+        if ( executor == null ) {
+            logger.debug("{} {}, pool={}, mode={}, active={}",
+                    new Object[] {msg, obj, name, this.configuration.getMode(), this.activeTasks.get()});
+            return;
+        }
         logger.debug("{} {}, pool={}, active={}, corePoolSize={}, maxPoolSize={}, queueSize={}",
                 new Object[] {msg, obj, name,
                         executor.getActiveCount(),
@@ -233,4 +414,88 @@ public class DefaultThreadPool
                         executor.getMaximumPoolSize(),
                         executor.getQueue().size()});
     }
+
+    /**
+     * Count rejected tasks before applying the configured policy.
+     */
+    private final class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler delegatee;
+
+        public CountingRejectedExecutionHandler(final RejectedExecutionHandler delegatee) {
+            this.delegatee = delegatee;
+        }
+
+        public void rejectedExecution(final Runnable r, final ThreadPoolExecutor e) {
+            rejected();
+            this.delegatee.rejectedExecution(r, e);
+        }
+    }
+
+    /**
+     * Base class measuring the queue wait and active time of a task.
+     */
+    private abstract class TimedTask {
+
+        private final long created = System.nanoTime();
+
+        protected long started() {
+            final long start = System.nanoTime();
+            queueWaitTime.addAndGet(start - created);
+            activeTasks.incrementAndGet();
+            return start;
+        }
+
+        protected void finished(final long start) {
+            activeTasks.decrementAndGet();
+            activeTime.addAndGet(System.nanoTime() - start);
+            executedTasks.incrementAndGet();
+        }
+    }
+
+    private final class TimedRunnable extends TimedTask implements Runnable {
+
+        private final Runnable runnable;
+
+        public TimedRunnable(final Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        public void run() {
+            final long start = this.started();
+            try {
+                this.runnable.run();
+            } finally {
+                this.finished(start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.runnable.toString();
+        }
+    }
+
+    private final class TimedCallable<T> extends TimedTask implements Callable<T> {
+
+        private final Callable<T> callable;
+
+        public TimedCallable(final Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        public T call() throws Exception {
+            final long start = this.started();
+            try {
+                return this.callable.call();
+            } finally {
+                this.finished(start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.callable.toString();
+        }
+    }
 }
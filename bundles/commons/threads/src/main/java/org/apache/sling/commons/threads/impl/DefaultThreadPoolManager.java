@@ -26,6 +26,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolMode;
 import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolPolicy;
 import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPriority;
 import org.apache.sling.commons.threads.ThreadPoolManager;
@@ -116,6 +117,9 @@ public class DefaultThreadPoolManager
         if ( props.get(ModifiableThreadPoolConfig.PROPERTY_DAEMON) != null ) {
             config.setDaemon((Boolean)props.get(ModifiableThreadPoolConfig.PROPERTY_DAEMON));
         }
+        if ( props.get(ModifiableThreadPoolConfig.PROPERTY_MODE) != null ) {
+            config.setMode(ThreadPoolMode.valueOf(props.get(ModifiableThreadPoolConfig.PROPERTY_MODE).toString()));
+        }
         return config;
     }
 
@@ -404,6 +408,14 @@ public class DefaultThreadPoolManager
             return null;
         }
 
+        public DefaultThreadPool getPool() {
+            final ThreadPoolFacade facade = this.pool;
+            if ( facade != null ) {
+                return facade.getPool();
+            }
+            return null;
+        }
+
         protected void unregisterMBean() {
             if ( this.mbeanRegistration != null ) {
                 this.mbeanRegistration.unregister();
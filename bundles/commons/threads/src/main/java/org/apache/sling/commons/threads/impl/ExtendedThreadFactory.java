@@ -50,18 +50,21 @@ public final class ExtendedThreadFactory implements ThreadFactory {
         if ( priority == null ) {
             throw new IllegalStateException("Prioriy must not be null.");
         }
+        this.priority = toThreadPriority(priority);
+        this.factory = factory;
+    }
+
+    /**
+     * Convert the configured priority into a thread priority.
+     * @param priority A non null value.
+     * @return The thread priority
+     */
+    static int toThreadPriority(final ThreadPoolConfig.ThreadPriority priority) {
         switch ( priority ) {
-            case NORM : this.priority = Thread.NORM_PRIORITY;
-                        break;
-            case MIN  : this.priority = Thread.MIN_PRIORITY;
-                        break;
-            case MAX  : this.priority = Thread.MAX_PRIORITY;
-                        break;
-            default: // this can never happen
-                        this.priority = Thread.NORM_PRIORITY;
-                        break;
+            case MIN  : return Thread.MIN_PRIORITY;
+            case MAX  : return Thread.MAX_PRIORITY;
+            default   : return Thread.NORM_PRIORITY;
         }
-        this.factory = factory;
     }
 
     /**
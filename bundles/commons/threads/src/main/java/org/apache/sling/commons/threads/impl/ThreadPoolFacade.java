@@ -103,4 +103,11 @@ public final class ThreadPoolFacade implements ThreadPool {
     public ThreadPoolExecutor getExecutor() {
         return this.delegatee.getExecutor();
     }
+
+    /**
+     * The current thread pool.
+     */
+    public DefaultThreadPool getPool() {
+        return this.delegatee;
+    }
 }
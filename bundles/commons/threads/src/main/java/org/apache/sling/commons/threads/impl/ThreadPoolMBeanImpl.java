@@ -21,6 +21,9 @@ import java.util.concurrent.ThreadPoolExecutor;
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
 
+import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolMode;
 import org.apache.sling.commons.threads.impl.DefaultThreadPoolManager.Entry;
 import org.apache.sling.commons.threads.jmx.ThreadPoolMBean;
 
@@ -100,6 +103,82 @@ class ThreadPoolMBeanImpl extends StandardMBean implements ThreadPoolMBean {
         }
     }
 
+    public String getMode() {
+        // the pool falls back to the default mode if the runtime
+        // does not support the configured one
+        final DefaultThreadPool pool = this.entry.getPool();
+        final ThreadPoolConfig config = pool != null ? pool.getConfiguration() : this.entry.getConfig();
+        if ( config instanceof ModifiableThreadPoolConfig ) {
+            return ((ModifiableThreadPoolConfig)config).getMode().name();
+        }
+        return ThreadPoolMode.DEFAULT.name();
+    }
+
+    public int getActiveTaskCount() {
+        final DefaultThreadPool pool = this.entry.getPool();
+        if ( pool != null ) {
+            return pool.getActiveTaskCount();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getExecutedTaskCount() {
+        final DefaultThreadPool pool = this.entry.getPool();
+        if ( pool != null ) {
+            return pool.getExecutedTaskCount();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getRejectedTaskCount() {
+        final DefaultThreadPool pool = this.entry.getPool();
+        if ( pool != null ) {
+            return pool.getRejectedTaskCount();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getTotalQueueWaitTime() {
+        final DefaultThreadPool pool = this.entry.getPool();
+        if ( pool != null ) {
+            return pool.getTotalQueueWaitTime();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getTotalActiveTime() {
+        final DefaultThreadPool pool = this.entry.getPool();
+        if ( pool != null ) {
+            return pool.getTotalActiveTime();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getAverageQueueWaitTime() {
+        final DefaultThreadPool pool = this.entry.getPool();
+        if ( pool != null ) {
+            final long count = pool.getExecutedTaskCount();
+            return count == 0 ? 0 : pool.getTotalQueueWaitTime() / count;
+        } else {
+            return -1;
+        }
+    }
+
+    public long getAverageActiveTime() {
+        final DefaultThreadPool pool = this.entry.getPool();
+        if ( pool != null ) {
+            final long count = pool.getExecutedTaskCount();
+            return count == 0 ? 0 : pool.getTotalActiveTime() / count;
+        } else {
+            return -1;
+        }
+    }
+
     public long getKeepAliveTime() {
         return this.entry.getConfig().getKeepAliveTime();
     }
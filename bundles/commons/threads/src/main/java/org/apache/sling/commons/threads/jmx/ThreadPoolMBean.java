@@ -156,4 +156,68 @@ public interface ThreadPoolMBean {
      */
     boolean isUsed();
 
+    /**
+     * Retrieve the mode of the thread pool. If the configured mode is not
+     * supported by the runtime, the pool runs in the default mode.
+     *
+     * @return the mode
+     * @since 1.1
+     */
+    String getMode();
+
+    /**
+     * Retrieve the number of currently running tasks.
+     *
+     * @return the number of running tasks or -1 if the thread pool is not in use
+     * @since 1.1
+     */
+    int getActiveTaskCount();
+
+    /**
+     * Retrieve the number of tasks which have been run.
+     *
+     * @return the number of run tasks or -1 if the thread pool is not in use
+     * @since 1.1
+     */
+    long getExecutedTaskCount();
+
+    /**
+     * Retrieve the number of rejected tasks.
+     *
+     * @return the number of rejected tasks or -1 if the thread pool is not in use
+     * @since 1.1
+     */
+    long getRejectedTaskCount();
+
+    /**
+     * Retrieve the accumulated time tasks waited before they were run.
+     *
+     * @return the time in ms or -1 if the thread pool is not in use
+     * @since 1.1
+     */
+    long getTotalQueueWaitTime();
+
+    /**
+     * Retrieve the accumulated time tasks were running.
+     *
+     * @return the time in ms or -1 if the thread pool is not in use
+     * @since 1.1
+     */
+    long getTotalActiveTime();
+
+    /**
+     * Retrieve the average time a task waited before it was run.
+     *
+     * @return the time in ms or -1 if the thread pool is not in use
+     * @since 1.1
+     */
+    long getAverageQueueWaitTime();
+
+    /**
+     * Retrieve the average time a task was running.
+     *
+     * @return the time in ms or -1 if the thread pool is not in use
+     * @since 1.1
+     */
+    long getAverageActiveTime();
 }
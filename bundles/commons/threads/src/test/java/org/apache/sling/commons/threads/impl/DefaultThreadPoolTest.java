@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolMode;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolPolicy;
+import org.junit.After;
+import org.junit.Test;
+
+public class DefaultThreadPoolTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private DefaultThreadPool pool;
+
+    @After
+    public void shutdown() {
+        this.release.countDown();
+        if ( this.pool != null ) {
+            this.pool.shutdown();
+        }
+    }
+
+    /**
+     * Create a pool with a single thread and no queue, which is busy until
+     * the test finishes.
+     */
+    private DefaultThreadPool createBusyPool(final ThreadPoolPolicy policy) throws InterruptedException {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setMinPoolSize(1);
+        config.setMaxPoolSize(1);
+        config.setQueueSize(0);
+        config.setBlockPolicy(policy);
+        this.pool = new DefaultThreadPool("test", config);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        this.pool.execute(new Runnable() {
+
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException ignore) {
+                    // end the task
+                }
+            }
+        });
+        started.await();
+        return this.pool;
+    }
+
+    @Test
+    public void testAbortedTasksAreCountedOnce() throws InterruptedException {
+        final DefaultThreadPool pool = createBusyPool(ThreadPoolPolicy.ABORT);
+        try {
+            pool.execute(new NoopRunnable());
+            fail("Task should be rejected");
+        } catch (final RejectedExecutionException expected) {
+            // expected
+        }
+        assertEquals(1, pool.getRejectedTaskCount());
+
+        try {
+            pool.submit(new NoopRunnable());
+            fail("Task should be rejected");
+        } catch (final RejectedExecutionException expected) {
+            // expected
+        }
+        try {
+            pool.submit(new Callable<Object>() {
+
+                public Object call() {
+                    return null;
+                }
+            });
+            fail("Task should be rejected");
+        } catch (final RejectedExecutionException expected) {
+            // expected
+        }
+        assertEquals(3, pool.getRejectedTaskCount());
+    }
+
+    @Test
+    public void testDiscardedTasksAreCounted() throws InterruptedException {
+        final DefaultThreadPool pool = createBusyPool(ThreadPoolPolicy.DISCARD);
+        pool.execute(new NoopRunnable());
+        pool.submit(new NoopRunnable());
+        assertEquals(2, pool.getRejectedTaskCount());
+    }
+
+    @Test
+    public void testWorkStealingMode() {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setMode(ThreadPoolMode.WORK_STEALING);
+        this.pool = new DefaultThreadPool("test", config);
+        // the fork join pool is available on all supported runtimes
+        assertEquals(ThreadPoolMode.WORK_STEALING, getMode(this.pool));
+        assertNull(this.pool.getExecutor());
+    }
+
+    @Test
+    public void testVirtualModeFallback() throws Exception {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setMode(ThreadPoolMode.VIRTUAL);
+        final DefaultThreadPoolManager.Entry entry = new DefaultThreadPoolManager.Entry(null, config, "test", null);
+        entry.incUsage();
+        try {
+            final ThreadPoolMode expected = supportsVirtualThreads() ? ThreadPoolMode.VIRTUAL : ThreadPoolMode.DEFAULT;
+            assertEquals(expected, getMode(entry.getPool()));
+            assertEquals(expected.name(), new ThreadPoolMBeanImpl(entry).getMode());
+            if ( expected == ThreadPoolMode.DEFAULT ) {
+                assertNotNull(entry.getExecutor());
+            }
+            // the requested configuration is not changed
+            assertEquals(ThreadPoolMode.VIRTUAL, config.getMode());
+        } finally {
+            entry.shutdown();
+        }
+    }
+
+    private ThreadPoolMode getMode(final DefaultThreadPool pool) {
+        return ((ModifiableThreadPoolConfig)pool.getConfiguration()).getMode();
+    }
+
+    private boolean supportsVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static final class NoopRunnable implements Runnable {
+
+        public void run() {
+            // nothing to do
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
+import org.apache.sling.event.impl.jobs.config.QueueConfigurationManager.QueueInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The job batch writer groups concurrently added jobs into a single commit.
+ *
+ * The first caller becomes the leader of the next batch: it optionally waits
+ * for the configured latency, writes all pending jobs with one resource resolver
+ * and commits once. All other callers wait until the batch containing their job
+ * has been committed. Jobs arriving while a commit is in progress are collected
+ * for the next batch. If the shared commit fails, the batch is reverted and each
+ * job is written and committed on its own.
+ */
+public class JobBatchWriter {
+
+    /**
+     * Callback writing a single job into a resource resolver.
+     */
+    public interface Writer {
+
+        /**
+         * Write the job.
+         * @param resolver The resource resolver
+         * @param jobTopic The job topic
+         * @param jobProperties The job properties
+         * @param info The queue info
+         * @param autoCommit Whether the job should be committed immediately
+         * @return The written job
+         * @throws PersistenceException If writing fails
+         */
+        JobImpl write(ResourceResolver resolver,
+                String jobTopic,
+                Map<String, Object> jobProperties,
+                QueueInfo info,
+                boolean autoCommit)
+        throws PersistenceException;
+    }
+
+    /** A job waiting to be written. */
+    private static final class Request {
+
+        public final String jobTopic;
+
+        public final Map<String, Object> jobProperties;
+
+        public final QueueInfo info;
+
+        public boolean done;
+
+        public JobImpl job;
+
+        public PersistenceException exception;
+
+        public Request(final String jobTopic, final Map<String, Object> jobProperties, final QueueInfo info) {
+            this.jobTopic = jobTopic;
+            this.jobProperties = jobProperties;
+            this.info = info;
+        }
+    }
+
+    /** Logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The job manager configuration. */
+    private final JobManagerConfiguration configuration;
+
+    /** The callback writing the jobs. */
+    private final Writer writer;
+
+    /** Lock for the pending requests and the leader flag. */
+    private final Object lock = new Object();
+
+    /** The pending requests. */
+    private final LinkedList<Request> pending = new LinkedList<Request>();
+
+    /** Whether a leader is currently collecting or writing a batch. */
+    private boolean leaderActive;
+
+    public JobBatchWriter(final JobManagerConfiguration configuration, final Writer writer) {
+        this.configuration = configuration;
+        this.writer = writer;
+    }
+
+    /**
+     * Write a job, possibly together with other concurrently added jobs.
+     * This method returns once the job is committed.
+     * @param jobTopic The job topic
+     * @param jobProperties The job properties
+     * @param info The queue info
+     * @return The written job
+     * @throws PersistenceException If the job could not be persisted
+     */
+    public JobImpl write(final String jobTopic,
+            final Map<String, Object> jobProperties,
+            final QueueInfo info)
+    throws PersistenceException {
+        final Request request = new Request(jobTopic, jobProperties, info);
+        final int maxSize = this.configuration.getAddBatchSize();
+        boolean interrupted = false;
+
+        synchronized ( this.lock ) {
+            this.pending.add(request);
+            if ( this.pending.size() >= maxSize ) {
+                this.lock.notifyAll();
+            }
+        }
+        try {
+            while ( true ) {
+                synchronized ( this.lock ) {
+                    while ( !request.done && this.leaderActive ) {
+                        try {
+                            this.lock.wait();
+                        } catch ( final InterruptedException ie ) {
+                            // our job might be part of a running batch, keep waiting
+                            interrupted = true;
+                        }
+                    }
+                    if ( request.done ) {
+                        break;
+                    }
+                    this.leaderActive = true;
+                }
+                interrupted |= this.lead(maxSize);
+            }
+        } finally {
+            if ( interrupted ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if ( request.exception != null ) {
+            throw request.exception;
+        }
+        return request.job;
+    }
+
+    /**
+     * Collect, write and commit the next batch.
+     * @return {@code true} if the thread was interrupted while waiting.
+     */
+    private boolean lead(final int maxSize) {
+        boolean interrupted = false;
+        final List<Request> batch = new ArrayList<Request>();
+        try {
+            synchronized ( this.lock ) {
+                final long latency = this.configuration.getAddBatchLatency();
+                if ( latency > 0 ) {
+                    final long end = System.currentTimeMillis() + latency;
+                    long remaining = latency;
+                    while ( this.pending.size() < maxSize && remaining > 0 ) {
+                        try {
+                            this.lock.wait(remaining);
+                        } catch ( final InterruptedException ie ) {
+                            interrupted = true;
+                            break;
+                        }
+                        remaining = end - System.currentTimeMillis();
+                    }
+                }
+                while ( !this.pending.isEmpty() && batch.size() < maxSize ) {
+                    batch.add(this.pending.removeFirst());
+                }
+            }
+            if ( !batch.isEmpty() ) {
+                this.writeBatch(batch);
+            }
+        } finally {
+            synchronized ( this.lock ) {
+                for(final Request r : batch) {
+                    if ( !r.done ) {
+                        r.exception = new PersistenceException("Unable to persist new job.");
+                        r.done = true;
+                    }
+                }
+                this.leaderActive = false;
+                this.lock.notifyAll();
+            }
+        }
+        return interrupted;
+    }
+
+    /**
+     * Write all jobs of the batch and commit them together.
+     * Falls back to writing each job on its own if this fails.
+     */
+    private void writeBatch(final List<Request> batch) {
+        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        try {
+            if ( batch.size() > 1 ) {
+                final List<JobImpl> jobs = new ArrayList<JobImpl>();
+                try {
+                    for(final Request r : batch) {
+                        jobs.add(this.writer.write(resolver, r.jobTopic, r.jobProperties, r.info, false));
+                    }
+                    resolver.commit();
+                    synchronized ( this.lock ) {
+                        for(int i=0; i<batch.size(); i++) {
+                            batch.get(i).job = jobs.get(i);
+                            batch.get(i).done = true;
+                        }
+                    }
+                    logger.debug("Persisted {} jobs with a single commit", batch.size());
+                    return;
+                } catch ( final PersistenceException pe ) {
+                    logger.debug("Unable to persist batch of " + batch.size() + " jobs, persisting them one by one", pe);
+                    resolver.revert();
+                    resolver.refresh();
+                }
+            }
+            for(final Request r : batch) {
+                JobImpl job = null;
+                PersistenceException exception = null;
+                try {
+                    job = this.writer.write(resolver, r.jobTopic, r.jobProperties, r.info, true);
+                } catch ( final PersistenceException pe ) {
+                    exception = pe;
+                    resolver.revert();
+                    resolver.refresh();
+                }
+                synchronized ( this.lock ) {
+                    r.job = job;
+                    r.exception = exception;
+                    r.done = true;
+                }
+            }
+        } finally {
+            resolver.close();
+        }
+    }
+}
@@ -0,0 +1,532 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.jackrabbit.util.ISO8601;
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
+import org.apache.sling.event.impl.support.ResourceHelper;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager.QueryType;
+import org.osgi.service.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The job index keeps all unfinished jobs - assigned to any instance or unassigned -
+ * in memory to answer job lookups without repository queries.
+ *
+ * The index is built by a full scan and then kept up to date from the resource
+ * events the job manager receives. All updates are processed in order by a single
+ * background thread. The index is only used once the scan is finished. If it grows
+ * beyond the configured size, it is dropped and rebuilt by the next maintenance run,
+ * in the meantime lookups fall back to queries.
+ */
+public class JobIndex implements Runnable {
+
+    /** Logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    /** The job manager configuration. */
+    private final JobManagerConfiguration configuration;
+
+    /** All indexed jobs by resource path. */
+    private final ConcurrentSkipListMap<String, JobImpl> jobsByPath = new ConcurrentSkipListMap<String, JobImpl>();
+
+    /** All indexed jobs by job id. */
+    private final ConcurrentMap<String, JobImpl> jobsById = new ConcurrentHashMap<String, JobImpl>();
+
+    /** Whether the index is complete and can be used. */
+    private final AtomicBoolean isReady = new AtomicBoolean(false);
+
+    /** Whether a full scan is pending. */
+    private final AtomicBoolean isScanPending = new AtomicBoolean(false);
+
+    private final AtomicBoolean isRunning = new AtomicBoolean(true);
+
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+
+    /**
+     * @param configuration Current job manager configuration
+     */
+    public JobIndex(final JobManagerConfiguration configuration) {
+        this.configuration = configuration;
+        final Thread t = new Thread(this, "Apache Sling Job Index Thread");
+        t.setDaemon(true);
+        t.start();
+
+        this.addFullScan();
+    }
+
+    /**
+     * Add a task/runnable to the queue
+     */
+    private void addTask(final Runnable r) {
+        try {
+            this.queue.put(r);
+        } catch (final InterruptedException e) {
+            this.ignoreException(e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Add a full scan to the task queue
+     */
+    private void addFullScan() {
+        if ( this.configuration.getJobIndexMaxSize() > 0 && this.isScanPending.compareAndSet(false, true) ) {
+            this.addTask(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        scan();
+                    } finally {
+                        isScanPending.set(false);
+                    }
+                }
+            });
+        }
+    }
+
+    public void deactivate() {
+        this.isRunning.set(false);
+        this.isReady.set(false);
+        this.queue.clear();
+        // put a NOP runnable to wake up the queue
+        this.addTask(new Runnable() {
+            @Override
+            public  void run() {
+                // do nothing
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while ( this.isRunning.get() ) {
+            Runnable r = null;
+            try {
+                r = this.queue.take();
+            } catch (final InterruptedException e) {
+                this.ignoreException(e);
+                Thread.currentThread().interrupt();
+                this.isRunning.set(false);
+            }
+            if ( this.isRunning.get() && r != null) {
+                try {
+                    r.run();
+                } catch (final RuntimeException re) {
+                    logger.warn("Dropping job index due to exception.", re);
+                    this.drop();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuild the index if it has been dropped.
+     * This method is invoked periodically by the job manager.
+     */
+    public void maintenance() {
+        if ( !this.isReady.get() ) {
+            this.addFullScan();
+        }
+    }
+
+    /**
+     * Clear the index and mark it as not usable.
+     */
+    private void drop() {
+        this.isReady.set(false);
+        this.jobsByPath.clear();
+        this.jobsById.clear();
+    }
+
+    /**
+     * Check whether the path belongs to an unfinished job or one of its folders.
+     */
+    private boolean isIndexedPath(final String path) {
+        return path.startsWith(this.configuration.getAssginedJobsPath() + '/')
+            || path.startsWith(this.configuration.getUnassignedJobsPath() + '/');
+    }
+
+    private void scan() {
+        this.drop();
+        final ResourceResolver resolver = configuration.createResourceResolver();
+        if ( resolver != null ) {
+            try {
+                logger.debug("Scanning for jobs...");
+                boolean complete = true;
+                final Resource assignedResource = resolver.getResource(this.configuration.getAssginedJobsPath());
+                if ( assignedResource != null ) {
+                    final Iterator<Resource> instanceIter = assignedResource.listChildren();
+                    while ( complete && instanceIter.hasNext() ) {
+                        complete = this.scanTopics(instanceIter.next());
+                    }
+                }
+                if ( complete ) {
+                    final Resource unassignedResource = resolver.getResource(this.configuration.getUnassignedJobsPath());
+                    if ( unassignedResource != null ) {
+                        complete = this.scanTopics(unassignedResource);
+                    }
+                }
+                if ( complete && this.isRunning.get() ) {
+                    this.isReady.set(true);
+                    logger.debug("Finished scanning for jobs, indexed {} jobs", this.jobsByPath.size());
+                } else {
+                    this.drop();
+                    logger.debug("Job index not available, too many jobs");
+                }
+            } finally {
+                resolver.close();
+            }
+        }
+    }
+
+    /**
+     * Index all jobs below the topic resources.
+     * @return {@code false} if the index is full.
+     */
+    private boolean scanTopics(final Resource parent) {
+        final AtomicBoolean complete = new AtomicBoolean(true);
+        final Iterator<Resource> topicIter = parent.listChildren();
+        while ( complete.get() && topicIter.hasNext() ) {
+            JobTopicTraverser.traverse(logger, topicIter.next(), new JobTopicTraverser.JobCallback() {
+
+                @Override
+                public boolean handle(final JobImpl job) {
+                    if ( !put(job) ) {
+                        complete.set(false);
+                    }
+                    return complete.get() && isRunning.get();
+                }
+            });
+        }
+        return complete.get();
+    }
+
+    /**
+     * Add or update a job.
+     * @return {@code false} if the index is full.
+     */
+    private boolean put(final JobImpl job) {
+        final JobImpl old = this.jobsByPath.put(job.getResourcePath(), job);
+        if ( old != null && !old.getId().equals(job.getId()) ) {
+            this.jobsById.remove(old.getId(), old);
+        }
+        this.jobsById.put(job.getId(), job);
+        return this.jobsByPath.size() <= this.configuration.getJobIndexMaxSize();
+    }
+
+    /**
+     * Remove the job at the path and all jobs below it.
+     */
+    private void remove(final String path) {
+        final List<JobImpl> removed = new ArrayList<JobImpl>();
+        final JobImpl job = this.jobsByPath.remove(path);
+        if ( job != null ) {
+            removed.add(job);
+        }
+        // '0' is the character following '/'
+        final Map<String, JobImpl> children = this.jobsByPath.subMap(path + '/', path + '0');
+        removed.addAll(children.values());
+        children.clear();
+        for(final JobImpl j : removed) {
+            this.jobsById.remove(j.getId(), j);
+        }
+    }
+
+    /**
+     * Index all jobs at or below the resource.
+     * @return {@code false} if the index is full.
+     */
+    private boolean addAll(final Resource rsrc) {
+        if ( rsrc.isResourceType(ResourceHelper.RESOURCE_TYPE_JOB) ) {
+            final JobImpl job = Utility.readJob(logger, rsrc);
+            return job == null || this.put(job);
+        }
+        for(final Resource child : rsrc.getChildren()) {
+            if ( !this.addAll(child) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Handle a resource event.
+     * @param event The resource event
+     */
+    public void handleEvent(final Event event) {
+        final String path = (String)event.getProperty(SlingConstants.PROPERTY_PATH);
+        if ( path == null || !this.isIndexedPath(path) ) {
+            return;
+        }
+        if ( !this.isReady.get() && !this.isScanPending.get() ) {
+            return;
+        }
+        final boolean isRemove = SlingConstants.TOPIC_RESOURCE_REMOVED.equals(event.getTopic());
+        final boolean isAdd = SlingConstants.TOPIC_RESOURCE_ADDED.equals(event.getTopic());
+        this.addTask(new Runnable() {
+            @Override
+            public void run() {
+                if ( !isReady.get() ) {
+                    return;
+                }
+                if ( isRemove ) {
+                    remove(path);
+                    return;
+                }
+                final ResourceResolver resolver = configuration.createResourceResolver();
+                if ( resolver != null ) {
+                    try {
+                        final Resource rsrc = resolver.getResource(path);
+                        final boolean complete;
+                        if ( rsrc == null ) {
+                            remove(path);
+                            complete = true;
+                        } else if ( isAdd || rsrc.isResourceType(ResourceHelper.RESOURCE_TYPE_JOB) ) {
+                            // an added folder might be a moved tree of jobs
+                            complete = addAll(rsrc);
+                        } else {
+                            complete = true;
+                        }
+                        if ( !complete ) {
+                            logger.debug("Dropping job index, too many jobs");
+                            drop();
+                        }
+                    } finally {
+                        resolver.close();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Get a job by id.
+     * @param id The job id
+     * @return A copy of the job or {@code null} if it is not an unfinished job
+     *         or the index is not available.
+     */
+    public JobImpl getJobById(final String id) {
+        if ( this.isReady.get() ) {
+            final JobImpl job = this.jobsById.get(id);
+            if ( job != null ) {
+                return copy(job);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find unfinished jobs.
+     * @see org.apache.sling.event.jobs.JobManager#findJobs(QueryType, String, long, Map...)
+     * @return The jobs or {@code null} if the index is not available or the type is a history type.
+     */
+    public List<Job> findJobs(final QueryType type,
+            final String topic,
+            final long limit,
+            final Map<String, Object>... templates) {
+        if ( !this.isReady.get()
+             || (type != QueryType.ALL && type != QueryType.ACTIVE && type != QueryType.QUEUED) ) {
+            return null;
+        }
+        final List<JobImpl> matches = new ArrayList<JobImpl>();
+        for(final JobImpl job : this.jobsByPath.values()) {
+            if ( topic != null && !topic.equals(job.getTopic()) ) {
+                continue;
+            }
+            if ( job.getProperty(JobImpl.PROPERTY_FINISHED_STATE) != null ) {
+                continue;
+            }
+            final boolean isStarted = job.getProperty(Job.PROPERTY_JOB_STARTED_TIME) != null;
+            if ( (type == QueryType.ACTIVE && !isStarted) || (type == QueryType.QUEUED && isStarted) ) {
+                continue;
+            }
+            if ( matches(job, templates) ) {
+                matches.add(job);
+            }
+        }
+        Collections.sort(matches);
+
+        final List<Job> result = new ArrayList<Job>();
+        for(final JobImpl job : matches) {
+            if ( limit > 0 && result.size() >= limit ) {
+                break;
+            }
+            result.add(copy(job));
+        }
+        return result;
+    }
+
+    /**
+     * Create a snapshot of the job which can be handed out.
+     */
+    private static JobImpl copy(final JobImpl job) {
+        final Map<String, Object> props = new HashMap<String, Object>(job.getProperties());
+        props.put(JobImpl.PROPERTY_RESOURCE_PATH, job.getResourcePath());
+        return new JobImpl(job.getTopic(), job.getId(), props);
+    }
+
+    private enum Operation {
+        LESS,
+        LESS_OR_EQUALS,
+        EQUALS,
+        GREATER_OR_EQUALS,
+        GREATER
+    }
+
+    /**
+     * Check if the job matches at least one template (OR), a template
+     * matches if all of its properties match (AND).
+     */
+    private static boolean matches(final JobImpl job, final Map<String, Object>... templates) {
+        if ( templates == null ) {
+            return true;
+        }
+        boolean hasTemplate = false;
+        for(final Map<String, Object> template : templates) {
+            // skip empty templates
+            if ( template == null || template.size() == 0 ) {
+                continue;
+            }
+            hasTemplate = true;
+            boolean result = true;
+            for(final Map.Entry<String, Object> current : template.entrySet()) {
+                final String key = current.getKey();
+                final char firstChar = key.length() > 0 ? key.charAt(0) : 0;
+                final char secondChar = key.length() > 1 ? key.charAt(1) : 0;
+                final String propName;
+                final Operation op;
+                if ( firstChar == '=' ) {
+                    propName = key.substring(1);
+                    op = Operation.EQUALS;
+                } else if ( firstChar == '<' ) {
+                    op = (secondChar == '=' ? Operation.LESS_OR_EQUALS : Operation.LESS);
+                    propName = key.substring(secondChar == '=' ? 2 : 1);
+                } else if ( firstChar == '>' ) {
+                    op = (secondChar == '=' ? Operation.GREATER_OR_EQUALS : Operation.GREATER);
+                    propName = key.substring(secondChar == '=' ? 2 : 1);
+                } else {
+                    propName = key;
+                    op = Operation.EQUALS;
+                }
+                if ( !matches(job.getProperty(propName), op, current.getValue()) ) {
+                    result = false;
+                    break;
+                }
+            }
+            if ( result ) {
+                return true;
+            }
+        }
+        return !hasTemplate;
+    }
+
+    /**
+     * Compare a job property with a template value.
+     * Multi value properties match if any of the values matches.
+     */
+    private static boolean matches(final Object value, final Operation op, final Object templateValue) {
+        if ( value == null || templateValue == null ) {
+            return false;
+        }
+        if ( value.getClass().isArray() ) {
+            for(int i=0; i<Array.getLength(value); i++) {
+                if ( matches(Array.get(value, i), op, templateValue) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        final int result;
+        try {
+            result = compare(value, templateValue);
+        } catch ( final IllegalArgumentException iae ) {
+            return false;
+        }
+        switch ( op ) {
+            case LESS : return result < 0;
+            case LESS_OR_EQUALS : return result <= 0;
+            case GREATER : return result > 0;
+            case GREATER_OR_EQUALS : return result >= 0;
+            default : return result == 0;
+        }
+    }
+
+    /**
+     * Compare a property value with a template value, based on the type of the property value.
+     * @throws IllegalArgumentException If the template value can't be converted
+     */
+    private static int compare(final Object value, final Object templateValue) {
+        if ( value instanceof Calendar ) {
+            final long time = ((Calendar)value).getTimeInMillis();
+            final long templateTime;
+            if ( templateValue instanceof Calendar ) {
+                templateTime = ((Calendar)templateValue).getTimeInMillis();
+            } else if ( templateValue instanceof Date ) {
+                templateTime = ((Date)templateValue).getTime();
+            } else {
+                final Calendar c = ISO8601.parse(templateValue.toString());
+                if ( c == null ) {
+                    throw new IllegalArgumentException();
+                }
+                templateTime = c.getTimeInMillis();
+            }
+            return time < templateTime ? -1 : (time == templateTime ? 0 : 1);
+        }
+        if ( value instanceof Number ) {
+            try {
+                return Double.compare(((Number)value).doubleValue(), Double.parseDouble(templateValue.toString()));
+            } catch ( final NumberFormatException nfe ) {
+                throw new IllegalArgumentException(nfe);
+            }
+        }
+        return value.toString().compareTo(templateValue.toString());
+    }
+
+    /**
+     * Helper method which just logs the exception in debug mode.
+     * @param e
+     */
+    private void ignoreException(final Exception e) {
+        if ( this.logger.isDebugEnabled() ) {
+            this.logger.debug("Ignored exception " + e.getMessage(), e);
+        }
+    }
+}
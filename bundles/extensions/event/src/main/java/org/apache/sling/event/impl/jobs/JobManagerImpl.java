@@ -122,6 +122,12 @@ public class JobManagerImpl
     /** Job Scheduler. */
     private org.apache.sling.event.impl.jobs.scheduling.JobSchedulerImpl jobScheduler;
 
+    /** Groups concurrently added jobs into a single commit. */
+    private JobBatchWriter jobWriter;
+
+    /** In memory index of unfinished jobs. */
+    private JobIndex jobIndex;
+
     /**
      * Activate this component.
      * @param props Configuration properties
@@ -130,6 +136,19 @@ public class JobManagerImpl
     protected void activate(final Map<String, Object> props) throws LoginException {
         this.jobScheduler = new org.apache.sling.event.impl.jobs.scheduling.JobSchedulerImpl(this.configuration, this.scheduler, this);
         this.maintenanceTask = new CleanUpTask(this.configuration, this.jobScheduler);
+        this.jobIndex = new JobIndex(this.configuration);
+        this.jobWriter = new JobBatchWriter(this.configuration, new JobBatchWriter.Writer() {
+
+            @Override
+            public JobImpl write(final ResourceResolver resolver,
+                    final String jobTopic,
+                    final Map<String, Object> jobProperties,
+                    final QueueInfo info,
+                    final boolean autoCommit)
+            throws PersistenceException {
+                return writeJob(resolver, jobTopic, jobProperties, info, autoCommit);
+            }
+        });
 
         logger.info("Apache Sling Job Manager started on instance {}", Environment.APPLICATION_ID);
     }
@@ -142,6 +161,7 @@ public class JobManagerImpl
         logger.debug("Apache Sling Job Manager stopping on instance {}", Environment.APPLICATION_ID);
 
         this.jobScheduler.deactivate();
+        this.jobIndex.deactivate();
 
         this.maintenanceTask = null;
         logger.info("Apache Sling Job Manager stopped on instance {}", Environment.APPLICATION_ID);
@@ -159,6 +179,7 @@ public class JobManagerImpl
         if ( task != null ) {
             task.run();
         }
+        this.jobIndex.maintenance();
     }
 
     /**
@@ -167,6 +188,7 @@ public class JobManagerImpl
     @Override
     public void handleEvent(final Event event) {
         this.jobScheduler.handleEvent(event);
+        this.jobIndex.handleEvent(event);
     }
 
     /**
@@ -211,7 +233,7 @@ public class JobManagerImpl
     private boolean internalRemoveJobById(final String jobId, final boolean forceRemove) {
         logger.debug("Trying to remove job {}", jobId);
         boolean result = true;
-        JobImpl job = (JobImpl)this.getJobById(jobId);
+        JobImpl job = this.readJobById(jobId);
         if ( job != null ) {
             if ( logger.isDebugEnabled() ) {
                 logger.debug("Found removal job: {}", Utility.toString(job));
@@ -273,6 +295,20 @@ public class JobManagerImpl
     @Override
     public Job getJobById(final String id) {
         logger.debug("Getting job by id: {}", id);
+        final JobImpl indexedJob = this.jobIndex.getJobById(id);
+        if ( indexedJob != null ) {
+            return indexedJob;
+        }
+        return this.readJobById(id);
+    }
+
+    /**
+     * Read the job with the id from the repository.
+     * The job index is not used, as it might return an outdated
+     * copy of the job, so all operations changing a job have to
+     * use this method.
+     */
+    private JobImpl readJobById(final String id) {
         final ResourceResolver resolver = this.configuration.createResourceResolver();
         final StringBuilder buf = new StringBuilder(64);
         try {
@@ -354,6 +390,10 @@ public class JobManagerImpl
             final String topic,
             final long limit,
             final Map<String, Object>... templates) {
+        final List<Job> indexedJobs = this.jobIndex.findJobs(type, topic, limit, templates);
+        if ( indexedJobs != null ) {
+            return indexedJobs;
+        }
         final boolean isHistoryQuery = type == QueryType.HISTORY
                                        || type == QueryType.SUCCEEDED
                                        || type == QueryType.CANCELLED
@@ -542,10 +582,8 @@ public class JobManagerImpl
                 logger.debug("Persisting job {} into queue {}", Utility.toString(jobTopic, jobProperties), info.queueName);
             }
         }
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
         try {
-            final JobImpl job = this.writeJob(resolver,
-                    jobTopic,
+            final JobImpl job = this.jobWriter.write(jobTopic,
                     jobProperties,
                     info);
             if ( info.targetId != null ) {
@@ -559,8 +597,6 @@ public class JobManagerImpl
         } catch (final PersistenceException re ) {
             // something went wrong, so let's log it
             this.logger.error("Exception during persisting new job '" + Utility.toString(jobTopic, jobProperties) + "'", re);
-        } finally {
-            resolver.close();
         }
         if ( errors != null ) {
             errors.add("Unable to persist new job.");
@@ -574,12 +610,14 @@ public class JobManagerImpl
      * @param resolver The resolver resolver
      * @param event The event
      * @param info The queue information (queue name etc.)
+     * @param autoCommit Whether the job is committed immediately
      * @throws PersistenceException
      */
     private JobImpl writeJob(final ResourceResolver resolver,
             final String jobTopic,
             final Map<String, Object> jobProperties,
-            final QueueInfo info)
+            final QueueInfo info,
+            final boolean autoCommit)
     throws PersistenceException {
         final String jobId = this.configuration.getUniqueId(jobTopic);
         final String path = this.configuration.getUniquePath(info.targetId, jobTopic, jobId, jobProperties);
@@ -616,9 +654,15 @@ public class JobManagerImpl
         if ( logger.isDebugEnabled() ) {
             logger.debug("Storing new job {} at {}", Utility.toString(jobTopic, properties), path);
         }
-        ResourceHelper.getOrCreateResource(resolver,
-                path,
-                properties);
+        if ( autoCommit ) {
+            ResourceHelper.getOrCreateResource(resolver,
+                    path,
+                    properties);
+        } else {
+            ResourceHelper.getOrCreateResourceNoCommit(resolver,
+                    path,
+                    properties);
+        }
 
         // update property types - priority, add path and create job
         properties.put(JobImpl.PROPERTY_RESOURCE_PATH, path);
@@ -634,7 +678,7 @@ public class JobManagerImpl
     }
 
     private void stopJobById(final String jobId, final boolean forward) {
-        final JobImpl job = (JobImpl)this.getJobById(jobId);
+        final JobImpl job = this.readJobById(jobId);
         if ( job != null && !this.configuration.isStoragePath(job.getResourcePath()) ) {
             // get the queue configuration
             final QueueInfo queueInfo = this.configuration.getQueueConfigurationManager().getQueueInfo(job.getTopic());
@@ -721,7 +765,7 @@ public class JobManagerImpl
      */
     @Override
     public Job retryJobById(final String jobId) {
-        final JobImpl job = (JobImpl)this.getJobById(jobId);
+        final JobImpl job = this.readJobById(jobId);
         if ( job != null && this.configuration.isStoragePath(job.getResourcePath()) ) {
             this.internalRemoveJobById(jobId, true);
             return this.addJob(job.getTopic(), job.getProperties());
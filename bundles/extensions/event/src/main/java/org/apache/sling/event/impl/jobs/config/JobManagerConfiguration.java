@@ -80,6 +80,26 @@ import org.slf4j.LoggerFactory;
               value=JobManagerConfiguration.DEFAULT_SCHEDULED_JOBS_PATH, propertyPrivate=true),
     @Property(name=JobManagerConfiguration.PROPERTY_BACKGROUND_LOAD_DELAY,
               longValue=JobManagerConfiguration.DEFAULT_BACKGROUND_LOAD_DELAY, propertyPrivate=true),
+    @Property(name=JobManagerConfiguration.PROPERTY_QUEUE_PRELOAD_LIMIT,
+              intValue=JobManagerConfiguration.DEFAULT_QUEUE_PRELOAD_LIMIT,
+              label="Queue Preload Limit",
+              description="The maximum number of jobs a queue loads per topic from the repository in one batch. "
+                        + "A new batch is fetched in the background once half of the cached jobs are started."),
+    @Property(name=JobManagerConfiguration.PROPERTY_ADD_BATCH_SIZE,
+              intValue=JobManagerConfiguration.DEFAULT_ADD_BATCH_SIZE,
+              label="Job Add Batch Size",
+              description="The maximum number of concurrently added jobs which are persisted with a single commit. "
+                        + "A value of 1 commits each job on its own."),
+    @Property(name=JobManagerConfiguration.PROPERTY_ADD_BATCH_LATENCY,
+              longValue=JobManagerConfiguration.DEFAULT_ADD_BATCH_LATENCY,
+              label="Job Add Batch Latency",
+              description="The time in milliseconds a batch of added jobs waits for more jobs before it is committed. "
+                        + "With 0, jobs arriving while a commit is in progress are still grouped into the next commit."),
+    @Property(name=JobManagerConfiguration.PROPERTY_JOB_INDEX_MAX_SIZE,
+              intValue=JobManagerConfiguration.DEFAULT_JOB_INDEX_MAX_SIZE,
+              label="Job Index Size",
+              description="The maximum number of unfinished jobs held in memory to answer job lookups without "
+                        + "repository queries. If there are more jobs, queries are used. A value of 0 disables the index."),
 })
 public class JobManagerConfiguration implements TopologyEventListener {
 
@@ -122,6 +142,30 @@ public class JobManagerConfiguration implements TopologyEventListener {
     /** Default value for deprecation warnings. */
     public static final boolean DEFAULT_LOG_DEPRECATION_WARNINGS = true;
 
+    /** Configuration property for the number of jobs a queue loads per topic in one batch. */
+    public static final String PROPERTY_QUEUE_PRELOAD_LIMIT = "job.queue.preload.limit";
+
+    /** Default value for the queue preload limit. */
+    public static final int DEFAULT_QUEUE_PRELOAD_LIMIT = 10;
+
+    /** Configuration property for the maximum number of added jobs persisted in one commit. */
+    public static final String PROPERTY_ADD_BATCH_SIZE = "job.add.batch.size";
+
+    /** Default value for the add batch size. */
+    public static final int DEFAULT_ADD_BATCH_SIZE = 50;
+
+    /** Configuration property for the time a batch of added jobs waits for more jobs. (in ms) */
+    public static final String PROPERTY_ADD_BATCH_LATENCY = "job.add.batch.latency";
+
+    /** Default value for the add batch latency. */
+    public static final long DEFAULT_ADD_BATCH_LATENCY = 0;
+
+    /** Configuration property for the maximum number of jobs in the in-memory job index. */
+    public static final String PROPERTY_JOB_INDEX_MAX_SIZE = "job.index.max.size";
+
+    /** Default value for the job index size. */
+    public static final int DEFAULT_JOB_INDEX_MAX_SIZE = 10000;
+
     /** The jobs base path with a slash. */
     private String jobsBasePathWithSlash;
 
@@ -151,6 +195,14 @@ public class JobManagerConfiguration implements TopologyEventListener {
 
     private volatile boolean disabledDistribution;
 
+    private volatile int queuePreloadLimit = DEFAULT_QUEUE_PRELOAD_LIMIT;
+
+    private volatile int addBatchSize = DEFAULT_ADD_BATCH_SIZE;
+
+    private volatile long addBatchLatency = DEFAULT_ADD_BATCH_LATENCY;
+
+    private volatile int jobIndexMaxSize = DEFAULT_JOB_INDEX_MAX_SIZE;
+
     private String storedCancelledJobsPath;
 
     private String storedSuccessfulJobsPath;
@@ -238,6 +290,10 @@ public class JobManagerConfiguration implements TopologyEventListener {
     protected void update(final Map<String, Object> props) {
         this.disabledDistribution = PropertiesUtil.toBoolean(props.get(PROPERTY_DISABLE_DISTRIBUTION), DEFAULT_DISABLE_DISTRIBUTION);
         this.backgroundLoadDelay = PropertiesUtil.toLong(props.get(PROPERTY_BACKGROUND_LOAD_DELAY), DEFAULT_BACKGROUND_LOAD_DELAY);
+        this.queuePreloadLimit = Math.max(1, PropertiesUtil.toInteger(props.get(PROPERTY_QUEUE_PRELOAD_LIMIT), DEFAULT_QUEUE_PRELOAD_LIMIT));
+        this.addBatchSize = Math.max(1, PropertiesUtil.toInteger(props.get(PROPERTY_ADD_BATCH_SIZE), DEFAULT_ADD_BATCH_SIZE));
+        this.addBatchLatency = Math.max(0, PropertiesUtil.toLong(props.get(PROPERTY_ADD_BATCH_LATENCY), DEFAULT_ADD_BATCH_LATENCY));
+        this.jobIndexMaxSize = Math.max(0, PropertiesUtil.toInteger(props.get(PROPERTY_JOB_INDEX_MAX_SIZE), DEFAULT_JOB_INDEX_MAX_SIZE));
         Utility.LOG_DEPRECATION_WARNINGS = PropertiesUtil.toBoolean(props.get(PROPERTY_LOG_DEPRECATION_WARNINGS), DEFAULT_LOG_DEPRECATION_WARNINGS);
     }
 
@@ -401,6 +457,38 @@ public class JobManagerConfiguration implements TopologyEventListener {
         return this.disabledDistribution;
     }
 
+    /**
+     * The maximum number of jobs a queue loads per topic in one batch.
+     * @return The preload limit, at least one.
+     */
+    public int getQueuePreloadLimit() {
+        return this.queuePreloadLimit;
+    }
+
+    /**
+     * The maximum number of added jobs which are persisted with a single commit.
+     * @return The batch size, at least one.
+     */
+    public int getAddBatchSize() {
+        return this.addBatchSize;
+    }
+
+    /**
+     * The time a batch of added jobs waits for more jobs before it is committed.
+     * @return The latency in milliseconds.
+     */
+    public long getAddBatchLatency() {
+        return this.addBatchLatency;
+    }
+
+    /**
+     * The maximum number of unfinished jobs held in the in-memory job index.
+     * @return The maximum size, 0 if the index is disabled.
+     */
+    public int getJobIndexMaxSize() {
+        return this.jobIndexMaxSize;
+    }
+
     public String getStoredCancelledJobsPath() {
         return this.storedCancelledJobsPath;
     }
@@ -17,20 +17,30 @@
  */
 package org.apache.sling.event.impl.jobs.jmx;
 
+import org.apache.sling.event.impl.jobs.queues.JobQueueImpl;
+import org.apache.sling.event.impl.jobs.queues.QueueJobCache;
 import org.apache.sling.event.jobs.Queue;
 import org.apache.sling.event.jobs.Statistics;
 
 /**
  * An MBean that provides statistics from
  */
-public class QueueMBeanImpl extends AbstractJobStatistics {
+public class QueueMBeanImpl extends AbstractJobStatistics implements QueueStatisticsMBean {
 
     private final String name;
 
     private final Statistics statistics;
 
+    private final QueueJobCache cache;
+
     public QueueMBeanImpl(Queue queue) {
+        super(QueueStatisticsMBean.class);
         this.name = queue.getName();
+        if (queue instanceof JobQueueImpl) {
+            this.cache = ((JobQueueImpl) queue).getJobCache();
+        } else {
+            this.cache = null;
+        }
         if (queue instanceof Statistics) {
             this.statistics = (Statistics) queue;
         } else {
@@ -47,4 +57,35 @@ public class QueueMBeanImpl extends AbstractJobStatistics {
     public String getName() {
         return name;
     }
+
+    @Override
+    public long getAverageJobFetchTime() {
+        return cache == null ? 0 : cache.getAverageJobFetchTime();
+    }
+
+    @Override
+    public long getNumberOfJobLoads() {
+        return cache == null ? 0 : cache.getNumberOfJobLoads();
+    }
+
+    @Override
+    public long getNumberOfLoadedJobs() {
+        return cache == null ? 0 : cache.getNumberOfLoadedJobs();
+    }
+
+    @Override
+    public long getNumberOfJobReads() {
+        return cache == null ? 0 : cache.getNumberOfJobReads();
+    }
+
+    @Override
+    public double getJobReadsPerLoadedJob() {
+        final long loaded = getNumberOfLoadedJobs();
+        return loaded == 0 ? 0 : (double) getNumberOfJobReads() / loaded;
+    }
+
+    @Override
+    public long getNumberOfCachedJobs() {
+        return cache == null ? 0 : cache.getNumberOfCachedJobs();
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The SF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.sling.event.impl.jobs.jmx;
+
+import org.apache.sling.event.jobs.jmx.StatisticsMBean;
+
+/**
+ * The statistics of a single queue, including the statistics of its job cache.
+ */
+public interface QueueStatisticsMBean extends StatisticsMBean {
+
+    /**
+     * @return the average time in microseconds it took to get the next job
+     *         from the job cache, including repository loads.
+     */
+    long getAverageJobFetchTime();
+
+    /**
+     * @return the number of times the job cache loaded jobs from the repository.
+     */
+    long getNumberOfJobLoads();
+
+    /**
+     * @return the number of jobs the job cache loaded from the repository.
+     */
+    long getNumberOfLoadedJobs();
+
+    /**
+     * @return the number of job resources read from the repository.
+     */
+    long getNumberOfJobReads();
+
+    /**
+     * @return the number of job resources read from the repository per loaded job.
+     */
+    double getJobReadsPerLoadedJob();
+
+    /**
+     * @return the number of jobs currently held in the job cache.
+     */
+    long getNumberOfCachedJobs();
+}
@@ -102,6 +102,17 @@ public class JobQueueImpl
     /** The job cache. */
     private final QueueJobCache cache;
 
+    /** Start jobs once the cache has prefetched new ones. */
+    private final Runnable prefetchCallback = new Runnable() {
+
+        @Override
+        public void run() {
+            if ( running ) {
+                startJobs();
+            }
+        }
+    };
+
     /** Semaphore for handling the max number of jobs. */
     private final Semaphore available;
 
@@ -163,6 +174,14 @@ public class JobQueueImpl
         logger.debug("Configuration for job queue={}", configuration);
     }
 
+    /**
+     * The job cache of this queue.
+     * @return The job cache
+     */
+    public QueueJobCache getJobCache() {
+        return this.cache;
+    }
+
     /**
      * Return the queue configuration
      */
@@ -233,6 +252,7 @@ public class JobQueueImpl
                                 startJobs();
                             }
                         });
+                        this.cache.prefetch(this.queueName, this.services.statisticsManager, this.prefetchCallback);
                     } else {
                         // no job available, stop look
                         break;
@@ -20,13 +20,17 @@ package org.apache.sling.event.impl.jobs.queues;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -47,6 +51,12 @@ import org.slf4j.LoggerFactory;
 /**
  * The queue job cache caches jobs per queue based on the topics the queue is actively
  * processing.
+ *
+ * The cached jobs are kept in a concurrent sorted set, ordered either by the
+ * jobs themselves (ordered and unordered queues) or by the sequence in which
+ * they were added (topic round robin). Once the cache runs low, the next batch
+ * of jobs is fetched in the background by {@link #prefetch(String, StatisticsManager, Runnable)},
+ * so starting a job does not have to wait for the repository.
  */
 public class QueueJobCache {
 
@@ -54,7 +64,7 @@ public class QueueJobCache {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     /** The maximum of pre loaded jobs for a topic. */
-    private final int maxPreloadLimit = 10;
+    private final int maxPreloadLimit;
 
     /** The job manager configuration. */
     private final JobManagerConfiguration configuration;
@@ -66,7 +76,34 @@ public class QueueJobCache {
     private final Set<String> topicsWithNewJobs = new HashSet<String>();
 
     /** The cache of current objects. */
-    private final List<JobImpl> cache = new ArrayList<JobImpl>();
+    private final ConcurrentSkipListSet<CachedJob> cache;
+
+    /** The ids of all jobs in the cache. */
+    private final Set<String> cachedJobIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** Sequence for adding jobs to the end of the cache. */
+    private final AtomicLong lastSequence = new AtomicLong();
+
+    /**
+     * Taking jobs from the cache and merging loaded jobs into the cache is done
+     * under this lock. Loading and starting jobs happen outside of it.
+     */
+    private final Object dispatchLock = new Object();
+
+    /** Counter for dispatched jobs. */
+    private long dispatchCounter;
+
+    /** The number of loads currently reading from the repository. */
+    private int runningLoads;
+
+    /** Jobs dispatched while a load is running, mapped to their dispatch counter. */
+    private final Map<String, Long> dispatchedJobs = new ConcurrentHashMap<String, Long>();
+
+    /** Jobs taken from the cache which are currently started - guarded by the dispatch lock. */
+    private final Set<String> dispatchingJobs = new HashSet<String>();
+
+    /** Guard for the background prefetch. */
+    private final AtomicBoolean prefetching = new AtomicBoolean(false);
 
     /** The queue type. */
     private final QueueConfiguration.Type queueType;
@@ -74,6 +111,21 @@ public class QueueJobCache {
     /** Block the cache - for ordered queues only. */
     private final AtomicBoolean queueIsBlocked = new AtomicBoolean(false);
 
+    /** Number of jobs handed out by {@link #getNextJob(JobConsumerManager, StatisticsManager, Queue, boolean)}. */
+    private final AtomicLong fetchCount = new AtomicLong();
+
+    /** Accumulated time spent in {@link #getNextJob(JobConsumerManager, StatisticsManager, Queue, boolean)} in nanoseconds. */
+    private final AtomicLong fetchTime = new AtomicLong();
+
+    /** Number of loads from the repository. */
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /** Number of job resources read from the repository. */
+    private final AtomicLong readCount = new AtomicLong();
+
+    /** Number of jobs added to the cache by loading. */
+    private final AtomicLong loadedCount = new AtomicLong();
+
     /**
      * Create a new queue job cache
      * @param configuration Current job manager configuration
@@ -86,8 +138,14 @@ public class QueueJobCache {
             final QueueConfiguration.Type queueType,
             final Set<String> topics) {
         this.configuration = configuration;
+        this.maxPreloadLimit = configuration.getQueuePreloadLimit();
         this.queueType = queueType;
         this.topics = new ConcurrentSkipListSet<String>(topics);
+        if ( queueType == Type.ORDERED || queueType == Type.UNORDERED ) {
+            this.cache = new ConcurrentSkipListSet<CachedJob>(JOB_ORDER);
+        } else {
+            this.cache = new ConcurrentSkipListSet<CachedJob>(SEQUENCE_ORDER);
+        }
         this.fillCache(queueName, statisticsManager);
     }
 
@@ -104,10 +162,7 @@ public class QueueJobCache {
      * @return {@code true} if there is any job outstanding.
      */
     public boolean isEmpty() {
-        boolean result = true;
-        synchronized ( this.cache ) {
-            result = this.cache.isEmpty();
-        }
+        boolean result = this.cache.isEmpty();
         if ( result ) {
             synchronized ( this.topicsWithNewJobs ) {
                 result = this.topicsWithNewJobs.isEmpty();
@@ -135,7 +190,8 @@ public class QueueJobCache {
     /**
      * Get the next job.
      * This method is potentially called concurrently, and
-     * {@link #reschedule(JobHandler)} and {@link #handleNewTopics(Set)}
+     * {@link #reschedule(String, JobHandler, StatisticsManager)}, {@link #handleNewTopics(Set)}
+     * and {@link #prefetch(String, StatisticsManager, Runnable)}
      * can be called concurrently.
      */
     public JobHandler getNextJob(final JobConsumerManager jobConsumerManager,
@@ -145,26 +201,27 @@ public class QueueJobCache {
         JobHandler handler = null;
 
         if ( !this.queueIsBlocked.get() ) {
-            synchronized ( this.cache ) {
-                boolean retry;
-                do {
-                    retry = false;
-                    if ( this.cache.isEmpty() ) {
-                        final Set<String> checkingTopics = new HashSet<String>();
-                        synchronized ( this.topicsWithNewJobs ) {
-                            checkingTopics.addAll(this.topicsWithNewJobs);
-                            this.topicsWithNewJobs.clear();
-                        }
-                        if ( doFull ) {
-                            checkingTopics.addAll(this.topics);
-                        }
-                        if ( !checkingTopics.isEmpty() ) {
-                            this.loadJobs(queue.getName(), checkingTopics, statisticsManager);
-                        }
+            final long startTime = System.nanoTime();
+            boolean retry;
+            do {
+                retry = false;
+                if ( this.cache.isEmpty() ) {
+                    final Set<String> checkingTopics = new HashSet<String>();
+                    synchronized ( this.topicsWithNewJobs ) {
+                        checkingTopics.addAll(this.topicsWithNewJobs);
+                        this.topicsWithNewJobs.clear();
+                    }
+                    if ( doFull ) {
+                        checkingTopics.addAll(this.topics);
+                    }
+                    if ( !checkingTopics.isEmpty() ) {
+                        this.loadJobs(queue.getName(), checkingTopics, statisticsManager);
                     }
+                }
 
-                    if ( !this.cache.isEmpty() ) {
-                        final JobImpl job = this.cache.remove(0);
+                final JobImpl job = this.takeFirstJob();
+                if ( job != null ) {
+                    try {
                         final JobExecutor consumer = jobConsumerManager.getExecutor(job.getTopic());
 
                         handler = new JobHandler(job, consumer, this.configuration);
@@ -185,56 +242,185 @@ public class QueueJobCache {
                             handler = null;
                             retry = true;
                         }
-
+                    } finally {
+                        this.finishDispatch(job);
                     }
-                } while ( handler == null && retry);
+                }
+            } while ( handler == null && retry);
+
+            if ( handler != null ) {
+                this.fetchCount.incrementAndGet();
+                this.fetchTime.addAndGet(System.nanoTime() - startTime);
             }
         }
         return handler;
     }
 
+    /**
+     * Take the first job from the cache. Until {@link #finishDispatch(JobImpl)}
+     * is called, loads do not add the job to the cache again.
+     * @return The job or {@code null} if the cache is empty.
+     */
+    private JobImpl takeFirstJob() {
+        synchronized ( this.dispatchLock ) {
+            final CachedJob entry = this.cache.pollFirst();
+            if ( entry == null ) {
+                return null;
+            }
+            this.cachedJobIds.remove(entry.job.getId());
+            this.dispatchingJobs.add(entry.job.getId());
+            return entry.job;
+        }
+    }
+
+    /**
+     * The job taken by {@link #takeFirstJob()} has been started, reassigned
+     * or discarded. Loads which might have read the job before its state
+     * was persisted skip it.
+     */
+    private void finishDispatch(final JobImpl job) {
+        synchronized ( this.dispatchLock ) {
+            this.dispatchingJobs.remove(job.getId());
+            if ( this.runningLoads > 0 ) {
+                this.dispatchedJobs.put(job.getId(), this.dispatchCounter);
+            }
+            this.dispatchCounter++;
+        }
+    }
+
+    /**
+     * Check whether the cache runs low and there are more jobs to load.
+     * @return {@code true} if a prefetch should be started.
+     */
+    private boolean needsPrefetch() {
+        if ( this.queueIsBlocked.get() || this.cache.size() > this.maxPreloadLimit / 2 ) {
+            return false;
+        }
+        synchronized ( this.topicsWithNewJobs ) {
+            return !this.topicsWithNewJobs.isEmpty();
+        }
+    }
+
+    /**
+     * Load the next batch of jobs in the background if the cache runs low.
+     * The jobs are loaded by a separate thread, so the threads of the queue
+     * are available for processing jobs. At most one prefetch is running
+     * at any time.
+     * @param queueName The queue name
+     * @param statisticsManager The statistics manager
+     * @param callback Optional callback invoked once jobs have been added to the cache.
+     */
+    public void prefetch(final String queueName,
+            final StatisticsManager statisticsManager,
+            final Runnable callback) {
+        if ( this.needsPrefetch() && this.prefetching.compareAndSet(false, true) ) {
+            final Runnable task = new Runnable() {
+
+                @Override
+                public void run() {
+                    int added = 0;
+                    try {
+                        final Set<String> checkingTopics = new HashSet<String>();
+                        synchronized ( topicsWithNewJobs ) {
+                            checkingTopics.addAll(topicsWithNewJobs);
+                            topicsWithNewJobs.clear();
+                        }
+                        if ( !checkingTopics.isEmpty() ) {
+                            logger.debug("Prefetching jobs for queue {}", queueName);
+                            added = loadJobs(queueName, checkingTopics, statisticsManager);
+                        }
+                    } finally {
+                        prefetching.set(false);
+                    }
+                    if ( added > 0 && callback != null ) {
+                        callback.run();
+                    }
+                }
+            };
+            try {
+                final Thread t = new Thread(task, "Apache Sling Job Queue Prefetch Thread " + queueName);
+                t.setDaemon(true);
+                t.start();
+            } catch (final RuntimeException re) {
+                this.prefetching.set(false);
+                logger.debug("Unable to start prefetching jobs for queue " + queueName, re);
+            }
+        }
+    }
+
     /**
      * Load the next N x numberOf(topics) jobs
      * @param checkingTopics The set of topics to check.
+     * @return The number of jobs added to the cache.
      */
-    private void loadJobs( final String queueName, final Set<String> checkingTopics,
+    private int loadJobs( final String queueName, final Set<String> checkingTopics,
             final StatisticsManager statisticsManager) {
         logger.debug("Starting jobs loading from {}...", checkingTopics);
 
-        final Map<String, List<JobImpl>> topicCache = new HashMap<String, List<JobImpl>>();
+        final long loadSequence;
+        synchronized ( this.dispatchLock ) {
+            loadSequence = this.dispatchCounter;
+            this.runningLoads++;
+        }
+        this.loadCount.incrementAndGet();
 
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
+        final Map<String, List<JobImpl>> topicCache = new LinkedHashMap<String, List<JobImpl>>();
+        int added = 0;
         try {
-            final Resource baseResource = resolver.getResource(this.configuration.getLocalJobsPath());
-            // sanity check - should never be null
-            if ( baseResource != null ) {
-                for(final String topic : checkingTopics) {
-
-                    final Resource topicResource = baseResource.getChild(topic.replace('/', '.'));
-                    if ( topicResource != null ) {
-                        topicCache.put(topic, loadJobs(queueName, topic, topicResource, statisticsManager));
+            final ResourceResolver resolver = this.configuration.createResourceResolver();
+            try {
+                final Resource baseResource = resolver.getResource(this.configuration.getLocalJobsPath());
+                // sanity check - should never be null
+                if ( baseResource != null ) {
+                    for(final String topic : checkingTopics) {
+
+                        final Resource topicResource = baseResource.getChild(topic.replace('/', '.'));
+                        if ( topicResource != null ) {
+                            topicCache.put(topic, loadJobs(topic, topicResource));
+                        }
                     }
                 }
+            } finally {
+                resolver.close();
             }
         } finally {
-            resolver.close();
+            synchronized ( this.dispatchLock ) {
+                added = orderTopics(queueName, topicCache, loadSequence, statisticsManager);
+                this.runningLoads--;
+                if ( this.runningLoads == 0 ) {
+                    this.dispatchedJobs.clear();
+                }
+            }
         }
-        orderTopics(topicCache);
+        this.loadedCount.addAndGet(added);
 
         logger.debug("Finished jobs loading {}", this.cache.size());
+        return added;
     }
 
     /**
      * Order the topics based on the queue type and put them in the cache.
+     * Jobs which are already cached or which have been dispatched since
+     * the load started are skipped.
+     * This method must be called while holding the dispatch lock.
      * @param topicCache The topic based cache
+     * @param loadSequence The dispatch counter at the start of the load
+     * @return The number of jobs added to the cache.
      */
-    private void orderTopics(final Map<String, List<JobImpl>> topicCache) {
+    private int orderTopics(final String queueName,
+            final Map<String, List<JobImpl>> topicCache,
+            final long loadSequence,
+            final StatisticsManager statisticsManager) {
+        int added = 0;
         if ( this.queueType == Type.ORDERED
              || this.queueType == Type.UNORDERED) {
             for(final List<JobImpl> list : topicCache.values()) {
-                this.cache.addAll(list);
+                for(final JobImpl job : list) {
+                    if ( this.addLoadedJob(queueName, job, loadSequence, statisticsManager) ) {
+                        added++;
+                    }
+                }
             }
-            Collections.sort(this.cache);
         } else {
             // topic round robin
             boolean done = true;
@@ -242,7 +428,9 @@ public class QueueJobCache {
                 done = true;
                 for(final Map.Entry<String, List<JobImpl>> entry : topicCache.entrySet()) {
                     if ( !entry.getValue().isEmpty() ) {
-                        this.cache.add(entry.getValue().remove(0));
+                        if ( this.addLoadedJob(queueName, entry.getValue().remove(0), loadSequence, statisticsManager) ) {
+                            added++;
+                        }
                         if ( !entry.getValue().isEmpty() ) {
                             done = false;
                         }
@@ -250,31 +438,56 @@ public class QueueJobCache {
                 }
             } while ( !done ) ;
         }
+        return added;
+    }
+
+    /**
+     * Add a loaded job to the end of the cache unless it is already cached,
+     * is currently dispatched or has been dispatched while it was loaded.
+     */
+    private boolean addLoadedJob(final String queueName,
+            final JobImpl job,
+            final long loadSequence,
+            final StatisticsManager statisticsManager) {
+        final Long dispatched = this.dispatchedJobs.get(job.getId());
+        if ( (dispatched != null && dispatched >= loadSequence)
+             || this.dispatchingJobs.contains(job.getId())
+             || !this.cachedJobIds.add(job.getId()) ) {
+            logger.debug("Ignoring already cached or dispatched job {}", job.getId());
+            return false;
+        }
+        this.cache.add(new CachedJob(job, this.lastSequence.incrementAndGet()));
+        statisticsManager.jobQueued(queueName, job.getTopic());
+        return true;
     }
 
     /**
      * Load the next N x numberOf(topics) jobs.
+     * Jobs which are already in the cache are skipped and do not count
+     * towards the preload limit.
      * @param topic The topic
      * @param topicResource The parent resource of the jobs
      * @return The cache which will be filled with the jobs.
      */
-    private List<JobImpl> loadJobs(final String queueName, final String topic,
-            final Resource topicResource,
-            final StatisticsManager statisticsManager) {
+    private List<JobImpl> loadJobs(final String topic,
+            final Resource topicResource) {
         logger.debug("Loading jobs from topic {}", topic);
         final List<JobImpl> list = new ArrayList<JobImpl>();
 
         final AtomicBoolean scanTopic = new AtomicBoolean(false);
+        final AtomicInteger reads = new AtomicInteger();
 
         JobTopicTraverser.traverse(logger, topicResource, new JobTopicTraverser.JobCallback() {
 
             @Override
             public boolean handle(final JobImpl job) {
+                reads.incrementAndGet();
                 if ( job.getProcessingStarted() == null && !job.hasReadErrors() ) {
-                    list.add(job);
-                    statisticsManager.jobQueued(queueName, topic);
-                    if ( list.size() == maxPreloadLimit ) {
-                        scanTopic.set(true);
+                    if ( !cachedJobIds.contains(job.getId()) ) {
+                        list.add(job);
+                        if ( list.size() == maxPreloadLimit ) {
+                            scanTopic.set(true);
+                        }
                     }
                 } else {
                     if ( job.hasReadErrors() ) {
@@ -285,6 +498,7 @@ public class QueueJobCache {
                 return list.size() < maxPreloadLimit;
             }
         });
+        this.readCount.addAndGet(reads.get());
         if ( scanTopic.get() ) {
             synchronized ( this.topicsWithNewJobs ) {
                 this.topicsWithNewJobs.add(topic);
@@ -313,15 +527,94 @@ public class QueueJobCache {
      * @param handler The job handler
      */
     public void reschedule(final String queueName, final JobHandler handler, final StatisticsManager statisticsManager) {
-        synchronized ( this.cache ) {
-            if ( handler.reschedule() ) {
-                if ( this.queueType == Type.ORDERED ) {
-                    this.cache.add(0, handler.getJob());
-                } else {
-                    this.cache.add(handler.getJob());
+        if ( handler.reschedule() ) {
+            final JobImpl job = handler.getJob();
+            synchronized ( this.dispatchLock ) {
+                // ordered and unordered queues sort the job by its creation
+                if ( this.cachedJobIds.add(job.getId()) ) {
+                    this.cache.add(new CachedJob(job, this.lastSequence.incrementAndGet()));
                 }
-                statisticsManager.jobQueued(queueName, handler.getJob().getTopic());
             }
+            statisticsManager.jobQueued(queueName, job.getTopic());
+        }
+    }
+
+    /**
+     * The average time it took to get the next job, including
+     * loading from the repository if the cache was empty.
+     * @return The average time in microseconds.
+     */
+    public long getAverageJobFetchTime() {
+        final long count = this.fetchCount.get();
+        return count == 0 ? 0 : this.fetchTime.get() / count / 1000;
+    }
+
+    /**
+     * The number of loads from the repository.
+     * @return The number of loads.
+     */
+    public long getNumberOfJobLoads() {
+        return this.loadCount.get();
+    }
+
+    /**
+     * The number of jobs added to the cache by loading from the repository.
+     * @return The number of loaded jobs.
+     */
+    public long getNumberOfLoadedJobs() {
+        return this.loadedCount.get();
+    }
+
+    /**
+     * The number of job resources read from the repository.
+     * @return The number of reads.
+     */
+    public long getNumberOfJobReads() {
+        return this.readCount.get();
+    }
+
+    /**
+     * The number of current jobs in the cache.
+     * @return The number of cached jobs.
+     */
+    public int getNumberOfCachedJobs() {
+        return this.cache.size();
+    }
+
+    /** Order by job, the sequence only separates equal jobs. */
+    private static final Comparator<CachedJob> JOB_ORDER = new Comparator<CachedJob>() {
+
+        @Override
+        public int compare(final CachedJob o1, final CachedJob o2) {
+            final int result = o1.job.compareTo(o2.job);
+            if ( result != 0 ) {
+                return result;
+            }
+            return SEQUENCE_ORDER.compare(o1, o2);
+        }
+    };
+
+    /** Order by the sequence in which jobs were added. */
+    private static final Comparator<CachedJob> SEQUENCE_ORDER = new Comparator<CachedJob>() {
+
+        @Override
+        public int compare(final CachedJob o1, final CachedJob o2) {
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    };
+
+    /**
+     * A job in the cache together with its position for round robin queues.
+     */
+    private static final class CachedJob {
+
+        public final JobImpl job;
+
+        public final long sequence;
+
+        public CachedJob(final JobImpl job, final long sequence) {
+            this.job = job;
+            this.sequence = sequence;
         }
     }
 }
@@ -277,6 +277,20 @@ public abstract class ResourceHelper {
                         true);
     }
 
+    /**
+     * Creates or gets the resource at the given path without committing.
+     * The caller is responsible for committing or reverting the resolver.
+     */
+    public static Resource getOrCreateResourceNoCommit(final ResourceResolver resolver,
+            final String path, final Map<String, Object> props)
+    throws PersistenceException {
+       return getOrCreateResource(resolver,
+                        path,
+                        props,
+                        ResourceHelper.RESOURCE_TYPE_FOLDER,
+                        false);
+    }
+
     /**
      * Creates or gets the resource at the given path.
      * This is a copy of Sling's API ResourceUtil method to avoid a dependency on the latest
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
+import org.apache.sling.event.impl.jobs.config.QueueConfigurationManager.QueueInfo;
+import org.apache.sling.event.jobs.Job;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class JobBatchWriterTest {
+
+    private final AtomicInteger commits = new AtomicInteger();
+
+    private final AtomicInteger autoCommits = new AtomicInteger();
+
+    private JobManagerConfiguration createConfiguration(final int batchSize, final long latency, final boolean failCommit)
+    throws PersistenceException {
+        final ResourceResolver resolver = Mockito.mock(ResourceResolver.class);
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                commits.incrementAndGet();
+                if ( failCommit ) {
+                    throw new PersistenceException("failed");
+                }
+                return null;
+            }
+        }).when(resolver).commit();
+
+        final JobManagerConfiguration config = Mockito.mock(JobManagerConfiguration.class);
+        Mockito.when(config.createResourceResolver()).thenReturn(resolver);
+        Mockito.when(config.getAddBatchSize()).thenReturn(batchSize);
+        Mockito.when(config.getAddBatchLatency()).thenReturn(latency);
+        return config;
+    }
+
+    private JobBatchWriter.Writer createWriter() {
+        return new JobBatchWriter.Writer() {
+
+            @Override
+            public JobImpl write(final ResourceResolver resolver,
+                    final String jobTopic,
+                    final Map<String, Object> jobProperties,
+                    final QueueInfo info,
+                    final boolean autoCommit) {
+                if ( autoCommit ) {
+                    autoCommits.incrementAndGet();
+                }
+                final Map<String, Object> props = new HashMap<String, Object>(jobProperties);
+                props.put(Job.PROPERTY_JOB_CREATED, Calendar.getInstance());
+                return new JobImpl(jobTopic, (String)jobProperties.get("id"), props);
+            }
+        };
+    }
+
+    @Test(timeout=10000) public void testConcurrentAddsShareCommit() throws Exception {
+        final JobBatchWriter writer = new JobBatchWriter(createConfiguration(100, 500, false), createWriter());
+
+        final int count = 20;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(count);
+        final JobImpl[] results = new JobImpl[count];
+        for(int i=0; i<count; i++) {
+            final int index = i;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        results[index] = writer.write("a/topic",
+                                Collections.singletonMap("id", (Object)String.valueOf(index)), null);
+                    } catch ( final Exception e ) {
+                        // result stays null
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        for(int i=0; i<count; i++) {
+            assertNotNull(results[i]);
+            assertEquals(String.valueOf(i), results[i].getId());
+        }
+        assertTrue("Expected fewer commits than jobs, got " + commits.get(), commits.get() < count);
+        assertEquals(0, autoCommits.get());
+    }
+
+    @Test(timeout=10000) public void testFallbackOnFailedCommit() throws Exception {
+        final JobBatchWriter writer = new JobBatchWriter(createConfiguration(100, 500, true), createWriter());
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        final JobImpl[] results = new JobImpl[2];
+        for(int i=0; i<2; i++) {
+            final int index = i;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        results[index] = writer.write("a/topic",
+                                Collections.singletonMap("id", (Object)String.valueOf(index)), null);
+                    } catch ( final Exception e ) {
+                        // result stays null
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        assertNotNull(results[0]);
+        assertNotNull(results[1]);
+        assertEquals(1, commits.get());
+        assertEquals(2, autoCommits.get());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
+import org.apache.sling.event.impl.support.ResourceHelper;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager.QueryType;
+import org.apache.sling.testing.resourceresolver.MockResourceResolverFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.service.event.Event;
+
+public class JobIndexTest {
+
+    private static final String UNASSIGNED = "/var/eventing/jobs/unassigned";
+
+    private final ResourceResolverFactory factory = new MockResourceResolverFactory();
+
+    private JobManagerConfiguration configuration;
+
+    private JobIndex index;
+
+    @Before public void setup() throws Exception {
+        this.configuration = Mockito.mock(JobManagerConfiguration.class);
+        Mockito.when(configuration.getAssginedJobsPath()).thenReturn("/var/eventing/jobs/assigned");
+        Mockito.when(configuration.getUnassignedJobsPath()).thenReturn(UNASSIGNED);
+        Mockito.when(configuration.getJobIndexMaxSize()).thenReturn(100);
+        Mockito.when(configuration.createResourceResolver()).thenAnswer(new Answer<ResourceResolver>() {
+
+            @Override
+            public ResourceResolver answer(final InvocationOnMock invocation) throws Throwable {
+                return factory.getAdministrativeResourceResolver(null);
+            }
+        });
+
+        this.writeJob("a_topic_1", "a/topic", false);
+        this.writeJob("a_topic_2", "a/topic", true);
+        this.writeJob("b_topic_3", "b/topic", false);
+    }
+
+    @After public void cleanup() {
+        if ( this.index != null ) {
+            this.index.deactivate();
+        }
+    }
+
+    private String getPath(final String id, final String topic) {
+        return UNASSIGNED + "/" + topic.replace('/', '.') + "/2015/1/2/3/4/" + id;
+    }
+
+    private void writeJob(final String id, final String topic, final boolean started) throws Exception {
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ResourceResolver.PROPERTY_RESOURCE_TYPE, ResourceHelper.RESOURCE_TYPE_JOB);
+        props.put(ResourceHelper.PROPERTY_JOB_ID, id);
+        props.put(ResourceHelper.PROPERTY_JOB_TOPIC, topic);
+        props.put(Job.PROPERTY_JOB_CREATED, Calendar.getInstance());
+        props.put(Job.PROPERTY_JOB_RETRIES, 10);
+        props.put(Job.PROPERTY_JOB_RETRY_COUNT, 0);
+        props.put("prop", id);
+        if ( started ) {
+            props.put(Job.PROPERTY_JOB_STARTED_TIME, Calendar.getInstance());
+        }
+        final ResourceResolver resolver = factory.getAdministrativeResourceResolver(null);
+        try {
+            ResourceHelper.getOrCreateResource(resolver, getPath(id, topic), props);
+        } finally {
+            resolver.close();
+        }
+    }
+
+    private void waitForIndex() throws Exception {
+        final long end = System.currentTimeMillis() + 5000;
+        while ( this.index.findJobs(QueryType.ALL, null, -1) == null && System.currentTimeMillis() < end ) {
+            Thread.sleep(10);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test public void testFindJobs() throws Exception {
+        this.index = new JobIndex(this.configuration);
+        this.waitForIndex();
+
+        assertEquals(3, this.index.findJobs(QueryType.ALL, null, -1).size());
+        assertEquals(2, this.index.findJobs(QueryType.ALL, "a/topic", -1).size());
+        assertEquals(1, this.index.findJobs(QueryType.ALL, "a/topic", 1).size());
+        assertEquals(1, this.index.findJobs(QueryType.ACTIVE, null, -1).size());
+        assertEquals(2, this.index.findJobs(QueryType.QUEUED, null, -1).size());
+        assertNull(this.index.findJobs(QueryType.HISTORY, null, -1));
+
+        final List<Job> result = this.index.findJobs(QueryType.ALL, null, -1,
+                Collections.singletonMap("prop", (Object)"b_topic_3"));
+        assertEquals(1, result.size());
+        assertEquals("b_topic_3", result.get(0).getId());
+
+        assertNotNull(this.index.getJobById("a_topic_2"));
+        assertNull(this.index.getJobById("unknown_1"));
+    }
+
+    @Test public void testEvents() throws Exception {
+        this.index = new JobIndex(this.configuration);
+        this.waitForIndex();
+
+        this.writeJob("c_topic_4", "c/topic", false);
+        this.index.handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_ADDED,
+                Collections.singletonMap(SlingConstants.PROPERTY_PATH, getPath("c_topic_4", "c/topic"))));
+        this.index.handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_REMOVED,
+                Collections.singletonMap(SlingConstants.PROPERTY_PATH, UNASSIGNED + "/a.topic")));
+
+        final long end = System.currentTimeMillis() + 5000;
+        while ( this.index.getJobById("a_topic_1") != null && System.currentTimeMillis() < end ) {
+            Thread.sleep(10);
+        }
+        assertNotNull(this.index.getJobById("c_topic_4"));
+        assertNull(this.index.getJobById("a_topic_1"));
+        assertNull(this.index.getJobById("a_topic_2"));
+        assertEquals(2, this.index.findJobs(QueryType.ALL, null, -1).size());
+    }
+
+    @Test public void testTooManyJobs() throws Exception {
+        Mockito.when(configuration.getJobIndexMaxSize()).thenReturn(2);
+        this.index = new JobIndex(this.configuration);
+        Thread.sleep(200);
+
+        assertNull(this.index.findJobs(QueryType.ALL, null, -1));
+        assertNull(this.index.getJobById("a_topic_1"));
+    }
+}
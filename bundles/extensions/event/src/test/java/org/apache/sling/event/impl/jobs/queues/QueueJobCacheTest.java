@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.queues;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.event.impl.jobs.JobConsumerManager;
+import org.apache.sling.event.impl.jobs.JobHandler;
+import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
+import org.apache.sling.event.impl.jobs.stats.StatisticsManager;
+import org.apache.sling.event.impl.support.ResourceHelper;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.Queue;
+import org.apache.sling.event.jobs.QueueConfiguration;
+import org.apache.sling.event.jobs.consumer.JobExecutor;
+import org.apache.sling.testing.resourceresolver.MockResourceResolverFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.LoggerFactory;
+
+public class QueueJobCacheTest {
+
+    private static final String LOCAL = "/var/eventing/jobs/assigned/local";
+
+    private static final String QUEUE_NAME = "test";
+
+    private final ResourceResolverFactory factory = new MockResourceResolverFactory();
+
+    private JobManagerConfiguration configuration;
+
+    private final StatisticsManager statisticsManager = Mockito.mock(StatisticsManager.class);
+
+    private final JobConsumerManager jobConsumerManager = Mockito.mock(JobConsumerManager.class);
+
+    private final Queue queue = Mockito.mock(Queue.class);
+
+    @Before public void setup() throws Exception {
+        this.configuration = Mockito.mock(JobManagerConfiguration.class);
+        Mockito.when(configuration.getLocalJobsPath()).thenReturn(LOCAL);
+        Mockito.when(configuration.getQueuePreloadLimit()).thenReturn(5);
+        Mockito.when(configuration.getMainLogger()).thenReturn(LoggerFactory.getLogger(this.getClass()));
+        Mockito.when(configuration.createResourceResolver()).thenAnswer(new Answer<ResourceResolver>() {
+
+            @Override
+            public ResourceResolver answer(final InvocationOnMock invocation) throws Throwable {
+                return factory.getAdministrativeResourceResolver(null);
+            }
+        });
+        Mockito.when(jobConsumerManager.getExecutor(Mockito.anyString())).thenReturn(Mockito.mock(JobExecutor.class));
+        Mockito.when(queue.getName()).thenReturn(QUEUE_NAME);
+        final QueueConfiguration queueConfiguration = Mockito.mock(QueueConfiguration.class);
+        Mockito.when(queueConfiguration.getMaxRetries()).thenReturn(10);
+        Mockito.when(queue.getConfiguration()).thenReturn(queueConfiguration);
+    }
+
+    private void writeJob(final String id, final String topic, final int minute) throws Exception {
+        final Calendar created = Calendar.getInstance();
+        created.add(Calendar.MINUTE, minute);
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(ResourceResolver.PROPERTY_RESOURCE_TYPE, ResourceHelper.RESOURCE_TYPE_JOB);
+        props.put(ResourceHelper.PROPERTY_JOB_ID, id);
+        props.put(ResourceHelper.PROPERTY_JOB_TOPIC, topic);
+        props.put(Job.PROPERTY_JOB_CREATED, created);
+        props.put(Job.PROPERTY_JOB_RETRIES, 10);
+        props.put(Job.PROPERTY_JOB_RETRY_COUNT, 0);
+        final ResourceResolver resolver = factory.getAdministrativeResourceResolver(null);
+        try {
+            ResourceHelper.getOrCreateResource(resolver,
+                    LOCAL + "/" + topic.replace('/', '.') + "/2015/1/2/3/" + minute + "/" + id, props);
+        } finally {
+            resolver.close();
+        }
+    }
+
+    private QueueJobCache createCache(final QueueConfiguration.Type type, final String... topics) {
+        return new QueueJobCache(this.configuration, QUEUE_NAME, this.statisticsManager, type,
+                new HashSet<String>(Arrays.asList(topics)));
+    }
+
+    private String getNextJobId(final QueueJobCache cache) {
+        final JobHandler handler = cache.getNextJob(this.jobConsumerManager, this.statisticsManager, this.queue, false);
+        return handler == null ? null : handler.getJob().getId();
+    }
+
+    @Test public void testOrderedQueue() throws Exception {
+        writeJob("a_1", "a/topic", 1);
+        writeJob("b_2", "b/topic", 2);
+        writeJob("a_3", "a/topic", 3);
+        writeJob("b_4", "b/topic", 4);
+
+        final QueueJobCache cache = createCache(QueueConfiguration.Type.ORDERED, "a/topic", "b/topic");
+        final JobHandler first = cache.getNextJob(this.jobConsumerManager, this.statisticsManager, this.queue, false);
+        assertEquals("a_1", first.getJob().getId());
+
+        // a rescheduled job is processed before the newer jobs
+        cache.reschedule(QUEUE_NAME, first, this.statisticsManager);
+        assertEquals("a_1", getNextJobId(cache));
+        assertEquals("b_2", getNextJobId(cache));
+        assertEquals("a_3", getNextJobId(cache));
+        assertEquals("b_4", getNextJobId(cache));
+        assertNull(getNextJobId(cache));
+    }
+
+    @Test public void testTopicRoundRobinQueue() throws Exception {
+        writeJob("a_1", "a/topic", 1);
+        writeJob("a_2", "a/topic", 2);
+        writeJob("b_3", "b/topic", 3);
+        writeJob("b_4", "b/topic", 4);
+
+        final QueueJobCache cache = createCache(QueueConfiguration.Type.TOPIC_ROUND_ROBIN, "a/topic", "b/topic");
+        final List<String> ids = new ArrayList<String>();
+        String id;
+        while ( (id = getNextJobId(cache)) != null ) {
+            ids.add(id);
+        }
+        assertEquals(4, ids.size());
+        // the topics alternate, the jobs of a topic keep their order
+        for(int i=1; i<ids.size(); i++) {
+            assertTrue(ids.toString(), ids.get(i).charAt(0) != ids.get(i - 1).charAt(0));
+        }
+        assertTrue(ids.toString(), ids.indexOf("a_1") < ids.indexOf("a_2"));
+        assertTrue(ids.toString(), ids.indexOf("b_3") < ids.indexOf("b_4"));
+    }
+
+    @Test(timeout=20000) public void testConcurrentPrefetchAndTake() throws Exception {
+        final int count = 60;
+        for(int i=0; i<count; i++) {
+            writeJob("job_" + i, "a/topic", i % 10);
+        }
+        final QueueJobCache cache = createCache(QueueConfiguration.Type.UNORDERED, "a/topic");
+
+        final Map<String, Boolean> dispatched = new ConcurrentHashMap<String, Boolean>();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final int threads = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for(int t=0; t<threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        int idle = 0;
+                        while ( idle < 50 ) {
+                            final String id = getNextJobId(cache);
+                            cache.prefetch(QUEUE_NAME, statisticsManager, null);
+                            if ( id == null ) {
+                                idle++;
+                                Thread.sleep(5);
+                            } else {
+                                idle = 0;
+                                if ( dispatched.put(id, Boolean.TRUE) != null ) {
+                                    duplicates.incrementAndGet();
+                                }
+                            }
+                        }
+                    } catch ( final InterruptedException ignore ) {
+                        // end the thread
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        assertEquals(0, duplicates.get());
+        assertEquals(count, dispatched.size());
+        assertTrue(cache.isEmpty());
+        assertTrue(cache.getNumberOfJobLoads() > 1);
+        for(int i=0; i<count; i++) {
+            assertNotNull(dispatched.get("job_" + i));
+        }
+        assertEquals(Collections.emptySet(), getUnstartedJobs(count));
+    }
+
+    /**
+     * Ids of the jobs which don't have a started time in the repository.
+     */
+    private Set<String> getUnstartedJobs(final int count) throws Exception {
+        final Set<String> result = new HashSet<String>();
+        final ResourceResolver resolver = factory.getAdministrativeResourceResolver(null);
+        try {
+            for(int i=0; i<count; i++) {
+                final String path = LOCAL + "/a.topic/2015/1/2/3/" + (i % 10) + "/job_" + i;
+                if ( ResourceHelper.getValueMap(resolver.getResource(path)).get(Job.PROPERTY_JOB_STARTED_TIME) == null ) {
+                    result.add("job_" + i);
+                }
+            }
+        } finally {
+            resolver.close();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The <code>CompactDictionary</code> is an immutable dictionary of messages
+ * stored in parallel arrays sorted by key. Keys are interned to share them
+ * between the dictionaries of all locales. For each entry the index of the
+ * dictionary root providing the message is kept to be able to apply single
+ * message changes.
+ * <p>
+ * Changes are applied by creating a new instance with the {@link #with}
+ * method, so readers never need to synchronize.
+ */
+final class CompactDictionary {
+
+    private final String[] keys;
+
+    private final Object[] values;
+
+    private final short[] sources;
+
+    private final Set<String> keySet = new AbstractSet<String>() {
+
+        @Override
+        public boolean contains(Object key) {
+            return (key instanceof String) && indexOf((String) key) >= 0;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+
+                private int index;
+
+                public boolean hasNext() {
+                    return index < keys.length;
+                }
+
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return keys[index++];
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return keys.length;
+        }
+    };
+
+    /**
+     * Creates a dictionary from arrays sorted by key. The arrays are not
+     * copied.
+     */
+    CompactDictionary(final String[] keys, final Object[] values, final short[] sources) {
+        this.keys = keys;
+        this.values = values;
+        this.sources = sources;
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    Object get(final String key) {
+        final int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    int indexOf(final String key) {
+        return Arrays.binarySearch(keys, key);
+    }
+
+    /**
+     * Returns the index of the dictionary root providing the message at the
+     * given entry index.
+     */
+    int getSource(final int index) {
+        return sources[index];
+    }
+
+    /**
+     * Returns an unmodifiable view of the keys in ascending order.
+     */
+    Set<String> keySet() {
+        return keySet;
+    }
+
+    /**
+     * Returns a new dictionary with the message for the key set to the
+     * value, provided by the dictionary root with the given index.
+     */
+    CompactDictionary with(final String key, final Object value, final int source) {
+        final int index = indexOf(key);
+        if (index >= 0) {
+            final int length = keys.length;
+            final Object[] newValues = new Object[length];
+            final short[] newSources = new short[length];
+            System.arraycopy(values, 0, newValues, 0, length);
+            System.arraycopy(sources, 0, newSources, 0, length);
+            newValues[index] = value;
+            newSources[index] = (short) source;
+            return new CompactDictionary(keys, newValues, newSources);
+        }
+
+        final int insert = -index - 1;
+        final int length = keys.length;
+        final String[] newKeys = new String[length + 1];
+        final Object[] newValues = new Object[length + 1];
+        final short[] newSources = new short[length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, insert);
+        System.arraycopy(values, 0, newValues, 0, insert);
+        System.arraycopy(sources, 0, newSources, 0, insert);
+        newKeys[insert] = key.intern();
+        newValues[insert] = value;
+        newSources[insert] = (short) source;
+        System.arraycopy(keys, insert, newKeys, insert + 1, length - insert);
+        System.arraycopy(values, insert, newValues, insert + 1, length - insert);
+        System.arraycopy(sources, insert, newSources, insert + 1, length - insert);
+        return new CompactDictionary(newKeys, newValues, newSources);
+    }
+}
@@ -32,6 +32,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.jackrabbit.commons.json.JsonHandler;
 import org.apache.jackrabbit.commons.json.JsonParser;
@@ -65,7 +66,20 @@ public class JcrResourceBundle extends ResourceBundle {
 
     static final String QUERY_LANGUAGE_ROOTS = "//element(*,mix:language)[@jcr:language]";
 
-    private final Map<String, Object> resources;
+    /**
+     * The merged messages of all dictionaries, replaced as a whole when a
+     * single message is changed.
+     */
+    private volatile CompactDictionary dictionary;
+
+    /** The potential dictionary roots, indexed by the dictionary sources */
+    private final String[] dictionaryRoots;
+
+    /**
+     * The precedence of each dictionary root when merging, a message from a
+     * root with a higher rank overlays the same key from lower ranked roots.
+     */
+    private final int[] mergeRanks;
 
     private final Locale locale;
 
@@ -83,13 +97,15 @@ public class JcrResourceBundle extends ResourceBundle {
         long start = System.currentTimeMillis();
         resourceResolver.refresh();
         Set<String> roots = loadPotentialLanguageRoots(resourceResolver, locale, baseName);
-        this.resources = loadFully(resourceResolver, roots, this.languageRoots);
+        this.dictionaryRoots = roots.toArray(new String[roots.size()]);
+        this.mergeRanks = new int[this.dictionaryRoots.length];
+        this.dictionary = loadFully(resourceResolver, this.dictionaryRoots, this.mergeRanks, this.languageRoots);
 
         long end = System.currentTimeMillis();
         if (log.isInfoEnabled()) {
             log.info(
                 "Finished loading {} entries for '{}' (basename: {}) in {}ms",
-                new Object[] { resources.size(), locale, baseName == null ? "<none>" : baseName, (end - start)}
+                new Object[] { dictionary.size(), locale, baseName == null ? "<none>" : baseName, (end - start)}
             );
         }
     }
@@ -126,7 +142,7 @@ public class JcrResourceBundle extends ResourceBundle {
      */
     @Override
     protected Set<String> handleKeySet() {
-        return resources.keySet();
+        return dictionary.keySet();
     }
 
     @Override
@@ -134,7 +150,7 @@ public class JcrResourceBundle extends ResourceBundle {
         Enumeration<String> parentKeys = (parent != null)
                 ? parent.getKeys()
                 : null;
-        return new ResourceBundleEnumeration(resources.keySet(), parentKeys);
+        return new ResourceBundleEnumeration(dictionary.keySet(), parentKeys);
     }
 
     @Override
@@ -142,7 +158,41 @@ public class JcrResourceBundle extends ResourceBundle {
         if (log.isDebugEnabled()) {
             log.debug("Requesting key '{}' from resource bundle (baseName '{}', locale '{}')", new Object[] {key, baseName, locale});
         }
-        return resources.get(key);
+        return dictionary.get(key);
+    }
+
+    /**
+     * Applies the change of a single message found below the given
+     * dictionary root without reloading the bundle. The message is ignored
+     * if the key is overlaid by a dictionary with a higher precedence.
+     *
+     * @param root The dictionary root containing the message
+     * @param key The key of the message
+     * @param value The new message
+     * @return {@code false} if the root is not a dictionary root of this
+     *      bundle and the change could not be applied
+     */
+    synchronized boolean applyMessage(final String root, final String key, final Object value) {
+        int source = -1;
+        for (int i = 0; i < dictionaryRoots.length; i++) {
+            if (dictionaryRoots[i].equals(root)) {
+                source = i;
+                break;
+            }
+        }
+        if (source < 0 || source > Short.MAX_VALUE) {
+            return false;
+        }
+
+        final CompactDictionary current = this.dictionary;
+        final int index = current.indexOf(key);
+        if (index >= 0 && mergeRanks[current.getSource(index)] > mergeRanks[source]) {
+            log.debug("Ignoring change of key '{}' in {}, overlaid by {}",
+                new Object[] { key, root, dictionaryRoots[current.getSource(index)] });
+            return true;
+        }
+        this.dictionary = current.with(key, value, source);
+        return true;
     }
 
     /**
@@ -153,23 +203,27 @@ public class JcrResourceBundle extends ResourceBundle {
      * must either be thread safe.
      *
      * @param resolver The storage access (must not be {@code null})
-     * @param roots The set of (potential) dictionary subtrees. This must
+     * @param roots The (potential) dictionary subtrees. This must
      *      not be {@code null}. If empty, no resources will actually be
      *      loaded.
+     * @param mergeRanks Filled with the precedence of each root, a root
+     *      with a higher rank overlays roots with a lower rank. This must
+     *      have the same length as {@code roots}.
      * @param languageRoots The set of actually dictionary subtrees. While
      *      processing the resources, all subtrees listed in the {@code roots}
      *      set is added to this set if it actually contains resources. This
      *      must not be {@code null}.
-     * @return
+     * @return The merged dictionary
      *
      * @throws NullPointerException if either of the parameters is {@code null}.
      */
     @SuppressWarnings("deprecation")
-    private Map<String, Object> loadFully(final ResourceResolver resolver, Set<String> roots, Set<String> languageRoots) {
+    private CompactDictionary loadFully(final ResourceResolver resolver, final String[] roots,
+            final int[] mergeRanks, final Set<String> languageRoots) {
 
         final String[] searchPath = resolver.getSearchPath();
 
-        // for each search path entry, have a list of maps (dictionaries)
+        // for each search path entry, have a list of root indexes (dictionaries)
         // plus other = "outside the search path" at the end
 
         //   [0] /apps2  -> [dict1, dict2, dict3 ...]
@@ -177,12 +231,19 @@ public class JcrResourceBundle extends ResourceBundle {
         //   [2] /libs   -> [dict6, ...]
         //   [3] (other) -> [dict7, dict8 ...]
 
-        List<List<Map<String, Object>>> dictionariesBySearchPath = new ArrayList<List<Map<String, Object>>>(searchPath.length + 1);
+        List<List<Integer>> dictionariesBySearchPath = new ArrayList<List<Integer>>(searchPath.length + 1);
         for (int i = 0; i < searchPath.length + 1; i++) {
-            dictionariesBySearchPath.add(new ArrayList<Map<String, Object>>());
+            dictionariesBySearchPath.add(new ArrayList<Integer>());
         }
 
-        for (final String root: roots) {
+        // the dictionaries are only kept while merging
+        final List<Map<String, Object>> dictionaries = new ArrayList<Map<String, Object>>(roots.length);
+        for (int r = 0; r < roots.length; r++) {
+            final String root = roots[r];
+
+            // linked hash map to keep order (not functionally important, but helpful for dictionary debugging)
+            Map<String, Object> dictionary = new LinkedHashMap<String, Object>();
+            dictionaries.add(dictionary);
 
             Resource dictionaryResource = resolver.getResource(root);
             if (dictionaryResource == null) {
@@ -190,19 +251,16 @@ public class JcrResourceBundle extends ResourceBundle {
                 continue;
             }
 
-            // linked hash map to keep order (not functionally important, but helpful for dictionary debugging)
-            Map<String, Object> dictionary = new LinkedHashMap<String, Object>();
-
             // find where in the search path this dict belongs
             // otherwise put it in the outside-the-search-path bucket (last list)
-            List<Map<String, Object>> targetList = dictionariesBySearchPath.get(searchPath.length);
+            List<Integer> targetList = dictionariesBySearchPath.get(searchPath.length);
             for (int i = 0; i < searchPath.length; i++) {
                 if (root.startsWith(searchPath[i])) {
                     targetList = dictionariesBySearchPath.get(i);
                     break;
                 }
             }
-            targetList.add(dictionary);
+            targetList.add(r);
 
             // check type of dictionary
             if (dictionaryResource.getName().endsWith(".json")) {
@@ -216,26 +274,37 @@ public class JcrResourceBundle extends ResourceBundle {
             }
         }
 
-        // linked hash map to keep order (not functionally important, but helpful for dictionary debugging)
-        final Map<String, Object> result = new LinkedHashMap<String, Object>();
-
-        // first, add everything that's not under a search path (e.g. /content)
-        // below, same strings inside a search path dictionary would overlay them since
-        // they are added later to result = overwrite
-        for (Map<String, Object> dict : dictionariesBySearchPath.get(searchPath.length)) {
-            result.putAll(dict);
-        }
-
-        // then, in order of the search path, add all the individual dictionaries into
-        // a single result, so that e.g. strings in /apps overlay the ones in /libs
+        // first, take everything that's not under a search path (e.g. /content)
+        // then, in order of the search path, the individual dictionaries, so that
+        // e.g. strings in /apps overlay the ones in /libs
+        final List<Integer> mergeOrder = new ArrayList<Integer>(roots.length);
+        mergeOrder.addAll(dictionariesBySearchPath.get(searchPath.length));
         for (int i = searchPath.length - 1; i >= 0; i--) {
+            mergeOrder.addAll(dictionariesBySearchPath.get(i));
+        }
 
-            for (Map<String, Object> dict : dictionariesBySearchPath.get(i)) {
-                result.putAll(dict);
+        // record for each key the root providing the message, later roots overwrite
+        final Map<String, Integer> sourceByKey = new TreeMap<String, Integer>();
+        int rank = 0;
+        for (final Integer r : mergeOrder) {
+            mergeRanks[r] = ++rank;
+            for (final String key : dictionaries.get(r).keySet()) {
+                sourceByKey.put(key, r);
             }
         }
 
-        return result;
+        // sorted arrays with interned keys, which are shared across locales
+        final String[] keys = new String[sourceByKey.size()];
+        final Object[] values = new Object[keys.length];
+        final short[] sources = new short[keys.length];
+        int i = 0;
+        for (final Map.Entry<String, Integer> entry : sourceByKey.entrySet()) {
+            keys[i] = entry.getKey().intern();
+            values[i] = dictionaries.get(entry.getValue()).get(entry.getKey());
+            sources[i] = (short) entry.getValue().intValue();
+            i++;
+        }
+        return new CompactDictionary(keys, values, sources);
     }
 
     private void loadJsonDictionary(Resource resource, final Map<String, Object> targetDictionary) {
@@ -22,6 +22,7 @@ import static org.apache.sling.i18n.impl.JcrResourceBundle.PROP_BASENAME;
 import static org.apache.sling.i18n.impl.JcrResourceBundle.PROP_LANGUAGE;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -37,6 +38,7 @@ import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Property;
@@ -77,6 +79,13 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
     private static final int DEFAULT_INVALIDATION_DELAY = 5000;
 
+    /**
+     * The maximum number of message changes applied to the cached bundles
+     * within the invalidation delay. Further changes of such a burst, e.g.
+     * from an import, are coalesced into scheduled reloads.
+     */
+    static final int MAX_APPLIED_MESSAGE_CHANGES = 100;
+
     @Property(value = "")
     private static final String PROP_USER = "user";
 
@@ -126,6 +135,25 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
     private final ConcurrentHashMap<Key, Semaphore> loadingGuards = new ConcurrentHashMap<Key, Semaphore>();
 
+    /**
+     * Serializes the scheduled reloads. Requests are not blocked while
+     * reloading, the cached bundles are served until they are replaced.
+     */
+    private final Object reloadLock = new Object();
+
+    /**
+     * Counts the message changes applied to the cached bundles, to detect
+     * changes applied to a bundle while it is being reloaded.
+     */
+    private final AtomicLong appliedMessageChanges = new AtomicLong();
+
+    /** guards {@link #burstStart} and {@link #burstMessageChanges} */
+    private final Object burstLock = new Object();
+
+    private long burstStart;
+
+    private int burstMessageChanges;
+
     /**
      * paths from which JCR resource bundles have been loaded
      */
@@ -201,22 +229,34 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
                         path);
                 scheduleReloadBundles(true);
             } else {
-                // if it is only a change below a root path, only messages of one resource bundle can be affected!
-                for (final String root : languageRootPaths) {
-                    if (path.startsWith(root)) {
-                        // figure out which JcrResourceBundle from the cached ones is affected
-                        for (JcrResourceBundle bundle : resourceBundleCache.values()) {
-                            if (bundle.getLanguageRootPaths().contains(root)) {
+                // if it is only a change below a root path, only messages of the bundles using the root can be affected!
+                final String root = getLanguageRootPath(path);
+                if (root != null) {
+                    // figure out which JcrResourceBundles from the cached ones are affected
+                    final boolean applyChange = isIncrementalChangeAllowed();
+                    if (applyChange) {
+                        // count before applying, so a concurrent reload detects the change
+                        appliedMessageChanges.incrementAndGet();
+                    }
+                    boolean found = false;
+                    for (JcrResourceBundle bundle : resourceBundleCache.values()) {
+                        if (bundle.getLanguageRootPaths().contains(root)) {
+                            found = true;
+                            if (applyChange && applyMessageChange(bundle, root, path, event)) {
+                                log.debug("handleEvent: Applied change of '{}' to ResourceBundle '{}'",
+                                        path, bundle);
+                            } else {
                                 // reload it
                                 log.debug("handleEvent: Resource changes below '{}', reloading ResourceBundle '{}'",
                                         root, bundle);
                                 scheduleReloadBundle(bundle);
-                                return;
                             }
                         }
-                        log.debug("handleEvent: No cached resource bundle found with root '{}'", root);
-                        break;
                     }
+                    if (found) {
+                        return;
+                    }
+                    log.debug("handleEvent: No cached resource bundle found with root '{}'", root);
                 }
                 // may be a completely new dictionary
                 if (isDictionaryResource(path, event)) {
@@ -226,6 +266,74 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         }
     }
 
+    /**
+     * Returns the longest language root path containing the given path, so
+     * a change below {@code /libs/i18n/en_GB} is not taken for a change of
+     * the sibling root {@code /libs/i18n/en}.
+     *
+     * @return the language root or {@code null} if the path is not below any root
+     */
+    private String getLanguageRootPath(final String path) {
+        String result = null;
+        for (final String root : languageRootPaths) {
+            if (path.startsWith(root.concat("/")) && (result == null || root.length() > result.length())) {
+                result = root;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether another message change may be applied to the cached
+     * bundles. Once more than {@link #MAX_APPLIED_MESSAGE_CHANGES} changes
+     * arrive within the invalidation delay, the bundles are reloaded instead,
+     * as each applied change copies the messages of the bundle.
+     */
+    private boolean isIncrementalChangeAllowed() {
+        synchronized (burstLock) {
+            final long now = System.currentTimeMillis();
+            if (now - burstStart > invalidationDelay) {
+                burstStart = now;
+                burstMessageChanges = 0;
+            }
+            return ++burstMessageChanges <= MAX_APPLIED_MESSAGE_CHANGES;
+        }
+    }
+
+    /**
+     * Applies an added or changed sling:Message resource to the bundle
+     * without reloading it. Removals and changes of the message key are
+     * not applied, as the previous state of the message is unknown.
+     *
+     * @return {@code true} if the change has been applied
+     */
+    private boolean applyMessageChange(final JcrResourceBundle bundle, final String root, final String path,
+            final org.osgi.service.event.Event event) {
+        if (SlingConstants.TOPIC_RESOURCE_CHANGED.equals(event.getTopic())) {
+            final String[] changedAttributes = (String[]) event.getProperty(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES);
+            if (changedAttributes == null || Arrays.asList(changedAttributes).contains(JcrResourceBundle.PROP_KEY)) {
+                return false;
+            }
+        } else if (!SlingConstants.TOPIC_RESOURCE_ADDED.equals(event.getTopic())) {
+            return false;
+        }
+        if (path.endsWith(".json")) {
+            return false;
+        }
+        resourceResolver.refresh();
+        final Resource resource = resourceResolver.getResource(path);
+        final ValueMap valueMap = (resource == null) ? null : resource.adaptTo(ValueMap.class);
+        if (valueMap == null) {
+            return false;
+        }
+        final String value = valueMap.get(JcrResourceBundle.PROP_VALUE, String.class);
+        if (value == null) {
+            return false;
+        }
+        final String key = valueMap.get(JcrResourceBundle.PROP_KEY, resource.getName());
+        return bundle.applyMessage(root, key, value);
+    }
+
     private boolean isDictionaryResource(final String path, final org.osgi.service.event.Event event) {
         // language node changes happen quite frequently (https://issues.apache.org/jira/browse/SLING-2881)
         // therefore only consider changes either for sling:MessageEntry's 
@@ -297,8 +405,9 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
             @Override
             public void run() {
                 log.info("Reloading all resource bundles");
-                clearCache();
-                preloadBundles();
+                synchronized (reloadLock) {
+                    reloadBundles();
+                }
             }
         }, options);
     }
@@ -316,7 +425,7 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         scheduler.schedule(new Runnable() {
             @Override
             public void run() {
-                synchronized(JcrResourceBundleProvider.this) {
+                synchronized (reloadLock) {
                     reloadBundle(key);
                 }
                 scheduledJobNames.remove(jobName);
@@ -324,38 +433,71 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         }, options);
     }
 
+    /**
+     * Reloads all cached bundles one by one, serving the cached bundles until
+     * they are replaced, and then loads any new bundles if configured to
+     * preload bundles.
+     */
+    void reloadBundles() {
+        for (final Key key : Collections.list(resourceBundleCache.keys())) {
+            reloadBundle(key);
+        }
+
+        // forget the language roots no longer used
+        final Set<String> roots = new HashSet<String>();
+        for (final JcrResourceBundle bundle : resourceBundleCache.values()) {
+            roots.addAll(bundle.getLanguageRootPaths());
+        }
+        languageRootPaths.retainAll(roots);
+
+        preloadBundles();
+    }
+
+    /**
+     * Reloads the bundle from the repository. The cached bundle is served
+     * until the new bundle is ready, which then replaces it in the cache,
+     * the service registry and as the parent of dependent bundles. If message
+     * changes have been applied while loading, the new bundle may miss them
+     * and is reloaded once more.
+     */
     void reloadBundle(final Key key) {
-        // remove bundle from cache
-        resourceBundleCache.remove(key);
+        final JcrResourceBundle oldBundle = resourceBundleCache.get(key);
+        if (oldBundle == null) {
+            log.debug("No cached resource bundle for {}", key);
+            if (preloadBundles) {
+                // load the bundle from the repository (will also fill cache and register as a service)
+                getResourceBundle(key.baseName, key.locale);
+            }
+            return;
+        }
+
         log.info("Reloading resource bundle for {}", key);
-        // unregister bundle
-        ServiceRegistration serviceRegistration = bundleServiceRegistrations.remove(key);
-        if (serviceRegistration != null) {
-            serviceRegistration.unregister();
+        final long changes = appliedMessageChanges.get();
+        final JcrResourceBundle newBundle = createResourceBundle(key.baseName, key.locale);
+        resourceBundleCache.put(key, newBundle);
+        if (appliedMessageChanges.get() != changes) {
+            log.debug("Messages changed while reloading resource bundle for {}, reloading again", key);
+            scheduleReloadBundle(newBundle);
+        }
+
+        final ServiceRegistration oldRegistration;
+        synchronized (this) {
+            oldRegistration = bundleServiceRegistrations.get(key);
+        }
+        registerResourceBundle(key, newBundle);
+        if (oldRegistration != null) {
+            oldRegistration.unregister();
         } else {
             log.warn("Could not find resource bundle service for {}", key);
         }
 
-        Collection<JcrResourceBundle> dependentBundles = new ArrayList<JcrResourceBundle>();
-        // this bundle might be a parent of a cached bundle -> invalidate those dependent bundles as well
+        // this bundle might be a parent of a cached bundle -> let those dependent bundles use the new bundle
         for (JcrResourceBundle bundle : resourceBundleCache.values()) {
-            if (bundle.getParent() instanceof JcrResourceBundle) {
-                JcrResourceBundle parentBundle = (JcrResourceBundle) bundle.getParent();
-                Key parentKey = new Key(parentBundle.getBaseName(), parentBundle.getLocale());
-                if (parentKey.equals(key)) {
-                    log.debug("Also invalidate dependent bundle {} which has bundle {} as parent", bundle, parentBundle);
-                    dependentBundles.add(bundle);
-                }
+            if (bundle != newBundle && bundle.getParent() == oldBundle) {
+                log.debug("Set new parent {} of dependent bundle {}", newBundle, bundle);
+                bundle.setParent(newBundle);
             }
         }
-        for (JcrResourceBundle dependentBundle : dependentBundles) {
-            reloadBundle(new Key(dependentBundle.getBaseName(), dependentBundle.getLocale()));
-        }
-
-        if (preloadBundles) {
-            // reload the bundle from the repository (will also fill cache and register as a service)
-            getResourceBundle(key.baseName, key.locale);
-        }
     }
 
     // ---------- SCR Integration ----------------------------------------------
@@ -21,11 +21,15 @@ package org.apache.sling.i18n.impl;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.powermock.api.mockito.PowerMockito.doAnswer;
 import static org.powermock.api.mockito.PowerMockito.doReturn;
 import static org.powermock.api.mockito.PowerMockito.spy;
 import static org.powermock.api.mockito.PowerMockito.verifyPrivate;
 
+import java.util.Collections;
+import java.util.Date;
 import java.util.Hashtable;
 import java.util.Locale;
 import java.util.ResourceBundle;
@@ -33,17 +37,24 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.commons.scheduler.ScheduleOptions;
+import org.apache.sling.commons.scheduler.Scheduler;
 import org.apache.sling.i18n.impl.JcrResourceBundleProvider.Key;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.Event;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
 
 /**
  * Test case to verify that each bundle is only loaded once, even
@@ -55,6 +66,10 @@ public class ConcurrentJcrResourceBundleLoadingTest {
 
     @Mock JcrResourceBundle english;
     @Mock JcrResourceBundle german;
+    @Mock JcrResourceBundle reloadedEnglish;
+    @Mock JcrResourceBundle britishEnglish;
+    @Mock Scheduler scheduler;
+    @Mock ScheduleOptions scheduleOptions;
     
     private JcrResourceBundleProvider provider;
     
@@ -124,7 +139,7 @@ public class ConcurrentJcrResourceBundleLoadingTest {
         provider.getResourceBundle(Locale.ENGLISH);
         provider.getResourceBundle(Locale.GERMAN);
         
-        // reloading english should also reload german (because it has english as a parent)
+        // reloading english should not reload german, which just gets the new english as parent
         provider.reloadBundle(new Key(null, Locale.ENGLISH));
         provider.getResourceBundle(Locale.ENGLISH);
         provider.getResourceBundle(Locale.GERMAN);
@@ -134,7 +149,81 @@ public class ConcurrentJcrResourceBundleLoadingTest {
         provider.getResourceBundle(Locale.GERMAN);
 
         verifyPrivate(provider, times(2)).invoke("createResourceBundle", eq(null), eq(Locale.ENGLISH));
-        verifyPrivate(provider, times(2)).invoke("createResourceBundle", eq(null), eq(Locale.GERMAN));
+        verifyPrivate(provider, times(1)).invoke("createResourceBundle", eq(null), eq(Locale.GERMAN));
+        Mockito.verify(german).setParent(english);
+    }
+
+    @Test
+    public void burstOfMessageChangesFallsBackToReload() throws Exception {
+        setupMessageChanges();
+        provider.getResourceBundle(Locale.ENGLISH);
+
+        final int changes = JcrResourceBundleProvider.MAX_APPLIED_MESSAGE_CHANGES + 10;
+        for (int i = 0; i < changes; i++) {
+            provider.handleEvent(messageChangedEvent("/libs/i18n/en/message" + i));
+        }
+
+        verifyPrivate(provider, times(JcrResourceBundleProvider.MAX_APPLIED_MESSAGE_CHANGES))
+            .invoke("applyMessageChange", eq(english), eq("/libs/i18n/en"), any(String.class), any(Event.class));
+        Mockito.verify(scheduler, times(10)).schedule(any(Runnable.class), eq(scheduleOptions));
+    }
+
+    @Test
+    public void messageChangeDuringReloadTriggersAnotherReload() throws Exception {
+        setupMessageChanges();
+        provider.getResourceBundle(Locale.ENGLISH);
+
+        // a message is changed while the new bundle is loaded from an older state
+        doAnswer(new Answer<JcrResourceBundle>() {
+            @Override
+            public JcrResourceBundle answer(InvocationOnMock invocation) throws Throwable {
+                provider.handleEvent(messageChangedEvent("/libs/i18n/en/message"));
+                return reloadedEnglish;
+            }
+        }).when(provider, "createResourceBundle", eq(null), eq(Locale.ENGLISH));
+        provider.reloadBundle(new Key(null, Locale.ENGLISH));
+
+        assertEquals(reloadedEnglish, provider.getResourceBundle(Locale.ENGLISH));
+        verifyPrivate(provider, times(1))
+            .invoke("applyMessageChange", eq(english), eq("/libs/i18n/en"), eq("/libs/i18n/en/message"), any(Event.class));
+        Mockito.verify(scheduler, times(1)).schedule(any(Runnable.class), eq(scheduleOptions));
+    }
+
+    @Test
+    public void messageChangeIsAppliedToLongestMatchingRoot() throws Exception {
+        setupMessageChanges();
+        Mockito.when(english.getLanguageRootPaths()).thenReturn(Collections.singleton("/content/i18n/en"));
+        doReturn(britishEnglish).when(provider, "createResourceBundle", eq(null), eq(Locale.UK));
+        Mockito.when(britishEnglish.getLocale()).thenReturn(Locale.UK);
+        Mockito.when(britishEnglish.getLanguageRootPaths()).thenReturn(Collections.singleton("/content/i18n/en_GB"));
+        provider.getResourceBundle(Locale.ENGLISH);
+        provider.getResourceBundle(Locale.UK);
+
+        // the sibling root en is a string prefix of the changed path
+        provider.handleEvent(messageChangedEvent("/content/i18n/en_GB/message"));
+
+        verifyPrivate(provider, times(1)).invoke("applyMessageChange", eq(britishEnglish),
+            eq("/content/i18n/en_GB"), eq("/content/i18n/en_GB/message"), any(Event.class));
+        verifyPrivate(provider, never())
+            .invoke("applyMessageChange", eq(english), any(String.class), any(String.class), any(Event.class));
+    }
+
+    private void setupMessageChanges() throws Exception {
+        Whitebox.setInternalState(provider, "scheduler", scheduler);
+        Mockito.when(scheduler.AT(any(Date.class))).thenReturn(scheduleOptions);
+        Mockito.when(scheduleOptions.name(any(String.class))).thenReturn(scheduleOptions);
+        Mockito.when(english.getLanguageRootPaths()).thenReturn(Collections.singleton("/libs/i18n/en"));
+        Mockito.when(reloadedEnglish.getLocale()).thenReturn(Locale.ENGLISH);
+        Mockito.when(reloadedEnglish.getLanguageRootPaths()).thenReturn(Collections.singleton("/libs/i18n/en"));
+        doReturn(true).when(provider, "applyMessageChange", any(JcrResourceBundle.class), any(String.class),
+            any(String.class), any(Event.class));
+    }
+
+    private Event messageChangedEvent(final String path) {
+        final Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(SlingConstants.PROPERTY_PATH, path);
+        properties.put(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, new String[] {JcrResourceBundle.PROP_VALUE});
+        return new Event(SlingConstants.TOPIC_RESOURCE_CHANGED, properties);
     }
 
     private ComponentContext createComponentContext(Hashtable<String, Object> config) {
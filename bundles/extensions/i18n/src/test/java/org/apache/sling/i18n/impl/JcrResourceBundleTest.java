@@ -531,6 +531,39 @@ public class JcrResourceBundleTest extends RepositoryTestBase {
         assertEquals(MESSAGES_DE.size(), counter);
     }
 
+    public void test_applyMessage() throws Exception {
+        // overwrite stuff in apps
+        Node appsI18n = getSession().getRootNode().addNode("apps").addNode("i18n", "nt:unstructured");
+        Node de = appsI18n.addNode("de", "nt:folder");
+        de.addMixin("mix:language");
+        de.setProperty("jcr:language", "de");
+        for (Message msg : MESSAGES_DE_APPS.values()) {
+            msg.add(de);
+        }
+        getSession().save();
+
+        JcrResourceBundle bundle = new JcrResourceBundle(new Locale("de"), null, resolver);
+        Message msg = MESSAGES_DE_APPS.values().iterator().next();
+
+        // change in /libs is overlaid by /apps
+        assertTrue(bundle.applyMessage("/libs/i18n/de", msg.key, "changed in libs"));
+        assertEquals(msg.message, bundle.getString(msg.key));
+
+        // change in /apps is visible
+        assertTrue(bundle.applyMessage("/apps/i18n/de", msg.key, "changed in apps"));
+        assertEquals("changed in apps", bundle.getString(msg.key));
+
+        // new key
+        assertTrue(bundle.applyMessage("/libs/i18n/de", "new.key", "new message"));
+        assertEquals("new message", bundle.getString("new.key"));
+        assertTrue(bundle.keySet().contains("new.key"));
+        assertEquals(MESSAGES_DE.size() + 1, bundle.keySet().size());
+
+        // not a dictionary of this bundle
+        assertFalse(bundle.applyMessage("/content/i18n/de", "other.key", "other message"));
+        assertFalse(bundle.keySet().contains("other.key"));
+    }
+
     public void test_outside_search_path() throws Exception {
         Node libsI18n = getSession().getRootNode().getNode("libs/i18n");
         libsI18n.remove();
@@ -60,4 +60,15 @@ public @interface Model {
      */
     public ValidationStrategy validation() default ValidationStrategy.DISABLED;
 
+    /**
+     * @return {@code true} in case the created model should be cached for the adaptable, so that adapting the same
+     *  adaptable (e.g. the same request or resource) to this model again returns the same instance. Models adapted from
+     *  a request are cached for the lifetime of the request, models adapted from a resource until its resource
+     *  resolver is closed. Models adapted from other objects are not cached. Only enable this for models which don't
+     *  change their state after creation.
+     *  Defaults to {@code false}.
+     * @since 1.3.0
+     */
+    public boolean cache() default false;
+
 }
@@ -32,6 +32,7 @@ import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -40,7 +41,7 @@ import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
-import javax.annotation.PostConstruct;
+import javax.servlet.ServletRequest;
 
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.lang.StringUtils;
@@ -56,6 +57,8 @@ import org.apache.felix.scr.annotations.References;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.api.adapter.Adaptable;
 import org.apache.sling.api.adapter.AdapterFactory;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.commons.osgi.RankedServices;
 import org.apache.sling.models.annotations.Model;
@@ -138,12 +141,23 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             registry.onDisposed();
             ref = queue.poll();
         }
+
+        // drop the models cached for closed resource resolvers
+        Iterator<ResourceResolver> resolvers = resolverCaches.keySet().iterator();
+        while (resolvers.hasNext()) {
+            if (!resolvers.next().isLive()) {
+                resolvers.remove();
+            }
+        }
     }
 
     private static final Logger log = LoggerFactory.getLogger(ModelAdapterFactory.class);
 
     private static final int DEFAULT_MAX_RECURSION_DEPTH = 20;
 
+    /** Name of the request attribute holding the models cached for a request. */
+    private static final String REQUEST_CACHE_ATTRIBUTE = ModelAdapterFactory.class.getName() + ".AdapterCache";
+
     @Property(label = "Maximum Recursion Depth", description = "Maximum depth adaptation will be attempted.", intValue = DEFAULT_MAX_RECURSION_DEPTH)
     private static final String PROP_MAX_RECURSION_DEPTH = "max.recursion.depth";
 
@@ -182,6 +196,9 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
     // Use threadlocal to count recursive invocations and break recursing if a max. limit is reached (to avoid cyclic dependencies)
     private ThreadLocal<ThreadInvocationCounter> invocationCountThreadLocal;
 
+    // Models with @Model(cache = true) created from resources, cached per resource resolver until it is closed
+    private ConcurrentMap<ResourceResolver, Map<Object, Map<Class<?>, Object>>> resolverCaches;
+
     public <AdapterType> AdapterType getAdapter(Object adaptable, Class<AdapterType> type) {
         Result<AdapterType> result = internalCreateModel(adaptable, type);
         if (!result.wasSuccessfull()) {
@@ -282,6 +299,12 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             boolean isAdaptable = false;
 
             Model modelAnnotation = modelClass.getModelAnnotation();
+            if (modelAnnotation.cache()) {
+                Object cachedModel = getCachedModel(adaptable, requestedType);
+                if (cachedModel != null) {
+                    return new Result<ModelType>((ModelType) cachedModel);
+                }
+            }
             Class<?>[] declaredAdaptable = modelAnnotation.adaptables();
             for (Class<?> clazz : declaredAdaptable) {
                 if (clazz.isInstance(adaptable)) {
@@ -312,6 +335,9 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
                         return new Result<ModelType>(new ModelClassException(msg, e));
                     }
                 }
+                if (modelAnnotation.cache() && result.wasSuccessfull()) {
+                    putCachedModel(adaptable, requestedType, result.getValue());
+                }
             }
             return result;
         } finally {
@@ -319,6 +345,79 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         }
     }
     
+    /**
+     * The request cache is shared by all request objects of a request, e.g. the wrappers used for includes,
+     * therefore the models are cached per request object.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Object, Map<Class<?>, Object>> getRequestCache(ServletRequest request, boolean create) {
+        Map<Object, Map<Class<?>, Object>> cache = (Map<Object, Map<Class<?>, Object>>) request.getAttribute(REQUEST_CACHE_ATTRIBUTE);
+        if (cache == null && create) {
+            cache = Collections.synchronizedMap(new IdentityHashMap<Object, Map<Class<?>, Object>>());
+            request.setAttribute(REQUEST_CACHE_ATTRIBUTE, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * The models adapted from resources are cached per resource resolver, so that they are not kept
+     * after the resolver has been closed. Closed resolvers are removed by the periodic {@link #run()}.
+     */
+    private Map<Object, Map<Class<?>, Object>> getResolverCache(Resource resource, boolean create) {
+        ResourceResolver resolver = resource.getResourceResolver();
+        if (resolver == null) {
+            return null;
+        }
+        if (!resolver.isLive()) {
+            resolverCaches.remove(resolver);
+            return null;
+        }
+        Map<Object, Map<Class<?>, Object>> cache = resolverCaches.get(resolver);
+        if (cache == null && create) {
+            cache = Collections.synchronizedMap(new IdentityHashMap<Object, Map<Class<?>, Object>>());
+            Map<Object, Map<Class<?>, Object>> existing = resolverCaches.putIfAbsent(resolver, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        return cache;
+    }
+
+    private Map<Object, Map<Class<?>, Object>> getModelCache(Object adaptable, boolean create) {
+        if (adaptable instanceof ServletRequest) {
+            return getRequestCache((ServletRequest) adaptable, create);
+        }
+        if (adaptable instanceof Resource) {
+            return getResolverCache((Resource) adaptable, create);
+        }
+        return null;
+    }
+
+    private Object getCachedModel(Object adaptable, Class<?> requestedType) {
+        Map<Object, Map<Class<?>, Object>> cache = getModelCache(adaptable, false);
+        if (cache != null) {
+            synchronized (cache) {
+                Map<Class<?>, Object> models = cache.get(adaptable);
+                return models == null ? null : models.get(requestedType);
+            }
+        }
+        return null;
+    }
+
+    private void putCachedModel(Object adaptable, Class<?> requestedType, Object model) {
+        Map<Object, Map<Class<?>, Object>> cache = getModelCache(adaptable, true);
+        if (cache != null) {
+            synchronized (cache) {
+                Map<Class<?>, Object> models = cache.get(adaptable);
+                if (models == null) {
+                    models = new HashMap<Class<?>, Object>();
+                    cache.put(adaptable, models);
+                }
+                models.put(requestedType, model);
+            }
+        }
+    }
+
     private <ModelType> RuntimeException validateModel(Object adaptable, Class<ModelType> modelType, Model modelAnnotation) {
         if (modelAnnotation.validation() != ValidationStrategy.DISABLED) {
             if (modelValidation == null) {
@@ -563,7 +662,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             return new Result<ModelType>(missingElements);
         }
         try {
-            invokePostConstruct(object);
+            invokePostConstruct(object, modelClass);
         } catch (InvocationTargetException e) {
             return new Result<ModelType>(new PostConstructException("Post-construct method has thrown an exception for model " + modelClass.getType(), e.getCause()));
         } catch (IllegalAccessException e) {
@@ -717,43 +816,10 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         return element.getName();
     }
 
-    private boolean addMethodIfNotOverriden(List<Method> methods, Method newMethod) {
-        for (Method method : methods) {
-            if (method.getName().equals(newMethod.getName())) {
-                if (Arrays.equals(method.getParameterTypes(),newMethod.getParameterTypes())) {
-                    return false;
-                }
-            }
-        }
-        methods.add(newMethod);
-        return true;
-    }
-
-    private void invokePostConstruct(Object object) throws InvocationTargetException, IllegalAccessException {
-        Class<?> clazz = object.getClass();
-        List<Method> postConstructMethods = new ArrayList<Method>();
-        while (clazz != null) {
-            Method[] methods = clazz.getDeclaredMethods();
-            for (Method method : methods) {
-                if (method.isAnnotationPresent(PostConstruct.class)) {
-                    addMethodIfNotOverriden(postConstructMethods, method);
-                }
-            }
-            clazz = clazz.getSuperclass();
-        }
-        Collections.reverse(postConstructMethods);
-        for (Method method : postConstructMethods) {
-            boolean accessible = method.isAccessible();
-            try {
-                if (!accessible) {
-                    method.setAccessible(true);
-                }
-                method.invoke(object);
-            } finally {
-                if (!accessible) {
-                    method.setAccessible(false);
-                }
-            }
+    private void invokePostConstruct(Object object, ModelClass<?> modelClass) throws InvocationTargetException, IllegalAccessException {
+        // the methods are collected and made accessible once by the model class
+        for (Method method : modelClass.getPostConstructMethods()) {
+            method.invoke(object);
         }
     }
 
@@ -761,18 +827,11 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         Field field = injectableField.getField();
         Result<Object> result = adaptIfNecessary(value, field.getType(), field.getGenericType());
         if (result.wasSuccessfull()) {
-            boolean accessible = field.isAccessible();
+            // the field has been made accessible by the injectable field already
             try {
-                if (!accessible) {
-                    field.setAccessible(true);
-                }
                 field.set(createdObject, result.getValue());
             } catch (Exception e) {
                 return new ModelClassException("Could not inject field due to reflection issues", e);
-            } finally {
-                if (!accessible) {
-                    field.setAccessible(false);
-                }
             }
             return null;
         } else {
@@ -915,6 +974,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         BundleContext bundleContext = ctx.getBundleContext();
         this.queue = new ReferenceQueue<Object>();
         this.disposalCallbacks = new ConcurrentHashMap<java.lang.ref.Reference<Object>, DisposalCallbackRegistryImpl>();
+        this.resolverCaches = new ConcurrentHashMap<ResourceResolver, Map<Object, Map<Class<?>, Object>>>();
         Hashtable<Object, Object> properties = new Hashtable<Object, Object>();
         properties.put(Constants.SERVICE_VENDOR, "Apache Software Foundation");
         properties.put(Constants.SERVICE_DESCRIPTION, "Sling Models OSGi Service Disposal Job");
@@ -948,6 +1008,7 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             configPrinterRegistration.unregister();
             configPrinterRegistration = null;
         }
+        this.resolverCaches.clear();
     }
 
     protected void bindInjector(final Injector injector, final Map<String, Object> props) {
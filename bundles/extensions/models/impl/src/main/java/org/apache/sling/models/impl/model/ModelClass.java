@@ -21,9 +21,13 @@ package org.apache.sling.models.impl.model;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import javax.annotation.PostConstruct;
+
 import org.apache.sling.models.annotations.DefaultInjectionStrategy;
 import org.apache.sling.models.annotations.Model;
 import org.apache.sling.models.impl.ReflectionUtil;
@@ -37,6 +41,7 @@ public class ModelClass<ModelType> {
     private volatile ModelClassConstructor[] constructors;
     private volatile InjectableField[] injectableFields;
     private volatile InjectableMethod[] injectableMethods;
+    private final Method[] postConstructMethods;
 
     public ModelClass(Class<ModelType> type, StaticInjectAnnotationProcessorFactory[] processorFactories) {
         this.type = type;
@@ -47,6 +52,7 @@ public class ModelClass<ModelType> {
             defaultInjectionStrategy = modelAnnotation.defaultInjectionStrategy();
         }
         updateProcessorFactories(processorFactories);
+        this.postConstructMethods = getPostConstructMethods(type);
     }
     
     /**
@@ -100,6 +106,43 @@ public class ModelClass<ModelType> {
         return array;
     }
 
+    /**
+     * Collects the methods annotated with {@link PostConstruct} from the class and its super classes,
+     * super class methods first. The methods are made accessible once here instead of on every invocation.
+     */
+    private static Method[] getPostConstructMethods(Class<?> type) {
+        List<Method> postConstructMethods = new ArrayList<Method>();
+        Class<?> clazz = type;
+        while (clazz != null) {
+            Method[] methods = clazz.getDeclaredMethods();
+            for (Method method : methods) {
+                if (method.isAnnotationPresent(PostConstruct.class)) {
+                    addMethodIfNotOverriden(postConstructMethods, method);
+                }
+            }
+            clazz = clazz.getSuperclass();
+        }
+        Collections.reverse(postConstructMethods);
+        for (Method method : postConstructMethods) {
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+        }
+        return postConstructMethods.toArray(new Method[postConstructMethods.size()]);
+    }
+
+    private static boolean addMethodIfNotOverriden(List<Method> methods, Method newMethod) {
+        for (Method method : methods) {
+            if (method.getName().equals(newMethod.getName())) {
+                if (Arrays.equals(method.getParameterTypes(),newMethod.getParameterTypes())) {
+                    return false;
+                }
+            }
+        }
+        methods.add(newMethod);
+        return true;
+    }
+
     public Class<ModelType> getType() {
         return this.type;
     }
@@ -124,4 +167,8 @@ public class ModelClass<ModelType> {
         return this.injectableMethods;
     }
 
+    public Method[] getPostConstructMethods() {
+        return this.postConstructMethods;
+    }
+
 }
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.models.impl;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.models.testmodels.classes.CachedModel;
+import org.apache.sling.models.testmodels.classes.UncachedModel;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingTest {
+
+    @Mock
+    private ComponentContext componentCtx;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Resource resource;
+
+    @Mock
+    private Resource otherResource;
+
+    @Mock
+    private ResourceResolver resourceResolver;
+
+    @Mock
+    private SlingHttpServletRequest request;
+
+    @Mock
+    private SlingHttpServletRequest includedRequest;
+
+    private final Map<String, Object> requestAttributes = new HashMap<String, Object>();
+
+    private ModelAdapterFactory factory = new ModelAdapterFactory();
+
+    @Before
+    public void setup() {
+        when(componentCtx.getBundleContext()).thenReturn(bundleContext);
+        when(componentCtx.getProperties()).thenReturn(new Hashtable<String, Object>());
+        factory.activate(componentCtx);
+
+        // the included request wraps the request for another resource and shares its attributes
+        mockAttributes(request);
+        mockAttributes(includedRequest);
+        when(request.getResource()).thenReturn(resource);
+        when(includedRequest.getResource()).thenReturn(otherResource);
+        when(resource.getResourceResolver()).thenReturn(resourceResolver);
+        when(otherResource.getResourceResolver()).thenReturn(resourceResolver);
+        when(resourceResolver.isLive()).thenReturn(true);
+    }
+
+    private void mockAttributes(SlingHttpServletRequest request) {
+        when(request.getAttribute(anyString())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return requestAttributes.get(invocation.getArguments()[0]);
+            }
+        });
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                requestAttributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(request).setAttribute(anyString(), any());
+    }
+
+    @Test
+    public void testCachedModelFromResource() {
+        CachedModel model = factory.getAdapter(resource, CachedModel.class);
+        assertNotNull(model);
+        assertSame(model, factory.getAdapter(resource, CachedModel.class));
+        assertSame(model, factory.createModel(resource, CachedModel.class));
+        assertNotSame(model, factory.getAdapter(otherResource, CachedModel.class));
+    }
+
+    @Test
+    public void testCachedModelFromResourceOfClosedResolver() {
+        CachedModel model = factory.getAdapter(resource, CachedModel.class);
+        assertSame(model, factory.getAdapter(resource, CachedModel.class));
+
+        // the models are dropped with the resolver
+        when(resourceResolver.isLive()).thenReturn(false);
+        factory.run();
+        CachedModel otherModel = factory.getAdapter(resource, CachedModel.class);
+        assertNotNull(otherModel);
+        assertNotSame(model, otherModel);
+        assertNotSame(otherModel, factory.getAdapter(resource, CachedModel.class));
+    }
+
+    @Test
+    public void testCachedModelFromRequest() {
+        CachedModel model = factory.getAdapter(request, CachedModel.class);
+        assertNotNull(model);
+        assertSame(model, factory.getAdapter(request, CachedModel.class));
+
+        // a new request starts with an empty cache
+        requestAttributes.clear();
+        assertNotSame(model, factory.getAdapter(request, CachedModel.class));
+    }
+
+    @Test
+    public void testCachedModelFromIncludedRequest() {
+        CachedModel model = factory.getAdapter(request, CachedModel.class);
+        CachedModel includedModel = factory.getAdapter(includedRequest, CachedModel.class);
+        assertNotNull(includedModel);
+        assertNotSame(model, includedModel);
+        assertSame(model, factory.getAdapter(request, CachedModel.class));
+        assertSame(includedModel, factory.getAdapter(includedRequest, CachedModel.class));
+
+        // resources adapted during the request are cached separately as well
+        CachedModel resourceModel = factory.getAdapter(resource, CachedModel.class);
+        assertNotSame(resourceModel, factory.getAdapter(otherResource, CachedModel.class));
+        assertSame(resourceModel, factory.getAdapter(resource, CachedModel.class));
+    }
+
+    @Test
+    public void testUncachedModel() {
+        UncachedModel model = factory.getAdapter(resource, UncachedModel.class);
+        assertNotNull(model);
+        assertNotSame(model, factory.getAdapter(resource, UncachedModel.class));
+        assertNotSame(factory.getAdapter(request, UncachedModel.class), factory.getAdapter(request, UncachedModel.class));
+    }
+}
@@ -55,6 +55,19 @@ public interface ContentCreator {
      */
     void finishNode() throws RepositoryException;
 
+    /**
+     * Change the node types of the current node after it has been created,
+     * e.g. if the content declares them after the first child node.
+     * The primary node type is only changed for a node created by this
+     * import, mixin node types which are not present yet are added.
+     *
+     * @param primaryNodeType The primary node type or null to keep it.
+     * @param mixinNodeTypes  The mixin node types to add or null.
+     * @throws RepositoryException If anything goes wrong.
+     * @since 0.3
+     */
+    void setNodeTypes(String primaryNodeType, String[] mixinNodeTypes) throws RepositoryException;
+
     /**
      * Create a new property to the current node.
      *
@@ -61,10 +61,18 @@ public class BundleContentLoader extends BaseImportLoader {
     // bundles whose registration failed and should be retried
     private List<Bundle> delayedBundles;
 
+    // number of new nodes after which initial content is saved, 0 to disable
+    private final int autoSaveThreshold;
+
     public BundleContentLoader(BundleHelper bundleHelper, ContentReaderWhiteboard contentReaderWhiteboard) {
+        this(bundleHelper, contentReaderWhiteboard, 0);
+    }
+
+    public BundleContentLoader(BundleHelper bundleHelper, ContentReaderWhiteboard contentReaderWhiteboard, int autoSaveThreshold) {
         super(contentReaderWhiteboard);
         this.bundleHelper = bundleHelper;
         this.delayedBundles = new LinkedList<Bundle>();
+        this.autoSaveThreshold = autoSaveThreshold;
     }
 
     public void dispose() {
@@ -214,6 +222,7 @@ public class BundleContentLoader extends BaseImportLoader {
 
         log.debug("Installing initial content from bundle {}", bundle.getSymbolicName());
         final DefaultContentCreator contentCreator = new DefaultContentCreator(this.bundleHelper);
+        contentCreator.setAutoSaveThreshold(this.autoSaveThreshold);
         try {
             while (pathIter.hasNext()) {
                 final PathEntry pathEntry = pathIter.next();
@@ -33,9 +33,11 @@ import javax.jcr.Value;
 import javax.jcr.lock.LockException;
 
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.sling.commons.mime.MimeTypeService;
+import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.jcr.api.SlingRepository;
 import org.apache.sling.settings.SlingSettingsService;
 import org.osgi.framework.Bundle;
@@ -54,11 +56,22 @@ import org.slf4j.LoggerFactory;
  * </ul>
  *
  */
-@Component
-@Property(
-    name = Constants.SERVICE_DESCRIPTION,
-    value = "Apache Sling Content Loader Implementation"
-)
+@Component(metatype = true,
+    label = "%content.loader.service.name",
+    description = "%content.loader.service.description")
+@Properties({
+    @Property(
+        name = Constants.SERVICE_DESCRIPTION,
+        value = "Apache Sling Content Loader Implementation",
+        propertyPrivate = true
+    ),
+    @Property(
+        name = ContentLoaderService.PROPERTY_AUTOSAVE_THRESHOLD,
+        intValue = ContentLoaderService.DEFAULT_AUTOSAVE_THRESHOLD,
+        label = "%autosave.threshold.name",
+        description = "%autosave.threshold.description"
+    )
+})
 public class ContentLoaderService implements SynchronousBundleListener, BundleHelper {
 
     public static final String PROPERTY_CONTENT_LOADED = "content-loaded";
@@ -70,6 +83,14 @@ public class ContentLoaderService implements SynchronousBundleListener, BundleHe
 
     public static final String BUNDLE_CONTENT_NODE = "/var/sling/bundle-content";
 
+    /**
+     * Number of new nodes after which initial content is saved while
+     * loading, 0 to save the content of a bundle at once.
+     */
+    public static final String PROPERTY_AUTOSAVE_THRESHOLD = "autosave.threshold";
+
+    static final int DEFAULT_AUTOSAVE_THRESHOLD = 0;
+
     /** default log */
     final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -215,7 +236,9 @@ public class ContentLoaderService implements SynchronousBundleListener, BundleHe
     /** Activates this component, called by SCR before registering as a service */
     protected void activate(ComponentContext componentContext) {
         this.slingId = this.settingsService.getSlingId();
-        this.bundleContentLoader = new BundleContentLoader(this, contentReaderWhiteboard);
+        final int autoSaveThreshold = PropertiesUtil.toInteger(
+            componentContext.getProperties().get(PROPERTY_AUTOSAVE_THRESHOLD), DEFAULT_AUTOSAVE_THRESHOLD);
+        this.bundleContentLoader = new BundleContentLoader(this, contentReaderWhiteboard, autoSaveThreshold);
 
         componentContext.getBundleContext().addBundleListener(this);
 
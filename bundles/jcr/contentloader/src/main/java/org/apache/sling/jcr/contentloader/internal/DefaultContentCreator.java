@@ -120,6 +120,16 @@ public class DefaultContentCreator implements ContentCreator {
      */
     private ContentImportListener importListener;
 
+    /**
+     * Number of new nodes after which the changes are saved, 0 to disable.
+     */
+    private int autoSaveThreshold;
+
+    /**
+     * Number of new nodes since the last save.
+     */
+    private int unsavedNodes;
+
     /**
      * A one time use seed to randomize the user location.
      */
@@ -189,6 +199,19 @@ public class DefaultContentCreator implements ContentCreator {
         this.versionables.clear();
     }
 
+    /**
+     * Save the changes whenever the given number of new nodes has been
+     * created instead of leaving all changes to the caller. This keeps the
+     * transient space small when importing large content, but content
+     * imported up to a failure remains persisted.
+     *
+     * @param threshold The number of new nodes or 0 to disable auto save.
+     */
+    public void setAutoSaveThreshold(final int threshold) {
+        this.autoSaveThreshold = threshold;
+        this.unsavedNodes = 0;
+    }
+
     /**
      * Set the ignore overwrite flag.
      *
@@ -244,6 +267,7 @@ public class DefaultContentCreator implements ContentCreator {
                 // no explicit node type, use repository default
                 checkoutIfNecessary(parentNode);
                 node = parentNode.addNode(name);
+                this.unsavedNodes++;
                 addNodeToCreatedList(node);
                 if (this.importListener != null) {
                     this.importListener.onCreate(node.getPath());
@@ -252,6 +276,7 @@ public class DefaultContentCreator implements ContentCreator {
                 // explicit primary node type
                 checkoutIfNecessary(parentNode);
                 node = parentNode.addNode(name, primaryNodeType);
+                this.unsavedNodes++;
                 addNodeToCreatedList(node);
                 if (this.importListener != null) {
                     this.importListener.onCreate(node.getPath());
@@ -280,6 +305,31 @@ public class DefaultContentCreator implements ContentCreator {
         }
     }
 
+    /**
+     * @see org.apache.sling.jcr.contentloader.ContentCreator#setNodeTypes(java.lang.String, java.lang.String[])
+     */
+    public void setNodeTypes(String primaryNodeType, String[] mixinNodeTypes) throws RepositoryException {
+        // the root node is not created in parent node import mode
+        if (this.isParentNodeImport && this.parentNodeStack.size() == 1) {
+            return;
+        }
+        final Node node = this.parentNodeStack.peek();
+        // like in createNode the primary type of an existing node is kept
+        if (primaryNodeType != null && node.isNew() && !node.getPrimaryNodeType().getName().equals(primaryNodeType)) {
+            node.setPrimaryType(primaryNodeType);
+        }
+        if (mixinNodeTypes != null) {
+            for (final String mixin : mixinNodeTypes) {
+                if (!node.isNodeType(mixin)) {
+                    node.addMixin(mixin);
+                }
+            }
+        }
+        if (this.configuration.isCheckin() && node.isNodeType("mix:versionable") && !this.versionables.contains(node)) {
+            this.versionables.add(node);
+        }
+    }
+
     /**
      * @see org.apache.sling.jcr.contentloader.ContentCreator#createProperty(java.lang.String, int, java.lang.String)
      */
@@ -438,6 +488,12 @@ public class DefaultContentCreator implements ContentCreator {
         final Node node = this.parentNodeStack.pop();
         // resolve REFERENCE property values pointing to this node
         resolveReferences(node);
+        // save once a node is complete to keep the transient space small
+        if (this.autoSaveThreshold > 0 && this.unsavedNodes >= this.autoSaveThreshold) {
+            log.debug("Auto saving after {} new nodes at {}", this.unsavedNodes, node.getPath());
+            node.getSession().save();
+            this.unsavedNodes = 0;
+        }
     }
 
     private void addNodeToCreatedList(Node node) throws RepositoryException {
@@ -710,6 +766,7 @@ public class DefaultContentCreator implements ContentCreator {
                 }
                 checkoutIfNecessary(node);
                 final Node n = node.addNode(token, newNodeType);
+                this.unsavedNodes++;
                 addNodeToCreatedList(n);
                 if (this.importListener != null) {
                     this.importListener.onCreate(node.getPath());
@@ -19,9 +19,12 @@
 package org.apache.sling.jcr.contentloader.internal.readers;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -38,6 +41,7 @@ import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.commons.json.JSONArray;
 import org.apache.sling.commons.json.JSONException;
 import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.commons.json.JSONParser;
 import org.apache.sling.jcr.contentloader.ContentCreator;
 import org.apache.sling.jcr.contentloader.ContentReader;
 
@@ -89,6 +93,14 @@ import org.apache.sling.jcr.contentloader.ContentReader;
  *   }
  *
  * </pre>
+ *
+ * The document is parsed as a stream and the nodes are passed to the
+ * {@link ContentCreator} while reading, so the size of the document does not
+ * matter. As the node types have to be known when a node is created, the
+ * properties of a node are collected until its first child node is reached.
+ * A <code>jcr:primaryType</code> or <code>jcr:mixinTypes</code> declared after
+ * a child node is applied to the already created node with
+ * {@link ContentCreator#setNodeTypes(String, String[])}.
  */
 @Component
 @Service
@@ -98,6 +110,9 @@ import org.apache.sling.jcr.contentloader.ContentReader;
 })
 public class JsonReader implements ContentReader {
 
+    private static final String PRIMARY_TYPE = "jcr:primaryType";
+    private static final String MIXIN_TYPES = "jcr:mixinTypes";
+
     private static final Pattern jsonDate = Pattern.compile("^[0-9]{4}-[0-9]{2}-[0-9]{2}T[0-9]{2}:[0-9]{2}:[0-9]{2}\\.[0-9]{3}[-+]{1}[0-9]{2}[:]{0,1}[0-9]{2}$");
     private static final String REFERENCE = "jcr:reference:";
     private static final String PATH = "jcr:path:";
@@ -148,28 +163,109 @@ public class JsonReader implements ContentReader {
 
     public void parse(InputStream ins, ContentCreator contentCreator) throws IOException, RepositoryException {
         try {
-            String jsonString = toString(ins).trim();
-            if (!jsonString.startsWith("{")) {
-                jsonString = "{" + jsonString + "}";
+            final JSONParser parser = new JSONParser(getReader(ins));
+            if (parser.next() != JSONParser.Event.START_OBJECT) {
+                throw new JSONException("Expected a JSON object");
             }
-
-            JSONObject json = new JSONObject(jsonString);
-            this.createNode(null, json, contentCreator);
+            this.createNode(null, parser, contentCreator);
         } catch (JSONException je) {
             throw (IOException) new IOException(je.getMessage()).initCause(je);
         }
     }
 
+    /**
+     * Create the node for the object just started by the parser. The members
+     * of the object are collected until the first child node is reached and
+     * the node can be created. From then on all members are passed on while
+     * reading.
+     */
+    protected void createNode(String name, JSONParser parser, ContentCreator contentCreator)
+    throws JSONException, RepositoryException {
+        final JSONObject members = new JSONObject();
+        while (parser.next() == JSONParser.Event.KEY) {
+            final String n = parser.getKey();
+            final JSONParser.Event event = parser.next();
+            if (event == JSONParser.Event.START_OBJECT && !isSpecialName(n)) {
+                // first child node: create this node and stream the remaining members
+                this.createNodeAndMembers(name, members, contentCreator);
+                this.createNode(n, parser, contentCreator);
+                this.createMembers(parser, contentCreator);
+                contentCreator.finishNode();
+                return;
+            }
+            members.put(n, this.readValue(event, parser));
+        }
+        this.createNode(name, members, contentCreator);
+    }
+
+    /**
+     * Create the remaining members of the current node while reading them.
+     */
+    private void createMembers(JSONParser parser, ContentCreator contentCreator)
+    throws JSONException, RepositoryException {
+        while (parser.next() == JSONParser.Event.KEY) {
+            final String n = parser.getKey();
+            final JSONParser.Event event = parser.next();
+            if (event == JSONParser.Event.START_OBJECT && !isSpecialName(n)) {
+                this.createNode(n, parser, contentCreator);
+            } else if (PRIMARY_TYPE.equals(n)) {
+                // the node has been created already
+                contentCreator.setNodeTypes(getPrimaryType(this.readValue(event, parser)), null);
+            } else if (MIXIN_TYPES.equals(n)) {
+                contentCreator.setNodeTypes(null, getMixinTypes(this.readValue(event, parser)));
+            } else {
+                this.createMember(n, this.readValue(event, parser), contentCreator);
+            }
+        }
+    }
+
+    private boolean isSpecialName(String name) {
+        return ignoredNames.contains(name) || SECURITY_PRINCIPLES.equals(name) || SECURITY_ACL.equals(name);
+    }
+
+    /**
+     * Read the value of the current event, objects and arrays are read completely.
+     */
+    private Object readValue(JSONParser.Event event, JSONParser parser) throws JSONException {
+        switch (event) {
+            case START_OBJECT:
+                return parser.readObject();
+            case START_ARRAY:
+                return parser.readArray();
+            case VALUE:
+                return parser.getValue();
+            default:
+                throw new JSONException("Unexpected " + event);
+        }
+    }
+
     protected void createNode(String name, JSONObject obj, ContentCreator contentCreator)
     throws JSONException, RepositoryException {
-        Object primaryTypeObj = obj.opt("jcr:primaryType");
-        String primaryType = null;
-        if (primaryTypeObj != null) {
-            primaryType = String.valueOf(primaryTypeObj);
+        this.createNodeAndMembers(name, obj, contentCreator);
+        contentCreator.finishNode();
+    }
+
+    /**
+     * Create the node and all members of the object, without finishing the node.
+     */
+    private void createNodeAndMembers(String name, JSONObject obj, ContentCreator contentCreator)
+    throws JSONException, RepositoryException {
+        contentCreator.createNode(name, getPrimaryType(obj.opt(PRIMARY_TYPE)), getMixinTypes(obj.opt(MIXIN_TYPES)));
+
+        // add properties and nodes
+        JSONArray names = obj.names();
+        for (int i = 0; names != null && i < names.length(); i++) {
+            final String n = names.getString(i);
+            this.createMember(n, obj.get(n), contentCreator);
         }
+    }
+
+    private String getPrimaryType(Object primaryTypeObj) {
+        return primaryTypeObj == null ? null : String.valueOf(primaryTypeObj);
+    }
 
+    private String[] getMixinTypes(Object mixinsObject) throws JSONException {
         String[] mixinTypes = null;
-        Object mixinsObject = obj.opt("jcr:mixinTypes");
         if (mixinsObject instanceof JSONArray) {
             JSONArray mixins = (JSONArray) mixinsObject;
             mixinTypes = new String[mixins.length()];
@@ -177,28 +273,23 @@ public class JsonReader implements ContentReader {
                 mixinTypes[i] = mixins.getString(i);
             }
         }
+        return mixinTypes;
+    }
 
-        contentCreator.createNode(name, primaryType, mixinTypes);
-
-        // add properties and nodes
-        JSONArray names = obj.names();
-        for (int i = 0; names != null && i < names.length(); i++) {
-            final String n = names.getString(i);
-            // skip well known objects
-            if (!ignoredNames.contains(n)) {
-                Object o = obj.get(n);
-                if (SECURITY_PRINCIPLES.equals(n)) {
-                	this.createPrincipals(o, contentCreator);
-                } else if (SECURITY_ACL.equals(n)) {
-                	this.createAcl(o, contentCreator);
-                } else if (o instanceof JSONObject) {
-                    this.createNode(n, (JSONObject) o, contentCreator);
-                } else {
-                    this.createProperty(n, o, contentCreator);
-                }
+    private void createMember(String n, Object o, ContentCreator contentCreator)
+    throws JSONException, RepositoryException {
+        // skip well known objects
+        if (!ignoredNames.contains(n)) {
+            if (SECURITY_PRINCIPLES.equals(n)) {
+            	this.createPrincipals(o, contentCreator);
+            } else if (SECURITY_ACL.equals(n)) {
+            	this.createAcl(o, contentCreator);
+            } else if (o instanceof JSONObject) {
+                this.createNode(n, (JSONObject) o, contentCreator);
+            } else {
+                this.createProperty(n, o, contentCreator);
             }
         }
-        contentCreator.finishNode();
     }
 
     protected void createProperty(String name, Object value, ContentCreator contentCreator)
@@ -252,7 +343,11 @@ public class JsonReader implements ContentReader {
         return name;
     }
 
-    private String toString(InputStream ins) throws IOException {
+    /**
+     * Return a reader for the document, detecting an optional encoding
+     * declaration and adding the enclosing braces if they are missing.
+     */
+    private Reader getReader(InputStream ins) throws IOException {
         if (!ins.markSupported()) {
             ins = new BufferedInputStream(ins);
         }
@@ -272,15 +367,74 @@ public class JsonReader implements ContentReader {
             encoding = "UTF-8";
         }
 
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        byte[] buf = new byte[1024];
-        int rd;
-        while ( (rd = ins.read(buf)) >= 0) {
-            bos.write(buf, 0, rd);
+        final PushbackReader reader = new PushbackReader(new InputStreamReader(ins, encoding));
+        int first;
+        do {
+            first = reader.read();
+        } while (first != -1 && first <= ' ');
+        if (first == '{') {
+            reader.unread(first);
+            return reader;
+        }
+        if (first != -1) {
+            reader.unread(first);
+        }
+        return new EnclosingBracesReader(reader);
+    }
+
+    /**
+     * A reader adding the enclosing braces to a document containing
+     * just the members of the top level object.
+     */
+    private static final class EnclosingBracesReader extends FilterReader {
+
+        private static final int OPENING_BRACE = 0;
+        private static final int CONTENT = 1;
+        private static final int CLOSING_BRACE = 2;
+        private static final int END = 3;
+
+        private int state = OPENING_BRACE;
+
+        EnclosingBracesReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final char[] c = new char[1];
+            return this.read(c, 0, 1) == -1 ? -1 : c[0];
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            switch (this.state) {
+                case OPENING_BRACE:
+                    this.state = CONTENT;
+                    cbuf[off] = '{';
+                    return 1;
+                case CONTENT:
+                    final int n = super.read(cbuf, off, len);
+                    if (n != -1) {
+                        return n;
+                    }
+                    this.state = CLOSING_BRACE;
+                    // fall through
+                case CLOSING_BRACE:
+                    this.state = END;
+                    cbuf[off] = '}';
+                    return 1;
+                default:
+                    return -1;
+            }
         }
-        bos.close(); // just to comply with the contract
 
-        return new String(bos.toByteArray(), encoding);
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
     }
 
 
@@ -211,6 +211,7 @@ public class XmlReader implements ContentReader {
         NodeDescription currentNode = null;
         PropertyDescription currentProperty = null;
         String currentElement;
+        boolean rootElementStarted = false;
 
 
         int eventType = this.xmlParser.getEventType();
@@ -234,6 +235,13 @@ public class XmlReader implements ContentReader {
             }
             if (eventType == XmlPullParser.START_TAG) {
 
+                if (!rootElementStarted) {
+                    // processing instructions are only looked at in the prolog,
+                    // release the mark so the buffer does not grow with the document
+                    bufferedInput.mark(0);
+                    rootElementStarted = true;
+                }
+
                 currentElement = this.xmlParser.getName();
 
                 if (ELEM_PROPERTY.equals(currentElement)) {
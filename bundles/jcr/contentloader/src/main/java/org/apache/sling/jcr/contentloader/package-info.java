@@ -17,7 +17,7 @@
  * under the License.
  */
 
-@Version("0.2")
+@Version("0.3")
 package org.apache.sling.jcr.contentloader;
 
 import aQute.bnd.annotation.Version;
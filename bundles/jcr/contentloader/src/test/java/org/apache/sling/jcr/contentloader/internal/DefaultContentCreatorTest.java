@@ -246,6 +246,49 @@ public class DefaultContentCreatorTest {
 
     //----- DefaultContentCreator#createNode(String name, String primaryNodeType, String[] mixinNodeTypes)-------//
 
+    @Test
+    public void setNodeTypesAfterChildNode() throws RepositoryException {
+        final String name = uniqueId();
+        contentCreator.prepareParsing(parentNode, DEFAULT_NAME);
+        contentCreator.createNode(name, null, null);
+        contentCreator.createNode("child", null, null);
+        contentCreator.finishNode();
+        contentCreator.setNodeTypes(null, new String[] {"mix:referenceable"});
+        contentCreator.finishNode();
+
+        final Node node = parentNode.getNode(name);
+        assertTrue(node.isNodeType("mix:referenceable"));
+        assertTrue(node.hasNode("child"));
+    }
+
+    @Test
+    public void setPrimaryTypeOfNewNode() throws RepositoryException {
+        final String name = uniqueId();
+        contentCreator.prepareParsing(parentNode, DEFAULT_NAME);
+        contentCreator.createNode(name, null, null);
+        contentCreator.setNodeTypes("nt:folder", null);
+        contentCreator.finishNode();
+
+        assertEquals("nt:folder", parentNode.getNode(name).getPrimaryNodeType().getName());
+    }
+
+    @Test
+    public void setNodeTypesKeepsPrimaryTypeOfExistingNode() throws RepositoryException {
+        final String name = uniqueId();
+        parentNode.addNode(name, "nt:unstructured");
+        session.save();
+        contentCreator.init(ImportOptionsFactory.createImportOptions(false, false, true, false, false),
+                new HashMap<String, ContentReader>(), null, null);
+        contentCreator.prepareParsing(parentNode, DEFAULT_NAME);
+        contentCreator.createNode(name, null, null);
+        contentCreator.setNodeTypes("nt:folder", new String[] {"mix:referenceable"});
+        contentCreator.finishNode();
+
+        final Node node = parentNode.getNode(name);
+        assertEquals("nt:unstructured", node.getPrimaryNodeType().getName());
+        assertTrue(node.isNodeType("mix:referenceable"));
+    }
+
     @Test
     public void createNodeWithoutNameAndTwoInStack() throws RepositoryException {
         contentCreator.init(ImportOptionsFactory.createImportOptions(true, true, true, false, false),
@@ -473,6 +516,21 @@ public class DefaultContentCreatorTest {
         mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void finishNodeWithAutoSave() throws RepositoryException {
+        contentCreator.setAutoSaveThreshold(2);
+        contentCreator.prepareParsing(parentNode, null);
+
+        contentCreator.createNode("first", null, null);
+        contentCreator.finishNode();
+        assertTrue(session.hasPendingChanges());
+
+        contentCreator.createNode("second", null, null);
+        contentCreator.finishNode();
+        assertFalse(session.hasPendingChanges());
+        assertTrue(parentNode.hasNode("second"));
+    }
+
     @Test
     public void finishNodeWithSingleProperty() throws RepositoryException, NoSuchFieldException {
         final String propName = uniqueId();
@@ -261,6 +261,41 @@ public class JsonReaderTest {
         this.parse(json);
     }
 
+    @org.junit.Test public void testPropertiesAroundChild() throws Exception {
+        String json = "{ " +
+        " \"jcr:primaryType\" : \"xyz:type\"," +
+        " p1 : \"v1\"," +
+        " c1 : { c1p1 : \"v2\" }," +
+        " p2 : \"v3\"" +
+        "}";
+        this.mockery.checking(new Expectations() {{
+            one(creator).createNode(null, "xyz:type", null); inSequence(mySequence);
+            one(creator).createProperty("p1", PropertyType.UNDEFINED, "v1"); inSequence(mySequence);
+            one(creator).createNode("c1", null, null); inSequence(mySequence);
+            one(creator).createProperty("c1p1", PropertyType.UNDEFINED, "v2"); inSequence(mySequence);
+            one(creator).finishNode(); inSequence(mySequence);
+            one(creator).createProperty("p2", PropertyType.UNDEFINED, "v3"); inSequence(mySequence);
+            one(creator).finishNode(); inSequence(mySequence);
+        }});
+        this.parse(json);
+    }
+
+    @org.junit.Test public void testNodeTypesAfterChild() throws Exception {
+        String json = "{ " +
+        " c1 : {}," +
+        " \"jcr:primaryType\" : \"xyz:type\"," +
+        " \"jcr:mixinTypes\" : [\"xyz:mix1\"]" +
+        "}";
+        this.mockery.checking(new Expectations() {{
+            one(creator).createNode(null, null, null); inSequence(mySequence);
+            one(creator).createNode("c1", null, null); inSequence(mySequence);
+            one(creator).finishNode(); inSequence(mySequence);
+            one(creator).setNodeTypes("xyz:type", null); inSequence(mySequence);
+            one(creator).setNodeTypes(null, new String[] {"xyz:mix1"}); inSequence(mySequence);
+            one(creator).finishNode(); inSequence(mySequence);
+        }});
+        this.parse(json);
+    }
 
     @org.junit.Test public void testCreateAcl() throws Exception {
     	String json = " { " +
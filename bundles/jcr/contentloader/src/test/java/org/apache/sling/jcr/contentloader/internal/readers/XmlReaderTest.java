@@ -133,6 +133,9 @@ public class XmlReaderTest extends TestCase {
         public void finishNode() throws RepositoryException {
         }
 
+        public void setNodeTypes(String primaryNodeType, String[] mixinNodeTypes) throws RepositoryException {
+        }
+
         public void createProperty(String name, int propertyType, String value) throws RepositoryException {
         }
 
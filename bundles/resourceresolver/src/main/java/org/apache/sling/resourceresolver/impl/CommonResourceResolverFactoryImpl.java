@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections.BidiMap;
 import org.apache.sling.api.resource.LoginException;
@@ -81,12 +82,23 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
 
     private boolean logResourceResolverClosing = false;
 
+    /** Maximum number of resources cached per resource resolver, 0 if disabled. */
+    private final int resourceCacheSize;
+
+    /** Resource cache statistics, summed up over all closed resource resolvers. */
+    private final AtomicLong resourceCacheHits = new AtomicLong();
+
+    private final AtomicLong resourceCacheMisses = new AtomicLong();
+
+    private final AtomicLong resourceCacheInvalidations = new AtomicLong();
+
     /**
      * Create a new common resource resolver factory.
      */
     public CommonResourceResolverFactoryImpl(final ResourceResolverFactoryActivator activator) {
         this.activator = activator;
         this.logResourceResolverClosing = activator.shouldLogResourceResolverClosing();
+        this.resourceCacheSize = Math.max(0, activator.getResourceCacheSize());
         this.refQueueThread = new Thread("Apache Sling Resource Resolver Finalizer Thread") {
 
             @Override
@@ -405,6 +417,35 @@ public class CommonResourceResolverFactoryImpl implements ResourceResolverFactor
         return logResourceResolverClosing;
     }
 
+    /**
+     * Maximum number of resources each resource resolver caches,
+     * <code>0</code> if the resource cache is disabled.
+     */
+    public int getResourceCacheSize() {
+        return this.resourceCacheSize;
+    }
+
+    /**
+     * Add the statistics of a resource resolver's resource cache.
+     */
+    public void addResourceCacheStatistics(final long hits, final long misses, final long invalidations) {
+        this.resourceCacheHits.addAndGet(hits);
+        this.resourceCacheMisses.addAndGet(misses);
+        this.resourceCacheInvalidations.addAndGet(invalidations);
+    }
+
+    public long getResourceCacheHits() {
+        return this.resourceCacheHits.get();
+    }
+
+    public long getResourceCacheMisses() {
+        return this.resourceCacheMisses.get();
+    }
+
+    public long getResourceCacheInvalidations() {
+        return this.resourceCacheInvalidations.get();
+    }
+
     public ResourceProviderTracker getResourceProviderTracker() {
         return activator.getResourceProviderTracker();
     }
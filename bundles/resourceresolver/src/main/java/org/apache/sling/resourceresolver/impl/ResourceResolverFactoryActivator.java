@@ -255,6 +255,15 @@ public class ResourceResolverFactoryActivator implements Runnable {
                   "production systems.")
     private static final String PROP_LOG_RESOURCE_RESOLVER_CLOSING = "resource.resolver.log.closing";
 
+    private static final int DEFAULT_RESOURCE_CACHE_SIZE = 0;
+    @Property(intValue = DEFAULT_RESOURCE_CACHE_SIZE,
+              label = "Resource Cache Size",
+              description = "Maximum number of resources (including non existing ones) each resource resolver " +
+                  "keeps for repeated getResource calls. The cache is cleared on commit, revert, refresh and " +
+                  "on any change done through the resolver, changes done by other means (e.g. through an " +
+                  "adapted session) are not seen before. A value of 0 or less disables the cache.")
+    private static final String PROP_RESOURCE_CACHE_SIZE = "resource.resolver.resource.cache.size";
+
     /** Tracker for the resource decorators. */
     private final ResourceDecoratorTracker resourceDecoratorTracker = new ResourceDecoratorTracker();
 
@@ -317,6 +326,9 @@ public class ResourceResolverFactoryActivator implements Runnable {
     /** log the place where a resource resolver is closed */
     private boolean logResourceResolverClosing = DEFAULT_LOG_RESOURCE_RESOLVER_CLOSING;
 
+    /** max number of resources cached per resource resolver */
+    private int resourceCacheSize = DEFAULT_RESOURCE_CACHE_SIZE;
+
     /** Vanity path whitelist */
     private String[] vanityPathWhiteList;
 
@@ -424,6 +436,10 @@ public class ResourceResolverFactoryActivator implements Runnable {
         return logResourceResolverClosing;
     }
 
+    public int getResourceCacheSize() {
+        return this.resourceCacheSize;
+    }
+
     // ---------- SCR Integration ---------------------------------------------
 
     /**
@@ -551,6 +567,7 @@ public class ResourceResolverFactoryActivator implements Runnable {
         this.vanityPathPrecedence = PropertiesUtil.toBoolean(properties.get(PROP_VANITY_PATH_PRECEDENCE), DEFAULT_VANITY_PATH_PRECEDENCE);
         this.logResourceResolverClosing = PropertiesUtil.toBoolean(properties.get(PROP_LOG_RESOURCE_RESOLVER_CLOSING),
             DEFAULT_LOG_RESOURCE_RESOLVER_CLOSING);
+        this.resourceCacheSize = PropertiesUtil.toInteger(properties.get(PROP_RESOURCE_CACHE_SIZE), DEFAULT_RESOURCE_CACHE_SIZE);
 
         final BundleContext bc = componentContext.getBundleContext();
 
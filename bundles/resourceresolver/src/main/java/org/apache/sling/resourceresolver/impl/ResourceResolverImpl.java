@@ -55,6 +55,7 @@ import org.apache.sling.api.resource.query.Query;
 import org.apache.sling.api.resource.query.QueryInstructions;
 import org.apache.sling.api.resource.query.Result;
 import org.apache.sling.resourceresolver.impl.helper.RedirectResource;
+import org.apache.sling.resourceresolver.impl.helper.ResourceCache;
 import org.apache.sling.resourceresolver.impl.helper.ResourceIteratorDecorator;
 import org.apache.sling.resourceresolver.impl.helper.ResourcePathIterator;
 import org.apache.sling.resourceresolver.impl.helper.ResourceResolverContext;
@@ -114,6 +115,9 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
     private volatile Exception closedResolverException;
 
+    /** Cache for getResource, <code>null</code> if disabled. */
+    private final ResourceCache resourceCache;
+
     public ResourceResolverImpl(final CommonResourceResolverFactoryImpl factory, final boolean isAdmin, final Map<String, Object> authenticationInfo) throws LoginException {
         this(factory, isAdmin, authenticationInfo, factory.getResourceProviderTracker().getResourceProviderStorage());
     }
@@ -123,6 +127,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         this.authenticationInfo = authenticationInfo;
         this.provider = createProvider(storage);
         this.context = new ResourceResolverContext(isAdmin);
+        this.resourceCache = createResourceCache(factory);
         this.factory.register(this, context);
     }
 
@@ -143,9 +148,25 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         }
         this.provider = createProvider(factory.getResourceProviderTracker().getResourceProviderStorage());
         this.context = new ResourceResolverContext(resolver.context.isAdmin());
+        this.resourceCache = createResourceCache(factory);
         this.factory.register(this, context);
     }
 
+    private static ResourceCache createResourceCache(final CommonResourceResolverFactoryImpl factory) {
+        final int size = factory.getResourceCacheSize();
+        return size > 0 ? new ResourceCache(size) : null;
+    }
+
+    /**
+     * Clear the resource cache, called whenever the state seen through
+     * this resolver might have changed.
+     */
+    private void invalidateResourceCache() {
+        if (this.resourceCache != null) {
+            this.resourceCache.clear();
+        }
+    }
+
     private CombinedResourceProvider createProvider(ResourceProviderStorage storage) throws LoginException {
         final ResourceProviderAuthenticator authenticator = new ResourceProviderAuthenticator(this, authenticationInfo, this.factory.getResourceAccessSecurityTracker());
         final CombinedResourceProvider provider = new CombinedResourceProvider(storage, this, authenticator);
@@ -186,6 +207,10 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             this.factory.unregister(this, this.context);
             provider.logout();
             context.close();
+            if (this.resourceCache != null) {
+                this.factory.addResourceCacheStatistics(this.resourceCache.getHits(),
+                        this.resourceCache.getMisses(), this.resourceCache.getInvalidations());
+            }
         }
     }
 
@@ -543,7 +568,9 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         }
 
         boolean mappedPathIsUrl = false;
-        for (final MapEntry mapEntry : this.factory.getMapEntries().getMapMaps()) {
+        final Iterator<MapEntry> mapEntriesIterator = this.factory.getMapEntries().getMapMapsIterator(mappedPath);
+        while (mapEntriesIterator.hasNext()) {
+            final MapEntry mapEntry = mapEntriesIterator.next();
             final String[] mappedPaths = mapEntry.replace(mappedPath);
             if (mappedPaths != null) {
 
@@ -684,12 +711,25 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
         if ( path != null ) {
             // if the path is absolute, normalize . and .. segments and get res
             if (path.startsWith("/")) {
+                final ResourceCache cache = this.resourceCache;
+                long generation = 0;
+                if (cache != null) {
+                    final Resource cached = cache.get(path);
+                    if (cached != null) {
+                        return cached == ResourceCache.NON_EXISTING ? null : cached;
+                    }
+                    generation = cache.getGeneration();
+                }
+                final String key = path;
                 ParsedParameters parsedPath = new ParsedParameters(path);
                 path = ResourceUtil.normalize(parsedPath.getRawPath());
                 result = (path != null) ? getAbsoluteResourceInternal(parent, path, parsedPath.getParameters(), false) : null;
                 if (result != null) {
                     result = this.factory.getResourceDecoratorTracker().decorate(result);
                 }
+                if (cache != null) {
+                    cache.put(key, result, generation);
+                }
             } else {
 
                 // otherwise we have to apply the search path
@@ -915,6 +955,15 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
             logger.debug("resolveInternal: Found resource {} with path info {} for {}", new Object[] { resource, rpi, absPath });
 
+        } else if (factory.getMapEntries().isOptimizeAliasResolutionEnabled()
+                && absPath.indexOf("/.") == -1 && absPath.indexOf("//") == -1
+                && !factory.getMapEntries().hasAliasCandidate(absPath)) {
+
+            // without an alias on the way, drilling down the resource tree
+            // only checks the paths already tried above: the path does
+            // not exist and there's no need to access the repository again
+            logger.debug("resolveInternal: No resource and no alias found for {}", absPath);
+
         } else {
 
             // no direct resource found, so we have to drill down into the
@@ -1167,6 +1216,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
             return;
         }
         // if resource is null, we get an NPE as stated in the API
+        this.invalidateResourceCache();
         this.provider.delete(resource);
     }
 
@@ -1199,6 +1249,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
                 throw new IllegalArgumentException("Can't create child on a synthetic root");
             }
         }
+        this.invalidateResourceCache();
         final Resource rsrc = this.provider.create(path, properties);
         return this.factory.getResourceDecoratorTracker().decorate(rsrc);
     }
@@ -1208,6 +1259,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public void revert() {
+        this.invalidateResourceCache();
         this.provider.revert();
     }
 
@@ -1216,6 +1268,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public void commit() throws PersistenceException {
+        this.invalidateResourceCache();
         this.provider.commit();
     }
 
@@ -1295,6 +1348,7 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
      */
     @Override
     public void refresh() {
+        this.invalidateResourceCache();
         this.provider.refresh();
     }
 
@@ -1305,11 +1359,13 @@ public class ResourceResolverImpl extends SlingAdaptable implements ResourceReso
 
     @Override
     public Resource copy(final String srcAbsPath, final String destAbsPath) throws PersistenceException {
+        this.invalidateResourceCache();
         return this.provider.copy(srcAbsPath, destAbsPath);
     }
 
     @Override
     public Resource move(final String srcAbsPath, final String destAbsPath) throws PersistenceException {
+        this.invalidateResourceCache();
         return this.provider.move(srcAbsPath, destAbsPath);
     }
 
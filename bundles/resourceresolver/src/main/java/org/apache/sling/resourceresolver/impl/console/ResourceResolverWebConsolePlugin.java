@@ -141,6 +141,12 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
         pw.print(resolverFactory.getMapRoot());
         pw.print("</td>");
         pw.println("</tr>");
+        pw.println("<tr class='content'>");
+        pw.println("<td class='content'>Resource Cache</td>");
+        pw.print("<td class='content' colspan='2'>");
+        pw.print(ResponseUtil.escapeXml(getResourceCacheInfo()));
+        pw.print("</td>");
+        pw.println("</tr>");
 
         separatorHtml(pw);
 
@@ -285,10 +291,31 @@ public class ResourceResolverWebConsolePlugin extends HttpServlet {
         separatorText(pw);
 
         dumpMapText(pw, "Mapping Map Entries", mapEntries.getMapMaps());
+
+        separatorText(pw);
+
+        pw.println("Resource Cache");
+        pw.println(getResourceCacheInfo());
     }
 
     // ---------- internal
 
+    private String getResourceCacheInfo() {
+        final int size = resolverFactory.getResourceCacheSize();
+        if (size <= 0) {
+            return "Disabled";
+        }
+        final long hits = resolverFactory.getResourceCacheHits();
+        final long misses = resolverFactory.getResourceCacheMisses();
+        final long lookups = hits + misses;
+        return "Size=" + size
+                + ", hits=" + hits
+                + ", misses=" + misses
+                + ", hitRatio=" + (lookups == 0 ? "-" : String.valueOf(hits * 100 / lookups) + "%")
+                + ", invalidations=" + resolverFactory.getResourceCacheInvalidations()
+                + " (of closed resolvers)";
+    }
+
     private void dumpMapHtml(PrintWriter pw, String title, String description,
             Collection<MapEntry> list) {
 
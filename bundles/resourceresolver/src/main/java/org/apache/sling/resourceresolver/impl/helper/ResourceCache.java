@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.SyntheticResource;
+
+/**
+ * Bounded cache of the resources looked up through a single resource
+ * resolver, keyed by the path passed to {@code getResource}. Negative
+ * results are cached as well, so that repeated lookups of non existing
+ * resources don't hit the providers again.
+ * <p>
+ * The cache is cleared whenever the state of the resolver might have
+ * changed, i.e. on commit, revert, refresh and on any write done
+ * through the resolver. Changes done by other means (for example
+ * directly through an adapted JCR session) are not visible until then.
+ * <p>
+ * Although a resource resolver is not meant to be used concurrently,
+ * some resolvers are shared between threads and refreshed while in use.
+ * Therefore all access to the cache is synchronized.
+ */
+public class ResourceCache {
+
+    /** Returned by {@link #get(String)} for cached negative results. */
+    public static final Resource NON_EXISTING = new SyntheticResource(null, "/",
+            Resource.RESOURCE_TYPE_NON_EXISTING);
+
+    /** The cached resources, negative results are stored as {@link #NON_EXISTING}. */
+    private final Map<String, Resource> resources;
+
+    /** Incremented on each {@link #clear()}. */
+    private long generation;
+
+    private long hits;
+
+    private long misses;
+
+    private long invalidations;
+
+    /**
+     * Create a new cache.
+     * @param maxSize The maximum number of cached paths, must be positive.
+     */
+    public ResourceCache(final int maxSize) {
+        this.resources = new LinkedHashMap<String, Resource>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Resource> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the cached result for the path.
+     * @param path The path
+     * @return The cached resource, {@link #NON_EXISTING} if the resource
+     *         is known not to exist or <code>null</code> if no result is cached.
+     */
+    public synchronized Resource get(final String path) {
+        final Resource result = this.resources.get(path);
+        if (result != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+        return result;
+    }
+
+    /**
+     * Get the current generation of the cache, which has to be passed
+     * to {@link #put(String, Resource, long)}.
+     * @return The generation
+     */
+    public synchronized long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Cache the result for the path, unless the cache has been cleared
+     * since the result has been looked up.
+     * @param path The path
+     * @param resource The resource or <code>null</code> if it does not exist.
+     * @param generation The generation of the cache before the lookup
+     */
+    public synchronized void put(final String path, final Resource resource, final long generation) {
+        if (generation == this.generation) {
+            this.resources.put(path, resource == null ? NON_EXISTING : resource);
+        }
+    }
+
+    /**
+     * Drop all cached results.
+     */
+    public synchronized void clear() {
+        this.generation++;
+        if (!this.resources.isEmpty()) {
+            this.resources.clear();
+            this.invalidations++;
+        }
+    }
+
+    public synchronized int size() {
+        return this.resources.size();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    public synchronized long getInvalidations() {
+        return this.invalidations;
+    }
+}
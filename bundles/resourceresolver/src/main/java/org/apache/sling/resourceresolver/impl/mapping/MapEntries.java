@@ -56,6 +56,7 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.resourceresolver.impl.ResourceResolverImpl;
+import org.apache.sling.resourceresolver.impl.helper.ResourcePathIterator;
 import org.apache.sling.resourceresolver.impl.mapping.MapConfigurationProvider.VanityPathConfig;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -107,9 +108,21 @@ public class MapEntries implements EventHandler {
 
     private final String mapRoot;
 
-    private Map<String, List<MapEntry>> resolveMapsMap;
+    private volatile Map<String, List<MapEntry>> resolveMapsMap;
 
-    private Collection<MapEntry> mapMaps;
+    private volatile Collection<MapEntry> mapMaps;
+
+    /** The global resolve entries indexed by their literal prefix */
+    private volatile MapEntryIndex globalResolveIndex = MapEntryIndex.EMPTY;
+
+    /** The map entries indexed by their literal prefix */
+    private volatile MapEntryIndex mapMapsIndex = MapEntryIndex.EMPTY;
+
+    /**
+     * The entries loaded from the resources below the map root, by resource
+     * path. Guarded by the <code>initializing</code> lock.
+     */
+    private final TreeMap<String, GatheredEntries> gatheredEntries = new TreeMap<String, GatheredEntries>();
 
     private Map <String,List <String>> vanityTargets;
 
@@ -225,6 +238,8 @@ public class MapEntries implements EventHandler {
                 this.aliasMap = aliasMap;
             }
 
+            // keep the current global entries until the configuration is loaded
+            newResolveMapsMap.put(GLOBAL_LIST_KEY, this.resolveMapsMap.get(GLOBAL_LIST_KEY));
             this.resolveMapsMap = newResolveMapsMap; 
 
             doUpdateConfiguration();
@@ -310,7 +325,7 @@ public class MapEntries implements EventHandler {
                     doAddAlias(path);
                 }
                 if (path.startsWith(this.mapRoot)) {
-                    doUpdateConfiguration();
+                    doUpdateConfiguration(path);
                 }
             }
             sendChangeEvent();
@@ -344,7 +359,7 @@ public class MapEntries implements EventHandler {
                 }
             }
             if (path.startsWith(this.mapRoot)) {
-                doUpdateConfiguration();
+                doUpdateConfiguration(path);
             }
             sendChangeEvent();
         } finally {
@@ -378,7 +393,7 @@ public class MapEntries implements EventHandler {
                 }
             }
             if (path.startsWith(this.mapRoot)) {
-                doUpdateConfiguration();
+                doUpdateConfiguration(path);
             }
             sendChangeEvent();
         } finally {
@@ -411,7 +426,7 @@ public class MapEntries implements EventHandler {
                 }
             }
             if (path.startsWith(this.mapRoot)) {
-                doUpdateConfiguration();
+                doUpdateConfiguration(path);
             }
             sendChangeEvent();
         } finally {
@@ -420,7 +435,7 @@ public class MapEntries implements EventHandler {
         return newRefreshed;
     }
     
-    private boolean doUpdateConfiguration(boolean refreshed){
+    private boolean doUpdateConfiguration(String path, boolean refreshed){
         this.initializing.lock();
         boolean newRefreshed = refreshed;
         if (!newRefreshed) {
@@ -428,7 +443,7 @@ public class MapEntries implements EventHandler {
             newRefreshed = true;
         }
         try {
-            doUpdateConfiguration();
+            doUpdateConfiguration(path);
             sendChangeEvent();
         } finally {
             this.initializing.unlock();
@@ -436,7 +451,28 @@ public class MapEntries implements EventHandler {
         return newRefreshed;
     }
 
+    /**
+     * Reloads the complete mapping configuration.
+     */
     private void doUpdateConfiguration(){
+        this.gatheredEntries.clear();
+        doUpdateConfiguration(null);
+    }
+
+    /**
+     * Updates the mapping configuration after a change to the given path
+     * below the map root: only the entries of the changed resources are
+     * loaded again from the repository, the entries of all other resources
+     * are reused. The new entries are published at once, so resolution
+     * continues with the previous entries in the meantime.
+     *
+     * @param path The changed path or <code>null</code> if nothing changed
+     *            in the map root
+     */
+    private void doUpdateConfiguration(final String path){
+        if (path != null) {
+            invalidateGatheredEntries(path);
+        }
         final List<MapEntry> globalResolveMap = new ArrayList<MapEntry>();
         final SortedMap<String, MapEntry> newMapMaps = new TreeMap<String, MapEntry>();
         // load the /etc/map entries into the maps
@@ -447,8 +483,11 @@ public class MapEntries implements EventHandler {
         loadMapConfiguration(factory, newMapMaps);
         // sort global list and add to map
         Collections.sort(globalResolveMap);
-        resolveMapsMap.put(GLOBAL_LIST_KEY, globalResolveMap);
-        this.mapMaps = Collections.unmodifiableSet(new TreeSet<MapEntry>(newMapMaps.values()));
+        final Collection<MapEntry> newMapMapsSet = new TreeSet<MapEntry>(newMapMaps.values());
+        this.globalResolveIndex = new MapEntryIndex(globalResolveMap);
+        resolveMapsMap.put(GLOBAL_LIST_KEY, Collections.unmodifiableList(globalResolveMap));
+        this.mapMapsIndex = new MapEntryIndex(newMapMapsSet);
+        this.mapMaps = Collections.unmodifiableCollection(newMapMapsSet);
     }
 
     private void doAddVanity(String path) {
@@ -697,16 +736,84 @@ public class MapEntries implements EventHandler {
             key = requestPath.substring(secondIndex);
         }
 
-        return new MapEntryIterator(key, resolveMapsMap, vanityPathPrecedence);
+        return new MapEntryIterator(key, resolveMapsMap, globalResolveIndex.getCandidates(requestPath),
+                vanityPathPrecedence);
     }
 
     public Collection<MapEntry> getMapMaps() {
         return mapMaps;
     }
 
+    /**
+     * Returns the map entries which may match the given path, in the order
+     * of {@link #getMapMaps()}. Entries whose pattern starts with literal
+     * characters not matching the path are skipped.
+     */
+    public Iterator<MapEntry> getMapMapsIterator(final String path) {
+        return mapMapsIndex.getCandidates(path);
+    }
+
     public Map<String, String> getAliasMap(final String parentPath) {
         return aliasMap.get(parentPath);
     }
+
+    /**
+     * Checks whether drilling down the resource tree along the given path
+     * might use an alias: this is the case if one of the ancestors of a
+     * path segment has an alias matching the segment or one of the names
+     * obtained by cutting off the segment at a dot.
+     * <p>
+     * As the aliases are all held in memory, a <code>false</code> result
+     * allows to resolve non existing paths without accessing the repository
+     * for every path segment.
+     *
+     * @param path The absolute path to check
+     * @return <code>true</code> if an alias might apply to the path
+     */
+    public boolean hasAliasCandidate(final String path) {
+        final Map<String, Map<String, String>> aliasMap = this.aliasMap;
+        if (aliasMap.isEmpty()) {
+            return false;
+        }
+        String parentPath = "/";
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            if (end > start) {
+                final String segment = path.substring(start, end);
+                final Map<String, String> aliases = aliasMap.get(parentPath);
+                if (aliases != null) {
+                    final ResourcePathIterator names = new ResourcePathIterator(segment);
+                    while (names.hasNext()) {
+                        if (aliases.containsKey(names.next())) {
+                            return true;
+                        }
+                    }
+                }
+                parentPath = ("/".equals(parentPath) ? "/" : parentPath + "/") + segment;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if the path or one of its ancestors is the
+     * parent of aliased resources.
+     */
+    private boolean isAliasParentOnPath(final String path) {
+        String current = path;
+        while (current != null) {
+            if (this.aliasMap.containsKey(current)) {
+                return true;
+            }
+            current = ResourceUtil.getParent(current);
+        }
+        return false;
+    }
     
     /**
      * get the MapEnty containing all the nodes having a specific vanityPath
@@ -761,14 +868,12 @@ public class MapEntries implements EventHandler {
                     wasResolverRefreshed = doRemoveAttributes(path, new String [] {PROP_VANITY_PATH}, true, wasResolverRefreshed);
                 }
             }
-            for (final String target : this.aliasMap.keySet()) {
-                if (actualContentPath.startsWith(target)) {
-                    wasResolverRefreshed = doRemoveAttributes(path, new String [] {ResourceResolverImpl.PROP_ALIAS}, true, wasResolverRefreshed);
-                }
+            if (isAliasParentOnPath(actualContentPath)) {
+                wasResolverRefreshed = doRemoveAttributes(path, new String [] {ResourceResolverImpl.PROP_ALIAS}, true, wasResolverRefreshed);
             }
             if (path.startsWith(this.mapRoot)) {
                 //need to update the configuration
-                wasResolverRefreshed = doUpdateConfiguration(wasResolverRefreshed);
+                wasResolverRefreshed = doUpdateConfiguration(path, wasResolverRefreshed);
             }
         //session.move() is handled differently see also SLING-3713 and    
         } else if (SlingConstants.TOPIC_RESOURCE_ADDED.equals(event.getTopic()) && event.getProperty(SlingConstants.PROPERTY_ADDED_ATTRIBUTES) == null) {
@@ -961,60 +1066,102 @@ public class MapEntries implements EventHandler {
         // the standard map configuration
         final Resource res = resolver.getResource(mapRoot);
         if (res != null) {
-            gather(resolver, entries, mapEntries, res, "");
+            final GatheredEntries gathered = new GatheredEntries("");
+            gather(gathered, res, "");
+            entries.addAll(gathered.resolveEntries);
+            for (int i = 0; i < gathered.mapEntries.size(); i++) {
+                final MapEntry mapEntry = gathered.mapEntries.get(i);
+                if (mapEntries.containsKey(mapEntry.getPattern())) {
+                    addMapEntry(mapEntries, mapEntry.getPattern(), mapEntry.getRedirect()[0], mapEntry.getStatus());
+                } else if (gathered.singleMapEntries.get(i) != null) {
+                    mapEntries.put(mapEntry.getPattern(), gathered.singleMapEntries.get(i));
+                }
+            }
         }
     }
 
-    private void gather(final ResourceResolver resolver, final List<MapEntry> entries, final Map<String, MapEntry> mapEntries,
-                    final Resource parent, final String parentPath) {
+    private void gather(final GatheredEntries gathered, final Resource parent, final String parentPath) {
         // scheme list
         final Iterator<Resource> children = parent.listChildren();
         while (children.hasNext()) {
-            final Resource child = children.next();
-            final ValueMap vm = ResourceUtil.getValueMap(child);
-
-            String name = vm.get(PROP_REG_EXP, String.class);
-            boolean trailingSlash = false;
-            if (name == null) {
-                name = child.getName().concat("/");
-                trailingSlash = true;
-            }
+            gathered.addAll(getGatheredEntries(children.next(), parentPath));
+        }
+    }
 
-            final String childPath = parentPath.concat(name);
+    /**
+     * Returns the entries defined by the resource and its descendants,
+     * loading them only if they are not known yet for the given parent
+     * path.
+     */
+    private GatheredEntries getGatheredEntries(final Resource child, final String parentPath) {
+        GatheredEntries gathered = this.gatheredEntries.get(child.getPath());
+        if (gathered != null && gathered.parentPath.equals(parentPath)) {
+            return gathered;
+        }
+        gathered = new GatheredEntries(parentPath);
 
-            // gather the children of this entry (only if child is not end
-            // hooked)
-            if (!childPath.endsWith("$")) {
+        final ValueMap vm = ResourceUtil.getValueMap(child);
 
-                // add trailing slash to child path to append the child
-                String childParent = childPath;
-                if (!trailingSlash) {
-                    childParent = childParent.concat("/");
-                }
+        String name = vm.get(PROP_REG_EXP, String.class);
+        boolean trailingSlash = false;
+        if (name == null) {
+            name = child.getName().concat("/");
+            trailingSlash = true;
+        }
 
-                gather(resolver, entries, mapEntries, child, childParent);
-            }
+        final String childPath = parentPath.concat(name);
 
-            // add resolution entries for this node
-            MapEntry childResolveEntry = null;
-            try{
-                childResolveEntry=MapEntry.createResolveEntry(childPath, child, trailingSlash);
-            }catch (IllegalArgumentException iae){
-                //ignore this entry
-                log.debug("ignored entry due exception ",iae);
-            }
-            if (childResolveEntry != null) {
-                entries.add(childResolveEntry);
+        // gather the children of this entry (only if child is not end
+        // hooked)
+        if (!childPath.endsWith("$")) {
+
+            // add trailing slash to child path to append the child
+            String childParent = childPath;
+            if (!trailingSlash) {
+                childParent = childParent.concat("/");
             }
 
-            // add map entries for this node
-            final List<MapEntry> childMapEntries = MapEntry.createMapEntry(childPath, child, trailingSlash);
-            if (childMapEntries != null) {
-                for (final MapEntry mapEntry : childMapEntries) {
-                    addMapEntry(mapEntries, mapEntry.getPattern(), mapEntry.getRedirect()[0], mapEntry.getStatus());
-                }
+            gather(gathered, child, childParent);
+        }
+
+        // add resolution entries for this node
+        MapEntry childResolveEntry = null;
+        try{
+            childResolveEntry=MapEntry.createResolveEntry(childPath, child, trailingSlash);
+        }catch (IllegalArgumentException iae){
+            //ignore this entry
+            log.debug("ignored entry due exception ",iae);
+        }
+        if (childResolveEntry != null) {
+            gathered.resolveEntries.add(childResolveEntry);
+        }
+
+        // add map entries for this node
+        final List<MapEntry> childMapEntries = MapEntry.createMapEntry(childPath, child, trailingSlash);
+        if (childMapEntries != null) {
+            for (final MapEntry mapEntry : childMapEntries) {
+                gathered.mapEntries.add(mapEntry);
+                gathered.singleMapEntries.add(getMapEntry(mapEntry.getPattern(), mapEntry.getStatus(), false,
+                        mapEntry.getRedirect()[0]));
             }
+        }
+
+        this.gatheredEntries.put(child.getPath(), gathered);
+        return gathered;
+    }
 
+    /**
+     * Drops the entries loaded for the changed path, its descendants and
+     * its ancestors, as these include the entries of the changed path.
+     */
+    private void invalidateGatheredEntries(final String path) {
+        this.gatheredEntries.remove(path);
+        // all descendants sort between path + '/' and path + '0' ('/' + 1)
+        this.gatheredEntries.subMap(path.concat("/"), path.concat("0")).clear();
+        String parentPath = ResourceUtil.getParent(path);
+        while (parentPath != null && parentPath.startsWith(this.mapRoot)) {
+            this.gatheredEntries.remove(parentPath);
+            parentPath = ResourceUtil.getParent(parentPath);
         }
     }
 
@@ -1434,10 +1581,11 @@ public class MapEntries implements EventHandler {
         
         private boolean vanityPathPrecedence;
 
-        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap, final boolean vanityPathPrecedence) {
+        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap,
+                final Iterator<MapEntry> globalListIterator, final boolean vanityPathPrecedence) {
             this.key = startKey;
             this.resolveMapsMap = resolveMapsMap;
-            this.globalListIterator = this.resolveMapsMap.get(GLOBAL_LIST_KEY).iterator();
+            this.globalListIterator = globalListIterator;
             this.vanityPathPrecedence = vanityPathPrecedence;
             this.seek();
         }
@@ -1572,4 +1720,31 @@ public class MapEntries implements EventHandler {
         }
     }
 
+    /**
+     * The resolve and map entries defined by a resource below the map root
+     * and its descendants, in the order in which they are gathered.
+     */
+    private static final class GatheredEntries {
+
+        /** The pattern prefix of the parent the entries have been loaded with */
+        final String parentPath;
+
+        final List<MapEntry> resolveEntries = new ArrayList<MapEntry>();
+
+        /** The map entries as defined by the resources */
+        final List<MapEntry> mapEntries = new ArrayList<MapEntry>();
+
+        /** The map entries to use if no other resource defines the same pattern */
+        final List<MapEntry> singleMapEntries = new ArrayList<MapEntry>();
+
+        GatheredEntries(final String parentPath) {
+            this.parentPath = parentPath;
+        }
+
+        void addAll(final GatheredEntries other) {
+            this.resolveEntries.addAll(other.resolveEntries);
+            this.mapEntries.addAll(other.mapEntries);
+            this.singleMapEntries.addAll(other.singleMapEntries);
+        }
+    }
 }
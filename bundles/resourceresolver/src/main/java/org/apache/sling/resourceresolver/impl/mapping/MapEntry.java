@@ -58,8 +58,30 @@ public class MapEntry implements Comparable<MapEntry> {
     private static final String[] PATH_TO_URL_REPLACEMENT = { "http://$1$2",
         "https://$1$2", "$1://$2:$3$4", "$1://$2$3" };
 
+    /** The characters which end the literal prefix of a pattern */
+    private static final String PATTERN_SPECIAL_CHARS = ".[]{}()*+?^$|\\";
+
+    /** The characters which make the preceding character optional */
+    private static final String PATTERN_QUANTIFIERS = "{*?";
+
     private final Pattern urlPattern;
 
+    /**
+     * The string every value matched by the pattern starts with. This is the
+     * empty string if the pattern does not start with literal characters.
+     */
+    private final String literalPrefix;
+
+    /**
+     * Whether the {@link #literalPrefix} and an optional end anchor are the
+     * complete pattern and the redirects don't refer to groups, so that
+     * matching and replacing does not need the regular expression.
+     */
+    private final boolean literal;
+
+    /** Whether the {@link #literal} pattern is hooked to the end */
+    private final boolean literalEnd;
+
     private final String[] redirect;
 
     private final int status;
@@ -263,10 +285,57 @@ public class MapEntry implements Comparable<MapEntry> {
         this.redirect = redirect;
         this.status = status;
         this.order = order;
+
+        // find the literal prefix of the pattern, skipping the start hook;
+        // alternatives may not be hooked to the start, so they are ignored
+        final StringBuilder prefix = new StringBuilder();
+        boolean complete = url.indexOf('|') == -1;
+        boolean end = false;
+        int i = 1;
+        while (complete && i < url.length()) {
+            final char c = url.charAt(i);
+            if (c == '\\' && i + 1 < url.length() && !Character.isLetterOrDigit(url.charAt(i + 1))) {
+                // escaped special character
+                prefix.append(url.charAt(i + 1));
+                i += 2;
+            } else if (c == '$' && i == url.length() - 1) {
+                end = true;
+                i++;
+            } else if (PATTERN_SPECIAL_CHARS.indexOf(c) != -1) {
+                if (PATTERN_QUANTIFIERS.indexOf(c) != -1 && prefix.length() > 0) {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                complete = false;
+            } else {
+                prefix.append(c);
+                i++;
+            }
+        }
+        for (final String r : redirect) {
+            if (r.indexOf('$') != -1 || r.indexOf('\\') != -1) {
+                complete = false;
+            }
+        }
+        this.literalPrefix = prefix.toString();
+        this.literal = complete;
+        this.literalEnd = end;
     }
 
     // Returns the replacement or null if the value does not match
     public String[] replace(final String value) {
+        if (!value.startsWith(literalPrefix)) {
+            return null;
+        }
+        if (literal && (!literalEnd || value.length() == literalPrefix.length())) {
+            final String remainder = value.substring(literalPrefix.length());
+            final String[] redirects = getRedirect();
+            final String[] results = new String[redirects.length];
+            for (int i = 0; i < redirects.length; i++) {
+                results[i] = redirects[i].concat(remainder);
+            }
+            return results;
+        }
+
         final Matcher m = urlPattern.matcher(value);
         if (m.find()) {
             final String[] redirects = getRedirect();
@@ -290,6 +359,15 @@ public class MapEntry implements Comparable<MapEntry> {
         return urlPattern.toString();
     }
 
+    /**
+     * Returns the string all values matched by this entry start with, which
+     * is the empty string if the pattern does not start with literal
+     * characters.
+     */
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
     public String[] getRedirect() {
         return redirect;
     }
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * The <code>MapEntryIndex</code> holds an ordered list of map entries and
+ * indexes them by the literal prefix of their patterns in a character trie.
+ * <p>
+ * Only the entries whose literal prefix is a prefix of a value may match
+ * this value, so looking up the candidates for a value takes time
+ * proportional to the length of the value instead of trying the regular
+ * expressions of all entries. The candidates are returned in the order of
+ * the list.
+ */
+final class MapEntryIndex {
+
+    private static final int[] NO_ENTRIES = new int[0];
+
+    static final MapEntryIndex EMPTY = new MapEntryIndex(Collections.<MapEntry> emptyList());
+
+    private final MapEntry[] entries;
+
+    private final Node root;
+
+    MapEntryIndex(final Collection<MapEntry> entries) {
+        this.entries = entries.toArray(new MapEntry[entries.size()]);
+
+        final Builder rootBuilder = new Builder();
+        for (int i = 0; i < this.entries.length; i++) {
+            final String prefix = this.entries[i].getLiteralPrefix();
+            Builder builder = rootBuilder;
+            for (int c = 0; c < prefix.length(); c++) {
+                Builder child = builder.children.get(prefix.charAt(c));
+                if (child == null) {
+                    child = new Builder();
+                    builder.children.put(prefix.charAt(c), child);
+                }
+                builder = child;
+            }
+            builder.entries.add(i);
+        }
+        this.root = rootBuilder.build();
+    }
+
+    /**
+     * Returns the number of indexed entries.
+     */
+    int size() {
+        return entries.length;
+    }
+
+    /**
+     * Returns the entries which may match the value, in the order of the
+     * list the index has been created with.
+     */
+    Iterator<MapEntry> getCandidates(final String value) {
+        int[] candidates = root.entries;
+        boolean merged = false;
+        Node node = root;
+        for (int i = 0; i < value.length(); i++) {
+            node = node.getChild(value.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.entries.length > 0) {
+                if (candidates.length == 0) {
+                    candidates = node.entries;
+                } else {
+                    final int[] all = new int[candidates.length + node.entries.length];
+                    System.arraycopy(candidates, 0, all, 0, candidates.length);
+                    System.arraycopy(node.entries, 0, all, candidates.length, node.entries.length);
+                    candidates = all;
+                    merged = true;
+                }
+            }
+        }
+        if (merged) {
+            Arrays.sort(candidates);
+        }
+        return new CandidateIterator(entries, candidates);
+    }
+
+    private static final class Node {
+
+        /** The sorted characters of the children */
+        private final char[] keys;
+
+        private final Node[] children;
+
+        /** The ascending indexes of the entries with the prefix of this node */
+        final int[] entries;
+
+        Node(final char[] keys, final Node[] children, final int[] entries) {
+            this.keys = keys;
+            this.children = children;
+            this.entries = entries;
+        }
+
+        Node getChild(final char c) {
+            final int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    private static final class Builder {
+
+        final TreeMap<Character, Builder> children = new TreeMap<Character, Builder>();
+
+        final List<Integer> entries = new ArrayList<Integer>();
+
+        Node build() {
+            final char[] keys = new char[children.size()];
+            final Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (final Map.Entry<Character, Builder> child : children.entrySet()) {
+                keys[i] = child.getKey();
+                nodes[i] = child.getValue().build();
+                i++;
+            }
+            int[] indexes = NO_ENTRIES;
+            if (!entries.isEmpty()) {
+                indexes = new int[entries.size()];
+                for (int e = 0; e < indexes.length; e++) {
+                    indexes[e] = entries.get(e);
+                }
+            }
+            return new Node(keys, nodes, indexes);
+        }
+    }
+
+    private static final class CandidateIterator implements Iterator<MapEntry> {
+
+        private final MapEntry[] entries;
+
+        private final int[] candidates;
+
+        private int next;
+
+        CandidateIterator(final MapEntry[] entries, final int[] candidates) {
+            this.entries = entries;
+            this.candidates = candidates;
+        }
+
+        public boolean hasNext() {
+            return next < candidates.length;
+        }
+
+        public MapEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return entries[candidates[next++]];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -594,6 +594,68 @@ public class ResourceResolverImplTest {
         resolver.isResourceType(resource, "/types/unknown");
     }
 
+    @Test public void testResourceCache() throws Exception {
+        final Map<String, Integer> lookups = new HashMap<String, Integer>();
+        final ResourceProvider<?> rp = new ResourceProvider<Object>() {
+
+            @Override
+            public Resource getResource(ResolverContext<Object> ctx, String path, ResourceContext rCtx, Resource parent) {
+                final Integer count = lookups.get(path);
+                lookups.put(path, count == null ? 1 : count + 1);
+                if ("/content".equals(path)) {
+                    return new SyntheticResource(null, path, "type");
+                }
+                return null;
+            }
+
+            @Override
+            public Iterator<Resource> listChildren(ResolverContext<Object> ctx, Resource parent) {
+                return null;
+            }
+        };
+        final ResourceProviderStorage storage = new ResourceProviderStorage(asList(createRPHandler(rp, "rp2", 0, "/")));
+        final ResourceResolverFactoryActivator activator = new ResourceResolverFactoryActivator() {
+
+            @Override
+            public int getResourceCacheSize() {
+                return 10;
+            }
+        };
+        activator.resourceProviderTracker = resourceProviderTracker;
+        final CommonResourceResolverFactoryImpl factory = new CommonResourceResolverFactoryImpl(activator);
+        final ResourceResolver rr = new ResourceResolverImpl(factory, false, null, storage);
+
+        final Resource content = rr.getResource("/content");
+        assertNotNull(content);
+        assertEquals(content, rr.getResource("/content"));
+        assertEquals(Integer.valueOf(1), lookups.get("/content"));
+
+        // non existing resources are cached as well
+        assertNull(rr.getResource("/missing"));
+        assertNull(rr.getResource("/missing"));
+        assertEquals(Integer.valueOf(1), lookups.get("/missing"));
+
+        // refresh and revert drop the cache
+        rr.refresh();
+        assertNotNull(rr.getResource("/content"));
+        assertEquals(Integer.valueOf(2), lookups.get("/content"));
+        rr.revert();
+        assertNull(rr.getResource("/missing"));
+        assertEquals(Integer.valueOf(2), lookups.get("/missing"));
+
+        rr.close();
+        assertEquals(2, factory.getResourceCacheHits());
+        assertEquals(4, factory.getResourceCacheMisses());
+        assertEquals(2, factory.getResourceCacheInvalidations());
+
+        // the cache is disabled by default
+        final ResourceResolver uncached = new ResourceResolverImpl(commonFactory, false, null, storage);
+        uncached.getResource("/content");
+        uncached.getResource("/content");
+        assertEquals(Integer.valueOf(4), lookups.get("/content"));
+        uncached.close();
+    }
+
     private PathBasedResourceResolverImpl getPathBasedResourceResolver() {
         try {
             final List<ResourceResolver> resolvers = new ArrayList<ResourceResolver>();
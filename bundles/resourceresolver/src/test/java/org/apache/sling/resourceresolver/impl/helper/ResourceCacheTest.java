@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.SyntheticResource;
+import org.junit.Test;
+
+/** Test the ResourceCache */
+public class ResourceCacheTest {
+
+    @Test public void testNegativeResults() {
+        final ResourceCache cache = new ResourceCache(10);
+        final Resource content = new SyntheticResource(null, "/content", "type");
+        assertNull(cache.get("/content"));
+        cache.put("/content", content, cache.getGeneration());
+        cache.put("/missing", null, cache.getGeneration());
+        assertSame(content, cache.get("/content"));
+        assertSame(ResourceCache.NON_EXISTING, cache.get("/missing"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test public void testEviction() {
+        final ResourceCache cache = new ResourceCache(2);
+        cache.put("/a", null, 0);
+        cache.put("/b", null, 0);
+        // access /a, so /b is the eldest entry
+        cache.get("/a");
+        cache.put("/c", null, 0);
+        assertEquals(2, cache.size());
+        assertSame(ResourceCache.NON_EXISTING, cache.get("/a"));
+        assertNull(cache.get("/b"));
+    }
+
+    @Test public void testResultLookedUpBeforeClearIsNotCached() {
+        final ResourceCache cache = new ResourceCache(10);
+        final long generation = cache.getGeneration();
+        cache.clear();
+        cache.put("/content", null, generation);
+        assertNull(cache.get("/content"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test(timeout=20000) public void testConcurrentAccess() throws Exception {
+        final ResourceCache cache = new ResourceCache(50);
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 20000; i++) {
+                            final String path = "/content/" + (i % 100);
+                            if (cache.get(path) == null) {
+                                cache.put(path, null, cache.getGeneration());
+                            }
+                            if (id == 0 && i % 100 == 0) {
+                                cache.clear();
+                            }
+                        }
+                    } catch (final Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        assertNull(failure.get());
+        assertTrue(cache.size() <= 50);
+        assertEquals(threads * 20000L, cache.getHits() + cache.getMisses());
+    }
+}
@@ -55,6 +55,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -156,6 +157,96 @@ public class MapEntriesTest {
         assertEquals("child", aliasMap.get("alias"));
     }
 
+    @Test
+    public void test_hasAliasCandidate() {
+        assertFalse(mapEntries.hasAliasCandidate("/parent/alias.html"));
+
+        Resource parent = mock(Resource.class);
+        when(parent.getPath()).thenReturn("/parent");
+
+        final Resource result = mock(Resource.class);
+        when(result.getParent()).thenReturn(parent);
+        when(result.getPath()).thenReturn("/parent/child");
+        when(result.getName()).thenReturn("child");
+        when(result.adaptTo(ValueMap.class)).thenReturn(buildValueMap("sling:alias", "alias"));
+
+        when(resourceResolver.findResources(anyString(), eq("sql"))).thenAnswer(new Answer<Iterator<Resource>>() {
+
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                if (invocation.getArguments()[0].toString().contains("sling:alias")) {
+                    return Collections.singleton(result).iterator();
+                } else {
+                    return Collections.<Resource> emptySet().iterator();
+                }
+            }
+        });
+
+        mapEntries.doInit();
+
+        assertTrue(mapEntries.hasAliasCandidate("/parent/alias"));
+        assertTrue(mapEntries.hasAliasCandidate("/parent/alias.html"));
+        assertTrue(mapEntries.hasAliasCandidate("/parent/alias.sel.html/suffix"));
+        assertFalse(mapEntries.hasAliasCandidate("/parent/child.html"));
+        assertFalse(mapEntries.hasAliasCandidate("/parent/aliasx.html"));
+        assertFalse(mapEntries.hasAliasCandidate("/other/alias.html"));
+        assertFalse(mapEntries.hasAliasCandidate("/parent/sub/alias.html"));
+        assertFalse(mapEntries.hasAliasCandidate("/alias"));
+    }
+
+    @Test
+    public void test_doUpdateConfiguration_incremental() throws Exception {
+        Method method = MapEntries.class.getDeclaredMethod("doUpdateConfiguration", String.class);
+        method.setAccessible(true);
+
+        final List<Resource> hosts = new ArrayList<Resource>();
+        final Resource mapRoot = mockMapResource("/etc/map", null, hosts);
+        final Resource http = mockMapResource("/etc/map/http", null, hosts);
+        when(mapRoot.listChildren()).thenAnswer(childrenOf(Collections.singletonList(http)));
+        hosts.add(mockMapResource("/etc/map/http/a.example.com", "/content/a", Collections.<Resource> emptyList()));
+        when(resourceResolver.getResource("/etc/map")).thenReturn(mapRoot);
+
+        mapEntries.doInit();
+        assertEquals(1, mapEntries.getResolveMaps().size());
+        assertEquals(1, mapEntries.getMapMaps().size());
+
+        final Resource b = mockMapResource("/etc/map/http/b.example.com", "/content/b", Collections.<Resource> emptyList());
+        hosts.add(b);
+        method.invoke(mapEntries, "/etc/map/http/b.example.com");
+        assertEquals(2, mapEntries.getResolveMaps().size());
+        assertEquals(2, mapEntries.getMapMaps().size());
+
+        // the unchanged entry has not been loaded again
+        Mockito.verify(hosts.get(0), Mockito.times(1)).listChildren();
+        Mockito.verify(b, Mockito.times(1)).listChildren();
+
+        hosts.remove(b);
+        method.invoke(mapEntries, "/etc/map/http/b.example.com");
+        assertEquals(1, mapEntries.getResolveMaps().size());
+        assertEquals("/content/a/", mapEntries.getResolveMaps().get(0).getRedirect()[0]);
+        Mockito.verify(hosts.get(0), Mockito.times(1)).listChildren();
+    }
+
+    private Resource mockMapResource(final String path, final String internalRedirect, final List<Resource> children) {
+        final Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        when(resource.getName()).thenReturn(ResourceUtil.getName(path));
+        final ValueMap properties = internalRedirect != null
+                ? buildValueMap("sling:internalRedirect", internalRedirect) : buildValueMap();
+        when(resource.adaptTo(ValueMap.class)).thenReturn(properties);
+        when(resource.getValueMap()).thenReturn(properties);
+        when(resource.listChildren()).thenAnswer(childrenOf(children));
+        return resource;
+    }
+
+    private Answer<Iterator<Resource>> childrenOf(final List<Resource> children) {
+        return new Answer<Iterator<Resource>>() {
+
+            public Iterator<Resource> answer(InvocationOnMock invocation) throws Throwable {
+                return new ArrayList<Resource>(children).iterator();
+            }
+        };
+    }
+
     @Test
     public void test_that_duplicate_alias_doesnt_replace_first_alias() {
         Resource parent = mock(Resource.class);
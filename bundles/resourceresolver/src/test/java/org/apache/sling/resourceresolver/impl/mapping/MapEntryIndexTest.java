@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class MapEntryIndexTest {
+
+    @Test public void test_candidates_in_list_order() {
+        final List<MapEntry> entries = new ArrayList<MapEntry>(new TreeSet<MapEntry>(Arrays.asList(
+            new MapEntry("/content/site/en/", -1, false, 0, "/en/"),
+            new MapEntry("/content/site/", -1, false, 0, "/"),
+            new MapEntry("/content/other/", -1, false, 0, "/other/"),
+            new MapEntry("[^/]+/[^/]+/vanity$", -1, false, 0, "/content/vanity"),
+            new MapEntry("/content/s.*", -1, false, 0, "/s"))));
+        final MapEntryIndex index = new MapEntryIndex(entries);
+        assertEquals(5, index.size());
+
+        final List<MapEntry> expected = new ArrayList<MapEntry>();
+        for (final MapEntry entry : entries) {
+            if ("/content/site/en/page.html".startsWith(entry.getLiteralPrefix())) {
+                expected.add(entry);
+            }
+        }
+        assertEquals(4, expected.size());
+        assertEquals(expected, toList(index.getCandidates("/content/site/en/page.html")));
+
+        assertEquals(1, toList(index.getCandidates("/apps/page.html")).size());
+        assertEquals(2, toList(index.getCandidates("/content/site")).size());
+    }
+
+    @Test public void test_empty() {
+        assertEquals(0, toList(MapEntryIndex.EMPTY.getCandidates("/content")).size());
+    }
+
+    private List<MapEntry> toList(final Iterator<MapEntry> iterator) {
+        final List<MapEntry> result = new ArrayList<MapEntry>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+}
@@ -20,10 +20,13 @@ package org.apache.sling.resourceresolver.impl.mapping;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.lang.reflect.Method;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import junit.framework.TestCase;
 
@@ -31,6 +34,51 @@ import org.junit.Test;
 
 public class MapEntryTest {
 
+    @Test public void test_literal_prefix() {
+        assertEquals("/content/a/", new MapEntry("/content/a/", -1, false, 0, "/a/").getLiteralPrefix());
+        assertEquals("/content/a.html", new MapEntry("/content/a\\.html$", -1, false, 0, "/a").getLiteralPrefix());
+        assertEquals("http/localhost", new MapEntry("http/localhost.80/", -1, false, 0, "/").getLiteralPrefix());
+        assertEquals("/content/a", new MapEntry("/content/ab?", -1, false, 0, "/a").getLiteralPrefix());
+        assertEquals("/content/ab", new MapEntry("/content/ab+", -1, false, 0, "/a").getLiteralPrefix());
+        assertEquals("", new MapEntry("[^/]+/[^/]+/a$", -1, false, 0, "/a").getLiteralPrefix());
+        assertEquals("", new MapEntry("/a|/b", -1, false, 0, "/c").getLiteralPrefix());
+        assertEquals("", new MapEntry("\\d+", -1, false, 0, "/c").getLiteralPrefix());
+    }
+
+    @Test public void test_replace_literal() {
+        final MapEntry prefix = new MapEntry("/content/a/", -1, false, 0, "/a/", "/b/");
+        assertReplace(prefix, "/content/a/page.html");
+        assertReplace(prefix, "/content/a/");
+        assertReplace(prefix, "/content/b/page.html");
+        assertReplace(prefix, "/content/a");
+
+        final MapEntry exact = new MapEntry("/content/a\\.html$", -1, false, 0, "/a.html");
+        assertReplace(exact, "/content/a.html");
+        assertReplace(exact, "/content/a.html\n");
+        assertReplace(exact, "/content/a.htmlx");
+        assertReplace(exact, "/content/axhtml");
+
+        final MapEntry group = new MapEntry("/content/(a)/", -1, false, 0, "/$1/");
+        assertReplace(group, "/content/a/page.html");
+        assertReplace(group, "/content/b/page.html");
+
+        final MapEntry reference = new MapEntry("/content/a/", -1, false, 0, "/$0");
+        assertReplace(reference, "/content/a/page.html");
+    }
+
+    private void assertReplace(final MapEntry entry, final String value) {
+        final Matcher m = Pattern.compile(entry.getPattern()).matcher(value);
+        final String[] result = entry.replace(value);
+        if (m.find()) {
+            assertNotNull(result);
+            for (int i = 0; i < result.length; i++) {
+                assertEquals(m.replaceFirst(entry.getRedirect()[i]), result[i]);
+            }
+        } else {
+            assertNull(result);
+        }
+    }
+
     @Test public void test_to_url_http_80() {
         assertEqualUri("http://sling.apache.org", "http/sling.apache.org.80");
         assertEqualUri("http://sling.apache.org/", "http/sling.apache.org.80/");
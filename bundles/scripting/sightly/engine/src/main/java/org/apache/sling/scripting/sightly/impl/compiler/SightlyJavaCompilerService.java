@@ -30,7 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.felix.scr.annotations.Activate;
@@ -65,6 +65,12 @@ public class SightlyJavaCompilerService {
 
     private static final Logger LOG = LoggerFactory.getLogger(SightlyJavaCompilerService.class);
 
+    /**
+     * The number of locks used for guarding compilations; classes are mapped to a lock based on their name, so that different units can
+     * be compiled in parallel while concurrent compilations of the same unit are still serialised.
+     */
+    private static final int COMPILATION_LOCK_STRIPES = 64;
+
     @Reference
     private ClassLoaderWriter classLoaderWriter = null;
 
@@ -79,9 +85,7 @@ public class SightlyJavaCompilerService {
 
     private Options options;
 
-    private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private Lock readLock = lock.readLock();
-    private Lock writeLock = lock.writeLock();
+    private final Lock[] compilationLocks = createCompilationLocks();
 
     /**
      * This method returns an Object instance based on a class that is either found through regular classloading mechanisms or on-the-fly
@@ -134,20 +138,16 @@ public class SightlyJavaCompilerService {
      * @throws CompilerException in case of any runtime exception
      */
     public Object compileSource(SourceIdentifier sourceIdentifier, String sourceCode, String fqcn) {
-        boolean downgradedLock = false;
-        writeLock.lock();
+        Lock lock = getCompilationLock(fqcn);
+        lock.lock();
         try {
             if (sourceIdentifier != null) {
                 if (sourceIdentifier.needsUpdate()) {
-                    return internalCompileSource(sourceCode, fqcn);
+                    Object result = internalCompileSource(sourceCode, fqcn);
+                    sourceIdentifier.storeChecksum();
+                    return result;
                 } else {
-                    /**
-                     * downgrade write lock to a read lock; we don't need to recompile the class since it seems it has been recompiled by
-                     * another thread
-                     */
-                    readLock.lock();
-                    writeLock.unlock();
-                    downgradedLock = true;
+                    // we don't need to recompile the class since it seems it has been recompiled by another thread
                     return classLoaderWriter.getClassLoader().loadClass(fqcn).newInstance();
                 }
             } else {
@@ -156,11 +156,7 @@ public class SightlyJavaCompilerService {
         } catch (Exception e) {
             throw new CompilerException(CompilerException.CompilerExceptionCause.COMPILER_ERRORS, e);
         } finally {
-            if (downgradedLock) {
-                readLock.unlock();
-            } else {
-                writeLock.unlock();
-            }
+            lock.unlock();
         }
     }
 
@@ -303,6 +299,21 @@ public class SightlyJavaCompilerService {
 
     //---------------------------------- private -----------------------------------
 
+    private static Lock[] createCompilationLocks() {
+        Lock[] locks = new Lock[COMPILATION_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    private Lock getCompilationLock(String fqcn) {
+        int hash = fqcn.hashCode();
+        // spread the hash bits, as class names from the same package share long prefixes
+        hash ^= (hash >>> 16);
+        return compilationLocks[(hash & 0x7fffffff) % compilationLocks.length];
+    }
+
     private String getPathFromJavaName(ResourceResolver resolver, String className) {
         boolean sightlyGeneratedClass = false;
         if (className.contains("." + UnitLoader.CLASS_NAME_PREFIX)) {
@@ -37,6 +37,7 @@ import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.scripting.sightly.impl.engine.SightlyEngineConfiguration;
 import org.apache.sling.scripting.sightly.impl.engine.SightlyScriptEngineFactory;
+import org.apache.sling.scripting.sightly.impl.utils.PropertyAccessor;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.event.Event;
@@ -53,6 +54,7 @@ public class UnitChangeMonitor {
 
     private Map<String, SightlyScript> slyScriptsMap = new ConcurrentHashMap<String, SightlyScript>();
     private Map<String, Long> slyJavaUseMap = new ConcurrentHashMap<String, Long>();
+    private Map<String, PersistedUnit> persistedUnitsMap = new ConcurrentHashMap<String, PersistedUnit>();
     private ServiceRegistration eventHandlerServiceRegistration;
 
     @Reference
@@ -75,6 +77,36 @@ public class UnitChangeMonitor {
         return 0;
     }
 
+    /**
+     * Returns whether the unit persisted for a Sightly script was found to be compiled from the script's current source.
+     *
+     * @param script             the script's full path
+     * @param scriptLastModified the script's last modified date
+     * @param unitLastModified   the persisted unit's last modified date
+     * @return the validity of the persisted unit or {@code null} if it wasn't checked for these dates
+     */
+    public Boolean isPersistedUnitValid(String script, long scriptLastModified, long unitLastModified) {
+        PersistedUnit persistedUnit = persistedUnitsMap.get(script);
+        if (persistedUnit != null && persistedUnit.scriptLastModified == scriptLastModified && persistedUnit.unitLastModified ==
+                unitLastModified) {
+            return persistedUnit.valid;
+        }
+        return null;
+    }
+
+    /**
+     * Remembers whether the unit persisted for a Sightly script was compiled from the script's current source, so that the script's
+     * source doesn't have to be checked again until the script or the unit change.
+     *
+     * @param script             the script's full path
+     * @param scriptLastModified the script's last modified date
+     * @param unitLastModified   the persisted unit's last modified date
+     * @param valid              the validity of the persisted unit
+     */
+    public void setPersistedUnitValid(String script, long scriptLastModified, long unitLastModified, boolean valid) {
+        persistedUnitsMap.put(script, new PersistedUnit(scriptLastModified, unitLastModified, valid));
+    }
+
     public String getScriptEncoding(String script) {
         SightlyScript sightlyScript = getScript(script);
         if (sightlyScript != null) {
@@ -157,6 +189,8 @@ public class UnitChangeMonitor {
         if (SlingConstants.TOPIC_RESOURCE_ADDED.equals(topic) || SlingConstants.TOPIC_RESOURCE_CHANGED.equals(topic)) {
             if (path.endsWith(".java")) {
                 slyJavaUseMap.put(Utils.getJavaNameFromPath(path), System.currentTimeMillis());
+                // the Use-API class will be recompiled, so accessors resolved for its old version are stale
+                PropertyAccessor.clear();
             } else if (path.endsWith(SightlyScriptEngineFactory.EXTENSION)) {
                 ResourceResolver resolver = null;
                 String encoding = null;
@@ -176,12 +210,15 @@ public class UnitChangeMonitor {
                     encoding = sightlyEngineConfiguration.getEncoding();
                 }
                 slyScriptsMap.put(path, new SightlyScript(path, encoding, System.currentTimeMillis()));
+                persistedUnitsMap.remove(path);
             }
         } else if (SlingConstants.TOPIC_RESOURCE_REMOVED.equals(topic)) {
             if (path.endsWith(".java")) {
                 slyJavaUseMap.remove(Utils.getJavaNameFromPath(path));
+                PropertyAccessor.clear();
             } else if (path.endsWith(SightlyScriptEngineFactory.EXTENSION)) {
                 slyScriptsMap.remove(path);
+                persistedUnitsMap.remove(path);
             }
         }
     }
@@ -218,6 +255,18 @@ public class UnitChangeMonitor {
         return sightlyScript;
     }
 
+    private static class PersistedUnit {
+        final long scriptLastModified;
+        final long unitLastModified;
+        final boolean valid;
+
+        PersistedUnit(long scriptLastModified, long unitLastModified, boolean valid) {
+            this.scriptLastModified = scriptLastModified;
+            this.unitLastModified = unitLastModified;
+            this.valid = valid;
+        }
+    }
+
     private class SightlyScript {
         String encoding;
         String className;
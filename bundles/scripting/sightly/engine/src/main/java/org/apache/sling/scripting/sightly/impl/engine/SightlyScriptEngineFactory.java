@@ -23,12 +23,14 @@ import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.scripting.api.AbstractScriptEngineFactory;
+import org.apache.sling.scripting.sightly.impl.utils.PropertyAccessor;
 
 /**
  * Sightly template engine factory
@@ -81,4 +83,14 @@ public class SightlyScriptEngineFactory extends AbstractScriptEngineFactory {
     protected ClassLoader getClassLoader() {
         return dynamicClassLoaderManager.getDynamicClassLoader();
     }
+
+    /**
+     * The {@link DynamicClassLoaderManager} is replaced whenever bundles are refreshed, which deactivates this factory; the cached
+     * property accessors might reference classes from the old class loaders, so they are dropped.
+     */
+    @Deactivate
+    @SuppressWarnings("unused")
+    protected void deactivate() {
+        PropertyAccessor.clear();
+    }
 }
@@ -19,18 +19,32 @@
 
 package org.apache.sling.scripting.sightly.impl.engine.compiled;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.IOUtils;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.commons.classloader.ClassLoaderWriter;
 import org.apache.sling.scripting.sightly.impl.compiler.UnitChangeMonitor;
 import org.apache.sling.scripting.sightly.impl.engine.SightlyEngineConfiguration;
 import org.apache.sling.scripting.sightly.impl.utils.JavaEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Identifies a Java source file in a JCR repository.
  */
 public class SourceIdentifier {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SourceIdentifier.class);
+    private static final String CHECKSUM_ALGORITHM = "SHA-1";
+    private static final String CHECKSUM_EXTENSION = ".checksum";
+
     private final String className;
     private final Resource resource;
     private final String packageName;
@@ -72,9 +86,116 @@ public class SourceIdentifier {
         }
         String slyPath = getResource().getPath();
         long slyScriptChangeDate = unitChangeMonitor.getLastModifiedDateForScript(slyPath);
-        String javaCompilerPath = "/" + getFullyQualifiedName().replaceAll("\\.", "/") + ".class";
-        long javaFileDate = writer.getLastModified(javaCompilerPath);
-        return ((slyScriptChangeDate == 0 && javaFileDate > -1) || (slyScriptChangeDate > javaFileDate));
+        long javaFileDate = writer.getLastModified(getClassPath());
+        if (slyScriptChangeDate == 0 && javaFileDate > -1) {
+            /*
+             * there's no information about changes to the script since this instance started, so the persisted unit can only be reused
+             * if it was compiled from the script's current source; the result is remembered until the script or the unit change
+             */
+            long scriptDate = getScriptLastModified();
+            Boolean valid = unitChangeMonitor.isPersistedUnitValid(slyPath, scriptDate, javaFileDate);
+            if (valid == null) {
+                valid = isPersistedUnitValid();
+                unitChangeMonitor.setPersistedUnitValid(slyPath, scriptDate, javaFileDate, valid);
+            }
+            return !valid;
+        }
+        return slyScriptChangeDate > javaFileDate;
+    }
+
+    /**
+     * Stores the checksum of the script's current source next to the compiled unit, marking the unit as reusable after a restart. This
+     * method should be called after the unit has been successfully compiled.
+     */
+    public void storeChecksum() {
+        if (configuration.isDevMode()) {
+            return;
+        }
+        String checksum = getSourceChecksum();
+        if (checksum == null) {
+            writer.delete(getChecksumPath());
+            return;
+        }
+        OutputStream os = writer.getOutputStream(getChecksumPath());
+        try {
+            IOUtils.write(checksum, os, "UTF-8");
+        } catch (IOException e) {
+            LOG.warn("Unable to store the source checksum for " + fullyQualifiedName, e);
+            return;
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+        unitChangeMonitor.setPersistedUnitValid(getResource().getPath(), getScriptLastModified(), writer.getLastModified(getClassPath()),
+                true);
+    }
+
+    private long getScriptLastModified() {
+        ResourceMetadata metadata = resource.getResourceMetadata();
+        return metadata != null ? metadata.getModificationTime() : -1;
+    }
+
+    private boolean isPersistedUnitValid() {
+        String checksum = getSourceChecksum();
+        if (checksum == null) {
+            return false;
+        }
+        InputStream is = null;
+        try {
+            is = writer.getInputStream(getChecksumPath());
+            return checksum.equals(IOUtils.toString(is, "UTF-8"));
+        } catch (IOException e) {
+            // no checksum was stored for this unit
+            return false;
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Computes the checksum identifying the script's current source. The engine version is part of the checksum, so that units
+     * compiled by a different engine version are never reused.
+     *
+     * @return the checksum or {@code null} if the script's source cannot be read
+     */
+    private String getSourceChecksum() {
+        InputStream is = resource.adaptTo(InputStream.class);
+        if (is == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+            digest.update(configuration.getEngineVersion().getBytes("UTF-8"));
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            LOG.warn("Cannot compute source checksums", e);
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Unable to read the source of " + resource.getPath(), e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    private String getClassPath() {
+        return "/" + getFullyQualifiedName().replaceAll("\\.", "/") + ".class";
+    }
+
+    private String getChecksumPath() {
+        return "/" + getFullyQualifiedName().replaceAll("\\.", "/") + CHECKSUM_EXTENSION;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
     }
 
     private String buildFullyQualifiedName(String packageName, String className) {
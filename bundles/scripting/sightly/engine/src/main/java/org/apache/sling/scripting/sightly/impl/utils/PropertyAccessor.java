@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.scripting.sightly.impl.utils;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@code PropertyAccessor} holds the result of resolving a named property on a class through reflection: the public no-argument
+ * method ({@code property()}, {@code getProperty()} or {@code isProperty()}) and the declared field with the same name. Resolved
+ * accessors are cached per {@code (Class, property)} pair, so that the expensive {@link Class#getMethods()} scan and the walk up the
+ * inheritance chain happen only once for each pair.
+ * <p>
+ * The classes are weakly referenced by the cache, so that it doesn't pin class loaders of updated bundles or scripts. As the resolved
+ * methods and fields reference their classes as well, the accessors of a class are only softly referenced. Lookups don't lock, as the
+ * accessors are resolved on the rendering path.
+ */
+public final class PropertyAccessor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertyAccessor.class);
+
+    private static final ConcurrentMap<ClassKey, SoftReference<ConcurrentMap<String, PropertyAccessor>>> CACHE =
+            new ConcurrentHashMap<ClassKey, SoftReference<ConcurrentMap<String, PropertyAccessor>>>();
+
+    private static final ReferenceQueue<Class<?>> COLLECTED_CLASSES = new ReferenceQueue<Class<?>>();
+
+    private final String property;
+    private final Method method;
+    private final Field field;
+
+    private PropertyAccessor(String property, Method method, Field field) {
+        this.property = property;
+        this.method = method;
+        this.field = field;
+    }
+
+    /**
+     * Returns the accessor for the {@code property} of the {@code cls} class, resolving and caching it if this is the first request for
+     * this pair.
+     *
+     * @param cls      the class of the target object
+     * @param property the name of the property
+     * @return the accessor; never {@code null}, even if the class doesn't expose the property
+     */
+    public static PropertyAccessor get(Class<?> cls, String property) {
+        SoftReference<ConcurrentMap<String, PropertyAccessor>> reference = CACHE.get(new ClassKey(cls, null));
+        ConcurrentMap<String, PropertyAccessor> accessors = reference != null ? reference.get() : null;
+        if (accessors == null) {
+            expungeCollectedClasses();
+            // a concurrent miss for the same class might replace this map, which only costs another resolution
+            accessors = new ConcurrentHashMap<String, PropertyAccessor>();
+            CACHE.put(new ClassKey(cls, COLLECTED_CLASSES), new SoftReference<ConcurrentMap<String, PropertyAccessor>>(accessors));
+        }
+        PropertyAccessor accessor = accessors.get(property);
+        if (accessor == null) {
+            // concurrent resolutions of the same pair lead to equivalent accessors, so there's no need to lock here
+            accessor = resolve(cls, property);
+            accessors.put(property, accessor);
+        }
+        return accessor;
+    }
+
+    private static void expungeCollectedClasses() {
+        Reference<? extends Class<?>> key;
+        while ((key = COLLECTED_CLASSES.poll()) != null) {
+            CACHE.remove(key);
+        }
+    }
+
+    /**
+     * Drops all the cached accessors. This has to be called whenever classes might have been reloaded (e.g. bundle refreshes or changes
+     * to repository Java Use-API objects), so that the cache doesn't hold on to stale classes.
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Returns the number of classes for which accessors are currently cached.
+     *
+     * @return the number of cached classes
+     */
+    static int size() {
+        expungeCollectedClasses();
+        return CACHE.size();
+    }
+
+    /**
+     * Reads the property from the {@code target} object, first by calling the accessor method and, if that's not available or returns
+     * {@code null}, by reading the public field.
+     *
+     * @param target the target object; its class must be the one for which this accessor was resolved
+     * @return the value of the property or {@code null}
+     */
+    public Object getValue(Object target) {
+        Object result = invokeMethod(target);
+        if (result == null) {
+            result = readField(target);
+        }
+        return result;
+    }
+
+    private Object invokeMethod(Object target) {
+        if (method != null) {
+            try {
+                return method.invoke(target);
+            } catch (Exception e) {
+                LOGGER.error("Cannot access method " + property + " on object " + target.toString(), e);
+            }
+        }
+        return null;
+    }
+
+    private Object readField(Object target) {
+        if (field != null) {
+            try {
+                return field.get(target);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static PropertyAccessor resolve(Class<?> cls, String property) {
+        Method method = findMethod(cls, property);
+        if (method != null) {
+            method = extractMethodInheritanceChain(cls, method);
+        }
+        Field field = null;
+        try {
+            field = cls.getDeclaredField(property);
+        } catch (Exception e) {
+            // no such field; the accessor will only use the method, if any
+        }
+        return new PropertyAccessor(property, method, field);
+    }
+
+    private static Method findMethod(Class<?> cls, String baseName) {
+        Method[] publicMethods = cls.getMethods();
+        String capitalized = StringUtils.capitalize(baseName);
+        for (Method m : publicMethods) {
+            if (m.getParameterTypes().length == 0) {
+                String methodName = m.getName();
+                if (baseName.equals(methodName)
+                        || ("get" + capitalized).equals(methodName)
+                        || ("is" + capitalized).equals(methodName)) {
+
+                    // this method is good, check whether allowed
+                    if (isMethodAllowed(m)) {
+                        return m;
+                    }
+
+                    // method would match but is not allowed, abort
+                    break;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isMethodAllowed(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        //methods of the Object.class are forbidden (except toString, which is allowed)
+        return declaringClass != Object.class || RenderUtils.TO_STRING_METHOD.equals(method.getName());
+    }
+
+    private static Method extractMethodInheritanceChain(Class type, Method m) {
+        if (m == null || Modifier.isPublic(type.getModifiers())) {
+            return m;
+        }
+        Class[] inf = type.getInterfaces();
+        Method mp;
+        for (Class<?> iface : inf) {
+            try {
+                mp = iface.getMethod(m.getName(), m.getParameterTypes());
+                mp = extractMethodInheritanceChain(mp.getDeclaringClass(), mp);
+                if (mp != null) {
+                    return mp;
+                }
+            } catch (NoSuchMethodException e) {
+                // do nothing
+            }
+        }
+        Class<?> sup = type.getSuperclass();
+        if (sup != null) {
+            try {
+                mp = sup.getMethod(m.getName(), m.getParameterTypes());
+                mp = extractMethodInheritanceChain(mp.getDeclaringClass(), mp);
+                if (mp != null) {
+                    return mp;
+                }
+            } catch (NoSuchMethodException e) {
+                // do nothing
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Weak reference to a class, which is equal to the references to the same class as long as the class hasn't been collected.
+     */
+    private static final class ClassKey extends WeakReference<Class<?>> {
+
+        private final int hash;
+
+        ClassKey(Class<?> cls, ReferenceQueue<Class<?>> queue) {
+            super(cls, queue);
+            this.hash = System.identityHashCode(cls);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ClassKey)) {
+                return false;
+            }
+            Class<?> cls = get();
+            return cls != null && cls == ((ClassKey) obj).get();
+        }
+    }
+}
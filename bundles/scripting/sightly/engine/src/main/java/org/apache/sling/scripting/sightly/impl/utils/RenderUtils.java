@@ -18,9 +18,6 @@
  ******************************************************************************/
 package org.apache.sling.scripting.sightly.impl.utils;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -37,13 +34,9 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.sling.api.adapter.Adaptable;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.scripting.sightly.Record;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class RenderUtils {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(RenderUtils.class);
-
     public static final String TO_STRING_METHOD = "toString";
     public static final String PROPERTY_ACCESS = "resolveProperty";
     public static final String COLLECTION_COERCE = "toCollection";
@@ -282,72 +275,13 @@ public class RenderUtils {
     }
 
     private static Object getObjectProperty(Object obj, String property) {
-        Object result = getObjectNoArgMethod(obj, property);
-        if (result == null) {
-            result = getField(obj, property);
-        }
-        return result;
-    }
-
-    private static Object getField(Object obj, String property) {
         if (obj instanceof Object[] && "length".equals(property)) {
             // Working around this limitation: http://docs.oracle.com/javase/7/docs/api/java/lang/Class.html#getFields%28%29
             return ((Object[]) obj).length;
         }
-        Class<?> cls = obj.getClass();
-        try {
-            Field field = cls.getDeclaredField(property);
-            return field.get(obj);
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
-    private static Object getObjectNoArgMethod(Object obj, String property) {
-        Class<?> cls = obj.getClass();
-        Method method = findMethod(cls, property);
-        if (method != null) {
-            method = extractMethodInheritanceChain(cls, method);
-            try {
-                return method.invoke(obj);
-            } catch (Exception e) {
-                LOGGER.error("Cannot access method " + property + " on object " + obj.toString(), e);
-            }
-        }
-        return null;
-    }
-
-    private static Method findMethod(Class<?> cls, String baseName) {
-        Method[] publicMethods = cls.getMethods();
-        String capitalized = StringUtils.capitalize(baseName);
-        for (Method m : publicMethods) {
-            if (m.getParameterTypes().length == 0) {
-                String methodName = m.getName();
-                if (baseName.equals(methodName)
-                        || ("get" + capitalized).equals(methodName)
-                        || ("is" + capitalized).equals(methodName)) {
-
-                    // this method is good, check whether allowed
-                    if (isMethodAllowed(m)) {
-                        return m;
-                    }
-
-                    // method would match but is not allowed, abort
-                    break;
-                }
-            }
-        }
-
-        return null;
+        return PropertyAccessor.get(obj.getClass(), property).getValue(obj);
     }
 
-    private static boolean isMethodAllowed(Method method) {
-        Class<?> declaringClass = method.getDeclaringClass();
-        //methods of the Object.class are forbidden (except toString, which is allowed)
-        return declaringClass != Object.class || TO_STRING_METHOD.equals(method.getName());
-    }
-
-
     private static String objectToString(Object obj) {
         String output = "";
         if (obj != null) {
@@ -394,36 +328,4 @@ public class RenderUtils {
         set.add(Void.class);
         return set;
     }
-
-    private static Method extractMethodInheritanceChain(Class type, Method m) {
-        if (m == null || Modifier.isPublic(type.getModifiers())) {
-            return m;
-        }
-        Class[] inf = type.getInterfaces();
-        Method mp;
-        for (Class<?> iface : inf) {
-            try {
-                mp = iface.getMethod(m.getName(), m.getParameterTypes());
-                mp = extractMethodInheritanceChain(mp.getDeclaringClass(), mp);
-                if (mp != null) {
-                    return mp;
-                }
-            } catch (NoSuchMethodException e) {
-                // do nothing
-            }
-        }
-        Class<?> sup = type.getSuperclass();
-        if (sup != null) {
-            try {
-                mp = sup.getMethod(m.getName(), m.getParameterTypes());
-                mp = extractMethodInheritanceChain(mp.getDeclaringClass(), mp);
-                if (mp != null) {
-                    return mp;
-                }
-            } catch (NoSuchMethodException e) {
-                // do nothing
-            }
-        }
-        return null;
-    }
 }
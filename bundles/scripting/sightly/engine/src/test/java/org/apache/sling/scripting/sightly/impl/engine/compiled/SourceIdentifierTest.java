@@ -16,12 +16,31 @@
  ******************************************************************************/
 package org.apache.sling.scripting.sightly.impl.engine.compiled;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.classloader.ClassLoaderWriter;
+import org.apache.sling.scripting.sightly.impl.compiler.UnitChangeMonitor;
+import org.apache.sling.scripting.sightly.impl.engine.SightlyEngineConfiguration;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SourceIdentifierTest {
@@ -49,4 +68,90 @@ public class SourceIdentifierTest {
     public void testGetFullyQualifiedName() throws Exception {
         assertEquals("apps.blah._static.foo.SightlyJava_foo", sourceIdentifier.getFullyQualifiedName());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testNeedsUpdateWithoutCompiledUnit() throws Exception {
+        SourceIdentifier identifier = createIdentifier("<div></div>", new HashMap<String, byte[]>());
+        assertTrue(identifier.needsUpdate());
+    }
+
+    @Test
+    public void testPersistedUnitIsReusedForUnchangedSource() throws Exception {
+        Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("/apps/blah/_static/foo/SightlyJava_foo.class", new byte[0]);
+        SourceIdentifier identifier = createIdentifier("<div></div>", files);
+        assertTrue("A unit without a stored checksum cannot be reused", identifier.needsUpdate());
+        identifier.storeChecksum();
+        assertFalse(identifier.needsUpdate());
+    }
+
+    @Test
+    public void testPersistedUnitIsNotReusedForChangedSource() throws Exception {
+        Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("/apps/blah/_static/foo/SightlyJava_foo.class", new byte[0]);
+        createIdentifier("<div></div>", files).storeChecksum();
+        assertTrue(createIdentifier("<span></span>", files).needsUpdate());
+    }
+
+    @Test
+    public void testPersistedUnitValidityIsRemembered() throws Exception {
+        Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("/apps/blah/_static/foo/SightlyJava_foo.class", new byte[0]);
+        UnitChangeMonitor unitChangeMonitor = new UnitChangeMonitor();
+        createIdentifier("<div></div>", files, new UnitChangeMonitor()).storeChecksum();
+
+        SourceIdentifier identifier = createIdentifier("<div></div>", files, unitChangeMonitor);
+        assertFalse(identifier.needsUpdate());
+        assertFalse(identifier.needsUpdate());
+        assertFalse(createIdentifier("<div></div>", files, unitChangeMonitor).needsUpdate());
+        verify(identifier.getResource(), times(1)).adaptTo(InputStream.class);
+    }
+
+    private SourceIdentifier createIdentifier(final String source, final Map<String, byte[]> files) throws Exception {
+        return createIdentifier(source, files, new UnitChangeMonitor());
+    }
+
+    private SourceIdentifier createIdentifier(final String source, final Map<String, byte[]> files, UnitChangeMonitor unitChangeMonitor)
+            throws Exception {
+        Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn("/apps/blah/static/foo/foo.html");
+        when(resource.adaptTo(InputStream.class)).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) throws Throwable {
+                return IOUtils.toInputStream(source, "UTF-8");
+            }
+        });
+        SightlyEngineConfiguration configuration = mock(SightlyEngineConfiguration.class);
+        when(configuration.getEngineVersion()).thenReturn("1.0.0");
+        ClassLoaderWriter writer = mock(ClassLoaderWriter.class);
+        when(writer.getLastModified(anyString())).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) throws Throwable {
+                return files.containsKey(invocation.getArguments()[0]) ? 1L : -1L;
+            }
+        });
+        when(writer.getInputStream(anyString())).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) throws Throwable {
+                byte[] content = files.get(invocation.getArguments()[0]);
+                if (content == null) {
+                    throw new IOException("No such file");
+                }
+                return new ByteArrayInputStream(content);
+            }
+        });
+        when(writer.getOutputStream(anyString())).thenAnswer(new Answer<OutputStream>() {
+            @Override
+            public OutputStream answer(InvocationOnMock invocation) throws Throwable {
+                final String path = (String) invocation.getArguments()[0];
+                return new ByteArrayOutputStream() {
+                    @Override
+                    public void close() throws IOException {
+                        files.put(path, toByteArray());
+                    }
+                };
+            }
+        });
+        return new SourceIdentifier(configuration, unitChangeMonitor, writer, resource, "SightlyJava_");
+    }
+}
@@ -19,6 +19,8 @@
 package org.apache.sling.scripting.sightly.impl.utils;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -36,4 +38,53 @@ public class RenderUtilsTest {
         assertTrue(numberCollection.size() == 1 && numberCollection.contains(numberObject));
     }
 
+    @Test
+    public void testResolveObjectProperty() {
+        Bean bean = new Bean();
+        assertEquals("value", RenderUtils.resolveProperty(bean, "text"));
+        assertEquals(true, RenderUtils.resolveProperty(bean, "valid"));
+        assertEquals("field", RenderUtils.resolveProperty(bean, "publicField"));
+        assertEquals(2, RenderUtils.resolveProperty(new String[] {"a", "b"}, "length"));
+        assertNull(RenderUtils.resolveProperty(bean, "missing"));
+        // methods inherited from Object are not allowed, except toString
+        assertNull(RenderUtils.resolveProperty(bean, "class"));
+        assertEquals("bean", RenderUtils.resolveProperty(bean, "toString"));
+    }
+
+    @Test
+    public void testResolvePropertyThroughPublicInterface() {
+        List<String> list = Collections.unmodifiableList(Collections.singletonList("a"));
+        assertEquals(false, RenderUtils.resolveProperty(list, "empty"));
+    }
+
+    @Test
+    public void testPropertyAccessorsAreCached() {
+        PropertyAccessor.clear();
+        Bean bean = new Bean();
+        RenderUtils.resolveProperty(bean, "text");
+        assertSame(PropertyAccessor.get(Bean.class, "text"), PropertyAccessor.get(Bean.class, "text"));
+        assertEquals(1, PropertyAccessor.size());
+        PropertyAccessor.clear();
+        assertEquals(0, PropertyAccessor.size());
+        assertEquals("value", RenderUtils.resolveProperty(bean, "text"));
+    }
+
+    public static class Bean {
+
+        public String publicField = "field";
+
+        public String getText() {
+            return "value";
+        }
+
+        public boolean isValid() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "bean";
+        }
+    }
+
 }
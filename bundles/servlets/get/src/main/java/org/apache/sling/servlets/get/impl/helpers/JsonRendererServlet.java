@@ -29,9 +29,7 @@ import org.apache.sling.api.resource.ResourceNotFoundException;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.servlets.SlingSafeMethodsServlet;
 import org.apache.sling.commons.json.JSONException;
-import org.apache.sling.commons.json.io.JSONRenderer;
 import org.apache.sling.commons.json.io.JSONWriter;
-import org.apache.sling.commons.json.sling.ResourceTraversor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,8 +60,6 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
     public static final int INDENT_SPACES = 2;
 
     private long maximumResults;
-    
-    private final JSONRenderer renderer = new JSONRenderer();
 
     public JsonRendererServlet(long maximumResults) {
         this.maximumResults = maximumResults;
@@ -90,34 +86,16 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
         resp.setCharacterEncoding("UTF-8");
 
         // We check the tree to see if the nr of nodes isn't bigger than the allowed nr.
-        boolean allowDump = true;
-        int allowedLevel = 0;
+        // This only counts the resources, the JSON is written while traversing
+        // the tree afterwards, without building the complete JSON tree in memory.
         final boolean tidy = isTidy(req);
         final boolean harray = hasSelector(req, HARRAY);
-        ResourceTraversor traversor = null;
-        try {
-            traversor = new ResourceTraversor(maxRecursionLevels, maximumResults, r, tidy);
-            allowedLevel = traversor.collectResources();
-            if ( allowedLevel != -1 ) {
-			    allowDump = false;
-            }
-        } catch (final JSONException e) {
-            reportException(e);
-        }
+        int allowedLevel = JsonResourceWriter.getAllowedLevel(r, maxRecursionLevels, maximumResults);
         try {
             // Dump the resource if we can
-            if (allowDump) {
-                if (tidy || harray) {
-                    final JSONRenderer.Options opt = renderer.options()
-                            .withIndent(tidy ? INDENT_SPACES : 0)
-                            .withArraysForChildren(harray);
-                    resp.getWriter().write(renderer.prettyPrint(traversor.getJSONObject(), opt));
-                } else {
-                    // If no rendering options, use the plain toString() method, for
-                    // backwards compatibility. Output might be slightly different
-                    // with prettyPrint and no options
-                    resp.getWriter().write(traversor.getJSONObject().toString());
-                }
+            if (allowedLevel == -1) {
+                final JsonResourceWriter writer = new JsonResourceWriter(maxRecursionLevels, tidy, harray);
+                writer.write(resp.getWriter(), r);
 
             } else {
                 // We are not allowed to do the dump.
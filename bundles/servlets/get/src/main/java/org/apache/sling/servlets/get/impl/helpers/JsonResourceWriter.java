@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.servlets.get.impl.helpers;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.commons.json.io.JSONRenderer;
+import org.apache.sling.commons.json.sling.JsonObjectCreator;
+
+/**
+ * The <code>JsonResourceWriter</code> writes a resource tree as JSON while
+ * traversing it, instead of building the complete <code>JSONObject</code>
+ * tree first. Only the children of the resources on the path currently
+ * written are held in memory.
+ * <p>
+ * The output is the same as rendering the tree collected by the
+ * <code>ResourceTraversor</code> with <code>JSONObject.toString()</code>
+ * respectively <code>JSONRenderer.prettyPrint()</code>.
+ */
+class JsonResourceWriter {
+
+    private final JSONRenderer renderer = new JSONRenderer();
+
+    private final int maxRecursionLevels;
+
+    private final int indent;
+
+    private final boolean prettyPrint;
+
+    private final boolean arraysForChildren;
+
+    /**
+     * @param maxRecursionLevels The number of child levels to write, -1 for all
+     * @param tidy Whether to indent the output
+     * @param arraysForChildren Whether to write the children in arrays to preserve their order
+     */
+    JsonResourceWriter(final int maxRecursionLevels, final boolean tidy, final boolean arraysForChildren) {
+        this.maxRecursionLevels = maxRecursionLevels;
+        this.indent = tidy ? JsonRendererServlet.INDENT_SPACES : 0;
+        this.prettyPrint = tidy || arraysForChildren;
+        this.arraysForChildren = arraysForChildren;
+    }
+
+    /**
+     * Counts the resources a traversal to the given recursion level would
+     * visit, breadth first, and stops as soon as more than
+     * <code>maxResources</code> are found. Only the resources of the next
+     * level are held in memory, at most <code>maxResources</code> of them.
+     *
+     * @return -1 if all resources may be written, otherwise the level
+     *         at which the maximum number of resources was exceeded.
+     */
+    static int getAllowedLevel(final Resource resource, final int maxRecursionLevels, final long maxResources) {
+        // SLING-2320: always allow enumeration of one's children;
+        // DOS-limitation is for deeper traversals.
+        if (maxRecursionLevels == 0 || maxRecursionLevels == 1) {
+            return -1;
+        }
+        long count = 0;
+        int level = 0;
+        LinkedList<Resource> currentQueue = new LinkedList<Resource>();
+        LinkedList<Resource> nextQueue = new LinkedList<Resource>();
+        currentQueue.add(resource);
+        while (true) {
+            if (currentQueue.isEmpty()) {
+                if (nextQueue.isEmpty()) {
+                    return -1;
+                }
+                level++;
+                currentQueue = nextQueue;
+                nextQueue = new LinkedList<Resource>();
+            }
+            final Resource current = currentQueue.removeFirst();
+            if (maxRecursionLevels == -1 || level < maxRecursionLevels) {
+                final Iterator<Resource> children = ResourceUtil.listChildren(current);
+                while (children.hasNext()) {
+                    count++;
+                    if (count > maxResources) {
+                        return level;
+                    }
+                    nextQueue.addLast(children.next());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the resource and its children up to the recursion level.
+     */
+    void write(final Writer writer, final Resource resource) throws JSONException, IOException {
+        if (prettyPrint) {
+            writePretty(writer, getEntries(resource, 0), 0, 0, arraysForChildren);
+        } else {
+            writeCompact(writer, resource, 0);
+        }
+    }
+
+    /**
+     * Collects the properties of the resource and, if the level allows it,
+     * its children (as <code>Resource</code> values). A child with the name of
+     * a property replaces that property, like it did in the JSON tree.
+     */
+    private Map<String, Object> getEntries(final Resource resource, final int level) throws JSONException {
+        final Map<String, Object> entries = new LinkedHashMap<String, Object>();
+        final JSONObject properties = JsonObjectCreator.create(resource, 0);
+        final Iterator<String> keys = properties.keys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            entries.put(key, properties.get(key));
+        }
+        if (maxRecursionLevels == -1 || level < maxRecursionLevels) {
+            final Iterator<Resource> children = ResourceUtil.listChildren(resource);
+            while (children.hasNext()) {
+                final Resource child = children.next();
+                entries.put(ResourceUtil.getName(child), child);
+            }
+        }
+        return entries;
+    }
+
+    /** Same output as <code>JSONObject.toString()</code> */
+    private void writeCompact(final Writer writer, final Resource resource, final int level)
+    throws JSONException, IOException {
+        writer.write('{');
+        boolean first = true;
+        for (final Map.Entry<String, Object> entry : getEntries(resource, level).entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write(renderer.quote(entry.getKey()));
+            writer.write(':');
+            if (entry.getValue() instanceof Resource) {
+                writeCompact(writer, (Resource) entry.getValue(), level + 1);
+            } else {
+                writer.write(renderer.valueToString(entry.getValue()));
+            }
+        }
+        writer.write('}');
+    }
+
+    /** Same output as <code>JSONRenderer.prettyPrint(JSONObject, Options)</code> */
+    private void writePretty(final Writer writer, final Map<String, Object> entries, final int level,
+            final int initialIndent, final boolean childArrays)
+    throws JSONException, IOException {
+        final int n = entries.size();
+        if (n == 0) {
+            writer.write("{}");
+            return;
+        }
+        final List<Map.Entry<String, Object>> children = new ArrayList<Map.Entry<String, Object>>();
+        final int newIndent = initialIndent + indent;
+        boolean written = false;
+        writer.write('{');
+        if (n == 1) {
+            final Map.Entry<String, Object> entry = entries.entrySet().iterator().next();
+            if (childArrays && entry.getValue() instanceof Resource) {
+                children.add(entry);
+            } else {
+                writer.write(renderer.quote(entry.getKey()));
+                writer.write(": ");
+                writePrettyValue(writer, entry.getValue(), level, initialIndent, childArrays);
+                written = true;
+            }
+        } else {
+            for (final Map.Entry<String, Object> entry : entries.entrySet()) {
+                if (childArrays && entry.getValue() instanceof Resource) {
+                    children.add(entry);
+                    continue;
+                }
+                writer.write(written ? ",\n" : "\n");
+                writeIndent(writer, newIndent);
+                writer.write(renderer.quote(entry.getKey()));
+                writer.write(": ");
+                writePrettyValue(writer, entry.getValue(), level, newIndent, false);
+                written = true;
+            }
+            if (written) {
+                writer.write('\n');
+                writeIndent(writer, newIndent);
+            }
+        }
+
+        if (!children.isEmpty()) {
+            writer.write(written ? ",\n" : "\n");
+            final int childIndent = initialIndent + newIndent;
+            writeIndent(writer, childIndent);
+            writer.write(renderer.quote(JSONRenderer.Options.DEFAULT_CHILDREN_KEY));
+            writer.write(':');
+            writeChildrenArray(writer, children, level, childIndent);
+        }
+        writer.write('}');
+    }
+
+    private void writePrettyValue(final Writer writer, final Object value, final int level,
+            final int initialIndent, final boolean childArrays)
+    throws JSONException, IOException {
+        if (value instanceof Resource) {
+            writePretty(writer, getEntries((Resource) value, level + 1), level + 1, initialIndent, childArrays);
+        } else {
+            writer.write(renderer.valueToString(value,
+                    renderer.options().withIndent(indent).withInitialIndent(initialIndent).withArraysForChildren(childArrays)));
+        }
+    }
+
+    /** Same output as <code>JSONRenderer.prettyPrint(JSONArray, Options)</code> for the children array */
+    private void writeChildrenArray(final Writer writer, final List<Map.Entry<String, Object>> children,
+            final int level, final int initialIndent)
+    throws JSONException, IOException {
+        writer.write('[');
+        if (children.size() == 1) {
+            writeNamedChild(writer, children.get(0), level, initialIndent);
+        } else {
+            final int newIndent = initialIndent + indent;
+            if (indent > 0) {
+                writer.write('\n');
+            }
+            boolean first = true;
+            for (final Map.Entry<String, Object> child : children) {
+                if (!first) {
+                    writer.write(',');
+                    if (indent > 0) {
+                        writer.write('\n');
+                    }
+                }
+                first = false;
+                writeIndent(writer, newIndent);
+                writeNamedChild(writer, child, level, initialIndent);
+            }
+            if (indent > 0) {
+                writer.write('\n');
+            }
+            writeIndent(writer, initialIndent);
+        }
+        writer.write(']');
+    }
+
+    private void writeNamedChild(final Writer writer, final Map.Entry<String, Object> child, final int level,
+            final int initialIndent)
+    throws JSONException, IOException {
+        final Map<String, Object> entries = new LinkedHashMap<String, Object>();
+        entries.put(JSONRenderer.Options.DEFAULT_CHILD_NAME_KEY, child.getKey());
+        entries.putAll(getEntries((Resource) child.getValue(), level + 1));
+        writePretty(writer, entries, level + 1, initialIndent, true);
+    }
+
+    private void writeIndent(final Writer writer, final int howMuch) throws IOException {
+        for (int i = 0; i < howMuch; i++) {
+            writer.write(' ');
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.servlets.get.impl.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.commons.json.io.JSONRenderer;
+import org.apache.sling.commons.json.sling.ResourceTraversor;
+import org.apache.sling.commons.testing.sling.MockResource;
+import org.apache.sling.commons.testing.sling.MockResourceResolver;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JsonResourceWriterTest {
+
+    private MockResourceResolver resolver;
+
+    @Before
+    public void setup() {
+        resolver = new MockResourceResolver();
+        add("/content", "title", "Content", "count", 42L);
+        add("/content/empty");
+        add("/content/single", "flag", true);
+        add("/content/single/child", "tags", new String[] {"a", "b"});
+        add("/content/only");
+        add("/content/only/leaf", "text", "quoted \"text\"");
+        add("/content/page", "title", "Page");
+        add("/content/page/one", "title", "One");
+        add("/content/page/two");
+        add("/content/page/two/deep", "title", "Deep", "empty", new String[0]);
+    }
+
+    private void add(final String path, final Object... properties) {
+        final Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("sling:resourceType", "type");
+        for (int i = 0; i < properties.length; i += 2) {
+            map.put((String) properties[i], properties[i + 1]);
+        }
+        resolver.addResource(new MockResource(resolver, path, "type") {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <AdapterType> AdapterType adaptTo(Class<AdapterType> type) {
+                if (type == ValueMap.class) {
+                    return (AdapterType) new ValueMapDecorator(map);
+                }
+                return super.adaptTo(type);
+            }
+        });
+    }
+
+    /** The output of the previous implementation, building the complete JSON tree */
+    private String render(final Resource resource, final int levels, final boolean tidy, final boolean harray)
+    throws Exception {
+        final ResourceTraversor traversor = new ResourceTraversor(levels, Long.MAX_VALUE, resource, tidy);
+        traversor.collectResources();
+        if (tidy || harray) {
+            final JSONRenderer renderer = new JSONRenderer();
+            return renderer.prettyPrint(traversor.getJSONObject(),
+                    renderer.options().withIndent(tidy ? JsonRendererServlet.INDENT_SPACES : 0).withArraysForChildren(harray));
+        }
+        return traversor.getJSONObject().toString();
+    }
+
+    private String write(final Resource resource, final int levels, final boolean tidy, final boolean harray)
+    throws Exception {
+        final StringWriter writer = new StringWriter();
+        new JsonResourceWriter(levels, tidy, harray).write(writer, resource);
+        return writer.toString();
+    }
+
+    @Test
+    public void testSameOutputAsJSONTree() throws Exception {
+        final String[] paths = {"/content", "/content/empty", "/content/single", "/content/only", "/content/page/two"};
+        final int[] levels = {0, 1, 2, 3, -1};
+        final boolean[] flags = {false, true};
+        for (final String path : paths) {
+            final Resource resource = resolver.getResource(path);
+            for (final int level : levels) {
+                for (final boolean tidy : flags) {
+                    for (final boolean harray : flags) {
+                        final String msg = path + " levels=" + level + " tidy=" + tidy + " harray=" + harray;
+                        assertEquals(msg, render(resource, level, tidy, harray), write(resource, level, tidy, harray));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInfinity() throws Exception {
+        final String json = write(resolver.getResource("/content"), -1, false, false);
+        assertTrue(json, json.contains("\"deep\":{\"sling:resourceType\":\"type\",\"title\":\"Deep\",\"empty\":[]}"));
+    }
+
+    @Test
+    public void testAllowedLevel() throws Exception {
+        final Resource resource = resolver.getResource("/content");
+        final int[] levels = {0, 1, 2, 3, -1};
+        for (int max = 0; max < 12; max++) {
+            for (final int level : levels) {
+                final ResourceTraversor traversor = new ResourceTraversor(level, max, resource, false);
+                assertEquals("max=" + max + " levels=" + level, traversor.collectResources(),
+                        JsonResourceWriter.getAllowedLevel(resource, level, max));
+            }
+        }
+    }
+}
@@ -168,6 +168,21 @@ public interface SlingPostConstants {
      */
     public static final String OPERATION_IMPORT = "import";
 
+    /**
+     * Name of the predefined bulk operation (value is "bulk").
+     *
+     * <p>
+     * The bulk operation reads one JSON object per line from the
+     * {@link #RP_CONTENT} or {@link #RP_CONTENT_FILE} request parameter or
+     * the request body. Each object lists the request parameters of a
+     * single POST to the path given in its {@link #RP_BULK_PATH} member.
+     * The {@link #RP_COMMIT_SIZE} parameter may be set to commit the
+     * changes after the given number of items.
+     *
+     * @since 2.3.9
+     */
+    public static final String OPERATION_BULK = "bulk";
+
     /**
      * Name of the request parameter used to indicate the resource to apply the
      * operation to (value is ":applyTo").
@@ -589,4 +604,20 @@ public interface SlingPostConstants {
      */
     public static final String CHUNK_NODE_NAME = "chunk";
 
+    /**
+     * Name of the member of a {@link #OPERATION_BULK} item providing the
+     * path of the resource to operate on (value is ":path"). Relative
+     * paths are resolved against the request resource.
+     * @since 2.3.9
+     */
+    public static final String RP_BULK_PATH = RP_PREFIX + "path";
+
+    /**
+     * Name of the request parameter defining the number of items after
+     * which the {@link #OPERATION_BULK} operation commits the changes. If
+     * missing or not positive, all changes are committed at the end.
+     * @since 2.3.9
+     */
+    public static final String RP_COMMIT_SIZE = RP_PREFIX + "commitSize";
+
 }
@@ -62,6 +62,7 @@ import org.apache.sling.servlets.post.VersioningConfiguration;
 import org.apache.sling.servlets.post.impl.helper.DateParser;
 import org.apache.sling.servlets.post.impl.helper.DefaultNodeNameGenerator;
 import org.apache.sling.servlets.post.impl.helper.MediaRangeList;
+import org.apache.sling.servlets.post.impl.operations.BulkOperation;
 import org.apache.sling.servlets.post.impl.operations.CheckinOperation;
 import org.apache.sling.servlets.post.impl.operations.CheckoutOperation;
 import org.apache.sling.servlets.post.impl.operations.CopyOperation;
@@ -169,6 +170,8 @@ public class SlingPostServlet extends SlingAllMethodsServlet {
 
     private final ImportOperation importOperation = new ImportOperation();
 
+    private final BulkOperation bulkOperation = new BulkOperation(postOperations);
+
     /**
      * The content importer reference.
      */
@@ -188,6 +191,13 @@ public class SlingPostServlet extends SlingAllMethodsServlet {
         htmlResponse.setReferer(request.getHeader("referer"));
 
         final PostOperation operation = getSlingPostOperation(request);
+        if (operation == bulkOperation) {
+            // bulk results are streamed while the items are processed
+            request.getRequestProgressTracker().log(
+                    "Calling PostOperation: {0}", operation.getClass().getName());
+            bulkOperation.run(request, response, this.cachedPostProcessors);
+            return;
+        }
         if (operation == null) {
 
             htmlResponse.setStatus(
@@ -419,6 +429,8 @@ public class SlingPostServlet extends SlingAllMethodsServlet {
                 SlingPostConstants.OPERATION_RESTORE, new RestoreOperation()));
         providedServices.add(registerOperation(bundleContext,
             SlingPostConstants.OPERATION_IMPORT, importOperation));
+        providedServices.add(registerOperation(bundleContext,
+            SlingPostConstants.OPERATION_BULK, bulkOperation));
 
         internalOperations = providedServices.toArray(new ServiceRegistration[providedServices.size()]);
     }
@@ -18,21 +18,19 @@ package org.apache.sling.servlets.post.impl.helper;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.SequenceInputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
+import javax.jcr.Binary;
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
@@ -245,6 +243,15 @@ public class SlingFileUploadHandler {
      * nt:resource/chunk_start_end/jcr:data. For last last chunk,
      * merge all previous chunks and last chunk and replace binary at
      * destination.
+     * <p>
+     * The first chunk (offset 0) starts the upload. Further chunks may be
+     * sent in any order and in parallel as long as they do not overlap
+     * chunks already stored. Out of order chunks only add a chunk node,
+     * the sling:length property is only updated when the contiguous range
+     * starting at offset 0 grows. The upload is completed as soon as all
+     * bytes of the announced file length are present or a chunk is marked
+     * as completed; clients uploading in parallel and not announcing the
+     * file length must therefore send the completing chunk last.
      */
     private void processChunk(final Resource resParent, final Node res,
             final RequestProperty prop, RequestParameter value,
@@ -278,14 +285,6 @@ public class SlingFileUploadHandler {
             long currentLength = res.getProperty(
                 SlingPostConstants.NT_SLING_CHUNKS_LENGTH).getLong();
             long totalLength = prop.getChunk().getLength();
-            if (chunkOffset != currentLength) {
-                throw new RepositoryException("Chunk's offset {"
-                    + chunkOffset
-                    + "} doesn't match expected offset {"
-                    + res.getProperty(
-                        SlingPostConstants.NT_SLING_CHUNKS_LENGTH).getLong()
-                    + "}");
-            }
             if (totalLength != 0) {
                 if (res.hasProperty(SlingPostConstants.NT_SLING_FILE_LENGTH)) {
                     long expectedLength = res.getProperty(
@@ -300,52 +299,49 @@ public class SlingFileUploadHandler {
                         totalLength);
                 }
             }
-            NodeIterator itr = res.getNodes(SlingPostConstants.CHUNK_NODE_NAME
-                + "_" + String.valueOf(chunkOffset) + "*");
-            if (itr.hasNext()) {
-                throw new RepositoryException("Chunk already present at {"
-                    + itr.nextNode().getPath() + "}");
+            final long chunkEnd = chunkOffset + value.getSize() - 1;
+            if (totalLength != 0 && chunkEnd >= totalLength) {
+                throw new RepositoryException("Chunk {" + chunkOffset + "-"
+                    + chunkEnd + "} exceeds file length {" + totalLength + "}");
             }
-            String nodeName = SlingPostConstants.CHUNK_NODE_NAME + "_"
-                + String.valueOf(chunkOffset) + "_"
-                + String.valueOf(chunkOffset + value.getSize() - 1);
-            if (totalLength == (currentLength + value.getSize())
-                || prop.getChunk().isCompleted()) {
-                File file = null;
-                InputStream fileIns = null;
-                try {
-                    file = mergeChunks(res, value.getInputStream());
-                    fileIns = new FileInputStream(file);
-                    changes.add(Modification.onModified(res.setProperty(
-                        JCR_DATA, fileIns).getPath()));
-                    NodeIterator nodeItr = res.getNodes(SlingPostConstants.CHUNK_NODE_NAME
-                        + "*");
-                    while (nodeItr.hasNext()) {
-                        Node nodeRange = nodeItr.nextNode();
-                        changes.add(Modification.onDeleted(nodeRange.getPath()));
-                        nodeRange.remove();
-                    }
-                    if (res.hasProperty(SlingPostConstants.NT_SLING_FILE_LENGTH)) {
-                        javax.jcr.Property expLenProp = res.getProperty(SlingPostConstants.NT_SLING_FILE_LENGTH);
-                        changes.add(Modification.onDeleted(expLenProp.getPath()));
-                        expLenProp.remove();
-                    }
-                    if (res.hasProperty(SlingPostConstants.NT_SLING_CHUNKS_LENGTH)) {
-                        javax.jcr.Property currLenProp = res.getProperty(SlingPostConstants.NT_SLING_CHUNKS_LENGTH);
-                        changes.add(Modification.onDeleted(currLenProp.getPath()));
-                        currLenProp.remove();
-                    }
-                    res.removeMixin(SlingPostConstants.NT_SLING_CHUNK_MIXIN);
-                } finally {
-                    try {
-                        fileIns.close();
-                        file.delete();
-                    } catch (IOException ign) {
 
-                    }
+            // single pass over the stored chunks, ordered by offset
+            final TreeMap<Long, Node> chunks = getChunks(res);
+            final Map.Entry<Long, Node> previous = chunks.floorEntry(chunkOffset);
+            Node retriedChunk = null;
+            if (previous != null && previous.getKey() == chunkOffset
+                && getChunkEnd(previous.getValue()) == chunkEnd) {
+                // the chunk is sent again, e.g. because the request storing
+                // it didn't complete the upload, so it replaces the stored one
+                retriedChunk = chunks.remove(chunkOffset);
+            } else if (previous != null
+                && getChunkEnd(previous.getValue()) >= chunkOffset) {
+                throw new RepositoryException("Chunk already present at {"
+                    + previous.getValue().getPath() + "}");
+            }
+            final Map.Entry<Long, Node> following = chunks.higherEntry(chunkOffset);
+            if (following != null && following.getKey() <= chunkEnd) {
+                throw new RepositoryException("Chunk {" + chunkOffset + "-"
+                    + chunkEnd + "} overlaps chunk at {"
+                    + following.getValue().getPath() + "}");
+            }
+            long uploadedLength = value.getSize();
+            for (final Map.Entry<Long, Node> entry : chunks.entrySet()) {
+                uploadedLength += getChunkEnd(entry.getValue()) - entry.getKey() + 1;
+            }
 
-                }
+            if (retriedChunk != null) {
+                changes.add(Modification.onDeleted(retriedChunk.getPath()));
+                retriedChunk.remove();
+            }
+            if (totalLength == uploadedLength
+                || prop.getChunk().isCompleted()) {
+                completeChunkUpload(res, chunks, chunkOffset, chunkEnd,
+                    value.getInputStream(), changes);
             } else {
+                String nodeName = SlingPostConstants.CHUNK_NODE_NAME + "_"
+                    + String.valueOf(chunkOffset) + "_"
+                    + String.valueOf(chunkEnd);
                 Node rangeNode = res.addNode(nodeName,
                     SlingPostConstants.NT_SLING_CHUNK_NODETYPE);
                 changes.add(Modification.onCreated(rangeNode.getPath()));
@@ -353,9 +349,37 @@ public class SlingFileUploadHandler {
                     JCR_DATA, value.getInputStream()).getPath()));
                 changes.add(Modification.onModified(rangeNode.setProperty(
                     SlingPostConstants.NT_SLING_CHUNK_OFFSET, chunkOffset).getPath()));
-                changes.add(Modification.onModified(res.setProperty(
-                    SlingPostConstants.NT_SLING_CHUNKS_LENGTH,
-                    currentLength + value.getSize()).getPath()));
+                if (chunkOffset == currentLength) {
+                    // extend the contiguous range by this chunk and by
+                    // chunks which arrived out of order before
+                    long contiguousLength = chunkEnd + 1;
+                    for (final Map.Entry<Long, Node> entry : chunks.tailMap(
+                        contiguousLength).entrySet()) {
+                        if (entry.getKey() != contiguousLength) {
+                            break;
+                        }
+                        contiguousLength = getChunkEnd(entry.getValue()) + 1;
+                    }
+                    changes.add(Modification.onModified(res.setProperty(
+                        SlingPostConstants.NT_SLING_CHUNKS_LENGTH,
+                        contiguousLength).getPath()));
+                }
+
+                // requests uploading the last missing chunks in parallel
+                // don't see each other's chunks before they are saved, so
+                // check again including the chunks saved in the meantime
+                if (totalLength != 0) {
+                    res.getSession().refresh(true);
+                    final TreeMap<Long, Node> storedChunks = getChunks(res);
+                    long storedLength = 0;
+                    for (final Map.Entry<Long, Node> entry : storedChunks.entrySet()) {
+                        storedLength += getChunkEnd(entry.getValue()) - entry.getKey() + 1;
+                    }
+                    if (storedLength == totalLength) {
+                        completeChunkUpload(res, storedChunks, -1, -1, null,
+                            changes);
+                    }
+                }
             }
         } catch (IOException e) {
             throw new RepositoryException(
@@ -364,54 +388,131 @@ public class SlingFileUploadHandler {
     }
 
     /**
-     * Merge all previous chunks with last chunk's stream into a temporary file
-     * and return it.
+     * Assemble the chunks into the final binary and remove the chunks and
+     * the chunk upload properties.
+     *
+     * @param lastChunkStream the stream of the chunk sent with the request
+     *            or {@code null} if all chunks are stored already
      */
-    private File mergeChunks(final Node parentNode,
-            final InputStream lastChunkStream) throws PersistenceException,
-            RepositoryException {
-        OutputStream out = null;
-        SequenceInputStream  mergeStrm = null;
-        File file = null;
+    private void completeChunkUpload(final Node res,
+            final SortedMap<Long, Node> chunks, final long lastChunkOffset,
+            final long lastChunkEnd, final InputStream lastChunkStream,
+            final List<Modification> changes) throws RepositoryException {
+        final SequenceInputStream mergeStrm = mergeChunks(chunks,
+            lastChunkOffset, lastChunkEnd, lastChunkStream);
         try {
-            file = File.createTempFile("tmp-", "-mergechunk");
-            out = new FileOutputStream(file);
-            String startPattern = SlingPostConstants.CHUNK_NODE_NAME + "_"
-                + "0_*";
-            NodeIterator nodeItr = parentNode.getNodes(startPattern);
-            InputStream ins = null;
-            int i = 0;
-            Set<InputStream> inpStrmSet = new LinkedHashSet<InputStream>();
-            while (nodeItr.hasNext()) {
-                if (nodeItr.getSize() > 1) {
-                    throw new RepositoryException(
-                        "more than one node found for pattern: " + startPattern);
-                }
-                Node rangeNode = nodeItr.nextNode();
+            // stream the chunks directly into the final binary
+            final Binary binary = res.getSession().getValueFactory().createBinary(
+                mergeStrm);
+            try {
+                changes.add(Modification.onModified(res.setProperty(
+                    JCR_DATA, binary).getPath()));
+            } finally {
+                binary.dispose();
+            }
+        } finally {
+            IOUtils.closeQuietly(mergeStrm);
+        }
+        for (final Node nodeRange : chunks.values()) {
+            changes.add(Modification.onDeleted(nodeRange.getPath()));
+            nodeRange.remove();
+        }
+        if (res.hasProperty(SlingPostConstants.NT_SLING_FILE_LENGTH)) {
+            javax.jcr.Property expLenProp = res.getProperty(SlingPostConstants.NT_SLING_FILE_LENGTH);
+            changes.add(Modification.onDeleted(expLenProp.getPath()));
+            expLenProp.remove();
+        }
+        if (res.hasProperty(SlingPostConstants.NT_SLING_CHUNKS_LENGTH)) {
+            javax.jcr.Property currLenProp = res.getProperty(SlingPostConstants.NT_SLING_CHUNKS_LENGTH);
+            changes.add(Modification.onDeleted(currLenProp.getPath()));
+            currLenProp.remove();
+        }
+        res.removeMixin(SlingPostConstants.NT_SLING_CHUNK_MIXIN);
+    }
 
-                inpStrmSet.add(rangeNode.getProperty(
+    /**
+     * Create a stream of all previous chunks and the last chunk's stream
+     * in offset order. The chunks must cover the file from offset 0
+     * without gaps.
+     */
+    private SequenceInputStream mergeChunks(final SortedMap<Long, Node> chunks,
+            final long lastChunkOffset, final long lastChunkEnd,
+            final InputStream lastChunkStream) throws RepositoryException {
+        final List<InputStream> inpStrmList = new ArrayList<InputStream>();
+        boolean lastChunkAdded = lastChunkStream == null;
+        long expectedOffset = 0;
+        try {
+            for (final Map.Entry<Long, Node> entry : chunks.entrySet()) {
+                if (!lastChunkAdded && entry.getKey() > lastChunkOffset) {
+                    checkChunkOffset(lastChunkOffset, expectedOffset);
+                    inpStrmList.add(lastChunkStream);
+                    lastChunkAdded = true;
+                    expectedOffset = lastChunkEnd + 1;
+                }
+                final Node rangeNode = entry.getValue();
+                checkChunkOffset(entry.getKey(), expectedOffset);
+                inpStrmList.add(rangeNode.getProperty(
                     javax.jcr.Property.JCR_DATA).getBinary().getStream());
                 log.debug("added chunk {} to merge stream", rangeNode.getName());
-                String[] indexBounds = rangeNode.getName().substring(
-                    (SlingPostConstants.CHUNK_NODE_NAME + "_").length()).split(
-                    "_");
-                startPattern = SlingPostConstants.CHUNK_NODE_NAME + "_"
-                    + String.valueOf(Long.valueOf(indexBounds[1]) + 1) + "_*";
-                nodeItr = parentNode.getNodes(startPattern);
+                expectedOffset = getChunkEnd(rangeNode) + 1;
+            }
+            if (!lastChunkAdded) {
+                checkChunkOffset(lastChunkOffset, expectedOffset);
+                inpStrmList.add(lastChunkStream);
+            }
+        } catch (final RepositoryException e) {
+            for (final InputStream ins : inpStrmList) {
+                IOUtils.closeQuietly(ins);
             }
+            throw e;
+        }
+        return new SequenceInputStream(Collections.enumeration(inpStrmList));
+    }
 
-            inpStrmSet.add(lastChunkStream);
-            mergeStrm = new SequenceInputStream(
-                Collections.enumeration(inpStrmSet));
-            IOUtils.copyLarge(mergeStrm, out);
-        } catch (IOException e) {
-            throw new PersistenceException("excepiton occured", e);
-        } finally {
-            IOUtils.closeQuietly(out);
-            IOUtils.closeQuietly(mergeStrm);
+    private void checkChunkOffset(final long offset, final long expectedOffset)
+            throws RepositoryException {
+        if (offset != expectedOffset) {
+            throw new RepositoryException("Chunk's offset {" + offset
+                + "} doesn't match expected offset {" + expectedOffset + "}");
+        }
+    }
+
+    /**
+     * Collect all chunks stored below the node ordered by their offset.
+     * The chunk bounds are taken from the node names, so a single pass
+     * over the child nodes is sufficient.
+     */
+    private TreeMap<Long, Node> getChunks(final Node chunkParent)
+            throws RepositoryException {
+        final TreeMap<Long, Node> chunks = new TreeMap<Long, Node>();
+        final NodeIterator nodeItr = chunkParent.getNodes(SlingPostConstants.CHUNK_NODE_NAME
+            + "*");
+        while (nodeItr.hasNext()) {
+            final Node rangeNode = nodeItr.nextNode();
+            chunks.put(getChunkBounds(rangeNode)[0], rangeNode);
+        }
+        return chunks;
+    }
+
+    private long getChunkEnd(final Node rangeNode) throws RepositoryException {
+        return getChunkBounds(rangeNode)[1];
+    }
 
+    /**
+     * Return the start and end index of a chunk node named
+     * chunk_start_end.
+     */
+    private long[] getChunkBounds(final Node rangeNode)
+            throws RepositoryException {
+        final String[] indexBounds = rangeNode.getName().substring(
+            (SlingPostConstants.CHUNK_NODE_NAME + "_").length()).split("_");
+        try {
+            return new long[] { Long.parseLong(indexBounds[0]),
+                Long.parseLong(indexBounds[1]) };
+        } catch (final RuntimeException e) {
+            throw new RepositoryException("Invalid chunk node name {"
+                + rangeNode.getPath() + "}", e);
         }
-        return file;
     }
 
     /**
@@ -449,7 +550,9 @@ public class SlingFileUploadHandler {
 
     /**
      * Get the last {@link SlingPostConstants#NT_SLING_CHUNK_NODETYPE}
-     * {@link Node}.
+     * {@link Node}, which is the most recently created chunk. As chunks may
+     * be uploaded out of order, this is not necessarily the chunk with the
+     * highest offset.
      * 
      * @param node {@link Node} containing
      *            {@link SlingPostConstants#NT_SLING_CHUNK_NODETYPE}
@@ -470,23 +573,23 @@ public class SlingFileUploadHandler {
             chunkParent = jcrContentNode;
 
         }
-        String startPattern = SlingPostConstants.CHUNK_NODE_NAME + "_" + "0_*";
-        NodeIterator nodeItr = chunkParent.getNodes(startPattern);
-        Node chunkNode = null;
+        if (chunkParent == null) {
+            return null;
+        }
+        Node lastChunk = null;
+        long lastCreated = Long.MIN_VALUE;
+        final NodeIterator nodeItr = chunkParent.getNodes(SlingPostConstants.CHUNK_NODE_NAME
+            + "*");
         while (nodeItr.hasNext()) {
-            if (nodeItr.getSize() > 1) {
-                throw new RepositoryException(
-                    "more than one node found for pattern: " + startPattern);
+            final Node rangeNode = nodeItr.nextNode();
+            final long created = rangeNode.getProperty(
+                javax.jcr.Property.JCR_CREATED).getDate().getTimeInMillis();
+            if (lastChunk == null || created > lastCreated) {
+                lastChunk = rangeNode;
+                lastCreated = created;
             }
-            chunkNode = nodeItr.nextNode();
-
-            String[] indexBounds = chunkNode.getName().substring(
-                (SlingPostConstants.CHUNK_NODE_NAME + "_").length()).split("_");
-            startPattern = SlingPostConstants.CHUNK_NODE_NAME + "_"
-                + String.valueOf(Long.valueOf(indexBounds[1]) + 1) + "_*";
-            nodeItr = chunkParent.getNodes(startPattern);
         }
-        return chunkNode;
+        return lastChunk;
     }
 
     /**
@@ -0,0 +1,591 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.servlets.post.impl.operations;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.request.RequestParameter;
+import org.apache.sling.api.request.RequestParameterMap;
+import org.apache.sling.api.request.RequestPathInfo;
+import org.apache.sling.api.resource.NonExistingResource;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.wrappers.SlingHttpServletRequestWrapper;
+import org.apache.sling.commons.json.JSONArray;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.servlets.post.AbstractPostResponse;
+import org.apache.sling.servlets.post.JSONResponse;
+import org.apache.sling.servlets.post.PostOperation;
+import org.apache.sling.servlets.post.PostResponse;
+import org.apache.sling.servlets.post.SlingPostConstants;
+import org.apache.sling.servlets.post.SlingPostProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>BulkOperation</code> class implements the
+ * {@link org.apache.sling.servlets.post.SlingPostConstants#OPERATION_BULK}
+ * bulk operation for the Sling default POST servlet.
+ * <p>
+ * The content, taken from the {@link SlingPostConstants#RP_CONTENT} or
+ * {@link SlingPostConstants#RP_CONTENT_FILE} parameter or else from the
+ * request body, lists one JSON object per line. Each object holds the
+ * request parameters of a single POST, the target path is given by the
+ * {@link SlingPostConstants#RP_BULK_PATH} member. Relative paths are resolved
+ * against the request resource. Each item is run through the post operation
+ * registered for its {@link SlingPostConstants#RP_OPERATION} member, modify
+ * by default, without saving. The changes are committed every
+ * {@link SlingPostConstants#RP_COMMIT_SIZE} items and at the end. The first
+ * failing item reverts the changes not yet committed and stops the bulk
+ * request.
+ * <p>
+ * When called through the servlet the results are streamed back as one JSON
+ * object per line: a result per item, a line per commit and a final summary.
+ */
+public class BulkOperation implements PostOperation {
+
+    /**
+     * The content type of the streamed bulk response.
+     */
+    public static final String RESPONSE_CONTENT_TYPE = "application/x-ndjson";
+
+    private static final String RESPONSE_CHARSET = "UTF-8";
+
+    private static final String PN_INDEX = "index";
+
+    private static final String PN_COMMITTED = "committed";
+
+    private static final String PN_ITEMS = "items";
+
+    private static final String PN_CHANGES = "changes";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * The registered post operations, guarded by synchronizing on the map.
+     */
+    private final Map<String, PostOperation> postOperations;
+
+    public BulkOperation(final Map<String, PostOperation> postOperations) {
+        this.postOperations = postOperations;
+    }
+
+    /**
+     * Runs the bulk operation recording the changes of all items in the
+     * given response.
+     */
+    public void run(final SlingHttpServletRequest request,
+            final PostResponse response,
+            final SlingPostProcessor[] processors) {
+        final BulkListener listener = new BulkListener() {
+
+            public void onItem(final JSONObject result) {
+                final JSONArray changes = result.optJSONArray(PN_CHANGES);
+                for (int i = 0; changes != null && i < changes.length(); i++) {
+                    final JSONObject change = changes.optJSONObject(i);
+                    if (change == null) {
+                        continue;
+                    }
+                    final JSONArray arguments = change.optJSONArray("argument");
+                    final String[] args;
+                    if (arguments != null) {
+                        args = new String[arguments.length()];
+                        for (int j = 0; j < args.length; j++) {
+                            args[j] = arguments.optString(j);
+                        }
+                    } else {
+                        args = new String[] { change.optString("argument") };
+                    }
+                    response.onChange(change.optString("type"), args);
+                }
+            }
+
+            public void onCommit(final int committed) {
+                // nothing to report
+            }
+        };
+        try {
+            final JSONObject summary = process(request, processors, listener);
+            final int status = summary.getInt(AbstractPostResponse.PN_STATUS_CODE);
+            if (status != HttpServletResponse.SC_OK) {
+                response.setStatus(status,
+                    summary.optString(AbstractPostResponse.PN_STATUS_MESSAGE));
+            }
+        } catch (final Exception e) {
+            log.error("Exception during bulk processing.", e);
+            response.setError(e);
+        }
+    }
+
+    /**
+     * Runs the bulk operation streaming the result lines to the servlet
+     * response while the items are processed. As the response is committed
+     * early, the outcome is reported in the final summary line.
+     */
+    public void run(final SlingHttpServletRequest request,
+            final SlingHttpServletResponse response,
+            final SlingPostProcessor[] processors) throws IOException {
+        response.setContentType(RESPONSE_CONTENT_TYPE);
+        response.setCharacterEncoding(RESPONSE_CHARSET);
+        final PrintWriter writer = response.getWriter();
+        final BulkListener listener = new BulkListener() {
+
+            public void onItem(final JSONObject result) throws IOException {
+                writeLine(result);
+            }
+
+            public void onCommit(final int committed) throws IOException {
+                try {
+                    writeLine(new JSONObject().put(PN_COMMITTED, committed));
+                } catch (final JSONException e) {
+                    throw new IOException("Error creating JSON result", e);
+                }
+            }
+
+            private void writeLine(final JSONObject line) throws IOException {
+                writer.println(line.toString());
+                writer.flush();
+            }
+        };
+        JSONObject summary;
+        try {
+            summary = process(request, processors, listener);
+        } catch (final Exception e) {
+            log.error("Exception during bulk processing.", e);
+            try {
+                summary = new JSONObject();
+                summary.put(AbstractPostResponse.PN_STATUS_CODE,
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                summary.put(AbstractPostResponse.PN_ERROR, toJson(e));
+            } catch (final JSONException je) {
+                throw new IOException("Error creating JSON result", je);
+            }
+        }
+        writer.println(summary.toString());
+        writer.flush();
+    }
+
+    /**
+     * Applies the items read from the request content and returns the
+     * summary of the bulk request.
+     */
+    private JSONObject process(final SlingHttpServletRequest request,
+            final SlingPostProcessor[] processors, final BulkListener listener)
+            throws IOException, PersistenceException {
+        final ResourceResolver resolver = request.getResourceResolver();
+        final int commitSize = getCommitSize(request);
+        final JSONObject summary = new JSONObject();
+        final BufferedReader reader = getContentReader(request);
+        int index = 0;
+        int pending = 0;
+        int committed = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0) {
+                    continue;
+                }
+                index++;
+                final JSONObject result = processItem(request, processors,
+                    index, line);
+                listener.onItem(result);
+                if (result.getInt(AbstractPostResponse.PN_STATUS_CODE) >= 300) {
+                    resolver.revert();
+                    summary.put(AbstractPostResponse.PN_STATUS_CODE,
+                        result.getInt(AbstractPostResponse.PN_STATUS_CODE));
+                    summary.put(AbstractPostResponse.PN_STATUS_MESSAGE,
+                        "Item " + index + " failed, " + pending
+                            + " uncommitted item(s) reverted");
+                    break;
+                }
+                pending++;
+                if (commitSize > 0 && pending >= commitSize) {
+                    resolver.commit();
+                    committed += pending;
+                    pending = 0;
+                    listener.onCommit(committed);
+                }
+            }
+            if (!summary.has(AbstractPostResponse.PN_STATUS_CODE)) {
+                if (resolver.hasChanges()) {
+                    resolver.commit();
+                }
+                if (pending > 0) {
+                    committed += pending;
+                    listener.onCommit(committed);
+                }
+                summary.put(AbstractPostResponse.PN_STATUS_CODE,
+                    HttpServletResponse.SC_OK);
+            }
+            summary.put(PN_ITEMS, index);
+            summary.put(PN_COMMITTED, committed);
+        } catch (final JSONException e) {
+            throw new IOException("Error creating JSON result", e);
+        } finally {
+            if (resolver.hasChanges()) {
+                resolver.revert();
+            }
+            reader.close();
+        }
+        return summary;
+    }
+
+    /**
+     * Runs the post operation for a single item and returns the item result.
+     * The item is not saved.
+     */
+    private JSONObject processItem(final SlingHttpServletRequest request,
+            final SlingPostProcessor[] processors, final int index,
+            final String line) throws JSONException {
+        final JSONObject result = new JSONObject();
+        result.put(PN_INDEX, index);
+        try {
+            final JSONObject item = new JSONObject(line);
+            String path = item.optString(SlingPostConstants.RP_BULK_PATH, null);
+            if (path == null || path.length() == 0) {
+                return setStatus(result, HttpServletResponse.SC_BAD_REQUEST,
+                    "Missing " + SlingPostConstants.RP_BULK_PATH);
+            }
+            if (!path.startsWith("/")) {
+                path = request.getResource().getPath() + "/" + path;
+            }
+            final String normalizedPath = ResourceUtil.normalize(path);
+            if (normalizedPath == null) {
+                result.put(AbstractPostResponse.PN_PATH, path);
+                return setStatus(result, HttpServletResponse.SC_BAD_REQUEST,
+                    "Invalid " + SlingPostConstants.RP_BULK_PATH + " " + path);
+            }
+            path = normalizedPath;
+            result.put(AbstractPostResponse.PN_PATH, path);
+
+            final PostOperation operation = getOperation(item.optString(
+                SlingPostConstants.RP_OPERATION, null));
+            if (operation == null || operation instanceof BulkOperation) {
+                return setStatus(result,
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                    "Invalid operation specified for bulk item");
+            }
+
+            final JSONResponse itemResponse = new JSONResponse();
+            operation.run(new BulkItemRequest(request, path, item),
+                itemResponse, processors);
+            if (itemResponse.getError() != null) {
+                result.put(AbstractPostResponse.PN_ERROR,
+                    toJson(itemResponse.getError()));
+            }
+            result.put(PN_CHANGES, itemResponse.getProperty(PN_CHANGES));
+            return setStatus(result, itemResponse.getStatusCode(),
+                itemResponse.getStatusMessage());
+        } catch (final JSONException e) {
+            return setStatus(result, HttpServletResponse.SC_BAD_REQUEST,
+                "Invalid bulk item: " + e.getMessage());
+        }
+    }
+
+    private JSONObject setStatus(final JSONObject result, final int status,
+            final String message) throws JSONException {
+        result.put(AbstractPostResponse.PN_STATUS_CODE, status);
+        if (message != null) {
+            result.put(AbstractPostResponse.PN_STATUS_MESSAGE, message);
+        }
+        return result;
+    }
+
+    private JSONObject toJson(final Throwable error) throws JSONException {
+        final JSONObject jsonError = new JSONObject();
+        jsonError.put("class", error.getClass().getName());
+        jsonError.put("message", error.getMessage());
+        return jsonError;
+    }
+
+    private PostOperation getOperation(final String name) {
+        synchronized (postOperations) {
+            return postOperations.get(name == null || name.length() == 0
+                    ? SlingPostConstants.OPERATION_MODIFY
+                    : name);
+        }
+    }
+
+    private int getCommitSize(final SlingHttpServletRequest request) {
+        final String commitSize = request.getParameter(SlingPostConstants.RP_COMMIT_SIZE);
+        if (commitSize != null) {
+            try {
+                return Integer.parseInt(commitSize);
+            } catch (final NumberFormatException nfe) {
+                log.debug("Ignoring invalid commit size {}", commitSize);
+            }
+        }
+        return 0;
+    }
+
+    private BufferedReader getContentReader(final SlingHttpServletRequest request)
+            throws IOException {
+        RequestParameter content = request.getRequestParameter(SlingPostConstants.RP_CONTENT);
+        if (content == null) {
+            content = request.getRequestParameter(SlingPostConstants.RP_CONTENT_FILE);
+        }
+        if (content != null) {
+            return new BufferedReader(new InputStreamReader(
+                content.getInputStream(), RESPONSE_CHARSET));
+        }
+        return request.getReader();
+    }
+
+    /**
+     * Receives the results while the bulk request is processed.
+     */
+    private interface BulkListener {
+
+        void onItem(JSONObject result) throws IOException;
+
+        void onCommit(int committed) throws IOException;
+    }
+
+    /**
+     * Request wrapper presenting a bulk item as request for the item path
+     * with the item members as request parameters. Session handling is
+     * skipped, the bulk operation commits.
+     */
+    private static class BulkItemRequest extends SlingHttpServletRequestWrapper {
+
+        private final Resource resource;
+
+        private final RequestPathInfo pathInfo;
+
+        private final ItemParameterMap parameters = new ItemParameterMap();
+
+        BulkItemRequest(final SlingHttpServletRequest request,
+                final String path, final JSONObject item) throws JSONException {
+            super(request);
+            final ResourceResolver resolver = request.getResourceResolver();
+            final Resource itemResource = resolver.getResource(path);
+            this.resource = itemResource != null
+                    ? itemResource
+                    : new NonExistingResource(resolver, path);
+            this.pathInfo = new ItemPathInfo(path);
+
+            final Iterator<String> keys = item.keys();
+            while (keys.hasNext()) {
+                final String key = keys.next();
+                if (SlingPostConstants.RP_BULK_PATH.equals(key)) {
+                    continue;
+                }
+                final Object value = item.get(key);
+                final RequestParameter[] values;
+                if (value instanceof JSONObject) {
+                    throw new JSONException("Nested object not supported for "
+                        + key);
+                } else if (value instanceof JSONArray) {
+                    final JSONArray array = (JSONArray) value;
+                    values = new RequestParameter[array.length()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = new StringParameter(array.getString(i));
+                    }
+                } else {
+                    values = new RequestParameter[] { new StringParameter(
+                        String.valueOf(value)) };
+                }
+                parameters.put(key, values);
+            }
+        }
+
+        @Override
+        public Resource getResource() {
+            return resource;
+        }
+
+        @Override
+        public RequestPathInfo getRequestPathInfo() {
+            return pathInfo;
+        }
+
+        @Override
+        public Object getAttribute(final String name) {
+            if (SlingPostConstants.ATTR_SKIP_SESSION_HANDLING.equals(name)) {
+                return "true";
+            }
+            return super.getAttribute(name);
+        }
+
+        @Override
+        public RequestParameter getRequestParameter(final String name) {
+            return parameters.getValue(name);
+        }
+
+        @Override
+        public RequestParameter[] getRequestParameters(final String name) {
+            return parameters.getValues(name);
+        }
+
+        @Override
+        public RequestParameterMap getRequestParameterMap() {
+            return parameters;
+        }
+
+        @Override
+        public String getParameter(final String name) {
+            final RequestParameter value = parameters.getValue(name);
+            return value == null ? null : value.getString();
+        }
+
+        @Override
+        public String[] getParameterValues(final String name) {
+            final RequestParameter[] values = parameters.getValues(name);
+            if (values == null) {
+                return null;
+            }
+            final String[] strings = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                strings[i] = values[i].getString();
+            }
+            return strings;
+        }
+
+        @Override
+        public Enumeration<String> getParameterNames() {
+            return Collections.enumeration(parameters.keySet());
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            final Map<String, String[]> map = new LinkedHashMap<String, String[]>();
+            for (final String name : parameters.keySet()) {
+                map.put(name, getParameterValues(name));
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Path info of a bulk item, which never has selectors, extension or
+     * suffix.
+     */
+    private static class ItemPathInfo implements RequestPathInfo {
+
+        private final String path;
+
+        ItemPathInfo(final String path) {
+            this.path = path;
+        }
+
+        public String getResourcePath() {
+            return path;
+        }
+
+        public String getExtension() {
+            return null;
+        }
+
+        public String getSelectorString() {
+            return null;
+        }
+
+        public String[] getSelectors() {
+            return new String[0];
+        }
+
+        public String getSuffix() {
+            return null;
+        }
+    }
+
+    private static class ItemParameterMap extends
+            LinkedHashMap<String, RequestParameter[]> implements
+            RequestParameterMap {
+
+        private static final long serialVersionUID = 1L;
+
+        public RequestParameter[] getValues(final String name) {
+            return get(name);
+        }
+
+        public RequestParameter getValue(final String name) {
+            final RequestParameter[] values = get(name);
+            return values == null || values.length == 0 ? null : values[0];
+        }
+    }
+
+    private static class StringParameter implements RequestParameter {
+
+        private final String value;
+
+        StringParameter(final String value) {
+            this.value = value;
+        }
+
+        public boolean isFormField() {
+            return true;
+        }
+
+        public String getContentType() {
+            return null;
+        }
+
+        public long getSize() {
+            return get().length;
+        }
+
+        public byte[] get() {
+            try {
+                return value.getBytes(RESPONSE_CHARSET);
+            } catch (final UnsupportedEncodingException uee) {
+                // UTF-8 is always supported
+                return value.getBytes();
+            }
+        }
+
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(get());
+        }
+
+        public String getFileName() {
+            return null;
+        }
+
+        public String getString() {
+            return value;
+        }
+
+        public String getString(final String encoding) {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
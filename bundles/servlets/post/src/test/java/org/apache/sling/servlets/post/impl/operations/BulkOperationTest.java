@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.post.impl.operations;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.request.RequestProgressTracker;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.servlets.post.PostOperation;
+import org.apache.sling.servlets.post.PostResponse;
+import org.apache.sling.servlets.post.SlingPostConstants;
+import org.apache.sling.servlets.post.SlingPostProcessor;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JMock.class)
+public class BulkOperationTest extends TestCase {
+    private Mockery context = new JUnit4Mockery();
+
+    private final List<String> calls = new ArrayList<String>();
+
+    /** Records the items it is called for, fails for paths ending in "fail" */
+    private final PostOperation recordingOperation = new PostOperation() {
+        public void run(SlingHttpServletRequest request, PostResponse response,
+                SlingPostProcessor[] processors) {
+            assertEquals("true", request.getAttribute(SlingPostConstants.ATTR_SKIP_SESSION_HANDLING));
+            final String path = request.getResource().getPath();
+            final String[] tags = request.getParameterValues("tags");
+            calls.add(path + ":" + request.getParameter("title")
+                + (tags == null ? "" : ":" + tags.length));
+            if (path.endsWith("fail")) {
+                response.setStatus(500, "failed");
+            } else {
+                response.onModified(path + "/title");
+            }
+        }
+    };
+
+    private String runBulk(final String content, final String commitSize,
+            final int commits, final int reverts) throws Exception {
+        final SlingHttpServletRequest request = context.mock(SlingHttpServletRequest.class);
+        final ResourceResolver resolver = context.mock(ResourceResolver.class);
+        final RequestProgressTracker tracker = context.mock(RequestProgressTracker.class);
+        final Resource parent = context.mock(Resource.class);
+        final SlingHttpServletResponse response = context.mock(SlingHttpServletResponse.class);
+        final StringWriter output = new StringWriter();
+        context.checking(new Expectations() {
+            {
+                allowing(request).getResourceResolver();
+                will(returnValue(resolver));
+                allowing(request).getResource();
+                will(returnValue(parent));
+                allowing(parent).getPath();
+                will(returnValue("/parent"));
+                allowing(request).getRequestProgressTracker();
+                will(returnValue(tracker));
+                allowing(request).getParameter(SlingPostConstants.RP_COMMIT_SIZE);
+                will(returnValue(commitSize));
+                allowing(request).getRequestParameter(with(any(String.class)));
+                will(returnValue(null));
+                allowing(request).getAttribute(with(any(String.class)));
+                will(returnValue(null));
+                allowing(request).getReader();
+                will(returnValue(new BufferedReader(new StringReader(content))));
+                allowing(resolver).getResource(with(any(String.class)));
+                will(returnValue(null));
+                allowing(resolver).hasChanges();
+                will(returnValue(true));
+                allowing(response).setContentType(BulkOperation.RESPONSE_CONTENT_TYPE);
+                allowing(response).setCharacterEncoding("UTF-8");
+                allowing(response).getWriter();
+                will(returnValue(new PrintWriter(output)));
+                exactly(commits).of(resolver).commit();
+                atLeast(reverts).of(resolver).revert();
+            }
+        });
+        final Map<String, PostOperation> operations = new HashMap<String, PostOperation>();
+        operations.put(SlingPostConstants.OPERATION_MODIFY, recordingOperation);
+        new BulkOperation(operations).run(request, response, new SlingPostProcessor[0]);
+        return output.toString();
+    }
+
+    @Test
+    public void testBulkWithIntermediateCommits() throws Exception {
+        final String output = runBulk(
+            "{\":path\":\"/a\",\"title\":\"A\"}\n"
+            + "\n"
+            + "{\":path\":\"/b\",\"title\":\"B\",\"tags\":[\"x\",\"y\"]}\n"
+            + "{\":path\":\"/c\",\"title\":3}\n", "2", 2, 0);
+        assertEquals("[/a:A, /b:B:2, /c:3]", calls.toString());
+
+        final String[] lines = output.trim().split("\n");
+        assertEquals(6, lines.length);
+        final JSONObject first = new JSONObject(lines[0]);
+        assertEquals(1, first.getInt("index"));
+        assertEquals("/a", first.getString("path"));
+        assertEquals(200, first.getInt("status.code"));
+        assertEquals(1, first.getJSONArray("changes").length());
+        assertEquals(2, new JSONObject(lines[2]).getInt("committed"));
+        assertEquals(3, new JSONObject(lines[4]).getInt("committed"));
+        final JSONObject summary = new JSONObject(lines[5]);
+        assertEquals(200, summary.getInt("status.code"));
+        assertEquals(3, summary.getInt("items"));
+        assertEquals(3, summary.getInt("committed"));
+    }
+
+    @Test
+    public void testBulkStopsAtFailingItem() throws Exception {
+        final String output = runBulk(
+            "{\":path\":\"/a\",\"title\":\"A\"}\n"
+            + "{\":path\":\"/fail\",\"title\":\"F\"}\n"
+            + "{\":path\":\"/c\",\"title\":\"C\"}\n", null, 0, 1);
+        assertEquals("[/a:A, /fail:F]", calls.toString());
+
+        final String[] lines = output.trim().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(500, new JSONObject(lines[1]).getInt("status.code"));
+        final JSONObject summary = new JSONObject(lines[2]);
+        assertEquals(500, summary.getInt("status.code"));
+        assertEquals(2, summary.getInt("items"));
+        assertEquals(0, summary.getInt("committed"));
+    }
+
+    @Test
+    public void testInvalidItem() throws Exception {
+        final String output = runBulk(
+            "{\"title\":\"no path\"}\n", null, 0, 1);
+        assertTrue(calls.isEmpty());
+        final String[] lines = output.trim().split("\n");
+        assertEquals(400, new JSONObject(lines[0]).getInt("status.code"));
+        assertEquals(400, new JSONObject(lines[1]).getInt("status.code"));
+    }
+
+    @Test
+    public void testRelativePaths() throws Exception {
+        final String output = runBulk(
+            "{\":path\":\"a\",\"title\":\"A\"}\n"
+            + "{\":path\":\"b/../c\",\"title\":\"C\"}\n"
+            + "{\":path\":\"../x\",\"title\":\"X\"}\n"
+            + "{\":path\":\"/d/./e\",\"title\":\"E\"}\n", null, 1, 0);
+        assertEquals("[/parent/a:A, /parent/c:C, /x:X, /d/e:E]", calls.toString());
+        final String[] lines = output.trim().split("\n");
+        assertEquals("/parent/c", new JSONObject(lines[1]).getString("path"));
+    }
+
+    @Test
+    public void testInvalidRelativePath() throws Exception {
+        final String output = runBulk(
+            "{\":path\":\"../../x\",\"title\":\"X\"}\n", null, 0, 1);
+        assertTrue(calls.isEmpty());
+        final String[] lines = output.trim().split("\n");
+        assertEquals(400, new JSONObject(lines[0]).getInt("status.code"));
+        assertEquals(400, new JSONObject(lines[1]).getInt("status.code"));
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Servlet;
+
+import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
+
+/**
+ * The <code>ServletCache</code> caches the servlets resolved for a resource
+ * collector.
+ * <p>
+ * The cache is bounded: it is split in segments, each being a map in access
+ * order guarded by its own lock, which evicts its least recently used entry
+ * once it is full. Each entry records the locations searched while resolving
+ * the servlet, so that a change to a resource only invalidates the entries
+ * whose resolution might be affected by it.
+ */
+class ServletCache {
+
+    /** The maximum number of segments */
+    private static final int MAX_SEGMENTS = 16;
+
+    /** The minimum number of entries per segment */
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final Segment[] segments;
+
+    private final int maximumSize;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    ServletCache(final int maximumSize) {
+        this.maximumSize = maximumSize;
+        final int count = Math.max(1, Math.min(MAX_SEGMENTS, maximumSize / MIN_SEGMENT_SIZE));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // distribute the remainder, so the capacities add up to the maximum size
+            this.segments[i] = new Segment(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * Returns the cached servlet for the collector or <code>null</code> if
+     * there is none.
+     */
+    Servlet get(final AbstractResourceCollector collector) {
+        final Segment segment = segmentFor(collector);
+        final Entry entry;
+        synchronized (segment) {
+            entry = segment.get(collector);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.servlet;
+    }
+
+    /**
+     * Caches the servlet for the collector.
+     *
+     * @param collector The collector
+     * @param servlet The servlet resolved with the collector
+     * @param locations The locations searched while resolving the servlet
+     * @return <code>true</code> if the least recently used entry had to be
+     *         evicted to make room for the servlet.
+     */
+    boolean put(final AbstractResourceCollector collector, final Servlet servlet, final Collection<String> locations) {
+        final Segment segment = segmentFor(collector);
+        final long evicted;
+        synchronized (segment) {
+            segment.evicted = 0;
+            segment.put(collector, new Entry(servlet, locations.toArray(new String[locations.size()])));
+            evicted = segment.evicted;
+        }
+        if (evicted > 0) {
+            evictions.addAndGet(evicted);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all entries whose resolution might be affected by a change to
+     * the resource at the given path: entries for which a searched location
+     * is a prefix of the path or is located below the path.
+     *
+     * @return the number of removed entries
+     */
+    int invalidate(final String path) {
+        final String parentPrefix = path.endsWith("/") ? path : path.concat("/");
+        int removed = 0;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                final Iterator<Entry> entries = segment.values().iterator();
+                while (entries.hasNext()) {
+                    if (entries.next().isAffected(path, parentPrefix)) {
+                        entries.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        invalidations.addAndGet(removed);
+        return removed;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void flush() {
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                invalidations.addAndGet(segment.size());
+                segment.clear();
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    int getMaximumSize() {
+        return maximumSize;
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getEvictions() {
+        return evictions.get();
+    }
+
+    long getInvalidations() {
+        return invalidations.get();
+    }
+
+    private Segment segmentFor(final AbstractResourceCollector collector) {
+        int hash = collector.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    private static final class Entry {
+
+        final Servlet servlet;
+
+        final String[] locations;
+
+        Entry(final Servlet servlet, final String[] locations) {
+            this.servlet = servlet;
+            this.locations = locations;
+        }
+
+        boolean isAffected(final String path, final String parentPrefix) {
+            for (final String location : locations) {
+                if (path.startsWith(location) || location.startsWith(parentPrefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<AbstractResourceCollector, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        /** The number of entries evicted by the last put */
+        int evicted;
+
+        Segment(final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<AbstractResourceCollector, Entry> eldest) {
+            if (size() > capacity) {
+                evicted++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
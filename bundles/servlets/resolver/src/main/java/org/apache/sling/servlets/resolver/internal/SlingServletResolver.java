@@ -40,7 +40,6 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
@@ -189,12 +188,12 @@ public class SlingServletResolver
     private Servlet fallbackErrorServlet;
 
     /** The script resolution cache. */
-    private Map<AbstractResourceCollector, Servlet> cache;
+    private volatile ServletCache cache;
 
     /** The cache size. */
     private int cacheSize;
 
-    /** Flag to log warning if cache size exceed only once. */
+    /** Flag to log warning if cache starts evicting entries only once. */
     private volatile boolean logCacheSizeWarning;
 
     /** Registration as event handler. */
@@ -627,7 +626,8 @@ public class SlingServletResolver
     private Servlet getServletInternal(final AbstractResourceCollector locationUtil,
             final SlingHttpServletRequest request,
             final ResourceResolver resolver) {
-        final Servlet scriptServlet = (this.cache != null ? this.cache.get(locationUtil) : null);
+        final ServletCache cache = this.cache;
+        final Servlet scriptServlet = (cache != null ? cache.get(locationUtil) : null);
         if (scriptServlet != null) {
             if ( LOGGER.isDebugEnabled() ) {
                 LOGGER.debug("Using cached servlet {}", RequestUtil.getServletName(scriptServlet));
@@ -635,7 +635,8 @@ public class SlingServletResolver
             return scriptServlet;
         }
 
-        final Collection<Resource> candidates = locationUtil.getServlets(resolver);
+        final List<String> locations = (cache != null ? new ArrayList<String>() : null);
+        final Collection<Resource> candidates = locationUtil.getServlets(resolver, locations);
 
         if (LOGGER.isDebugEnabled()) {
             if (candidates.isEmpty()) {
@@ -657,12 +658,10 @@ public class SlingServletResolver
                 final boolean isOptingServlet = candidate instanceof OptingServlet;
                 boolean servletAcceptsRequest = !isOptingServlet || (request != null && ((OptingServlet) candidate).accepts(request));
                 if (servletAcceptsRequest) {
-                    if (!hasOptingServlet && !isOptingServlet && this.cache != null) {
-                        if ( this.cache.size() < this.cacheSize ) {
-                            this.cache.put(locationUtil, candidate);
-                        } else if ( this.logCacheSizeWarning ) {
+                    if (!hasOptingServlet && !isOptingServlet && cache != null) {
+                        if ( cache.put(locationUtil, candidate, locations) && this.logCacheSizeWarning ) {
                             this.logCacheSizeWarning = false;
-                            LOGGER.warn("Script cache has reached its limit of {}. You might want to increase the cache size for the servlet resolver.",
+                            LOGGER.warn("Script cache has reached its limit of {} and evicts least recently used entries. You might want to increase the cache size for the servlet resolver.",
                                     this.cacheSize);
                         }
                     }
@@ -843,7 +842,7 @@ public class SlingServletResolver
         // create cache - if a cache size is configured
         this.cacheSize = OsgiUtil.toInteger(properties.get(PROP_CACHE_SIZE), DEFAULT_CACHE_SIZE);
         if (this.cacheSize > 5) {
-            this.cache = new ConcurrentHashMap<AbstractResourceCollector, Servlet>(cacheSize);
+            this.cache = new ServletCache(cacheSize);
             this.logCacheSizeWarning = true;
         } else {
             this.cacheSize = 0;
@@ -1065,8 +1064,10 @@ public class SlingServletResolver
      */
     @Override
     public void handleEvent(final Event event) {
-        if (this.cache != null) {
+        final ServletCache cache = this.cache;
+        if (cache != null) {
             boolean flushCache = false;
+            String invalidatePath = null;
 
             // we may receive different events
             final String topic = event.getTopic();
@@ -1084,13 +1085,13 @@ public class SlingServletResolver
                 // this is a resource or resource provider event
 
                 // if the path of the event is a sub path of a search path
-                // we flush the whole cache
+                // we invalidate the entries which depend on this path
                 final String path = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
                 if ( path != null ) {
                     int index = 0;
-                    while (!flushCache && index < searchPaths.length) {
+                    while (invalidatePath == null && index < searchPaths.length) {
                         if (path.startsWith(this.searchPaths[index])) {
-                            flushCache = true;
+                            invalidatePath = path;
                         }
                         index++;
                     }
@@ -1098,13 +1099,21 @@ public class SlingServletResolver
             }
             if (flushCache) {
                 flushCache();
+            } else if (invalidatePath != null) {
+                final int removed = cache.invalidate(invalidatePath);
+                if (removed > 0) {
+                    LOGGER.debug("Removed {} cached servlets depending on {}", removed, invalidatePath);
+                }
             }
         }
     }
 
     private void flushCache() {
-        this.cache.clear();
-        this.logCacheSizeWarning = true;
+        final ServletCache cache = this.cache;
+        if (cache != null) {
+            cache.flush();
+            this.logCacheSizeWarning = true;
+        }
     }
 
     /** The list of property names checked by {@link #getName(ServiceReference)} */
@@ -1399,6 +1408,7 @@ public class SlingServletResolver
 
         @Override
         public int getCacheSize() {
+            final ServletCache cache = SlingServletResolver.this.cache;
             return cache != null ? cache.size() : 0;
         }
 
@@ -1412,5 +1422,29 @@ public class SlingServletResolver
             return cacheSize;
         }
 
+        @Override
+        public long getCacheHits() {
+            final ServletCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getHits() : 0;
+        }
+
+        @Override
+        public long getCacheMisses() {
+            final ServletCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getMisses() : 0;
+        }
+
+        @Override
+        public long getCacheEvictions() {
+            final ServletCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getEvictions() : 0;
+        }
+
+        @Override
+        public long getCacheInvalidations() {
+            final ServletCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getInvalidations() : 0;
+        }
+
     }
 }
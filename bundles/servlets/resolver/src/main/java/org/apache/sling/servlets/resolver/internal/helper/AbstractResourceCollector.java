@@ -65,6 +65,22 @@ public abstract class AbstractResourceCollector {
     }
 
     public final Collection<Resource> getServlets(final ResourceResolver resolver) {
+        return getServlets(resolver, null);
+    }
+
+    /**
+     * Returns the ordered collection of resources which may be used to find a
+     * servlet or script and records the locations which have been searched.
+     * The servlets found only depend on resources at or below these
+     * locations.
+     *
+     * @param resolver The <code>ResourceResolver</code> used to access the
+     *            resources.
+     * @param searchedLocations If not <code>null</code> the searched
+     *            locations are added to this collection.
+     */
+    public final Collection<Resource> getServlets(final ResourceResolver resolver,
+            final Collection<String> searchedLocations) {
 
         final SortedSet<Resource> resources = new TreeSet<Resource>();
         final Iterator<String> locations = new LocationIterator(resourceType, resourceSuperType,
@@ -81,6 +97,9 @@ public abstract class AbstractResourceCollector {
             } else {
                 path = location;
             }
+            if ( searchedLocations != null ) {
+                searchedLocations.add(path);
+            }
             final Resource locationRes = getResource(resolver, path);
             getWeightedResources(resources, locationRes);
         }
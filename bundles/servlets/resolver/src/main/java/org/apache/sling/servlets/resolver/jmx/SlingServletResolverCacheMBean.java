@@ -42,4 +42,34 @@ public interface SlingServletResolverCacheMBean {
      */
     void flushCache();
 
+    /**
+     * Get the number of servlet resolutions answered from the cache
+     *
+     * @return the number of cache hits
+     */
+    long getCacheHits();
+
+    /**
+     * Get the number of servlet resolutions not found in the cache
+     *
+     * @return the number of cache misses
+     */
+    long getCacheMisses();
+
+    /**
+     * Get the number of entries evicted because the cache reached its
+     * maximum size
+     *
+     * @return the number of evicted entries
+     */
+    long getCacheEvictions();
+
+    /**
+     * Get the number of entries removed because of changes to scripts,
+     * servlets or services affecting the resolution, including flushes
+     *
+     * @return the number of invalidated entries
+     */
+    long getCacheInvalidations();
+
 }
@@ -17,7 +17,7 @@
  * under the License.
  */
 
-@Version("2.3.6")
+@Version("2.4.0")
 package org.apache.sling.servlets.resolver.jmx;
 
 import aQute.bnd.annotation.Version;
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+
+import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
+import org.apache.sling.servlets.resolver.internal.helper.NamedScriptResourceCollector;
+import org.junit.Test;
+
+public class ServletCacheTest {
+
+    private final Servlet servlet = new HttpServlet() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    @Test public void testHitsAndMisses() {
+        final ServletCache cache = new ServletCache(10);
+        final AbstractResourceCollector collector = collector("foo/bar");
+        assertNull(cache.get(collector));
+        assertFalse(cache.put(collector, servlet, Arrays.asList("/apps/foo/bar", "/libs/foo/bar")));
+        assertSame(servlet, cache.get(collector("foo/bar")));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test public void testLeastRecentlyUsedEviction() {
+        final ServletCache cache = new ServletCache(10);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(cache.put(collector("type" + i), servlet, Arrays.asList("/apps/type" + i)));
+        }
+        // access the first entry so it becomes the most recently used one
+        assertSame(servlet, cache.get(collector("type0")));
+        assertTrue(cache.put(collector("type10"), servlet, Arrays.asList("/apps/type10")));
+        assertEquals(10, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(servlet, cache.get(collector("type0")));
+        assertSame(servlet, cache.get(collector("type10")));
+    }
+
+    @Test public void testLargeCacheIsBounded() {
+        final ServletCache cache = new ServletCache(200);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(collector("type" + i), servlet, Arrays.asList("/apps/type" + i));
+        }
+        assertEquals(200, cache.size());
+        assertEquals(800, cache.getEvictions());
+    }
+
+    @Test public void testTargetedInvalidation() {
+        final ServletCache cache = new ServletCache(10);
+        cache.put(collector("foo/bar"), servlet, Arrays.asList("/apps/foo/bar", "/libs/foo/bar", "/apps/base", "/libs/base"));
+        cache.put(collector("foo/other"), servlet, Arrays.asList("/apps/foo/other", "/libs/foo/other"));
+
+        // script changed below a location of the first entry only
+        assertEquals(1, cache.invalidate("/libs/foo/bar/bar.jsp"));
+        assertNull(cache.get(collector("foo/bar")));
+        assertSame(servlet, cache.get(collector("foo/other")));
+
+        // unrelated change
+        assertEquals(0, cache.invalidate("/apps/unrelated/GET.jsp"));
+
+        // parent of a location removed
+        assertEquals(1, cache.invalidate("/libs/foo"));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getInvalidations());
+    }
+
+    @Test public void testFlush() {
+        final ServletCache cache = new ServletCache(10);
+        cache.put(collector("foo/bar"), servlet, Arrays.asList("/apps/foo/bar"));
+        cache.flush();
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    private AbstractResourceCollector collector(final String resourceType) {
+        return new NamedScriptResourceCollector("sling/servlet/default", resourceType, null, "script", "html", null);
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Vector;
+
+/**
+ * Compact binary format for the values stored in the persistent
+ * resource list. Strings, the primitive wrappers and arrays and
+ * collections of them are written with their own type tag, as these
+ * are the values of configurations and resource attributes. Any other
+ * serializable value falls back to Java serialization.
+ */
+class DataStreamUtil {
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_FLOAT = 6;
+    private static final byte TYPE_SHORT = 7;
+    private static final byte TYPE_BYTE = 8;
+    private static final byte TYPE_CHARACTER = 9;
+    private static final byte TYPE_ARRAY = 10;
+    private static final byte TYPE_VECTOR = 11;
+    private static final byte TYPE_LIST = 12;
+    private static final byte TYPE_SERIALIZED = 99;
+
+    /** Array component types written with their own type tag. */
+    private static final Map<String, Class<?>> ARRAY_TYPES = new HashMap<String, Class<?>>();
+    static {
+        final Class<?>[] types = new Class<?>[] {
+            String.class, Integer.class, Long.class, Boolean.class, Double.class,
+            Float.class, Short.class, Byte.class, Character.class,
+            Integer.TYPE, Long.TYPE, Boolean.TYPE, Double.TYPE,
+            Float.TYPE, Short.TYPE, Byte.TYPE, Character.TYPE
+        };
+        for(final Class<?> c : types) {
+            ARRAY_TYPES.put(c.getName(), c);
+        }
+    }
+
+    /**
+     * Write a string which might be <code>null</code> or longer than
+     * the limit of {@link DataOutputStream#writeUTF(String)}.
+     */
+    public static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if ( value == null ) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    public static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if ( length < 0 ) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Write a dictionary, which might be <code>null</code>.
+     * The keys are written in sorted order, so equal dictionaries
+     * always result in the same bytes.
+     */
+    public static void writeDictionary(final DataOutputStream out, final Dictionary<String, Object> dict) throws IOException {
+        if ( dict == null ) {
+            out.writeInt(-1);
+        } else {
+            final Set<String> keys = new TreeSet<String>();
+            final Enumeration<String> e = dict.keys();
+            while ( e.hasMoreElements() ) {
+                keys.add(e.nextElement());
+            }
+            out.writeInt(keys.size());
+            for(final String key : keys) {
+                writeString(out, key);
+                writeValue(out, dict.get(key));
+            }
+        }
+    }
+
+    public static Dictionary<String, Object> readDictionary(final DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        if ( size < 0 ) {
+            return null;
+        }
+        final Dictionary<String, Object> dict = new Hashtable<String, Object>();
+        for(int i=0; i<size; i++) {
+            final String key = readString(in);
+            dict.put(key, readValue(in));
+        }
+        return dict;
+    }
+
+    /**
+     * Write a map, the keys are written in sorted order.
+     * <code>null</code> values are skipped.
+     */
+    public static void writeMap(final DataOutputStream out, final Map<String, Object> map) throws IOException {
+        final Set<String> keys = new TreeSet<String>();
+        for(final Map.Entry<String, Object> entry : map.entrySet()) {
+            if ( entry.getValue() != null ) {
+                keys.add(entry.getKey());
+            }
+        }
+        out.writeInt(keys.size());
+        for(final String key : keys) {
+            writeString(out, key);
+            writeValue(out, map.get(key));
+        }
+    }
+
+    public static void readMap(final DataInputStream in, final Map<String, Object> map) throws IOException {
+        final int size = in.readInt();
+        for(int i=0; i<size; i++) {
+            final String key = readString(in);
+            map.put(key, readValue(in));
+        }
+    }
+
+    public static void writeValue(final DataOutputStream out, final Object value) throws IOException {
+        if ( value == null ) {
+            out.writeByte(TYPE_NULL);
+        } else if ( value instanceof String ) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String)value);
+        } else if ( value instanceof Integer ) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer)value);
+        } else if ( value instanceof Long ) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long)value);
+        } else if ( value instanceof Boolean ) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        } else if ( value instanceof Double ) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double)value);
+        } else if ( value instanceof Float ) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float)value);
+        } else if ( value instanceof Short ) {
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short)value);
+        } else if ( value instanceof Byte ) {
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte)value);
+        } else if ( value instanceof Character ) {
+            out.writeByte(TYPE_CHARACTER);
+            out.writeChar((Character)value);
+        } else if ( value.getClass().isArray() && ARRAY_TYPES.containsKey(value.getClass().getComponentType().getName()) ) {
+            out.writeByte(TYPE_ARRAY);
+            out.writeUTF(value.getClass().getComponentType().getName());
+            final int length = Array.getLength(value);
+            out.writeInt(length);
+            for(int i=0; i<length; i++) {
+                writeValue(out, Array.get(value, i));
+            }
+        } else if ( value.getClass() == Vector.class || value.getClass() == ArrayList.class ) {
+            out.writeByte(value instanceof Vector ? TYPE_VECTOR : TYPE_LIST);
+            final Collection<?> c = (Collection<?>)value;
+            out.writeInt(c.size());
+            for(final Object o : c) {
+                writeValue(out, o);
+            }
+        } else {
+            out.writeByte(TYPE_SERIALIZED);
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final ObjectOutputStream oos = new ObjectOutputStream(baos);
+            oos.writeObject(value);
+            oos.close();
+            out.writeInt(baos.size());
+            baos.writeTo(out);
+        }
+    }
+
+    public static Object readValue(final DataInputStream in) throws IOException {
+        final byte type = in.readByte();
+        switch ( type ) {
+            case TYPE_NULL : return null;
+            case TYPE_STRING : return readString(in);
+            case TYPE_INTEGER : return in.readInt();
+            case TYPE_LONG : return in.readLong();
+            case TYPE_BOOLEAN : return in.readBoolean();
+            case TYPE_DOUBLE : return in.readDouble();
+            case TYPE_FLOAT : return in.readFloat();
+            case TYPE_SHORT : return in.readShort();
+            case TYPE_BYTE : return in.readByte();
+            case TYPE_CHARACTER : return in.readChar();
+            case TYPE_ARRAY : {
+                final Class<?> componentType = ARRAY_TYPES.get(in.readUTF());
+                if ( componentType == null ) {
+                    throw new IOException("Unknown array type");
+                }
+                final int length = in.readInt();
+                final Object array = Array.newInstance(componentType, length);
+                for(int i=0; i<length; i++) {
+                    Array.set(array, i, readValue(in));
+                }
+                return array;
+            }
+            case TYPE_VECTOR :
+            case TYPE_LIST : {
+                final int size = in.readInt();
+                final List<Object> list = (type == TYPE_VECTOR ? new Vector<Object>(size) : new ArrayList<Object>(size));
+                for(int i=0; i<size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case TYPE_SERIALIZED : {
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+                try {
+                    return ois.readObject();
+                } catch (final ClassNotFoundException cnfe) {
+                    throw (IOException)new IOException("Unable to read value: " + cnfe.getMessage()).initCause(cnfe);
+                } finally {
+                    ois.close();
+                }
+            }
+        }
+        throw new IOException("Unknown value type " + type);
+    }
+}
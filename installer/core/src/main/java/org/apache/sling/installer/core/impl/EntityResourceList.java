@@ -18,6 +18,8 @@
  */
 package org.apache.sling.installer.core.impl;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -110,6 +112,41 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
         }
     }
 
+    /**
+     * Write the group in the format of the persistent resource list.
+     * The resource id is not written, it is the key of the group.
+     * @param out The data output stream
+     * @throws IOException
+     */
+    void writeTo(final DataOutputStream out)
+            throws IOException {
+        out.writeInt(resources.size());
+        for(final RegisteredResourceImpl rr : this.resources) {
+            rr.writeTo(out);
+        }
+        DataStreamUtil.writeString(out, this.alias);
+    }
+
+    /**
+     * Read a group written by {@link #writeTo(DataOutputStream)}.
+     * @param resourceId The resource id of the group
+     * @param in The data input stream
+     * @param listener The listener
+     * @throws IOException
+     */
+    static EntityResourceList readFrom(final String resourceId,
+            final DataInputStream in,
+            final InstallationListener listener)
+            throws IOException {
+        final EntityResourceList erl = new EntityResourceList(resourceId, listener);
+        final int size = in.readInt();
+        for(int i=0; i < size; i++) {
+            erl.resources.add(RegisteredResourceImpl.readFrom(in));
+        }
+        erl.alias = DataStreamUtil.readString(in);
+        return erl;
+    }
+
     /**
      * The resource list is empty if it contains no resources.
      */
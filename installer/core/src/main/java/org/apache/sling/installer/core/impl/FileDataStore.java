@@ -31,15 +31,20 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.util.Dictionary;
 import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.osgi.framework.BundleContext;
 
 /**
  * Utility class for all file handling.
+ *
+ * Data files are stored content addressed: the name of a file contains
+ * the digest of its content, which is calculated while the data is copied.
+ * Identical data registered through different urls is stored only once
+ * and the file is removed once the last resource using it releases it.
  */
 public class FileDataStore {
 
@@ -61,7 +66,16 @@ public class FileDataStore {
     public static FileDataStore SHARED;
 
     /** Cache for url to digest mapping. */
-    private final Map<String, String> digestCache = new HashMap<String, String>();
+    private final ConcurrentMap<String, String> digestCache = new ConcurrentHashMap<String, String>();
+
+    /** Content digests of the data files, keyed by file name. */
+    private final ConcurrentMap<String, String> contentDigests = new ConcurrentHashMap<String, String>();
+
+    /** Number of resources using a data file, keyed by file name. */
+    private final ConcurrentMap<String, Integer> fileUsage = new ConcurrentHashMap<String, Integer>();
+
+    /** Lock for creating and removing data files. */
+    private final Object fileLock = new Object();
 
     /**
      * Create a file util instance and detect the installer directory.
@@ -138,77 +152,135 @@ public class FileDataStore {
     throws IOException {
         // check if we already have this data
         if ( digest != null ) {
-            synchronized ( this.digestCache ) {
-                final String storedDigest = this.digestCache.get(url);
-                if ( storedDigest != null && storedDigest.equals(digest) ) {
-                    return null;
-                }
+            final String storedDigest = this.digestCache.get(url);
+            if ( storedDigest != null && storedDigest.equals(digest) ) {
+                return null;
             }
         }
-        final int pos = url.lastIndexOf('/');
-        final String name = url.substring(pos + 1);
-        final String filename = (hint == null ? "rsrc" : hint) + '-' + name + '-' + getNextSerialNumber() + ".ser";
-        
-        //replace special characters from the filename that are not allowed by the OS
-        final String filename2 = filename.replaceAll("[\\*\"/\\\\\\[\\]\\:\\;\\|\\=\\,]+", "_"); // Windows
-      
-        final File file = this.getDataFile(filename2);
-
-        this.copyToLocalStorage(stream, file);
+        final File file = this.storeData(stream, hint == null ? "rsrc" : hint);
 
         if ( digest != null ) {
-            synchronized ( this.digestCache ) {
-                this.digestCache.put(url, digest);
-            }
+            this.digestCache.put(url, digest);
         }
         return file;
     }
 
     public void updateDigestCache(final String url, final String digest) {
-        synchronized ( this.digestCache ) {
-            this.digestCache.put(url, digest);
-        }
+        this.digestCache.put(url, digest);
     }
 
     /**
      * Copy data to local storage.
+     * @return The digest of the data
      */
-    protected void copyToLocalStorage(final InputStream data,
+    protected String copyToLocalStorage(final InputStream data,
             final File dataFile) throws IOException {
+        final MessageDigest d = getMessageDigest();
         final OutputStream os = new BufferedOutputStream(new FileOutputStream(dataFile));
         try {
             final byte[] buffer = new byte[16384];
             int count = 0;
             while( (count = data.read(buffer, 0, buffer.length)) > 0) {
                 os.write(buffer, 0, count);
+                if ( d != null ) {
+                    d.update(buffer, 0, count);
+                }
             }
             os.flush();
         } finally {
             os.close();
         }
+        return d == null ? null : digestToString(d);
     }
 
-    public File createNewDataFile(final String hint, final InputStream stream)
+    /**
+     * Copy the data to a file named after the digest of the data.
+     * If a file with the same content exists already, it is reused.
+     */
+    private File storeData(final InputStream stream, final String prefix)
     throws IOException {
-        final String filename = (hint == null ? "unknown" : hint) + "-resource-" + getNextSerialNumber() + ".ser";
+        final File tmpFile = this.getDataFile("tmp-" + getNextSerialNumber() + ".ser");
+        final String contentDigest = this.copyToLocalStorage(stream, tmpFile);
+        if ( contentDigest == null ) {
+            // no digest available, keep the unique file
+            final File file = this.getDataFile(prefix + "-resource-" + getNextSerialNumber() + ".ser");
+            if ( !tmpFile.renameTo(file) ) {
+                return tmpFile;
+            }
+            return file;
+        }
+        //replace special characters from the filename that are not allowed by the OS
+        final String filename = (prefix + '-' + contentDigest + ".ser").replaceAll("[\\*\"/\\\\\\[\\]\\:\\;\\|\\=\\,]+", "_"); // Windows
         final File file = this.getDataFile(filename);
+        synchronized ( this.fileLock ) {
+            if ( file.exists() || !tmpFile.renameTo(file) ) {
+                tmpFile.delete();
+            }
+            this.retainDataFile(file);
+        }
+        this.contentDigests.put(file.getName(), contentDigest);
+        return file;
+    }
 
-        this.copyToLocalStorage(stream, file);
+    public File createNewDataFile(final String hint, final InputStream stream)
+    throws IOException {
+        return this.storeData(stream, hint == null ? "unknown" : hint);
+    }
 
-        return file;
+    /**
+     * Register a resource using the data file. This is called for
+     * resources restored from the persistent resource list.
+     */
+    public void retainDataFile(final File file) {
+        synchronized ( this.fileLock ) {
+            final Integer count = this.fileUsage.get(file.getName());
+            this.fileUsage.put(file.getName(), count == null ? 1 : count + 1);
+        }
     }
 
-    public void removeFromDigestCache(final String url, final String digest) {
-        synchronized ( this.digestCache ) {
-            final String storedDigest = this.digestCache.get(url);
-            if ( storedDigest != null && storedDigest.equals(digest) ) {
-                this.digestCache.remove(url);
+    /**
+     * Release the data file for a resource. The file is removed
+     * if no other resource uses it.
+     */
+    public void releaseDataFile(final File file) {
+        synchronized ( this.fileLock ) {
+            final Integer count = this.fileUsage.get(file.getName());
+            if ( count != null && count > 1 ) {
+                this.fileUsage.put(file.getName(), count - 1);
+                return;
             }
+            this.fileUsage.remove(file.getName());
+            this.contentDigests.remove(file.getName());
+            if ( file.exists() ) {
+                file.delete();
+            }
+        }
+    }
+
+    public void removeFromDigestCache(final String url, final String digest) {
+        if ( digest != null ) {
+            this.digestCache.remove(url, digest);
+        }
+    }
+
+    private static MessageDigest getMessageDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (final Exception ignore) {
+            return null;
         }
     }
 
     /** Digest is needed to detect changes in data */
     public static String computeDigest(final File data) throws IOException {
+        // the digest of data files is known from copying the data
+        final FileDataStore store = SHARED;
+        if ( store != null && data.getParentFile() != null && data.getParentFile().equals(store.directory) ) {
+            final String contentDigest = store.contentDigests.get(data.getName());
+            if ( contentDigest != null ) {
+                return contentDigest;
+            }
+        }
         try {
             final InputStream is = new FileInputStream(data);
             try {
@@ -35,6 +35,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.sling.commons.osgi.PropertiesUtil;
@@ -57,6 +62,8 @@ import org.apache.sling.installer.api.tasks.RetryHandler;
 import org.apache.sling.installer.api.tasks.TaskResource;
 import org.apache.sling.installer.api.tasks.TaskResourceGroup;
 import org.apache.sling.installer.api.tasks.TransformationResult;
+import org.apache.sling.installer.core.impl.tasks.BundleInstallTask;
+import org.apache.sling.installer.core.impl.tasks.BundleStartTask;
 import org.apache.sling.installer.core.impl.tasks.BundleUpdateTask;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -84,6 +91,13 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
      */
     private static final String START_LEVEL_HANDLING = "sling.installer.switchstartlevel";
 
+    /**
+     * The name of the bundle context property defining the number of threads
+     * used to execute independent tasks. By default all tasks are executed
+     * by the background thread.
+     */
+    private static final String TASK_PARALLELISM = "sling.installer.parallelism";
+
     /** The logger */
     private final Logger logger =  LoggerFactory.getLogger(this.getClass());
 
@@ -135,6 +149,14 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
     /** Switch start level on bundle update? */
     private final boolean switchStartLevel;
 
+    /** The number of threads executing independent tasks. */
+    private final int parallelism;
+
+    /** The executor for independent tasks, created on demand. */
+    private volatile ExecutorService taskExecutor;
+
+    private final AtomicLong taskThreadCounter = new AtomicLong();
+
     /**
      *  Constructor
      *
@@ -148,6 +170,7 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         this.listener = new InstallListener(ctx, logger);
         this.persistentList = new PersistentResourceList(f, listener);
         this.switchStartLevel = PropertiesUtil.toBoolean(ctx.getProperty(START_LEVEL_HANDLING), false);
+        this.parallelism = Math.max(1, PropertiesUtil.toInteger(ctx.getProperty(TASK_PARALLELISM), 1));
     }
 
     /**
@@ -196,6 +219,12 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
             logger.debug("Done waiting for background thread");
         }
 
+        final ExecutorService executor = this.taskExecutor;
+        if ( executor != null ) {
+            this.taskExecutor = null;
+            executor.shutdownNow();
+        }
+
         // remove file util
         FileDataStore.SHARED = null;
 
@@ -417,7 +446,7 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
                         final InternalResource rsrc = rsrcIter.next();
                         if ( removedUrls.remove(rsrc.getURL()) ) {
                             if ( rsrc.getPrivateCopyOfFile() != null ) {
-                                rsrc.getPrivateCopyOfFile().delete();
+                                FileDataStore.SHARED.releaseDataFile(rsrc.getPrivateCopyOfFile());
                             }
                             rsrcIter.remove();
                         }
@@ -465,7 +494,7 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
                                 }
                             }
                             if ( !found ) {
-                                rsrc.getPrivateCopyOfFile().delete();
+                                FileDataStore.SHARED.releaseDataFile(rsrc.getPrivateCopyOfFile());
                             }
                         }
                         rsrcIter.remove();
@@ -638,7 +667,7 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         return result;
     }
 
-    private enum ACTION {
+    enum ACTION {
         SLEEP,
         SHUTDOWN,
         CYCLE
@@ -740,7 +769,7 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
      * @param tasks The tasks to executed.
      * @return The action to perform after the execution.
      */
-    private ACTION doExecuteTasks(final SortedSet<InstallTask> tasks) {
+    ACTION doExecuteTasks(final SortedSet<InstallTask> tasks) {
         if ( !tasks.isEmpty() ) {
 
             final InstallationContext ctx = new InstallationContext() {
@@ -792,6 +821,7 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
                     }
                 }
             };
+            boolean startBundlesResolved = false;
             while (this.active && !tasks.isEmpty()) {
                 InstallTask task = null;
                 synchronized (tasks) {
@@ -842,6 +872,14 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
                     t.start();
                     return ACTION.SHUTDOWN;
                 }
+                if ( this.parallelism > 1 && task instanceof BundleInstallTask ) {
+                    this.executeInParallel(task, tasks, ctx);
+                    continue;
+                }
+                if ( this.parallelism > 1 && !startBundlesResolved && task instanceof BundleStartTask ) {
+                    this.resolveBundlesToStart((BundleStartTask)task, tasks);
+                    startBundlesResolved = true;
+                }
                 try {
                     logger.debug("Executing task: {}", task);
                     task.execute(ctx);
@@ -859,6 +897,94 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         return ACTION.SLEEP;
     }
 
+    /**
+     * Execute the task together with all other bundle install tasks
+     * of the current cycle on the task executor and wait for all of them.
+     * Installing a bundle does not start or resolve it, therefore the
+     * installs do not depend on each other. Start and refresh tasks created
+     * by the install tasks are added to the current cycle and executed
+     * afterwards, as they have a higher sort key.
+     */
+    private void executeInParallel(final InstallTask first,
+            final SortedSet<InstallTask> tasks,
+            final InstallationContext ctx) {
+        final List<InstallTask> batch = new ArrayList<InstallTask>();
+        batch.add(first);
+        synchronized ( tasks ) {
+            final Iterator<InstallTask> i = tasks.iterator();
+            while ( i.hasNext() ) {
+                final InstallTask t = i.next();
+                if ( t instanceof BundleInstallTask ) {
+                    batch.add(t);
+                    i.remove();
+                }
+            }
+        }
+        logger.debug("Executing {} tasks in parallel: {}", batch.size(), batch);
+        final ExecutorService executor = this.getTaskExecutor();
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        for(final InstallTask task : batch) {
+            futures.add(executor.submit(new Runnable() {
+
+                public void run() {
+                    try {
+                        logger.debug("Executing task: {}", task);
+                        task.execute(ctx);
+                    } catch (final Throwable t) {
+                        logger.error("Uncaught exception during task execution!", t);
+                    }
+                }
+            }));
+        }
+        for(final Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (final ExecutionException ee) {
+                // exceptions are already logged by the task runnable
+            }
+        }
+    }
+
+    private ExecutorService getTaskExecutor() {
+        if ( this.taskExecutor == null ) {
+            this.taskExecutor = Executors.newFixedThreadPool(this.parallelism, new ThreadFactory() {
+
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "OsgiInstallerTaskThread" + taskThreadCounter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return this.taskExecutor;
+    }
+
+    /**
+     * Resolve the bundles of all start tasks of the current cycle at once,
+     * before the first bundle is started. This is only done if bundles
+     * are installed in parallel. This lets the framework resolve
+     * the bundles together based on their wiring, instead of resolving
+     * them one by one in the order of the start tasks.
+     */
+    private void resolveBundlesToStart(final BundleStartTask first, final SortedSet<InstallTask> tasks) {
+        final List<BundleStartTask> startTasks = new ArrayList<BundleStartTask>();
+        startTasks.add(first);
+        synchronized ( tasks ) {
+            for(final InstallTask t : tasks) {
+                if ( t instanceof BundleStartTask ) {
+                    startTasks.add((BundleStartTask)t);
+                }
+            }
+        }
+        try {
+            BundleStartTask.resolveBundles(startTasks);
+        } catch (final Throwable t) {
+            logger.warn("Unable to resolve bundles before starting them.", t);
+        }
+    }
+
     /**
      * Clean up and compact.
      * @return <code>true</code> if another cycle should be started.
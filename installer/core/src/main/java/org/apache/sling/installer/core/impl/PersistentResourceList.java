@@ -20,13 +20,18 @@ package org.apache.sling.installer.core.impl;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Hashtable;
@@ -44,12 +49,41 @@ import org.slf4j.LoggerFactory;
 /**
  * Persistent list of RegisteredResource, used by installer to
  * keep track of all registered resources
+ *
+ * The list is persisted in a state file and an append only journal.
+ * A save only appends the resource groups which changed since the
+ * last save to the journal. Once the journal is larger than the
+ * state file, both are compacted into a new state file.
+ * The state file written by older versions with Java serialization
+ * is still read and replaced on the first save.
+ *
+ * State file and journal are stamped with a generation id. A journal
+ * with a different generation than the state file is left over from
+ * a previous state file and ignored.
  */
 public class PersistentResourceList {
 
     /** Serialization version. */
     private static final int VERSION = 2;
 
+    /** Version of the state and journal format. */
+    private static final int JOURNAL_VERSION = 1;
+
+    /** Record for a resource group. */
+    private static final byte RECORD_GROUP = 1;
+
+    /** Record for a removed resource group. */
+    private static final byte RECORD_REMOVE = 2;
+
+    /** Record for the untransformed resources. */
+    private static final byte RECORD_UNTRANSFORMED = 3;
+
+    /** Size of the header of state file and journal: version and generation. */
+    private static final int HEADER_SIZE = 12;
+
+    /** The journal is not compacted before it reaches this size. */
+    private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
     /** Entity id for restart active bundles. */
     public static final String RESTART_ACTIVE_BUNDLES_TYPE = "org.apache.sling.installer.core.restart.bundles";
     public static final String RESTART_ACTIVE_BUNDLES_ID = "org.apache.sling.installer.core.restart.bundles";
@@ -66,9 +100,33 @@ public class PersistentResourceList {
      */
     private final Map<String, EntityResourceList> data;
 
-    /** The persistence file. */
+    /** The persistence file of older versions. */
     private final File dataFile;
 
+    /** The state file. */
+    private final File stateFile;
+
+    /** The journal file. */
+    private final File journalFile;
+
+    /** The persisted form of the groups, to detect changes. */
+    private final Map<String, byte[]> persistedGroups = new HashMap<String, byte[]>();
+
+    /** The persisted form of the untransformed resources. */
+    private byte[] persistedUntransformed;
+
+    /** The size of the state file. */
+    private long stateFileSize;
+
+    /** The size of the journal file. */
+    private long journalFileSize;
+
+    /** The generation of the state file and journal. */
+    private long generation;
+
+    /** Flag whether the next save has to write the state file. */
+    private boolean compactOnSave;
+
     /** All untransformed resources. */
     private final List<RegisteredResource> untransformedResources;
 
@@ -78,10 +136,37 @@ public class PersistentResourceList {
     public PersistentResourceList(final File dataFile, final InstallationListener listener) {
         this.dataFile = dataFile;
         this.listener = listener;
+        final String baseName = dataFile.getName().endsWith(".ser")
+                ? dataFile.getName().substring(0, dataFile.getName().length() - 4) : dataFile.getName();
+        this.stateFile = new File(dataFile.getParentFile(), baseName + ".state");
+        this.journalFile = new File(dataFile.getParentFile(), baseName + ".journal");
 
         Map<String, EntityResourceList> restoredData = null;
         List<RegisteredResource> unknownList = null;
-        if ( dataFile.exists() ) {
+        if ( stateFile.exists() ) {
+            restoredData = new HashMap<String, EntityResourceList>();
+            unknownList = new ArrayList<RegisteredResource>();
+            try {
+                this.stateFileSize = this.readRecords(stateFile, false, restoredData, unknownList);
+                if ( journalFile.exists() ) {
+                    this.journalFileSize = this.readRecords(journalFile, true, restoredData, unknownList);
+                    if ( this.journalFileSize == -1 ) {
+                        this.journalFile.delete();
+                        this.journalFileSize = 0;
+                    }
+                }
+                logger.debug("Restored resource list: {}", restoredData);
+                logger.debug("Restored unknown resource list: {}", unknownList);
+            } catch (final Exception e) {
+                logger.warn("Unable to restore data, starting with empty list (" + e.getMessage() + ")", e);
+                restoredData = null;
+                unknownList = null;
+                this.persistedGroups.clear();
+                this.persistedUntransformed = null;
+                this.compactOnSave = true;
+            }
+        } else if ( dataFile.exists() ) {
+            this.compactOnSave = true;
             ObjectInputStream ois = null;
             try {
                 ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(dataFile)));
@@ -109,6 +194,8 @@ public class PersistentResourceList {
                     }
                 }
             }
+        } else {
+            this.compactOnSave = true;
         }
         data = restoredData != null ? restoredData : new HashMap<String, EntityResourceList>();
         this.untransformedResources = unknownList != null ? unknownList : new ArrayList<RegisteredResource>();
@@ -138,42 +225,251 @@ public class PersistentResourceList {
     }
 
     /**
-     * Update the url to digest cache
+     * Update the url to digest cache and register the data files in use
      */
     private void updateCache() {
         for(final EntityResourceList group : this.data.values()) {
             for(final RegisteredResource rr : group.getResources()) {
                 if ( ((RegisteredResourceImpl)rr).hasDataFile() ) {
                     FileDataStore.SHARED.updateDigestCache(rr.getURL(), rr.getDigest());
+                    ((RegisteredResourceImpl)rr).retainDataFile();
                 }
             }
         }
         for(final RegisteredResource rr : this.untransformedResources ) {
             if ( ((RegisteredResourceImpl)rr).hasDataFile() ) {
                 FileDataStore.SHARED.updateDigestCache(rr.getURL(), rr.getDigest());
+                ((RegisteredResourceImpl)rr).retainDataFile();
             }
         }
     }
 
     /**
-     * Persist the current state
+     * Read the records of the state or journal file.
+     * A truncated last record, caused by an interrupted write, is ignored
+     * and the next save writes a new state file, so no further records
+     * are appended after the incomplete one.
+     * @param journal Whether the file is the journal.
+     * @return The size of the valid records of the file or -1 if the
+     *         journal does not belong to the state file.
      */
-    public void save() {
+    private long readRecords(final File file,
+            final boolean journal,
+            final Map<String, EntityResourceList> restoredData,
+            final List<RegisteredResource> unknownList)
+    throws IOException {
+        final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
         try {
-            final ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile)));
+            final int version;
+            final long fileGeneration;
             try {
-                oos.writeInt(VERSION);
-                oos.writeObject(data);
-                oos.writeObject(untransformedResources);
-                logger.debug("Persisted resource list.");
-            } finally {
-                oos.close();
+                version = dis.readInt();
+                fileGeneration = dis.readLong();
+            } catch (final EOFException eof) {
+                if ( journal ) {
+                    logger.warn("Ignoring incomplete journal {}", file);
+                    return -1;
+                }
+                throw eof;
+            }
+            if ( version != JOURNAL_VERSION ) {
+                throw new IOException("Unknown version for persistent resource list: " + version);
+            }
+            if ( !journal ) {
+                this.generation = fileGeneration;
+            } else if ( fileGeneration != this.generation ) {
+                logger.warn("Ignoring journal {} of generation {}, the state file has generation {}",
+                        new Object[] {file, fileGeneration, this.generation});
+                return -1;
+            }
+            long size = HEADER_SIZE;
+            while ( true ) {
+                final int type = dis.read();
+                if ( type == -1 ) {
+                    break;
+                }
+                final byte[] record;
+                try {
+                    record = new byte[dis.readInt()];
+                    dis.readFully(record);
+                } catch (final EOFException eof) {
+                    logger.warn("Ignoring incomplete record at the end of {}", file);
+                    this.compactOnSave = true;
+                    break;
+                }
+                size += 5 + record.length;
+                final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+                if ( type == RECORD_UNTRANSFORMED ) {
+                    unknownList.clear();
+                    final int count = in.readInt();
+                    for(int i=0; i<count; i++) {
+                        unknownList.add(RegisteredResourceImpl.readFrom(in));
+                    }
+                    this.persistedUntransformed = record;
+                } else {
+                    final String id = DataStreamUtil.readString(in);
+                    if ( type == RECORD_GROUP ) {
+                        restoredData.put(id, EntityResourceList.readFrom(id, in, this.listener));
+                        this.persistedGroups.put(id, record);
+                    } else if ( type == RECORD_REMOVE ) {
+                        restoredData.remove(id);
+                        this.persistedGroups.remove(id);
+                    } else {
+                        throw new IOException("Unknown record type " + type);
+                    }
+                }
+            }
+            return size;
+        } finally {
+            dis.close();
+        }
+    }
+
+    private static byte[] toGroupRecord(final String id, final EntityResourceList group) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+        DataStreamUtil.writeString(out, id);
+        group.writeTo(out);
+        out.close();
+        return baos.toByteArray();
+    }
+
+    private static byte[] toRemoveRecord(final String id) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+        DataStreamUtil.writeString(out, id);
+        out.close();
+        return baos.toByteArray();
+    }
+
+    private static byte[] toUntransformedRecord(final List<RegisteredResource> resources) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+        out.writeInt(resources.size());
+        for(final RegisteredResource rr : resources) {
+            ((RegisteredResourceImpl)rr).writeTo(out);
+        }
+        out.close();
+        return baos.toByteArray();
+    }
+
+    private static void writeRecord(final DataOutputStream out, final byte type, final byte[] record) throws IOException {
+        out.writeByte(type);
+        out.writeInt(record.length);
+        out.write(record);
+    }
+
+    /**
+     * Persist the current state
+     */
+    public synchronized void save() {
+        try {
+            final Map<String, byte[]> groups = new HashMap<String, byte[]>();
+            for(final Map.Entry<String, EntityResourceList> entry : this.data.entrySet()) {
+                groups.put(entry.getKey(), toGroupRecord(entry.getKey(), entry.getValue()));
+            }
+            final byte[] untransformed = toUntransformedRecord(this.untransformedResources);
+
+            if ( this.compactOnSave ) {
+                this.writeState(groups, untransformed);
+            } else {
+                this.appendJournal(groups, untransformed);
             }
         } catch (final Exception e) {
             logger.warn("Unable to save persistent list: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Append the changes since the last save to the journal.
+     */
+    private void appendJournal(final Map<String, byte[]> groups, final byte[] untransformed)
+    throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+        int changes = 0;
+        for(final Map.Entry<String, byte[]> entry : groups.entrySet()) {
+            if ( !Arrays.equals(entry.getValue(), this.persistedGroups.get(entry.getKey())) ) {
+                writeRecord(out, RECORD_GROUP, entry.getValue());
+                changes++;
+            }
+        }
+        for(final String id : this.persistedGroups.keySet()) {
+            if ( !groups.containsKey(id) ) {
+                writeRecord(out, RECORD_REMOVE, toRemoveRecord(id));
+                changes++;
+            }
+        }
+        if ( !Arrays.equals(untransformed, this.persistedUntransformed) ) {
+            writeRecord(out, RECORD_UNTRANSFORMED, untransformed);
+            changes++;
+        }
+        out.close();
+        if ( changes == 0 ) {
+            logger.debug("Resource list is unchanged.");
+            return;
+        }
+        if ( this.journalFileSize + baos.size() > Math.max(MIN_COMPACTION_SIZE, this.stateFileSize) ) {
+            this.writeState(groups, untransformed);
+            return;
+        }
+        // a journal of another generation, which could not be removed, is overwritten
+        final boolean newJournal = this.journalFileSize == 0;
+        final DataOutputStream jos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.journalFile, !newJournal)));
+        try {
+            if ( newJournal ) {
+                jos.writeInt(JOURNAL_VERSION);
+                jos.writeLong(this.generation);
+                this.journalFileSize = HEADER_SIZE;
+            }
+            baos.writeTo(jos);
+        } finally {
+            jos.close();
+        }
+        this.journalFileSize += baos.size();
+        this.persistedGroups.clear();
+        this.persistedGroups.putAll(groups);
+        this.persistedUntransformed = untransformed;
+        logger.debug("Persisted {} changes of the resource list.", changes);
+    }
+
+    /**
+     * Write the complete state file and remove the journal.
+     */
+    private void writeState(final Map<String, byte[]> groups, final byte[] untransformed)
+    throws IOException {
+        // a new generation invalidates the journal, even if it can't be removed
+        final long newGeneration = Math.max(this.generation + 1, System.currentTimeMillis());
+        final File tmpFile = new File(this.stateFile.getParentFile(), this.stateFile.getName() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(JOURNAL_VERSION);
+            out.writeLong(newGeneration);
+            for(final byte[] record : groups.values()) {
+                writeRecord(out, RECORD_GROUP, record);
+            }
+            writeRecord(out, RECORD_UNTRANSFORMED, untransformed);
+        } finally {
+            out.close();
+        }
+        if ( !tmpFile.renameTo(this.stateFile) ) {
+            this.stateFile.delete();
+            if ( !tmpFile.renameTo(this.stateFile) ) {
+                throw new IOException("Unable to rename " + tmpFile + " to " + this.stateFile);
+            }
+        }
+        this.generation = newGeneration;
+        this.journalFile.delete();
+        this.dataFile.delete();
+        this.stateFileSize = this.stateFile.length();
+        this.journalFileSize = 0;
+        this.persistedGroups.clear();
+        this.persistedGroups.putAll(groups);
+        this.persistedUntransformed = untransformed;
+        this.compactOnSave = false;
+        logger.debug("Persisted resource list.");
+    }
+
     public Collection<String> getEntityIds() {
         return this.data.keySet();
     }
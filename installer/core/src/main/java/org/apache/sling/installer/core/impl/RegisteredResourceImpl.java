@@ -19,6 +19,8 @@
 package org.apache.sling.installer.core.impl;
 
 import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -153,6 +155,64 @@ public class RegisteredResourceImpl
         }
     }
 
+    /**
+     * Write the resource in the format of the persistent resource list.
+     * @param out The data output stream
+     * @throws IOException
+     */
+    void writeTo(final DataOutputStream out)
+    throws IOException {
+        DataStreamUtil.writeString(out, url);
+        DataStreamUtil.writeString(out, urlScheme);
+        DataStreamUtil.writeString(out, digest);
+        DataStreamUtil.writeString(out, entity);
+        DataStreamUtil.writeDictionary(out, dictionary);
+        DataStreamUtil.writeMap(out, attributes);
+        DataStreamUtil.writeString(out, dataFile == null ? null : dataFile.getName());
+        DataStreamUtil.writeString(out, resourceType);
+        out.writeInt(priority);
+        DataStreamUtil.writeString(out, state.toString());
+        out.writeLong(this.lastChange);
+        DataStreamUtil.writeString(out, this.dataUri);
+    }
+
+    /**
+     * Read a resource written by {@link #writeTo(DataOutputStream)}.
+     * @param in The data input stream
+     * @throws IOException
+     */
+    static RegisteredResourceImpl readFrom(final DataInputStream in)
+    throws IOException {
+        final String url = DataStreamUtil.readString(in);
+        final String urlScheme = DataStreamUtil.readString(in);
+        final String digest = DataStreamUtil.readString(in);
+        final String entity = DataStreamUtil.readString(in);
+        final Dictionary<String, Object> dictionary = DataStreamUtil.readDictionary(in);
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        DataStreamUtil.readMap(in, attributes);
+        final String dataFileName = DataStreamUtil.readString(in);
+        final String resourceType = DataStreamUtil.readString(in);
+        final int priority = in.readInt();
+        final ResourceState state = ResourceState.valueOf(DataStreamUtil.readString(in));
+        final long lastChange = in.readLong();
+        final String dataUri = DataStreamUtil.readString(in);
+
+        final RegisteredResourceImpl rr = new RegisteredResourceImpl(null,
+                dataUri,
+                dataFileName == null ? null : FileDataStore.SHARED.getDataFile(dataFileName),
+                dictionary,
+                resourceType,
+                digest,
+                priority,
+                urlScheme);
+        rr.url = url;
+        rr.entity = entity;
+        rr.attributes.putAll(attributes);
+        rr.state = state;
+        rr.lastChange = lastChange;
+        return rr;
+    }
+
     /**
      * Try to create a registered resource.
      */
@@ -239,12 +299,21 @@ public class RegisteredResourceImpl
 	 * Remove the data file
 	 */
 	private void removeDataFile() {
-        if ( this.dataFile != null && this.dataFile.exists() ) {
-            dataFile.delete();
+        if ( this.dataFile != null ) {
+            FileDataStore.SHARED.releaseDataFile(this.dataFile);
         }
         this.dataUri = null;
 	}
 
+	/**
+	 * Register the usage of the data file with the data store.
+	 */
+	void retainDataFile() {
+	    if ( this.dataFile != null ) {
+	        FileDataStore.SHARED.retainDataFile(this.dataFile);
+	    }
+	}
+
 	/**
 	 * Clean up used data files.
 	 */
@@ -573,6 +642,9 @@ public class RegisteredResourceImpl
                 }
                 this.dataFile = rsrc.getPrivateCopyOfFile();
                 FileDataStore.SHARED.updateDigestCache(this.url, this.digest);
+            } else {
+                // same content, this resource already holds a reference to the data file
+                FileDataStore.SHARED.releaseDataFile(rsrc.getPrivateCopyOfFile());
             }
         }
     }
@@ -19,6 +19,8 @@
 package org.apache.sling.installer.core.impl.tasks;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.sling.installer.api.tasks.InstallationContext;
 import org.apache.sling.installer.api.tasks.ResourceState;
@@ -39,6 +41,30 @@ public class BundleStartTask extends AbstractBundleTask {
     private final long bundleId;
     private final String sortKey;
 
+    /**
+     * Resolve the bundles of the start tasks in a single operation.
+     * Bundles which are already resolved are skipped.
+     */
+    public static void resolveBundles(final List<BundleStartTask> tasks) {
+        if ( tasks.size() < 2 ) {
+            // a single bundle is resolved by starting it
+            return;
+        }
+        final BundleStartTask first = tasks.get(0);
+        final List<Bundle> bundles = new ArrayList<Bundle>();
+        for(final BundleStartTask t : tasks) {
+            final Bundle b = first.getBundleContext().getBundle(t.bundleId);
+            if ( b != null && b.getState() == Bundle.INSTALLED ) {
+                bundles.add(b);
+            }
+        }
+        if ( bundles.size() > 1 ) {
+            first.getLogger().debug("Resolving {} bundles before starting them", bundles.size());
+            final boolean resolved = first.getBundleRefresher().resolveBundles(bundles);
+            first.getLogger().debug("Resolved all bundles to start: {}", resolved);
+        }
+    }
+
     public BundleStartTask(final TaskResourceGroup r, final long bundleId, final TaskSupport btc) {
         super(r, btc);
         this.bundleId = bundleId;
@@ -31,4 +31,10 @@ public interface BundleRefresher {
     void refreshBundles(final InstallationContext ctx, final List<Bundle> bundles, boolean wait);
 
     boolean isInstallerBundleAffected(final List<Bundle> bundles);
+
+    /**
+     * Resolve the bundles in a single operation.
+     * @return <code>true</code> if all bundles are resolved
+     */
+    boolean resolveBundles(final List<Bundle> bundles);
 }
@@ -115,6 +115,13 @@ public class PABundleRefresher implements BundleRefresher, FrameworkListener {
         return rdu.isBundleAffected(bundleContext.getBundle(), bundles);
     }
 
+    /**
+     * @see org.apache.sling.installer.core.impl.util.BundleRefresher#resolveBundles(java.util.List)
+     */
+    public boolean resolveBundles(final List<Bundle> bundles) {
+        return this.pckAdmin.resolveBundles(bundles.toArray(new Bundle[bundles.size()]));
+    }
+
     /**
      * @see org.osgi.framework.FrameworkListener#frameworkEvent(org.osgi.framework.FrameworkEvent)
      */
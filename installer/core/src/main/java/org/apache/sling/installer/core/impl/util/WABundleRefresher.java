@@ -115,6 +115,13 @@ public class WABundleRefresher implements BundleRefresher, FrameworkListener {
         return false;
     }
 
+    /**
+     * @see org.apache.sling.installer.core.impl.util.BundleRefresher#resolveBundles(java.util.List)
+     */
+    public boolean resolveBundles(final List<Bundle> bundles) {
+        return this.frameworkWiring.resolveBundles(bundles);
+    }
+
     /**
      * @see org.osgi.framework.FrameworkListener#frameworkEvent(org.osgi.framework.FrameworkEvent)
      */
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the content addressed data files.
+ */
+public class FileDataStoreTest {
+
+    private FileDataStore store;
+
+    @Before public void setup() {
+        this.store = new FileDataStore(new MockBundleContext());
+    }
+
+    @After public void cleanup() {
+        FileDataStore.SHARED = null;
+    }
+
+    private File store(final String url, final String data) throws IOException {
+        return this.store.createNewDataFile(new ByteArrayInputStream(data.getBytes("UTF-8")), url, null, "test");
+    }
+
+    @Test public void testSameContentSharesFile() throws IOException {
+        final String data = "identical data " + System.nanoTime();
+        final File f1 = store("test:/a/one.jar", data);
+        final File f2 = store("test:/b/two.jar", data);
+        final File f3 = store("test:/c/three.jar", data + "-other");
+        assertNotNull(f1);
+        assertEquals(f1, f2);
+        assertFalse(f1.equals(f3));
+
+        // the first release keeps the file for the second resource
+        this.store.releaseDataFile(f1);
+        assertTrue(f2.exists());
+        this.store.releaseDataFile(f2);
+        assertFalse(f2.exists());
+
+        this.store.releaseDataFile(f3);
+        assertFalse(f3.exists());
+    }
+
+    @Test public void testDigestCalculatedDuringCopy() throws IOException {
+        final File f = store("test:/digest.jar", "digest data " + System.nanoTime());
+        final String digest = FileDataStore.computeDigest(f);
+
+        // compute the digest again from the file content
+        FileDataStore.SHARED = null;
+        assertEquals(FileDataStore.computeDigest(f), digest);
+        this.store.releaseDataFile(f);
+    }
+}
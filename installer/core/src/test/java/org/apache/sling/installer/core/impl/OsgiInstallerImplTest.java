@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.installer.api.tasks.InstallTask;
+import org.apache.sling.installer.api.tasks.InstallationContext;
+import org.apache.sling.installer.core.impl.tasks.BundleInstallTask;
+import org.apache.sling.installer.core.impl.tasks.BundleStartTask;
+import org.apache.sling.installer.core.impl.util.BundleRefresher;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.After;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Test the execution of bundle install and start tasks.
+ */
+public class OsgiInstallerImplTest {
+
+    private static final int BUNDLES = 3;
+
+    private final Mockery mockery = new Mockery();
+
+    private final Bundle bundle = mockery.mock(Bundle.class);
+
+    private final BundleContext bundleContext = new MockBundleContext() {
+
+        @Override
+        public Bundle getBundle(final long id) {
+            return bundle;
+        }
+    };
+
+    /** Names of the threads which executed the install tasks. */
+    private final Set<String> installThreads = Collections.synchronizedSet(new HashSet<String>());
+
+    /** The executed tasks in execution order. */
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+    /** The bundles resolved in one operation, one entry per operation. */
+    private final List<Integer> resolved = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private CyclicBarrier barrier;
+
+    private OsgiInstallerImpl installer;
+
+    @After public void cleanup() {
+        if ( this.installer != null ) {
+            this.installer.deactivate();
+        }
+    }
+
+    private OsgiInstallerImpl createInstaller(final String parallelism) {
+        this.mockery.checking(new Expectations() {{
+            allowing(bundle).getState();
+            will(returnValue(Bundle.INSTALLED));
+        }});
+        this.installer = new OsgiInstallerImpl(new MockBundleContext() {
+
+            @Override
+            public String getProperty(final String key) {
+                if ( "sling.installer.parallelism".equals(key) ) {
+                    return parallelism;
+                }
+                return null;
+            }
+        });
+        return this.installer;
+    }
+
+    private SortedSet<InstallTask> createInstallTasks() {
+        final SortedSet<InstallTask> tasks = new TreeSet<InstallTask>();
+        for(int i=1; i<=BUNDLES; i++) {
+            tasks.add(new TestInstallTask(i));
+        }
+        return tasks;
+    }
+
+    @Test(timeout=10000) public void testParallelInstallAndStart() throws Exception {
+        final OsgiInstallerImpl installer = createInstaller(String.valueOf(BUNDLES));
+        // all installs have to run at the same time to pass the barrier
+        this.barrier = new CyclicBarrier(BUNDLES);
+
+        installer.doExecuteTasks(createInstallTasks());
+
+        assertEquals(BUNDLES, this.installThreads.size());
+        assertEquals(2 * BUNDLES, this.executed.size());
+        for(int i=0; i<BUNDLES; i++) {
+            assertTrue(this.executed.get(i).startsWith("install"));
+            assertEquals("start" + (i + 1), this.executed.get(BUNDLES + i));
+        }
+        // the bundles are resolved together before the first start
+        assertEquals(Collections.singletonList(BUNDLES), this.resolved);
+    }
+
+    @Test public void testSequentialInstallAndStart() throws Exception {
+        final OsgiInstallerImpl installer = createInstaller(null);
+
+        installer.doExecuteTasks(createInstallTasks());
+
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), this.installThreads);
+        assertEquals(2 * BUNDLES, this.executed.size());
+        // each bundle is resolved when it is started
+        assertEquals(Collections.emptyList(), this.resolved);
+    }
+
+    private final class TestInstallTask extends BundleInstallTask {
+
+        private final int id;
+
+        public TestInstallTask(final int id) {
+            super(null, null);
+            this.id = id;
+        }
+
+        @Override
+        public void execute(final InstallationContext ctx) {
+            installThreads.add(Thread.currentThread().getName());
+            if ( barrier != null ) {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } catch ( final Exception e ) {
+                    throw new RuntimeException(e);
+                }
+            }
+            executed.add("install" + this.id);
+            ctx.addTaskToCurrentCycle(new TestStartTask(this.id));
+        }
+
+        @Override
+        public String getSortKey() {
+            return "40-" + this.id;
+        }
+    }
+
+    private final class TestStartTask extends BundleStartTask {
+
+        private final int id;
+
+        public TestStartTask(final int id) {
+            super(null, id, null);
+            this.id = id;
+        }
+
+        @Override
+        public void execute(final InstallationContext ctx) {
+            executed.add("start" + this.id);
+        }
+
+        @Override
+        protected BundleContext getBundleContext() {
+            return bundleContext;
+        }
+
+        @Override
+        protected BundleRefresher getBundleRefresher() {
+            return new BundleRefresher() {
+
+                public boolean resolveBundles(final List<Bundle> bundles) {
+                    resolved.add(bundles.size());
+                    return true;
+                }
+
+                public void refreshBundles(final InstallationContext ctx, final List<Bundle> bundles, final boolean wait) {
+                    // not used
+                }
+
+                public boolean isInstallerBundleAffected(final List<Bundle> bundles) {
+                    return false;
+                }
+            };
+        }
+    }
+}
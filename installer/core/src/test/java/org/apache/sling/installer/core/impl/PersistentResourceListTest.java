@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.tasks.RegisteredResource;
+import org.apache.sling.installer.api.tasks.ResourceState;
+import org.apache.sling.installer.api.tasks.TaskResource;
+import org.apache.sling.installer.api.tasks.TransformationResult;
+import org.apache.sling.installer.core.impl.mocks.MockFileDataStore;
+import org.apache.sling.installer.core.impl.tasks.MockInstallationListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for persisting the resource list.
+ */
+public class PersistentResourceListTest {
+
+    private static final String SCHEME = "test";
+
+    private static final String ENTITY_ID = "config:org.apache.sling.test";
+
+    private File dir;
+
+    private File dataFile;
+
+    @Before public void setup() throws IOException {
+        MockFileDataStore.set();
+        this.dir = File.createTempFile("installer", ".dir");
+        this.dir.delete();
+        this.dir.mkdirs();
+        this.dataFile = new File(this.dir, "RegisteredResourceList.ser");
+    }
+
+    @After public void cleanup() {
+        MockFileDataStore.unset();
+        for(final File f : this.dir.listFiles()) {
+            f.delete();
+        }
+        this.dir.delete();
+    }
+
+    private PersistentResourceList createList() {
+        return new PersistentResourceList(this.dataFile, new MockInstallationListener());
+    }
+
+    private File getStateFile() {
+        return new File(this.dir, "RegisteredResourceList.state");
+    }
+
+    private File getJournalFile() {
+        return new File(this.dir, "RegisteredResourceList.journal");
+    }
+
+    private void addConfig(final PersistentResourceList list) throws IOException {
+        final Dictionary<String, Object> dict = new Hashtable<String, Object>();
+        dict.put("string", "value");
+        dict.put("int", 5);
+        dict.put("bool", Boolean.TRUE);
+        dict.put("strings", new String[] {"a", "b"});
+        dict.put("longs", new long[] {1L, 2L});
+        final Vector<Object> vector = new Vector<Object>();
+        vector.add("c");
+        dict.put("vector", vector);
+        final InstallableResource instRes = new InstallableResource("/config/test",
+                null, dict, null, InstallableResource.TYPE_PROPERTIES, null);
+        final RegisteredResource rr = list.addOrUpdate(InternalResource.create(SCHEME, instRes));
+        final TransformationResult result = new TransformationResult();
+        result.setId("org.apache.sling.test");
+        result.setResourceType(InstallableResource.TYPE_CONFIG);
+        list.transform(rr, new TransformationResult[] {result});
+    }
+
+    @Test public void testSaveAndRestore() throws IOException {
+        final PersistentResourceList list = createList();
+        addConfig(list);
+        list.save();
+        assertTrue(getStateFile().exists());
+        assertFalse(getJournalFile().exists());
+        assertFalse(this.dataFile.exists());
+
+        final PersistentResourceList restored = createList();
+        final EntityResourceList erl = restored.getEntityResourceList(ENTITY_ID);
+        assertNotNull(erl);
+        final TaskResource rsrc = erl.getActiveResource();
+        assertNotNull(rsrc);
+        assertEquals(SCHEME + ":/config/test", rsrc.getURL());
+        assertEquals(ResourceState.INSTALL, rsrc.getState());
+        final Dictionary<String, Object> dict = rsrc.getDictionary();
+        assertEquals("value", dict.get("string"));
+        assertEquals(5, dict.get("int"));
+        assertEquals(Boolean.TRUE, dict.get("bool"));
+        assertArrayEquals(new String[] {"a", "b"}, (String[])dict.get("strings"));
+        assertArrayEquals(new long[] {1L, 2L}, (long[])dict.get("longs"));
+        assertEquals("c", ((Vector<?>)dict.get("vector")).get(0));
+    }
+
+    @Test public void testJournal() throws IOException {
+        final PersistentResourceList list = createList();
+        addConfig(list);
+        list.save();
+        final long stateSize = getStateFile().length();
+
+        // an unchanged list is not written
+        list.save();
+        assertFalse(getJournalFile().exists());
+
+        // a change is appended to the journal
+        final TaskResource rsrc = list.getEntityResourceList(ENTITY_ID).getActiveResource();
+        rsrc.setAttribute("attr", "value");
+        list.getEntityResourceList(ENTITY_ID).setFinishState(ResourceState.INSTALLED);
+        list.save();
+        assertTrue(getJournalFile().exists());
+        assertEquals(stateSize, getStateFile().length());
+        final long journalSize = getJournalFile().length();
+
+        PersistentResourceList restored = createList();
+        final TaskResource restoredRsrc = restored.getEntityResourceList(ENTITY_ID).getActiveResource();
+        assertNull(restoredRsrc);
+        final TaskResource installed = restored.getEntityResourceList(ENTITY_ID).getResources().iterator().next();
+        assertEquals(ResourceState.INSTALLED, installed.getState());
+        assertEquals("value", installed.getAttribute("attr"));
+
+        // removing the group is appended as well
+        list.remove(SCHEME + ":/config/test");
+        list.getEntityResourceList(ENTITY_ID).setFinishState(ResourceState.UNINSTALLED);
+        list.compact();
+        list.save();
+        assertTrue(getJournalFile().length() > journalSize);
+
+        restored = createList();
+        assertNull(restored.getEntityResourceList(ENTITY_ID));
+    }
+
+    private void installConfig(final PersistentResourceList list, final String attr) {
+        final TaskResource rsrc = list.getEntityResourceList(ENTITY_ID).getResources().iterator().next();
+        rsrc.setAttribute("attr", attr);
+        list.getEntityResourceList(ENTITY_ID).setFinishState(ResourceState.INSTALLED);
+    }
+
+    private String getAttr(final PersistentResourceList list) {
+        final EntityResourceList erl = list.getEntityResourceList(ENTITY_ID);
+        assertNotNull(erl);
+        return (String)erl.getResources().iterator().next().getAttribute("attr");
+    }
+
+    @Test public void testTruncatedJournal() throws IOException {
+        final PersistentResourceList list = createList();
+        addConfig(list);
+        list.save();
+        installConfig(list, "first");
+        list.save();
+
+        // simulate a crash while appending a record
+        appendPartialRecord();
+
+        final PersistentResourceList restored = createList();
+        assertEquals("first", getAttr(restored));
+
+        // the next save must not append after the incomplete record
+        installConfig(restored, "second");
+        restored.save();
+        assertEquals("second", getAttr(createList()));
+    }
+
+    @Test public void testStaleJournal() throws IOException {
+        final PersistentResourceList list = createList();
+        addConfig(list);
+        list.save();
+        installConfig(list, "journal");
+        list.save();
+        final byte[] journal = readFile(getJournalFile());
+
+        // write a new state file, then simulate a crash before the old journal is removed
+        appendPartialRecord();
+        final PersistentResourceList compacted = createList();
+        installConfig(compacted, "state");
+        compacted.save();
+        assertFalse(getJournalFile().exists());
+        final FileOutputStream fos = new FileOutputStream(getJournalFile());
+        try {
+            fos.write(journal);
+        } finally {
+            fos.close();
+        }
+
+        final PersistentResourceList restored = createList();
+        assertEquals("state", getAttr(restored));
+        assertFalse(getJournalFile().exists());
+    }
+
+    private void appendPartialRecord() throws IOException {
+        final FileOutputStream fos = new FileOutputStream(getJournalFile(), true);
+        try {
+            fos.write(new byte[] {1, 0, 0, 1});
+        } finally {
+            fos.close();
+        }
+    }
+
+    private byte[] readFile(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final byte[] content = new byte[(int)raf.length()];
+            raf.readFully(content);
+            return content;
+        } finally {
+            raf.close();
+        }
+    }
+}
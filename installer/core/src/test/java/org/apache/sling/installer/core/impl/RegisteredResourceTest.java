@@ -19,6 +19,7 @@
 package org.apache.sling.installer.core.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -164,6 +165,26 @@ public class RegisteredResourceTest {
         );
     }
 
+    @org.junit.Test public void testUpdateWithSameContentReleasesDataFile() throws Exception {
+        new FileDataStore(new MockBundleContext());
+        final byte[] data = "This is some data".getBytes();
+        final InternalResource first = InternalResource.create("test",
+                new InstallableResource("test:1.jar", new ByteArrayInputStream(data), null, null, null, null));
+        final RegisteredResourceImpl rr = RegisteredResourceImpl.create(first);
+        final File dataFile = first.getPrivateCopyOfFile();
+        assertNotNull(dataFile);
+
+        // the same content is stored in the same data file
+        final InternalResource second = InternalResource.create("test",
+                new InstallableResource("test:1.jar", new ByteArrayInputStream(data), null, null, null, null));
+        assertEquals(dataFile, second.getPrivateCopyOfFile());
+        rr.update(second);
+        assertTrue(dataFile.exists());
+
+        rr.cleanup();
+        assertFalse("Data file must be removed once no resource uses it", dataFile.exists());
+    }
+
     private TaskResource create(final InstallableResource is) throws IOException {
         new FileDataStore(new MockBundleContext());
         final InternalResource internal = InternalResource.create("test", is);
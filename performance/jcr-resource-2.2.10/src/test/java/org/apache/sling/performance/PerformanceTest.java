@@ -39,6 +39,7 @@ import org.apache.sling.jcr.resource.internal.helper.jcr.JcrResourceProviderFact
 import org.apache.sling.performance.annotation.PerformanceTestSuite;
 import org.apache.sling.performance.tests.ResolveNonExistingWithManyAliasTest;
 import org.apache.sling.performance.tests.ResolveNonExistingWithManyVanityPathTest;
+import org.apache.sling.performance.tests.ResolveWithManyMapEntriesTest;
 import org.apache.sling.performance.tests.StartupWithManyAliasTest;
 import org.apache.sling.performance.tests.StartupWithManyVanityTest;
 import org.apache.sling.resourceresolver.impl.CommonResourceResolverFactoryImpl;
@@ -134,6 +135,9 @@ public class PerformanceTest {
         testCenter.addTestObject(new ResolveNonExistingWithManyAliasTest("ResolveNonExistingWith1000AliasTest",helper, 1000));
         testCenter.addTestObject(new ResolveNonExistingWithManyAliasTest("ResolveNonExistingWith5000AliasTest",helper, 5000));
         testCenter.addTestObject(new ResolveNonExistingWithManyAliasTest("ResolveNonExistingWith10000AliasTest",helper, 10000));
+        testCenter.addTestObject(new ResolveWithManyMapEntriesTest("ResolveWith100MapEntriesTest",helper, 100));
+        testCenter.addTestObject(new ResolveWithManyMapEntriesTest("ResolveWith1000MapEntriesTest",helper, 1000));
+        testCenter.addTestObject(new ResolveWithManyMapEntriesTest("ResolveWith5000MapEntriesTest",helper, 5000));
         
         testCenter.addTestObject(new StartupWithManyAliasTest("StartupWithManyAliasTest",helper, 10000));
         testCenter.addTestObject(new StartupWithManyVanityTest("StartupWith10VanityTest",helper, 1, 10));
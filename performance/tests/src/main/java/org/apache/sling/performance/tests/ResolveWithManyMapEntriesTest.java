@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.performance.tests;
+
+import javax.jcr.Node;
+import javax.servlet.http.HttpServletRequest;
+import junit.framework.Assert;
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.commons.testing.jcr.RepositoryUtil;
+import org.apache.sling.performance.AbstractRepositoryTest;
+import org.apache.sling.performance.TestHelper;
+import org.apache.sling.performance.ResourceResolverTestRequest;
+import org.apache.sling.performance.annotation.PerformanceTest;
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * Resolves and maps paths of one of <code>nodeCount</code> virtual hosts,
+ * each having its own <code>/etc/map</code> entry.
+ */
+public class ResolveWithManyMapEntriesTest extends AbstractRepositoryTest {
+
+    private static final String PN_INTERNAL_REDIRECT = "sling:internalRedirect";
+
+    private final TestHelper helper;
+
+    private Node mapRoot;
+
+    private ResourceResolver resResolver;
+
+    private Node rootNode;
+
+    private String rootPath;
+
+    private final int nodeCount;
+
+    public ResolveWithManyMapEntriesTest(String testInstanceName, TestHelper helper, int nodeCount) {
+        super(testInstanceName);
+        this.helper = helper;
+        this.nodeCount = nodeCount;
+    }
+
+    @After
+    protected void afterSuite() throws Exception {
+        if (helper != null) {
+            helper.dispose();
+        }
+
+        if (rootNode != null) {
+            rootNode.remove();
+        }
+        if (mapRoot != null) {
+            mapRoot.remove();
+        }
+        session.save();
+    }
+
+    @Before
+    protected void beforeSuite() throws Exception {
+        RepositoryUtil.registerNodeType(getSession(),
+                this.getClass().getResourceAsStream("/SLING-INF/nodetypes/folder.cnd"));
+        RepositoryUtil.registerNodeType(getSession(),
+                this.getClass().getResourceAsStream("/SLING-INF/nodetypes/resource.cnd"));
+        RepositoryUtil.registerNodeType(getSession(),
+                this.getClass().getResourceAsStream("/SLING-INF/nodetypes/vanitypath.cnd"));
+        RepositoryUtil.registerNodeType(getSession(),
+                this.getClass().getResourceAsStream("/SLING-INF/nodetypes/mapping.cnd"));
+
+        // test data
+        rootPath = "/test" + System.currentTimeMillis();
+        rootNode = getSession().getRootNode().addNode(rootPath.substring(1), JcrConstants.NT_UNSTRUCTURED);
+
+        // test mappings
+        mapRoot = getSession().getRootNode().addNode("etc", JcrConstants.NT_FOLDER);
+        Node map = mapRoot.addNode("map", "sling:Mapping");
+        Node http = map.addNode("http", "sling:Mapping");
+        http.addNode("localhost.80", "sling:Mapping");
+        Node https = map.addNode("https", "sling:Mapping");
+        https.addNode("localhost.443", "sling:Mapping");
+
+        // creating <nodeCount> virtual hosts with their content
+        for (int j = 0; j < nodeCount; j++) {
+            Node content = rootNode.addNode("site" + j, JcrConstants.NT_UNSTRUCTURED);
+            content.addNode("page", JcrConstants.NT_UNSTRUCTURED);
+            Node host = http.addNode("site" + j + ".example.com.80", "sling:Mapping");
+            host.setProperty(PN_INTERNAL_REDIRECT, content.getPath());
+
+            if (j % 10 == 0) {
+                session.save();
+            }
+        }
+
+        session.save();
+
+        helper.init(rootPath, session, getRepository());
+
+        resResolver = helper.getResourceResolver();
+
+    }
+
+    @PerformanceTest
+    public void runTest() throws Exception {
+        final String site = "site" + (nodeCount / 2);
+        HttpServletRequest request = new ResourceResolverTestRequest("http", site + ".example.com", 80, "/page.html");
+        Resource res = resResolver.resolve(request, "/page.html");
+        Assert.assertEquals(rootPath + "/" + site + "/page", res.getPath());
+
+        String mapped = resResolver.map(rootPath + "/" + site + "/page.html");
+        Assert.assertEquals("http://" + site + ".example.com/page.html", mapped);
+    }
+}
@@ -365,6 +365,143 @@ public class SlingPostChunkUploadTest extends SlingTestBase {
         }
     }
 
+    /**
+     * Test chunk upload where intermediate chunks arrive out of order, as
+     * they do with parallel uploads. sling:length only covers the contiguous
+     * range from offset 0, overlapping chunks are rejected.
+     */
+    @Test
+    public void testOutOfOrderChunkUpload() {
+        try {
+            // create 1000 bytes file
+            File file = createFile("helloworld", 100);
+            String nodeName = file.getName();
+            int chunkSize = 200;
+            uploadPart(parentPath, file, nodeName, file.length(), 0,
+                chunkSize, null);
+            uploadPart(parentPath, file, nodeName, file.length(), 400,
+                chunkSize, null);
+            uploadPart(parentPath, file, nodeName, file.length(), 600,
+                chunkSize, null);
+            JSONObject json = getChunkJson(parentPath + "/" + nodeName);
+            validate(json, 200, 3);
+
+            try {
+                uploadPart(parentPath, file, nodeName, file.length(), 500,
+                    chunkSize, null);
+                Assert.fail("overlapping chunk upload should fail");
+            } catch (Exception ignore) {
+
+            }
+
+            // filling the gap makes the stored chunks contiguous
+            uploadPart(parentPath, file, nodeName, file.length(), 200,
+                chunkSize, null);
+            json = getChunkJson(parentPath + "/" + nodeName);
+            validate(json, 800, 4);
+
+            uploadPart(parentPath, file, nodeName, file.length(), 800,
+                chunkSize, null);
+            HttpResponse response = httpGet(parentPath + "/" + nodeName);
+            InputStream fis = new FileInputStream(file);
+            Assert.assertEquals("content stream doesn't match", true,
+                IOUtils.contentEquals(fis, new ByteArrayInputStream(
+                    getRequestExecutor().getContent().getBytes())));
+            fis.close();
+
+            // clean uploaded file from repository
+            Map<String, String> reqParams = new HashMap<String, String>();
+            reqParams.put(SlingPostConstants.RP_OPERATION, "delete");
+            response = uploadMultiPart(parentPath + "/" + nodeName, reqParams,
+                null, null);
+            file.delete();
+        } catch (Exception e) {
+            log.error("error:", e);
+            Assert.fail("exception caught: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Test that resending a stored chunk completes the upload. Requests
+     * uploading the last missing chunks in parallel may each store their
+     * chunk without merging, which leaves all chunks stored and the upload
+     * incomplete. The client retries the last chunk, which must not be
+     * rejected as overlapping.
+     */
+    @Test
+    public void testRetriedChunkCompletesUpload() {
+        try {
+            // create 1000 bytes file
+            File file = createFile("helloworld", 100);
+            String nodeName = file.getName();
+            int chunkSize = 200;
+            // all chunks stored without the length, the upload can't complete
+            for (int offset = 0; offset < file.length(); offset += chunkSize) {
+                uploadPart(parentPath, file, nodeName, 0, offset, chunkSize,
+                    null);
+            }
+            JSONObject json = getChunkJson(parentPath + "/" + nodeName);
+            validate(json, 1000, 5);
+
+            uploadPart(parentPath, file, nodeName, file.length(), 800,
+                chunkSize, true);
+            HttpResponse response = httpGet(parentPath + "/" + nodeName);
+            InputStream fis = new FileInputStream(file);
+            Assert.assertEquals("content stream doesn't match", true,
+                IOUtils.contentEquals(fis, new ByteArrayInputStream(
+                    getRequestExecutor().getContent().getBytes())));
+            fis.close();
+
+            // clean uploaded file from repository
+            Map<String, String> reqParams = new HashMap<String, String>();
+            reqParams.put(SlingPostConstants.RP_OPERATION, "delete");
+            response = uploadMultiPart(parentPath + "/" + nodeName, reqParams,
+                null, null);
+            file.delete();
+        } catch (Exception e) {
+            log.error("error:", e);
+            Assert.fail("exception caught: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Test chunk upload of a larger file in many chunks and log the
+     * throughput, the final binary is assembled from all stored chunks.
+     */
+    @Test
+    public void testLargeChunkUpload() {
+        try {
+            // create 2 MB file
+            File file = createFile("helloworld", 200 * 1024);
+            String nodeName = file.getName();
+            int chunkSize = 64 * 1024;
+            long start = System.currentTimeMillis();
+            int chunks = uploadChunks(parentPath, file, nodeName, 0,
+                chunkSize, Integer.MAX_VALUE);
+            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+            log.info("uploaded {} bytes in {} chunks in {} ms ({} KB/s)",
+                new Object[] { file.length(), chunks, elapsed,
+                    file.length() * 1000 / 1024 / elapsed });
+
+            HttpResponse response = httpGet(parentPath + "/" + nodeName);
+            InputStream fis = new FileInputStream(file);
+            Assert.assertEquals("content stream doesn't match", true,
+                IOUtils.contentEquals(fis, new ByteArrayInputStream(
+                    getRequestExecutor().getContent().getBytes())));
+            fis.close();
+
+            // clean uploaded file from repository
+            Map<String, String> reqParams = new HashMap<String, String>();
+            reqParams.put(SlingPostConstants.RP_OPERATION, "delete");
+            response = uploadMultiPart(parentPath + "/" + nodeName, reqParams,
+                null, null);
+            file.delete();
+        } catch (Exception e) {
+            log.error("error:", e);
+            Assert.fail("exception caught: " + e.getMessage());
+        }
+    }
+
     /**
      * create temporary file of size
      */